@@ -0,0 +1,220 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.annotation.Nonnull;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.wcm.api.Page;
+
+/**
+ * Maintains an index of the pages below some roots on a single background thread: the index is built when the indexer is created,
+ * then updated from the resource changes (local or from other cluster nodes). The build and the updates run one after the other, so
+ * that an update is never overwritten by the pages read earlier by the build. The pages of the DAM are never indexed.
+ */
+public final class PageIndexer {
+
+    public static final long SHUTDOWN_TIMEOUT = 30;
+    static final String DAM_ROOT = "/content/dam";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PageIndexer.class);
+    private static final String CONTENT_SEGMENT = "/" + JcrConstants.JCR_CONTENT;
+
+    /**
+     * Receives the pages to index or to remove.
+     */
+    public interface Target {
+
+        /**
+         * Indexes the {@code page}, replacing its previous version.
+         */
+        void index(@Nonnull Page page);
+
+        /**
+         * Removes the page at {@code path}, which no longer exists.
+         */
+        void remove(@Nonnull String path);
+
+        /**
+         * Removes the page at {@code path} and the pages below it.
+         */
+        void removeTree(@Nonnull String path);
+    }
+
+    private final String description;
+    private final String[] roots;
+    private final ExecutorService executor;
+    private volatile Future<?> indexing;
+
+    /**
+     * Starts the {@code build} of the index on a new thread.
+     *
+     * @param threadName  the name of the indexing thread
+     * @param description describes the index in the log messages
+     * @param roots       the paths below which the pages are indexed
+     * @param build       builds the index, with this indexer
+     */
+    public PageIndexer(@Nonnull String threadName, @Nonnull String description, @Nonnull String[] roots,
+                       @Nonnull Consumer<PageIndexer> build) {
+        this.description = description;
+        this.roots = roots.clone();
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        indexing = executor.submit(() -> build.accept(this));
+    }
+
+    /**
+     * Runs the {@code task} on the indexing thread, once the previous tasks are done; the task is dropped if the indexer is shut down.
+     */
+    public void submit(@Nonnull Runnable task) {
+        try {
+            indexing = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("The {} is shutting down; the task is dropped.", description);
+        }
+    }
+
+    /**
+     * Returns the last task submitted to the indexing thread: the build, or the update of the latest resource changes.
+     */
+    @Nonnull
+    public Future<?> getIndexing() {
+        return indexing;
+    }
+
+    /**
+     * Stops the indexing and waits for the indexing thread to terminate, so that it doesn't update the index once it's closed or
+     * rebuilt.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+                LOGGER.warn("The indexing of the {} didn't stop within {} seconds.", description, SHUTDOWN_TIMEOUT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Passes the pages below the roots to the {@code consumer}.
+     */
+    public void indexRoots(@Nonnull ResourceResolver resourceResolver, @Nonnull Consumer<Page> consumer) {
+        for (String root : roots) {
+            Resource resource = resourceResolver.getResource(root);
+            if (resource != null) {
+                indexTree(resource, consumer);
+            }
+        }
+    }
+
+    /**
+     * Resolves the {@code changes} to the pages to index or to remove: the pages whose content changed are indexed again, or removed
+     * if they no longer exist, the removed resources remove the pages below them, the pages below the added (or moved) resources are
+     * indexed, and a changed page node only indexes that page again.
+     */
+    public void update(@Nonnull ResourceResolver resourceResolver, @Nonnull List<ResourceChange> changes, @Nonnull Target target) {
+        for (ResourceChange change : changes) {
+            String path = change.getPath();
+            if (!isIndexed(path)) {
+                continue;
+            }
+            int contentIndex = path.indexOf(CONTENT_SEGMENT + "/");
+            if (contentIndex < 0 && path.endsWith(CONTENT_SEGMENT)) {
+                contentIndex = path.length() - CONTENT_SEGMENT.length();
+            }
+            if (contentIndex >= 0) {
+                // the content of a page changed
+                String pagePath = path.substring(0, contentIndex);
+                Resource pageResource = resourceResolver.getResource(pagePath);
+                Page page = pageResource != null ? pageResource.adaptTo(Page.class) : null;
+                if (page != null) {
+                    target.index(page);
+                } else {
+                    target.remove(pagePath);
+                }
+            } else if (change.getType() == ResourceChange.ChangeType.REMOVED) {
+                target.removeTree(path);
+            } else {
+                Resource resource = resourceResolver.getResource(path);
+                if (resource == null) {
+                    continue;
+                }
+                if (change.getType() == ResourceChange.ChangeType.ADDED) {
+                    // an added or moved tree brings the pages below it
+                    indexTree(resource, target::index);
+                } else {
+                    // a changed node only changes its own page: the pages below it are reported by their own changes
+                    Page page = resource.adaptTo(Page.class);
+                    if (page != null) {
+                        target.index(page);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isIndexed(@Nonnull String path) {
+        if (isDescendant(DAM_ROOT, path)) {
+            return false;
+        }
+        for (String root : roots) {
+            if (isDescendant(root, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Passes the pages contained by the {@code resource}, including the page it represents, to the {@code consumer}, until the
+     * indexing thread is interrupted.
+     */
+    private static void indexTree(@Nonnull Resource resource, @Nonnull Consumer<Page> consumer) {
+        String path = resource.getPath();
+        if (Thread.currentThread().isInterrupted() || path.equals(DAM_ROOT) || JcrConstants.JCR_CONTENT.equals(resource.getName())) {
+            return;
+        }
+        Page page = resource.adaptTo(Page.class);
+        if (page != null) {
+            consumer.accept(page);
+        }
+        for (Resource child : resource.getChildren()) {
+            indexTree(child, consumer);
+        }
+    }
+
+    private static boolean isDescendant(@Nonnull String root, @Nonnull String path) {
+        return path.equals(root) || path.startsWith(root + "/");
+    }
+}
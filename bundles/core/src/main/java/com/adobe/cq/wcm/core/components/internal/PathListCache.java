@@ -0,0 +1,209 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import javax.annotation.Nonnull;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Bounded in-memory cache of page path lists, limited by the total number of cached paths, used by the components caching the pages
+ * they found. The lists expire after a configurable time, to account for the changes not observed by their owner, such as access
+ * control changes; the owner decides which of them a change invalidates.
+ *
+ * With stale-while-revalidate enabled, the invalidated lists are kept until the first request needing them loads them again; the
+ * concurrent requests are answered with the stale paths in the meantime, instead of all loading the same list.
+ *
+ * @param <K> the type of the keys identifying the lists
+ */
+public final class PathListCache<K> {
+
+    private final Cache<K, Entry> cache;
+    private final boolean staleWhileRevalidate;
+
+    /**
+     * Incremented on every invalidation, so that lists loaded concurrently with a change are not cached.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+
+    /**
+     * Identifies this instance of the cache in its versions.
+     */
+    private final String id = UUID.randomUUID().toString();
+
+    /**
+     * @param maxPaths             the maximum number of paths, over all the cached lists; 0 disables the cache
+     * @param timeToLive           the number of seconds after which a list is loaded again
+     * @param staleWhileRevalidate {@code true} to answer with the invalidated paths of a list while a single request loads it again
+     */
+    public PathListCache(int maxPaths, int timeToLive, boolean staleWhileRevalidate) {
+        // every entry weighs at least 1, so that the empty lists are bounded as well
+        cache = CacheBuilder.newBuilder()
+                .maximumWeight(Math.max(0, maxPaths))
+                .<K, Entry>weigher((key, entry) -> entry.paths.size() + 1)
+                .expireAfterWrite(Math.max(0, timeToLive), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        this.staleWhileRevalidate = staleWhileRevalidate;
+    }
+
+    /**
+     * Returns the paths of the list identified by the {@code key}, loading them through the {@code loader} if they are not cached.
+     *
+     * @param key    the key of the list
+     * @param loader loads the paths of the list
+     * @return the paths of the list
+     */
+    @Nonnull
+    public List<String> get(@Nonnull K key, @Nonnull Supplier<List<String>> loader) {
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null) {
+            if (!entry.stale) {
+                return entry.paths;
+            }
+            if (!entry.revalidating.compareAndSet(false, true)) {
+                // another request is loading the list again
+                staleHits.incrementAndGet();
+                return entry.paths;
+            }
+        }
+        boolean cached = false;
+        try {
+            long generation = invalidations.get();
+            List<String> paths = Collections.unmodifiableList(new ArrayList<>(loader.get()));
+            if (generation == invalidations.get()) {
+                cache.put(key, new Entry(paths));
+                cached = true;
+            }
+            return paths;
+        } finally {
+            if (entry != null && !cached) {
+                // lets a later request load the list again
+                entry.revalidating.set(false);
+            }
+        }
+    }
+
+    /**
+     * Invalidates the lists whose key matches the {@code affected} predicate; with stale-while-revalidate enabled, they are only
+     * marked as stale.
+     *
+     * @param affected matches the keys of the lists to invalidate
+     */
+    public void invalidate(@Nonnull Predicate<K> affected) {
+        invalidations.incrementAndGet();
+        if (staleWhileRevalidate) {
+            cache.asMap().forEach((key, entry) -> {
+                if (affected.test(key)) {
+                    entry.stale = true;
+                }
+            });
+        } else {
+            cache.asMap().keySet().removeIf(affected);
+        }
+    }
+
+    /**
+     * Returns the version of the cached lists, which changes with every invalidation, and differs between the instances of the cache.
+     *
+     * @return the version of the cached lists
+     */
+    @Nonnull
+    public String getVersion() {
+        return id + ":" + invalidations.get();
+    }
+
+    /**
+     * Checks if the {@code path} is the {@code root}, or one of its descendants.
+     *
+     * @param root the root path
+     * @param path the checked path
+     * @return {@code true} if the {@code path} is contained by the {@code root}, {@code false} otherwise
+     */
+    public static boolean isDescendant(@Nonnull String root, @Nonnull String path) {
+        return path.equals(root) || path.startsWith(root + "/");
+    }
+
+    /**
+     * Checks if a change of the {@code path} may affect the pages below the {@code root}, that is if the {@code path} is contained by
+     * the {@code root}, or is one of its ancestors.
+     *
+     * @param root the root path
+     * @param path the changed path
+     * @return {@code true} if the {@code path} is related to the {@code root}, {@code false} otherwise
+     */
+    public static boolean isRelated(@Nonnull String root, @Nonnull String path) {
+        return isDescendant(root, path) || root.startsWith(path + "/");
+    }
+
+    public double getHitRatio() {
+        return cache.stats().hitRate();
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getStaleHitCount() {
+        return staleHits.get();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    public long getEvictionCount() {
+        CacheStats stats = cache.stats();
+        return stats.evictionCount();
+    }
+
+    public long getSize() {
+        return cache.size();
+    }
+
+    /**
+     * Removes all the cached lists.
+     */
+    public void clear() {
+        invalidations.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    /**
+     * The cached paths of a list.
+     */
+    private static final class Entry {
+        private final List<String> paths;
+        private volatile boolean stale;
+        private final AtomicBoolean revalidating = new AtomicBoolean();
+
+        private Entry(List<String> paths) {
+            this.paths = paths;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.image;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.sling.api.resource.Resource;
+
+import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.DamConstants;
+import com.day.cq.dam.api.Rendition;
+
+/**
+ * Immutable snapshot of the information about a DAM asset needed for rendering images: the asset's MIME type, last modified date,
+ * name, title, description, dimensions and the names of its renditions. A snapshot doesn't depend on the request that created it and
+ * can therefore be shared between requests, through the {@link AssetInfoService}.
+ */
+public final class AssetInfo {
+
+    private final String path;
+    private final String mimeType;
+    private final long lastModified;
+    private final String name;
+    private final String title;
+    private final String description;
+    private final int width;
+    private final int height;
+    private final ImageHeader imageHeader;
+    private final List<String> renditionNames;
+    private final String webRenditionName;
+    private final int webRenditionWidth;
+
+    private AssetInfo(Asset asset) {
+        path = asset.getPath();
+        mimeType = asset.getMimeType();
+        lastModified = asset.getLastModified();
+        name = asset.getName();
+        title = asset.getMetadataValue(DamConstants.DC_TITLE);
+        description = asset.getMetadataValue(DamConstants.DC_DESCRIPTION);
+        imageHeader = ImageHeader.probe(asset);
+        if (imageHeader != null) {
+            width = imageHeader.getWidth();
+            height = imageHeader.getHeight();
+        } else {
+            width = getDimension(asset.getMetadataValue(DamConstants.TIFF_IMAGEWIDTH));
+            height = getDimension(asset.getMetadataValue(DamConstants.TIFF_IMAGELENGTH));
+        }
+        List<String> names = new ArrayList<>();
+        Rendition webRendition = null;
+        for (Rendition rendition : asset.getRenditions()) {
+            names.add(rendition.getName());
+            if (webRendition == null && rendition.getName().startsWith(DamConstants.PREFIX_ASSET_WEB)) {
+                webRendition = rendition;
+            }
+        }
+        renditionNames = Collections.unmodifiableList(names);
+        if (webRendition != null) {
+            ImageHeader webRenditionHeader = ImageHeader.probe(webRendition);
+            webRenditionName = webRendition.getName();
+            webRenditionWidth = webRenditionHeader != null ? webRenditionHeader.getWidth() : 0;
+        } else {
+            webRenditionName = null;
+            webRenditionWidth = 0;
+        }
+    }
+
+    /**
+     * Creates the snapshot of the asset stored at the {@code assetResource}, without caching it.
+     *
+     * @param assetResource the asset's resource
+     * @return the snapshot, or {@code null} if the resource is not an asset
+     */
+    @CheckForNull
+    public static AssetInfo of(@Nonnull Resource assetResource) {
+        Asset asset = assetResource.adaptTo(Asset.class);
+        return asset != null ? new AssetInfo(asset) : null;
+    }
+
+    /**
+     * Returns the snapshot of the asset stored at the {@code assetResource}, using the {@code assetInfoService}'s cache when the
+     * service is available.
+     *
+     * @param assetInfoService the asset info service, if available
+     * @param assetResource    the asset's resource
+     * @return the snapshot, or {@code null} if the resource is not an asset
+     */
+    @CheckForNull
+    public static AssetInfo of(@Nullable AssetInfoService assetInfoService, @Nonnull Resource assetResource) {
+        return assetInfoService != null ? assetInfoService.getAssetInfo(assetResource) : of(assetResource);
+    }
+
+    @Nonnull
+    public String getPath() {
+        return path;
+    }
+
+    @CheckForNull
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    @Nonnull
+    public String getName() {
+        return name;
+    }
+
+    @CheckForNull
+    public String getTitle() {
+        return title;
+    }
+
+    @CheckForNull
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Returns the width of the asset's original rendition.
+     *
+     * @return the width in pixels, or 0 if it is not known
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the asset's original rendition.
+     *
+     * @return the height in pixels, or 0 if it is not known
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the header of the asset's original rendition.
+     *
+     * @return the header, or {@code null} if the original rendition is not a PNG, GIF or JPEG image
+     */
+    @CheckForNull
+    public ImageHeader getImageHeader() {
+        return imageHeader;
+    }
+
+    /**
+     * Returns the names of the asset's renditions, in the order in which the asset lists them.
+     *
+     * @return the rendition names
+     */
+    @Nonnull
+    public List<String> getRenditionNames() {
+        return renditionNames;
+    }
+
+    /**
+     * Returns the name of the first web rendition of the asset.
+     *
+     * @return the rendition name, or {@code null} if the asset has no web rendition
+     */
+    @CheckForNull
+    public String getWebRenditionName() {
+        return webRenditionName;
+    }
+
+    /**
+     * Returns the width of the first web rendition of the asset. The image editor defines the cropping rectangles of the images on
+     * this rendition.
+     *
+     * @return the width in pixels, or 0 if the asset has no web rendition or if its width is not known
+     */
+    public int getWebRenditionWidth() {
+        return webRenditionWidth;
+    }
+
+    private static int getDimension(String stringValue) {
+        try {
+            return Integer.parseInt(stringValue);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
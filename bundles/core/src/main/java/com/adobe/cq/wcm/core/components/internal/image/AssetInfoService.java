@@ -0,0 +1,38 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.image;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.sling.api.resource.Resource;
+
+/**
+ * Provides cached {@link AssetInfo} snapshots of DAM assets, so that the image components and the adaptive image servlet don't have to
+ * adapt the same asset over and over again. The snapshots are invalidated when their assets change.
+ */
+public interface AssetInfoService {
+
+    /**
+     * Returns the snapshot of the asset stored at the {@code assetResource}. The resource has to be resolved by the caller, so that
+     * only assets which the caller is allowed to read are returned.
+     *
+     * @param assetResource the asset's resource
+     * @return the snapshot, or {@code null} if the resource is not an asset
+     */
+    @CheckForNull
+    AssetInfo getAssetInfo(@Nonnull Resource assetResource);
+}
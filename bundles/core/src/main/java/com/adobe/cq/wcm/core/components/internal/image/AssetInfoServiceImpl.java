@@ -0,0 +1,124 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.image;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * {@link AssetInfoService} keeping the snapshots in a bounded in-memory cache, keyed by asset path. The cache entries are invalidated
+ * by the resource changes (local or from other cluster nodes) of the assets and of their ancestors.
+ */
+@Designate(
+        ocd = AssetInfoServiceImpl.Config.class
+)
+@Component(
+        service = {AssetInfoService.class, ResourceChangeListener.class},
+        property = {
+                ResourceChangeListener.PATHS + "=" + AssetInfoServiceImpl.DAM_ROOT,
+                ResourceChangeListener.CHANGES + "=ADDED",
+                ResourceChangeListener.CHANGES + "=CHANGED",
+                ResourceChangeListener.CHANGES + "=REMOVED"
+        }
+)
+public class AssetInfoServiceImpl implements AssetInfoService, ExternalResourceChangeListener {
+
+    static final String DAM_ROOT = "/content/dam";
+    static final int DEFAULT_CACHE_SIZE = 10000;
+
+    @ObjectClassDefinition(
+            name = "AEM Core WCM Components Asset Info Service",
+            description = "Caches the asset information used by the image components and by the adaptive image servlet."
+    )
+    @interface Config {
+
+        @AttributeDefinition(
+                name = "Cache size",
+                description = "The maximum number of assets whose information is kept in memory."
+        )
+        int cacheSize() default DEFAULT_CACHE_SIZE;
+    }
+
+    private Cache<String, AssetInfo> cache = CacheBuilder.newBuilder().maximumSize(DEFAULT_CACHE_SIZE).build();
+
+    /**
+     * Incremented on every invalidation, so that snapshots read concurrently with a change are not cached.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @Activate
+    @Modified
+    void configure(Config config) {
+        cache = CacheBuilder.newBuilder().maximumSize(Math.max(0, config.cacheSize())).build();
+    }
+
+    @CheckForNull
+    @Override
+    public AssetInfo getAssetInfo(@Nonnull Resource assetResource) {
+        String path = assetResource.getPath();
+        Cache<String, AssetInfo> currentCache = cache;
+        AssetInfo assetInfo = currentCache.getIfPresent(path);
+        if (assetInfo == null) {
+            long generation = invalidations.get();
+            assetInfo = AssetInfo.of(assetResource);
+            if (assetInfo != null && generation == invalidations.get()) {
+                currentCache.put(path, assetInfo);
+            }
+        }
+        return assetInfo;
+    }
+
+    @Override
+    public void onChange(@Nonnull List<ResourceChange> changes) {
+        for (ResourceChange change : changes) {
+            invalidate(change.getPath(), change.getType() == ResourceChange.ChangeType.REMOVED);
+        }
+    }
+
+    /**
+     * Invalidates the snapshots of the asset containing the {@code path}. If the {@code path} was removed, the snapshots of all the
+     * assets stored below it are invalidated as well.
+     */
+    private void invalidate(@Nonnull String path, boolean removed) {
+        invalidations.incrementAndGet();
+        String assetPath = path;
+        while (assetPath != null && assetPath.startsWith(DAM_ROOT)) {
+            cache.invalidate(assetPath);
+            assetPath = ResourceUtil.getParent(assetPath);
+        }
+        if (removed) {
+            String prefix = path + "/";
+            cache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+        }
+    }
+}
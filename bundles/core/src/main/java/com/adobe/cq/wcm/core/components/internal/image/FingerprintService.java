@@ -0,0 +1,46 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.image;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+
+/**
+ * Computes the fingerprints used instead of the last modified dates in the image URLs. A fingerprint only depends on the content of
+ * the image's binary and on the properties of the image component which transform the image (cropping, rotation and flipping), so
+ * the URLs stay the same when only the metadata of the image or of the component changes.
+ */
+public interface FingerprintService {
+
+    /**
+     * The number of hexadecimal characters of a fingerprint.
+     */
+    int FINGERPRINT_LENGTH = 20;
+
+    /**
+     * Returns the fingerprint of the image rendered by an image component.
+     *
+     * @param imageResource       the DAM asset or the {@code nt:file} resource providing the image's binary
+     * @param componentProperties the properties of the image component
+     * @return the fingerprint, made of {@link #FINGERPRINT_LENGTH} lowercase hexadecimal characters, or {@code null} if the image's
+     * binary cannot be read
+     */
+    @CheckForNull
+    String getFingerprint(@Nonnull Resource imageResource, @Nonnull ValueMap componentProperties);
+}
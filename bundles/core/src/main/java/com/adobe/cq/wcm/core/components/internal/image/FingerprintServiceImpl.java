@@ -0,0 +1,161 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.image;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.adobe.cq.wcm.core.components.models.Image;
+import com.day.cq.commons.ImageResource;
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.Rendition;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * {@link FingerprintService} identifying the content of the DAM assets by the SHA-1 digest DAM stores in their metadata, and the
+ * content of the other binaries by their SHA-1 digest. The digests computed from the binaries are kept in a bounded in-memory cache,
+ * keyed by the binary's path and validated against its last modified date, so that each binary is only read once per change.
+ */
+@Designate(
+        ocd = FingerprintServiceImpl.Config.class
+)
+@Component(
+        service = FingerprintService.class
+)
+public class FingerprintServiceImpl implements FingerprintService {
+
+    static final int DEFAULT_CACHE_SIZE = 10000;
+    static final String PN_SHA1 = "dam:sha1";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FingerprintServiceImpl.class);
+    private static final int BUFFER_SIZE = 8192;
+
+    @ObjectClassDefinition(
+            name = "AEM Core WCM Components Image Fingerprint Service",
+            description = "Computes the content fingerprints used in the image URLs."
+    )
+    @interface Config {
+
+        @AttributeDefinition(
+                name = "Cache size",
+                description = "The maximum number of binary digests kept in memory."
+        )
+        int cacheSize() default DEFAULT_CACHE_SIZE;
+    }
+
+    private Cache<String, Digest> cache = CacheBuilder.newBuilder().maximumSize(DEFAULT_CACHE_SIZE).build();
+
+    @Activate
+    @Modified
+    void configure(Config config) {
+        cache = CacheBuilder.newBuilder().maximumSize(Math.max(0, config.cacheSize())).build();
+    }
+
+    @CheckForNull
+    @Override
+    public String getFingerprint(@Nonnull Resource imageResource, @Nonnull ValueMap componentProperties) {
+        String contentIdentity = getContentIdentity(imageResource);
+        if (contentIdentity == null) {
+            return null;
+        }
+        Hasher hasher = Hashing.sha1().newHasher()
+                .putString(contentIdentity, StandardCharsets.UTF_8)
+                .putString("|" + componentProperties.get(ImageResource.PN_IMAGE_CROP, ""), StandardCharsets.UTF_8)
+                .putString("|" + componentProperties.get(ImageResource.PN_IMAGE_ROTATE, ""), StandardCharsets.UTF_8)
+                .putString("|" + componentProperties.get(Image.PN_FLIP_HORIZONTAL, false), StandardCharsets.UTF_8)
+                .putString("|" + componentProperties.get(Image.PN_FLIP_VERTICAL, false), StandardCharsets.UTF_8);
+        return hasher.hash().toString().substring(0, FINGERPRINT_LENGTH);
+    }
+
+    @CheckForNull
+    private String getContentIdentity(@Nonnull Resource imageResource) {
+        Asset asset = imageResource.adaptTo(Asset.class);
+        if (asset != null) {
+            String sha1 = asset.getMetadataValue(PN_SHA1);
+            if (StringUtils.isNotEmpty(sha1)) {
+                return sha1;
+            }
+            Rendition original = asset.getOriginal();
+            return original != null ? getDigest(original) : null;
+        }
+        return getDigest(imageResource);
+    }
+
+    /**
+     * Returns the SHA-1 digest of the binary of an {@code nt:file} resource (such as an asset rendition), reading the binary only if
+     * it changed since its digest was cached.
+     */
+    @CheckForNull
+    private String getDigest(@Nonnull Resource file) {
+        Resource content = file.getChild(JcrConstants.JCR_CONTENT);
+        Calendar lastModified = content != null ? content.getValueMap().get(JcrConstants.JCR_LASTMODIFIED, Calendar.class) : null;
+        long revision = lastModified != null ? lastModified.getTimeInMillis() : 0;
+        String path = file.getPath();
+        Digest digest = cache.getIfPresent(path);
+        if (digest == null || digest.revision != revision) {
+            InputStream inputStream = file instanceof Rendition ? ((Rendition) file).getStream() : file.adaptTo(InputStream.class);
+            if (inputStream == null) {
+                LOGGER.debug("The binary of {} cannot be read.", path);
+                return null;
+            }
+            Hasher hasher = Hashing.sha1().newHasher();
+            try (InputStream stream = inputStream) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = stream.read(buffer)) != -1) {
+                    hasher.putBytes(buffer, 0, read);
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Unable to read the binary of {}.", path, e);
+                return null;
+            }
+            digest = new Digest(revision, hasher.hash().toString());
+            cache.put(path, digest);
+        }
+        return digest.value;
+    }
+
+    private static final class Digest {
+
+        private final long revision;
+        private final String value;
+
+        private Digest(long revision, @Nonnull String value) {
+            this.revision = revision;
+            this.value = value;
+        }
+    }
+}
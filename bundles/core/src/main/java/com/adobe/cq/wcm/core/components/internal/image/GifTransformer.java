@@ -0,0 +1,514 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.image;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Crops, rotates, flips and resizes (possibly animated) GIF images, one frame at a time.
+ * </p>
+ * <p>
+ * Every frame is transformed in place, without being composed with the previous frames, and is then written back with its original
+ * graphic control extension (delay time, disposal method and transparent colour index), application extensions (e.g. the loop
+ * count) and colour table. Resized frames are mapped back to the colour table of the source frame, so the transformed image uses the
+ * same palette as the original one. Only the frame that is being transformed is held in memory.
+ * </p>
+ */
+public final class GifTransformer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GifTransformer.class);
+    private static final String FORMAT_NAME = "gif";
+    private static final String STREAM_METADATA_FORMAT = "javax_imageio_gif_stream_1.0";
+    private static final String IMAGE_METADATA_FORMAT = "javax_imageio_gif_image_1.0";
+    private static final int OPACITY_THRESHOLD = 128;
+
+    private Rectangle cropRectangle;
+    private int rotation;
+    private boolean flipHorizontally;
+    private boolean flipVertically;
+    private int resizeWidth;
+    private boolean stripMetadata;
+
+    /**
+     * Crops the image to the provided {@code rectangle}, expressed in the coordinates of the image's logical screen.
+     *
+     * @param rectangle the cropping rectangle; {@code null} to not crop the image
+     * @return this transformer
+     */
+    @Nonnull
+    public GifTransformer crop(@Nullable Rectangle rectangle) {
+        this.cropRectangle = rectangle;
+        return this;
+    }
+
+    /**
+     * Rotates the image clockwise. Only multiples of 90 degrees are supported; other angles are ignored.
+     *
+     * @param degrees the rotation angle
+     * @return this transformer
+     */
+    @Nonnull
+    public GifTransformer rotate(int degrees) {
+        int normalised = ((degrees % 360) + 360) % 360;
+        if (normalised % 90 != 0) {
+            LOGGER.warn("GIF images can only be rotated by multiples of 90 degrees; ignoring rotation of {} degrees.", degrees);
+            normalised = 0;
+        }
+        this.rotation = normalised;
+        return this;
+    }
+
+    /**
+     * Flips the image horizontally.
+     *
+     * @param flip {@code true} to flip the image
+     * @return this transformer
+     */
+    @Nonnull
+    public GifTransformer flipHorizontally(boolean flip) {
+        this.flipHorizontally = flip;
+        return this;
+    }
+
+    /**
+     * Flips the image vertically.
+     *
+     * @param flip {@code true} to flip the image
+     * @return this transformer
+     */
+    @Nonnull
+    public GifTransformer flipVertically(boolean flip) {
+        this.flipVertically = flip;
+        return this;
+    }
+
+    /**
+     * Proportionally resizes the (cropped and rotated) image to the provided width. Images are never up-scaled.
+     *
+     * @param width the width; 0 to not resize the image
+     * @return this transformer
+     */
+    @Nonnull
+    public GifTransformer resize(int width) {
+        this.resizeWidth = width;
+        return this;
+    }
+
+    /**
+     * Removes the comment extensions and the application extensions that don't affect how the image is rendered (e.g. XMP).
+     *
+     * @param strip {@code true} to remove the image's metadata
+     * @return this transformer
+     */
+    @Nonnull
+    public GifTransformer stripMetadata(boolean strip) {
+        this.stripMetadata = strip;
+        return this;
+    }
+
+    /**
+     * Reads a GIF image from the {@code inputStream}, applies the configured transformations and writes the resulting GIF image to
+     * the {@code outputStream}. None of the streams are closed.
+     *
+     * @param inputStream  the source image
+     * @param outputStream the stream to which the transformed image is written
+     * @throws IOException if the source image cannot be read or if the transformed image cannot be written
+     */
+    public void transform(@Nonnull InputStream inputStream, @Nonnull OutputStream outputStream) throws IOException {
+        ImageReader reader = getReader();
+        ImageWriter writer = ImageIO.getImageWriter(reader);
+        if (writer == null) {
+            throw new IOException("No GIF image writer is available.");
+        }
+        ImageInputStream input = new MemoryCacheImageInputStream(inputStream);
+        ImageOutputStream output = new MemoryCacheImageOutputStream(outputStream);
+        try {
+            reader.setInput(input, true, false);
+            IIOMetadataNode streamTree = (IIOMetadataNode) reader.getStreamMetadata().getAsTree(STREAM_METADATA_FORMAT);
+            IIOMetadataNode screenDescriptor = getChild(streamTree, "LogicalScreenDescriptor");
+            Canvas canvas = new Canvas(Integer.parseInt(screenDescriptor.getAttribute("logicalScreenWidth")),
+                    Integer.parseInt(screenDescriptor.getAttribute("logicalScreenHeight")));
+            Canvas transformed = transform(canvas, null);
+            screenDescriptor.setAttribute("logicalScreenWidth", Integer.toString(transformed.width));
+            screenDescriptor.setAttribute("logicalScreenHeight", Integer.toString(transformed.height));
+            IIOMetadata streamMetadata = writer.getDefaultStreamMetadata(null);
+            streamMetadata.mergeTree(STREAM_METADATA_FORMAT, streamTree);
+
+            writer.setOutput(output);
+            writer.prepareWriteSequence(streamMetadata);
+            long frameEnd = input.getStreamPosition();
+            int index = 0;
+            BufferedImage image;
+            while ((image = readFrame(reader, index)) != null) {
+                IIOMetadataNode imageTree = (IIOMetadataNode) reader.getImageMetadata(index).getAsTree(IMAGE_METADATA_FORMAT);
+                IIOMetadataNode imageDescriptor = getChild(imageTree, "ImageDescriptor");
+                Frame frame = new Frame(Integer.parseInt(imageDescriptor.getAttribute("imageLeftPosition")),
+                        Integer.parseInt(imageDescriptor.getAttribute("imageTopPosition")), image);
+                transform(canvas, frame);
+                IndexColorModel palette = (IndexColorModel) image.getColorModel();
+                BufferedImage indexed = frame.toIndexedImage(palette);
+                imageDescriptor.setAttribute("imageLeftPosition", Integer.toString(frame.left));
+                imageDescriptor.setAttribute("imageTopPosition", Integer.toString(frame.top));
+                imageDescriptor.setAttribute("imageWidth", Integer.toString(frame.width));
+                imageDescriptor.setAttribute("imageHeight", Integer.toString(frame.height));
+                imageDescriptor.setAttribute("interlaceFlag", "FALSE");
+                if (stripMetadata) {
+                    stripMetadata(imageTree);
+                }
+                IIOMetadata imageMetadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(indexed), null);
+                imageMetadata.mergeTree(IMAGE_METADATA_FORMAT, imageTree);
+                writer.writeToSequence(new IIOImage(indexed, null, imageMetadata), null);
+                output.flush();
+                // the reader locates the next frame by skipping over the current one, so only the data before it can be released
+                input.flushBefore(frameEnd);
+                frameEnd = input.getStreamPosition();
+                index++;
+            }
+            writer.endWriteSequence();
+            output.flush();
+            LOGGER.debug("Transformed {} GIF frame(s) from {}x{}px to {}x{}px.", index, canvas.width, canvas.height, transformed.width,
+                    transformed.height);
+        } finally {
+            reader.dispose();
+            writer.dispose();
+            input.close();
+            output.close();
+        }
+    }
+
+    /**
+     * Applies the configured transformations to the provided {@code frame}, if any, and returns the transformed logical screen.
+     */
+    private Canvas transform(@Nonnull Canvas source, @Nullable Frame frame) {
+        Canvas canvas = new Canvas(source.width, source.height);
+        if (cropRectangle != null) {
+            Rectangle crop = cropRectangle.intersection(new Rectangle(0, 0, canvas.width, canvas.height));
+            if (!crop.isEmpty()) {
+                if (frame != null) {
+                    frame.crop(crop);
+                }
+                canvas = new Canvas(crop.width, crop.height);
+            }
+        }
+        for (int i = 0; i < rotation / 90; i++) {
+            if (frame != null) {
+                frame.rotateClockwise(canvas);
+            }
+            canvas = new Canvas(canvas.height, canvas.width);
+        }
+        if (flipHorizontally && frame != null) {
+            frame.flipHorizontally(canvas);
+        }
+        if (flipVertically && frame != null) {
+            frame.flipVertically(canvas);
+        }
+        if (resizeWidth > 0 && resizeWidth < canvas.width) {
+            double scale = (double) resizeWidth / canvas.width;
+            Canvas resized = new Canvas(resizeWidth, Math.max(1, (int) (scale * canvas.height)));
+            if (frame != null) {
+                frame.resize(canvas, resized);
+            }
+            canvas = resized;
+        }
+        return canvas;
+    }
+
+    private static void stripMetadata(@Nonnull IIOMetadataNode imageTree) {
+        for (int i = imageTree.getLength() - 1; i >= 0; i--) {
+            IIOMetadataNode node = (IIOMetadataNode) imageTree.item(i);
+            if ("CommentExtensions".equals(node.getNodeName())) {
+                imageTree.removeChild(node);
+            } else if ("ApplicationExtensions".equals(node.getNodeName())) {
+                for (int j = node.getLength() - 1; j >= 0; j--) {
+                    IIOMetadataNode extension = (IIOMetadataNode) node.item(j);
+                    if (!MetadataStripper.GIF_RENDERING_APPLICATIONS.contains(extension.getAttribute("applicationID") +
+                            extension.getAttribute("authenticationCode"))) {
+                        node.removeChild(extension);
+                    }
+                }
+                if (node.getLength() == 0) {
+                    imageTree.removeChild(node);
+                }
+            }
+        }
+    }
+
+    private static ImageReader getReader() throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName(FORMAT_NAME);
+        if (!readers.hasNext()) {
+            throw new IOException("No GIF image reader is available.");
+        }
+        return readers.next();
+    }
+
+    @Nullable
+    private static BufferedImage readFrame(@Nonnull ImageReader reader, int index) throws IOException {
+        try {
+            return reader.read(index);
+        } catch (IndexOutOfBoundsException e) {
+            // the reader is forward-only, so the number of frames is unknown until the trailer is reached
+            return null;
+        }
+    }
+
+    @Nonnull
+    private static IIOMetadataNode getChild(@Nonnull IIOMetadataNode parent, @Nonnull String name) throws IOException {
+        for (int i = 0; i < parent.getLength(); i++) {
+            IIOMetadataNode child = (IIOMetadataNode) parent.item(i);
+            if (name.equals(child.getNodeName())) {
+                return child;
+            }
+        }
+        throw new IOException("Invalid GIF metadata: missing " + name + ".");
+    }
+
+    private static final class Canvas {
+        private final int width;
+        private final int height;
+
+        private Canvas(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    /**
+     * A frame's ARGB pixels, together with its position on the logical screen.
+     */
+    static final class Frame {
+        private int left;
+        private int top;
+        private int width;
+        private int height;
+        private int[] pixels;
+
+        Frame(int left, int top, @Nonnull BufferedImage image) {
+            this.left = left;
+            this.top = top;
+            this.width = image.getWidth();
+            this.height = image.getHeight();
+            this.pixels = image.getRGB(0, 0, width, height, null, 0, width);
+        }
+
+        void crop(@Nonnull Rectangle crop) {
+            Rectangle visible = new Rectangle(left, top, width, height).intersection(crop);
+            if (visible.isEmpty()) {
+                // the frame still carries timing information, so it's replaced by a single transparent pixel
+                left = 0;
+                top = 0;
+                width = 1;
+                height = 1;
+                pixels = new int[1];
+                return;
+            }
+            int[] cropped = new int[visible.width * visible.height];
+            for (int y = 0; y < visible.height; y++) {
+                System.arraycopy(pixels, (visible.y - top + y) * width + visible.x - left, cropped, y * visible.width, visible.width);
+            }
+            left = visible.x - crop.x;
+            top = visible.y - crop.y;
+            width = visible.width;
+            height = visible.height;
+            pixels = cropped;
+        }
+
+        void rotateClockwise(@Nonnull Canvas canvas) {
+            int[] rotated = new int[pixels.length];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    rotated[x * height + height - 1 - y] = pixels[y * width + x];
+                }
+            }
+            int rotatedLeft = canvas.height - top - height;
+            top = left;
+            left = rotatedLeft;
+            int rotatedWidth = height;
+            height = width;
+            width = rotatedWidth;
+            pixels = rotated;
+        }
+
+        void flipHorizontally(@Nonnull Canvas canvas) {
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width / 2; x++) {
+                    int a = y * width + x;
+                    int b = y * width + width - 1 - x;
+                    int pixel = pixels[a];
+                    pixels[a] = pixels[b];
+                    pixels[b] = pixel;
+                }
+            }
+            left = canvas.width - left - width;
+        }
+
+        void flipVertically(@Nonnull Canvas canvas) {
+            int[] row = new int[width];
+            for (int y = 0; y < height / 2; y++) {
+                int a = y * width;
+                int b = (height - 1 - y) * width;
+                System.arraycopy(pixels, a, row, 0, width);
+                System.arraycopy(pixels, b, pixels, a, width);
+                System.arraycopy(row, 0, pixels, b, width);
+            }
+            top = canvas.height - top - height;
+        }
+
+        /**
+         * Down-scales the frame with a box filter. The frame's bounds are scaled together with its position, so that frames covering
+         * only a part of the logical screen still line up with the previous ones.
+         */
+        void resize(@Nonnull Canvas source, @Nonnull Canvas target) {
+            double scaleX = (double) target.width / source.width;
+            double scaleY = (double) target.height / source.height;
+            int resizedLeft = Math.min(target.width - 1, (int) Math.floor(left * scaleX));
+            int resizedTop = Math.min(target.height - 1, (int) Math.floor(top * scaleY));
+            int resizedRight = Math.max(resizedLeft + 1, Math.min(target.width, (int) Math.ceil((left + width) * scaleX)));
+            int resizedBottom = Math.max(resizedTop + 1, Math.min(target.height, (int) Math.ceil((top + height) * scaleY)));
+            int resizedWidth = resizedRight - resizedLeft;
+            int resizedHeight = resizedBottom - resizedTop;
+            int[] resized = new int[resizedWidth * resizedHeight];
+            for (int y = 0; y < resizedHeight; y++) {
+                int y0 = Math.max(0, (int) Math.floor((resizedTop + y) / scaleY) - top);
+                int y1 = Math.min(height, (int) Math.ceil((resizedTop + y + 1) / scaleY) - top);
+                for (int x = 0; x < resizedWidth; x++) {
+                    int x0 = Math.max(0, (int) Math.floor((resizedLeft + x) / scaleX) - left);
+                    int x1 = Math.min(width, (int) Math.ceil((resizedLeft + x + 1) / scaleX) - left);
+                    resized[y * resizedWidth + x] = average(x0, y0, x1, y1);
+                }
+            }
+            left = resizedLeft;
+            top = resizedTop;
+            width = resizedWidth;
+            height = resizedHeight;
+            pixels = resized;
+        }
+
+        /**
+         * Maps the frame's pixels to the provided {@code palette}. Pixels whose opacity is below 50% are mapped to the palette's
+         * transparent colour, if it defines one.
+         */
+        @Nonnull
+        BufferedImage toIndexedImage(@Nonnull IndexColorModel palette) {
+            int size = palette.getMapSize();
+            int transparent = palette.getTransparentPixel();
+            int[] colors = new int[size];
+            palette.getRGBs(colors);
+            Map<Integer, Byte> matches = new HashMap<>();
+            byte[] indices = new byte[pixels.length];
+            for (int i = 0; i < pixels.length; i++) {
+                int pixel = pixels[i];
+                if (transparent >= 0 && (pixel >>> 24) < OPACITY_THRESHOLD) {
+                    indices[i] = (byte) transparent;
+                    continue;
+                }
+                int rgb = pixel & 0xFFFFFF;
+                Byte index = matches.get(rgb);
+                if (index == null) {
+                    index = (byte) nearestColor(colors, transparent, rgb);
+                    matches.put(rgb, index);
+                }
+                indices[i] = index;
+            }
+            IndexColorModel colorModel = palette;
+            if (palette.getPixelSize() != 8) {
+                // the reader uses packed models for small palettes; expand them to one byte per pixel
+                byte[] reds = new byte[size];
+                byte[] greens = new byte[size];
+                byte[] blues = new byte[size];
+                palette.getReds(reds);
+                palette.getGreens(greens);
+                palette.getBlues(blues);
+                colorModel = new IndexColorModel(8, size, reds, greens, blues, transparent);
+            }
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, colorModel);
+            image.getRaster().setDataElements(0, 0, width, height, indices);
+            return image;
+        }
+
+        private int average(int x0, int y0, int x1, int y1) {
+            if (x1 <= x0 || y1 <= y0) {
+                return 0;
+            }
+            long alpha = 0;
+            long red = 0;
+            long green = 0;
+            long blue = 0;
+            for (int y = y0; y < y1; y++) {
+                for (int x = x0; x < x1; x++) {
+                    int pixel = pixels[y * width + x];
+                    int a = pixel >>> 24;
+                    alpha += a;
+                    red += ((pixel >> 16) & 0xFF) * a;
+                    green += ((pixel >> 8) & 0xFF) * a;
+                    blue += (pixel & 0xFF) * a;
+                }
+            }
+            if (alpha == 0) {
+                return 0;
+            }
+            int count = (x1 - x0) * (y1 - y0);
+            return (int) (alpha / count) << 24 | (int) (red / alpha) << 16 | (int) (green / alpha) << 8 | (int) (blue / alpha);
+        }
+
+        private static int nearestColor(@Nonnull int[] colors, int transparent, int rgb) {
+            int red = (rgb >> 16) & 0xFF;
+            int green = (rgb >> 8) & 0xFF;
+            int blue = rgb & 0xFF;
+            int nearest = 0;
+            int nearestDistance = Integer.MAX_VALUE;
+            for (int i = 0; i < colors.length; i++) {
+                if (i == transparent) {
+                    continue;
+                }
+                int dr = ((colors[i] >> 16) & 0xFF) - red;
+                int dg = ((colors[i] >> 8) & 0xFF) - green;
+                int db = (colors[i] & 0xFF) - blue;
+                int distance = dr * dr + dg * dg + db * db;
+                if (distance < nearestDistance) {
+                    nearest = i;
+                    nearestDistance = distance;
+                }
+            }
+            return nearest;
+        }
+    }
+}
@@ -0,0 +1,329 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.image;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.sling.api.resource.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.Rendition;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Describes the intrinsic properties of a raster image (format, dimensions and transparency), as read from the image's header. Reading
+ * a header never decodes the image's pixels; for PNG files only the chunks preceding the image data are inspected, for GIF files the
+ * blocks preceding the first frame and for JPEG files the segments preceding the first frame.
+ */
+public final class ImageHeader {
+
+    public static final String MIME_TYPE_PNG = "image/png";
+    public static final String MIME_TYPE_GIF = "image/gif";
+    public static final String MIME_TYPE_JPEG = "image/jpeg";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImageHeader.class);
+    private static final int CACHE_SIZE = 10000;
+    private static final ImageHeader UNKNOWN = new ImageHeader(null, 0, 0, false);
+    private static final Cache<String, ImageHeader> CACHE = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+
+    private static final byte[] PNG_SIGNATURE = new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int PNG_COLOR_TYPE_GRAYSCALE_ALPHA = 4;
+    private static final int PNG_COLOR_TYPE_RGBA = 6;
+    private static final int GIF_EXTENSION_INTRODUCER = 0x21;
+    private static final int GIF_IMAGE_SEPARATOR = 0x2C;
+    private static final int GIF_TRAILER = 0x3B;
+    private static final int GIF_GRAPHIC_CONTROL_LABEL = 0xF9;
+
+    private final String mimeType;
+    private final int width;
+    private final int height;
+    private final boolean alpha;
+
+    ImageHeader(@Nullable String mimeType, int width, int height, boolean alpha) {
+        this.mimeType = mimeType;
+        this.width = width;
+        this.height = height;
+        this.alpha = alpha;
+    }
+
+    /**
+     * Returns the mime type of the image, as detected from its signature.
+     *
+     * @return the mime type of the image
+     */
+    @Nonnull
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * Returns the intrinsic width of the image, in pixels.
+     *
+     * @return the width of the image
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the intrinsic height of the image, in pixels.
+     *
+     * @return the height of the image
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Checks if the image can contain transparent pixels: PNG images with an alpha channel or a {@code tRNS} chunk and GIF images that
+     * define a transparent colour index.
+     *
+     * @return {@code true} if the image can contain transparent pixels, {@code false} otherwise
+     */
+    public boolean hasAlpha() {
+        return alpha;
+    }
+
+    /**
+     * Returns the header of the {@code asset}'s original rendition. The header is read once per asset revision and then served from
+     * an in-memory cache.
+     *
+     * @param asset the asset
+     * @return the header, or {@code null} if the original rendition is not a PNG, GIF or JPEG image
+     */
+    @Nullable
+    public static ImageHeader probe(@Nonnull Asset asset) {
+        final Rendition original = asset.getOriginal();
+        if (original == null) {
+            return null;
+        }
+        return probe(asset.getPath(), asset.getLastModified(), original::getStream);
+    }
+
+    /**
+     * Returns the header of an asset's {@code rendition}. The header is read once per rendition revision and then served from an
+     * in-memory cache.
+     *
+     * @param rendition the rendition
+     * @return the header, or {@code null} if the rendition is not a PNG, GIF or JPEG image
+     */
+    @Nullable
+    public static ImageHeader probe(@Nonnull Rendition rendition) {
+        return probe(rendition.getPath(), rendition.getResourceMetadata().getModificationTime(), rendition::getStream);
+    }
+
+    /**
+     * Returns the header of the image stored in the {@code file} resource (an {@code nt:file} node). The header is read once per file
+     * revision and then served from an in-memory cache.
+     *
+     * @param file the file resource
+     * @return the header, or {@code null} if the file is not a PNG, GIF or JPEG image
+     */
+    @Nullable
+    public static ImageHeader probe(@Nonnull Resource file) {
+        return probe(file.getPath(), file.getResourceMetadata().getModificationTime(), () -> file.adaptTo(InputStream.class));
+    }
+
+    /**
+     * Reads the header of an image from the provided {@code inputStream}. The stream is consumed only up to the end of the header
+     * and is not closed.
+     *
+     * @param inputStream the image's binary stream
+     * @return the header, or {@code null} if the stream doesn't contain a PNG, GIF or JPEG image
+     * @throws IOException if the stream cannot be read or if it ends before the header was fully read
+     */
+    @Nullable
+    public static ImageHeader read(@Nonnull InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        int first = in.readUnsignedByte();
+        int second = in.readUnsignedByte();
+        if (first == 0xFF && second == 0xD8) {
+            return readJpeg(in);
+        }
+        if (first == (PNG_SIGNATURE[0] & 0xFF) && second == PNG_SIGNATURE[1]) {
+            return readPng(in);
+        }
+        if (first == 'G' && second == 'I') {
+            return readGif(in);
+        }
+        return null;
+    }
+
+    @Nullable
+    private static ImageHeader probe(@Nonnull String binaryPath, long revision, @Nonnull Callable<InputStream> source) {
+        try {
+            ImageHeader header = CACHE.get(binaryPath + "@" + revision, () -> {
+                InputStream inputStream = source.call();
+                if (inputStream == null) {
+                    return UNKNOWN;
+                }
+                try {
+                    ImageHeader result = read(inputStream);
+                    return result != null ? result : UNKNOWN;
+                } finally {
+                    IOUtils.closeQuietly(inputStream);
+                }
+            });
+            return header == UNKNOWN ? null : header;
+        } catch (ExecutionException e) {
+            LOGGER.warn("Unable to read the image header of {}.", binaryPath, e);
+            return null;
+        }
+    }
+
+    private static ImageHeader readPng(DataInputStream in) throws IOException {
+        for (int i = 2; i < PNG_SIGNATURE.length; i++) {
+            if (in.readUnsignedByte() != (PNG_SIGNATURE[i] & 0xFF)) {
+                return null;
+            }
+        }
+        int width = 0;
+        int height = 0;
+        boolean alpha = false;
+        while (true) {
+            int length = in.readInt();
+            String type = readAscii(in, 4);
+            if ("IHDR".equals(type)) {
+                width = in.readInt();
+                height = in.readInt();
+                // bit depth
+                in.readUnsignedByte();
+                int colorType = in.readUnsignedByte();
+                alpha = colorType == PNG_COLOR_TYPE_GRAYSCALE_ALPHA || colorType == PNG_COLOR_TYPE_RGBA;
+                skipFully(in, length - 10L + 4);
+            } else if ("tRNS".equals(type)) {
+                alpha = true;
+                break;
+            } else if ("IDAT".equals(type) || "IEND".equals(type)) {
+                break;
+            } else {
+                skipFully(in, length + 4L);
+            }
+        }
+        return new ImageHeader(MIME_TYPE_PNG, width, height, alpha);
+    }
+
+    private static ImageHeader readGif(DataInputStream in) throws IOException {
+        String signature = readAscii(in, 4);
+        if (!"F87a".equals(signature) && !"F89a".equals(signature)) {
+            return null;
+        }
+        int width = readUnsignedShortLE(in);
+        int height = readUnsignedShortLE(in);
+        int packed = in.readUnsignedByte();
+        // background colour index and pixel aspect ratio
+        skipFully(in, 2);
+        if ((packed & 0x80) != 0) {
+            skipFully(in, 3L * (1 << ((packed & 0x07) + 1)));
+        }
+        boolean alpha = false;
+        int block;
+        while ((block = in.readUnsignedByte()) == GIF_EXTENSION_INTRODUCER) {
+            int label = in.readUnsignedByte();
+            if (label == GIF_GRAPHIC_CONTROL_LABEL) {
+                int size = in.readUnsignedByte();
+                int flags = in.readUnsignedByte();
+                alpha = (flags & 0x01) != 0;
+                skipFully(in, size - 1L);
+                skipSubBlocks(in);
+                break;
+            }
+            skipSubBlocks(in);
+        }
+        if (block != GIF_EXTENSION_INTRODUCER && block != GIF_IMAGE_SEPARATOR && block != GIF_TRAILER) {
+            return null;
+        }
+        return new ImageHeader(MIME_TYPE_GIF, width, height, alpha);
+    }
+
+    private static ImageHeader readJpeg(DataInputStream in) throws IOException {
+        while (true) {
+            int marker = in.readUnsignedByte();
+            if (marker != 0xFF) {
+                return null;
+            }
+            while (marker == 0xFF) {
+                marker = in.readUnsignedByte();
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                // standalone markers
+                continue;
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                // end of image or start of scan, before any frame header
+                return null;
+            }
+            int length = in.readUnsignedShort();
+            if (isStartOfFrame(marker)) {
+                // sample precision
+                in.readUnsignedByte();
+                int height = in.readUnsignedShort();
+                int width = in.readUnsignedShort();
+                return new ImageHeader(MIME_TYPE_JPEG, width, height, false);
+            }
+            skipFully(in, length - 2L);
+        }
+    }
+
+    static boolean isStartOfFrame(int marker) {
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+
+    static void skipSubBlocks(DataInputStream in) throws IOException {
+        int size;
+        while ((size = in.readUnsignedByte()) > 0) {
+            skipFully(in, size);
+        }
+    }
+
+    static int readUnsignedShortLE(DataInputStream in) throws IOException {
+        int low = in.readUnsignedByte();
+        int high = in.readUnsignedByte();
+        return (high << 8) | low;
+    }
+
+    static void skipFully(InputStream in, long bytes) throws IOException {
+        long remaining = bytes;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException();
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static String readAscii(DataInputStream in, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "US-ASCII");
+    }
+}
@@ -0,0 +1,192 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.image;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ValueMap;
+
+import com.day.cq.wcm.api.policies.ContentPolicy;
+import com.day.cq.wcm.api.policies.ContentPolicyManager;
+
+/**
+ * Derives the value of the {@code sizes} attribute of an image from the responsive grid layout of the containers the image is placed
+ * in. The column spans of the image and of its containers are read from their {@code cq:responsive} configuration, for each of the
+ * breakpoints defined by the page or by its template, so that browsers select renditions matching the width of the grid cell instead
+ * of the width of the viewport.
+ */
+public final class LayoutSizes {
+
+    public static final String NN_RESPONSIVE = "cq:responsive";
+    static final String NN_BREAKPOINTS = "breakpoints";
+    static final String NN_DEFAULT_BREAKPOINT = "default";
+    static final String PN_WIDTH = "width";
+    static final String PN_COLUMNS = "columns";
+    static final String RESPONSIVE_GRID_RESOURCE_TYPE = "wcm/foundation/components/responsivegrid";
+    static final int DEFAULT_COLUMNS = 12;
+
+    /**
+     * Tolerates the rounding errors of the multiplied fractions, so that e.g. a half of the viewport is not rounded up to 51vw.
+     */
+    private static final double EPSILON = 0.0001;
+
+    private LayoutSizes() {
+    }
+
+    /**
+     * A breakpoint of the responsive grid: the layout configured for it applies to viewports up to its width.
+     */
+    public static final class Breakpoint {
+
+        private final String name;
+        private final int width;
+
+        Breakpoint(@Nonnull String name, int width) {
+            this.name = name;
+            this.width = width;
+        }
+
+        @Nonnull
+        public String getName() {
+            return name;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+    }
+
+    /**
+     * Reads the breakpoints from a {@code cq:responsive} configuration node.
+     *
+     * @param responsiveConfig the {@code cq:responsive} node of a page or of a template structure
+     * @return the breakpoints, sorted by ascending width
+     */
+    @Nonnull
+    public static List<Breakpoint> getBreakpoints(@Nullable Resource responsiveConfig) {
+        Resource breakpointsResource = responsiveConfig != null ? responsiveConfig.getChild(NN_BREAKPOINTS) : null;
+        if (breakpointsResource == null) {
+            return Collections.emptyList();
+        }
+        List<Breakpoint> breakpoints = new ArrayList<>();
+        for (Resource breakpointResource : breakpointsResource.getChildren()) {
+            int width = breakpointResource.getValueMap().get(PN_WIDTH, 0);
+            if (width > 0) {
+                breakpoints.add(new Breakpoint(breakpointResource.getName(), width));
+            }
+        }
+        breakpoints.sort(Comparator.comparingInt(Breakpoint::getWidth));
+        return Collections.unmodifiableList(breakpoints);
+    }
+
+    /**
+     * Returns the value of the {@code sizes} attribute for an image placed in responsive grids, e.g.
+     * {@code (max-width: 768px) 100vw, (max-width: 1200px) 67vw, 34vw}. The widths are rounded up, so that the selected renditions are
+     * never too small.
+     *
+     * @param component   the image component's resource
+     * @param breakpoints the breakpoints of the page, sorted by ascending width
+     * @return the value of the {@code sizes} attribute
+     */
+    @Nonnull
+    public static String getSizes(@Nonnull Resource component, @Nonnull List<Breakpoint> breakpoints) {
+        int[] percentages = new int[breakpoints.size() + 1];
+        for (int i = 0; i < percentages.length; i++) {
+            percentages[i] = getViewportPercentage(component, breakpoints, i);
+        }
+        StringBuilder sizes = new StringBuilder();
+        for (int i = 0; i < breakpoints.size(); i++) {
+            // the condition of the next larger breakpoint already covers a breakpoint with the same size
+            if (percentages[i] != percentages[i + 1]) {
+                sizes.append("(max-width: ").append(breakpoints.get(i).getWidth()).append("px) ").append(percentages[i]).append("vw, ");
+            }
+        }
+        return sizes.append(percentages[breakpoints.size()]).append("vw").toString();
+    }
+
+    /**
+     * Returns the percentage of the viewport width the component takes for the breakpoint at {@code breakpointIndex}, or for the
+     * viewports wider than all breakpoints if the index is the number of breakpoints.
+     */
+    private static int getViewportPercentage(@Nonnull Resource component, @Nonnull List<Breakpoint> breakpoints, int breakpointIndex) {
+        ResourceResolver resourceResolver = component.getResourceResolver();
+        ContentPolicyManager contentPolicyManager = resourceResolver.adaptTo(ContentPolicyManager.class);
+        double fraction = 1;
+        Resource child = component;
+        Resource container = component.getParent();
+        while (container != null && resourceResolver.isResourceType(container, RESPONSIVE_GRID_RESOURCE_TYPE)) {
+            int columns = getColumns(contentPolicyManager, container);
+            int span = getSpan(child, breakpoints, breakpointIndex);
+            if (span > 0 && span < columns) {
+                fraction = fraction * span / columns;
+            }
+            child = container;
+            container = container.getParent();
+        }
+        return (int) Math.ceil(fraction * 100 - EPSILON);
+    }
+
+    /**
+     * Returns the number of columns the {@code resource} spans at the breakpoint at {@code breakpointIndex}. Breakpoints without a
+     * configuration inherit the span of the next larger breakpoint, and finally the default span.
+     */
+    private static int getSpan(@Nonnull Resource resource, @Nonnull List<Breakpoint> breakpoints, int breakpointIndex) {
+        Resource responsiveConfig = resource.getChild(NN_RESPONSIVE);
+        if (responsiveConfig == null) {
+            return 0;
+        }
+        for (int i = breakpointIndex; i < breakpoints.size(); i++) {
+            int span = getWidth(responsiveConfig.getChild(breakpoints.get(i).getName()));
+            if (span > 0) {
+                return span;
+            }
+        }
+        return getWidth(responsiveConfig.getChild(NN_DEFAULT_BREAKPOINT));
+    }
+
+    private static int getWidth(@CheckForNull Resource layout) {
+        if (layout == null) {
+            return 0;
+        }
+        ValueMap properties = layout.getValueMap();
+        try {
+            return Integer.parseInt(properties.get(PN_WIDTH, "0"));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static int getColumns(@Nullable ContentPolicyManager contentPolicyManager, @Nonnull Resource container) {
+        if (contentPolicyManager != null) {
+            ContentPolicy contentPolicy = contentPolicyManager.getPolicy(container);
+            if (contentPolicy != null) {
+                int columns = contentPolicy.getProperties().get(PN_COLUMNS, DEFAULT_COLUMNS);
+                if (columns > 0) {
+                    return columns;
+                }
+            }
+        }
+        return DEFAULT_COLUMNS;
+    }
+}
@@ -0,0 +1,440 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.image;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.sling.api.resource.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.day.cq.dam.api.Rendition;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * <p>
+ * Removes the metadata that is not needed for rendering an image (EXIF, XMP, IPTC, comments and embedded thumbnails or preview
+ * images) from JPEG, PNG and GIF binaries, without decoding or re-encoding their pixels. Colour profiles, the JFIF and Adobe colour
+ * transform segments and the animation extensions of GIF images are preserved.
+ * </p>
+ * <p>
+ * Browsers apply the EXIF orientation when rendering an image, so a minimal EXIF block containing only the orientation tag replaces
+ * the original one when the image is not upright.
+ * </p>
+ * <p>
+ * Stripping is described by a {@link Plan} (the byte ranges to drop or replace), which is computed once per binary revision and
+ * then reused for streaming the binary.
+ * </p>
+ */
+public final class MetadataStripper {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetadataStripper.class);
+    private static final int CACHE_SIZE = 10000;
+    private static final Cache<String, Plan> CACHE = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+
+    private static final int JPEG_APP0 = 0xE0;
+    private static final int JPEG_APP1 = 0xE1;
+    private static final int JPEG_APP2 = 0xE2;
+    private static final int JPEG_APP14 = 0xEE;
+    private static final int JPEG_APP15 = 0xEF;
+    private static final int JPEG_COM = 0xFE;
+    private static final int JPEG_SOS = 0xDA;
+    private static final int JPEG_EOI = 0xD9;
+    private static final byte[] JFIF = "JFIF\0".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ICC_PROFILE = "ICC_PROFILE\0".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ADOBE = "Adobe".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EXIF = "Exif\0\0".getBytes(StandardCharsets.US_ASCII);
+    private static final List<String> PNG_METADATA_CHUNKS = Arrays.asList("tEXt", "zTXt", "iTXt", "eXIf", "tIME");
+    /**
+     * The GIF application extensions (identifier followed by authentication code) that affect how an image is rendered.
+     */
+    static final List<String> GIF_RENDERING_APPLICATIONS = Arrays.asList("NETSCAPE2.0", "ANIMEXTS1.0", "ICCRGBG1012");
+    private static final int GIF_EXTENSION_INTRODUCER = 0x21;
+    private static final int GIF_IMAGE_SEPARATOR = 0x2C;
+    private static final int GIF_TRAILER = 0x3B;
+    private static final int GIF_COMMENT_LABEL = 0xFE;
+    private static final int GIF_APPLICATION_LABEL = 0xFF;
+    private static final int TIFF_ORIENTATION = 0x0112;
+    private static final int TIFF_SHORT = 3;
+    private static final int ORIENTATION_NORMAL = 1;
+
+    private MetadataStripper() {
+    }
+
+    /**
+     * Copies the binary of the provided {@code rendition} (an asset rendition or an {@code nt:file} resource) to the {@code
+     * outputStream}, without its metadata. The stripping {@link Plan} is cached per resource path and modification time.
+     *
+     * @param rendition    the resource holding the image binary
+     * @param outputStream the stream to write to; it will not be closed
+     * @throws IOException if the binary cannot be read or if the stream cannot be written
+     */
+    public static void copy(@Nonnull Resource rendition, @Nonnull OutputStream outputStream) throws IOException {
+        Plan plan = getPlan(rendition);
+        InputStream inputStream = getStream(rendition);
+        if (inputStream == null) {
+            throw new IOException("Unable to read the binary of " + rendition.getPath() + ".");
+        }
+        try {
+            plan.apply(inputStream, outputStream);
+        } finally {
+            IOUtils.closeQuietly(inputStream);
+        }
+    }
+
+    @Nonnull
+    private static Plan getPlan(@Nonnull Resource rendition) throws IOException {
+        long revision = rendition.getResourceMetadata().getModificationTime();
+        if (revision <= 0) {
+            return computePlan(rendition);
+        }
+        try {
+            return CACHE.get(rendition.getPath() + "@" + revision, () -> computePlan(rendition));
+        } catch (ExecutionException e) {
+            throw new IOException("Unable to read the binary of " + rendition.getPath() + ".", e.getCause());
+        }
+    }
+
+    @Nonnull
+    private static Plan computePlan(@Nonnull Resource rendition) throws IOException {
+        InputStream inputStream = getStream(rendition);
+        if (inputStream == null) {
+            return Plan.EMPTY;
+        }
+        try {
+            Plan plan = plan(inputStream);
+            LOGGER.debug("Computed metadata stripping plan for {}: {} edit(s).", rendition.getPath(), plan.edits.size());
+            return plan;
+        } finally {
+            IOUtils.closeQuietly(inputStream);
+        }
+    }
+
+    @Nullable
+    private static InputStream getStream(@Nonnull Resource rendition) {
+        if (rendition instanceof Rendition) {
+            return ((Rendition) rendition).getStream();
+        }
+        return rendition.adaptTo(InputStream.class);
+    }
+
+    /**
+     * Reads an image from the {@code inputStream} and computes the edits needed for removing its metadata. Streams that don't contain
+     * a JPEG, PNG or GIF image, or that cannot be fully parsed, are left untouched past the last understood segment.
+     *
+     * @param inputStream the image's binary stream; it will not be closed
+     * @return the stripping plan
+     * @throws IOException if the stream cannot be read
+     */
+    @Nonnull
+    static Plan plan(@Nonnull InputStream inputStream) throws IOException {
+        CountingInputStream counter = new CountingInputStream(new BufferedInputStream(inputStream));
+        DataInputStream in = new DataInputStream(counter);
+        Plan plan = new Plan();
+        try {
+            int first = in.read();
+            int second = in.read();
+            if (first == 0xFF && second == 0xD8) {
+                planJpeg(in, counter, plan);
+            } else if (first == 0x89 && second == 'P') {
+                planPng(in, counter, plan);
+            } else if (first == 'G' && second == 'I') {
+                planGif(in, counter, plan);
+            }
+        } catch (EOFException e) {
+            LOGGER.debug("Unexpected end of image; the remaining data will be kept.");
+            plan.truncateAt = -1;
+        }
+        return plan;
+    }
+
+    private static void planJpeg(DataInputStream in, CountingInputStream counter, Plan plan) throws IOException {
+        boolean orientationWritten = false;
+        while (true) {
+            long start = counter.getByteCount();
+            if (in.readUnsignedByte() != 0xFF) {
+                return;
+            }
+            int marker = in.readUnsignedByte();
+            while (marker == 0xFF) {
+                marker = in.readUnsignedByte();
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                continue;
+            }
+            if (marker == JPEG_EOI) {
+                truncateIfTrailingData(in, counter, plan);
+                return;
+            }
+            if (marker == JPEG_SOS) {
+                skipToEndOfImage(in);
+                truncateIfTrailingData(in, counter, plan);
+                return;
+            }
+            int length = in.readUnsignedShort() - 2;
+            if ((marker < JPEG_APP0 || marker > JPEG_APP15) && marker != JPEG_COM) {
+                ImageHeader.skipFully(in, length);
+                continue;
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            if ((marker == JPEG_APP0 && startsWith(payload, JFIF)) || (marker == JPEG_APP2 && startsWith(payload, ICC_PROFILE)) ||
+                    (marker == JPEG_APP14 && startsWith(payload, ADOBE))) {
+                continue;
+            }
+            byte[] replacement = null;
+            if (marker == JPEG_APP1 && startsWith(payload, EXIF) && !orientationWritten) {
+                int orientation = readOrientation(payload, EXIF.length);
+                if (orientation != ORIENTATION_NORMAL) {
+                    byte[] exif = createOrientationExif(orientation);
+                    replacement = ByteBuffer.allocate(4 + EXIF.length + exif.length).put((byte) 0xFF).put((byte) JPEG_APP1)
+                            .putShort((short) (2 + EXIF.length + exif.length)).put(EXIF).put(exif).array();
+                    orientationWritten = true;
+                }
+            }
+            plan.add(start, counter.getByteCount() - start, replacement);
+        }
+    }
+
+    private static void planPng(DataInputStream in, CountingInputStream counter, Plan plan) throws IOException {
+        // rest of the signature
+        ImageHeader.skipFully(in, 6);
+        while (true) {
+            long start = counter.getByteCount();
+            long length = in.readInt() & 0xFFFFFFFFL;
+            byte[] type = new byte[4];
+            in.readFully(type);
+            String chunk = new String(type, StandardCharsets.US_ASCII);
+            if (!PNG_METADATA_CHUNKS.contains(chunk)) {
+                ImageHeader.skipFully(in, length + 4);
+                if ("IEND".equals(chunk)) {
+                    truncateIfTrailingData(in, counter, plan);
+                    return;
+                }
+                continue;
+            }
+            byte[] replacement = null;
+            if ("eXIf".equals(chunk)) {
+                byte[] data = new byte[(int) length];
+                in.readFully(data);
+                ImageHeader.skipFully(in, 4);
+                int orientation = readOrientation(data, 0);
+                if (orientation != ORIENTATION_NORMAL) {
+                    replacement = createPngChunk("eXIf", createOrientationExif(orientation));
+                }
+            } else {
+                ImageHeader.skipFully(in, length + 4);
+            }
+            plan.add(start, counter.getByteCount() - start, replacement);
+        }
+    }
+
+    private static void planGif(DataInputStream in, CountingInputStream counter, Plan plan) throws IOException {
+        // rest of the signature and logical screen size
+        ImageHeader.skipFully(in, 8);
+        int packed = in.readUnsignedByte();
+        ImageHeader.skipFully(in, 2);
+        if ((packed & 0x80) != 0) {
+            ImageHeader.skipFully(in, 3L * (1 << ((packed & 0x07) + 1)));
+        }
+        while (true) {
+            long start = counter.getByteCount();
+            int block = in.readUnsignedByte();
+            if (block == GIF_TRAILER) {
+                truncateIfTrailingData(in, counter, plan);
+                return;
+            }
+            if (block == GIF_IMAGE_SEPARATOR) {
+                // position and size
+                ImageHeader.skipFully(in, 8);
+                int imagePacked = in.readUnsignedByte();
+                if ((imagePacked & 0x80) != 0) {
+                    ImageHeader.skipFully(in, 3L * (1 << ((imagePacked & 0x07) + 1)));
+                }
+                // LZW minimum code size
+                in.readUnsignedByte();
+                ImageHeader.skipSubBlocks(in);
+            } else if (block == GIF_EXTENSION_INTRODUCER) {
+                int label = in.readUnsignedByte();
+                boolean keep = true;
+                if (label == GIF_COMMENT_LABEL) {
+                    keep = false;
+                } else if (label == GIF_APPLICATION_LABEL) {
+                    int size = in.readUnsignedByte();
+                    byte[] application = new byte[size];
+                    in.readFully(application);
+                    keep = GIF_RENDERING_APPLICATIONS.contains(new String(application, StandardCharsets.US_ASCII));
+                }
+                ImageHeader.skipSubBlocks(in);
+                if (!keep) {
+                    plan.add(start, counter.getByteCount() - start, null);
+                }
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static void skipToEndOfImage(DataInputStream in) throws IOException {
+        // inside entropy-coded data 0xFF is always followed by 0x00 or by a restart marker
+        int previous = 0;
+        int current;
+        while ((current = in.readUnsignedByte()) != JPEG_EOI || previous != 0xFF) {
+            previous = current;
+        }
+    }
+
+    private static void truncateIfTrailingData(DataInputStream in, CountingInputStream counter, Plan plan) throws IOException {
+        long end = counter.getByteCount();
+        if (in.read() >= 0) {
+            plan.truncateAt = end;
+        }
+    }
+
+    private static boolean startsWith(byte[] payload, byte[] prefix) {
+        if (payload.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (payload[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the orientation tag from the first IFD of a TIFF structure.
+     *
+     * @return the orientation, or {@link #ORIENTATION_NORMAL} if the structure doesn't define one or cannot be parsed
+     */
+    static int readOrientation(byte[] data, int offset) {
+        try {
+            ByteBuffer tiff = ByteBuffer.wrap(data, offset, data.length - offset).slice();
+            tiff.order(tiff.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+            int ifd = tiff.getInt(4);
+            int entries = tiff.getShort(ifd) & 0xFFFF;
+            for (int i = 0; i < entries; i++) {
+                int entry = ifd + 2 + i * 12;
+                if ((tiff.getShort(entry) & 0xFFFF) == TIFF_ORIENTATION && (tiff.getShort(entry + 2) & 0xFFFF) == TIFF_SHORT) {
+                    int orientation = tiff.getShort(entry + 8) & 0xFFFF;
+                    return orientation >= 1 && orientation <= 8 ? orientation : ORIENTATION_NORMAL;
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            LOGGER.debug("Invalid EXIF data; assuming the image is upright.");
+        }
+        return ORIENTATION_NORMAL;
+    }
+
+    /**
+     * Creates a big-endian TIFF structure whose only IFD contains the orientation tag.
+     */
+    static byte[] createOrientationExif(int orientation) {
+        return ByteBuffer.allocate(26).order(ByteOrder.BIG_ENDIAN)
+                .put((byte) 'M').put((byte) 'M').putShort((short) 42).putInt(8)
+                .putShort((short) 1)
+                .putShort((short) TIFF_ORIENTATION).putShort((short) TIFF_SHORT).putInt(1).putShort((short) orientation).putShort((short) 0)
+                .putInt(0)
+                .array();
+    }
+
+    private static byte[] createPngChunk(String type, byte[] data) {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        return ByteBuffer.allocate(12 + data.length).putInt(data.length).put(typeBytes).put(data).putInt((int) crc.getValue()).array();
+    }
+
+    /**
+     * The byte ranges of an image binary that have to be dropped or replaced in order to remove the image's metadata.
+     */
+    static final class Plan {
+
+        static final Plan EMPTY = new Plan();
+
+        private final List<long[]> edits = new ArrayList<>();
+        private final List<byte[]> replacements = new ArrayList<>();
+        private long truncateAt = -1;
+
+        private void add(long offset, long length, @Nullable byte[] replacement) {
+            edits.add(new long[]{offset, length});
+            replacements.add(replacement);
+        }
+
+        /**
+         * Checks if the binary can be streamed unchanged.
+         */
+        boolean isEmpty() {
+            return edits.isEmpty() && truncateAt < 0;
+        }
+
+        List<long[]> getEdits() {
+            return Collections.unmodifiableList(edits);
+        }
+
+        long getTruncateAt() {
+            return truncateAt;
+        }
+
+        /**
+         * Copies the binary from the {@code inputStream} to the {@code outputStream}, applying the plan's edits.
+         */
+        void apply(@Nonnull InputStream inputStream, @Nonnull OutputStream outputStream) throws IOException {
+            if (isEmpty()) {
+                IOUtils.copyLarge(inputStream, outputStream);
+                return;
+            }
+            long position = 0;
+            for (int i = 0; i < edits.size(); i++) {
+                long[] edit = edits.get(i);
+                IOUtils.copyLarge(inputStream, outputStream, 0, edit[0] - position);
+                ImageHeader.skipFully(inputStream, edit[1]);
+                byte[] replacement = replacements.get(i);
+                if (replacement != null) {
+                    outputStream.write(replacement);
+                }
+                position = edit[0] + edit[1];
+            }
+            if (truncateAt >= 0) {
+                IOUtils.copyLarge(inputStream, outputStream, 0, truncateAt - position);
+            } else {
+                IOUtils.copyLarge(inputStream, outputStream);
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.image;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Iterator;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Low quality placeholder of an image, displayed while the image itself is loading: a tiny JPEG version of the image, which the
+ * image component's client library scales up and blurs with a CSS filter, and the average colour of the image.
+ */
+public final class Placeholder {
+
+    /**
+     * The maximum size of the encoded placeholder image, in bytes.
+     */
+    static final int MAX_SIZE = 1024;
+    static final int WIDTH = 16;
+    private static final int MIN_WIDTH = 4;
+    private static final float QUALITY = 0.5f;
+    private static final String DATA_URI_PREFIX = "data:image/jpeg;base64,";
+
+    private final String dataUri;
+    private final String color;
+
+    Placeholder(@Nullable String dataUri, @Nonnull String color) {
+        this.dataUri = dataUri;
+        this.color = color;
+    }
+
+    /**
+     * Returns the {@code data:} URI of the placeholder image.
+     *
+     * @return the URI, or {@code null} if the image couldn't be encoded within {@value #MAX_SIZE} bytes
+     */
+    @CheckForNull
+    public String getDataUri() {
+        return dataUri;
+    }
+
+    /**
+     * Returns the average colour of the image, as a CSS hexadecimal colour (e.g. {@code #1a2b3c}).
+     *
+     * @return the colour
+     */
+    @Nonnull
+    public String getColor() {
+        return color;
+    }
+
+    /**
+     * Creates the placeholder of an image. Transparent pixels are rendered on a white background.
+     *
+     * @param image the decoded image
+     * @return the placeholder
+     * @throws IOException if the placeholder image cannot be encoded
+     */
+    @Nonnull
+    static Placeholder create(@Nonnull BufferedImage image) throws IOException {
+        String dataUri = null;
+        BufferedImage thumbnail = null;
+        for (int width = WIDTH; width >= MIN_WIDTH && dataUri == null; width /= 2) {
+            thumbnail = scale(image, width);
+            byte[] bytes = encode(thumbnail);
+            if (bytes.length <= MAX_SIZE) {
+                dataUri = DATA_URI_PREFIX + Base64.getEncoder().encodeToString(bytes);
+            }
+        }
+        return new Placeholder(dataUri, getAverageColor(thumbnail));
+    }
+
+    @Nonnull
+    private static BufferedImage scale(@Nonnull BufferedImage image, int width) {
+        int height = Math.max(1, (int) Math.round((double) image.getHeight() * width / image.getWidth()));
+        // the placeholders are never taller than four times their width
+        height = Math.min(height, 4 * width);
+        Image scaled = image.getScaledInstance(width, height, Image.SCALE_AREA_AVERAGING);
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = thumbnail.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(scaled, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return thumbnail;
+    }
+
+    @Nonnull
+    private static byte[] encode(@Nonnull BufferedImage thumbnail) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            throw new IOException("No JPEG image writer is available.");
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(QUALITY);
+            writer.write(null, new IIOImage(thumbnail, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    @Nonnull
+    private static String getAverageColor(@Nonnull BufferedImage thumbnail) {
+        long red = 0;
+        long green = 0;
+        long blue = 0;
+        int width = thumbnail.getWidth();
+        int height = thumbnail.getHeight();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int rgb = thumbnail.getRGB(x, y);
+                red += (rgb >> 16) & 0xFF;
+                green += (rgb >> 8) & 0xFF;
+                blue += rgb & 0xFF;
+            }
+        }
+        long pixels = (long) width * height;
+        return String.format("#%02x%02x%02x", red / pixels, green / pixels, blue / pixels);
+    }
+}
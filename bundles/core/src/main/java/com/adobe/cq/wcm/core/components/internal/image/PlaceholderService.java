@@ -0,0 +1,41 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.image;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.sling.api.resource.Resource;
+
+/**
+ * Provides the {@link Placeholder low quality placeholders} of images. The placeholders are generated in the background once per
+ * image revision, from the smallest suitable rendition of the image, and then stored, so that pages can inline them without slowing
+ * down.
+ */
+public interface PlaceholderService {
+
+    /**
+     * Returns the placeholder of the image stored at the {@code imageResource}. The resource has to be resolved by the caller, so that
+     * only images which the caller is allowed to read are returned.
+     *
+     * @param imageResource a DAM asset or an image file ({@code nt:file}) resource
+     * @param revision      the last modified date of the asset or of the file
+     * @return the placeholder, or {@code null} if the resource is not an image, if it cannot be decoded or if its placeholder is still
+     * being generated
+     */
+    @CheckForNull
+    Placeholder getPlaceholder(@Nonnull Resource imageResource, long revision);
+}
@@ -0,0 +1,419 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.image;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.DamConstants;
+import com.day.cq.dam.api.Rendition;
+import com.day.cq.dam.api.handler.AssetHandler;
+import com.day.cq.dam.api.handler.store.AssetStore;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+
+/**
+ * {@link PlaceholderService} generating the placeholders with the same image decoders as the adaptive image servlet. The placeholders
+ * are kept in a bounded in-memory cache and persisted in the bundle's data area, so that they survive restarts; both are keyed by the
+ * path of the asset or file and validated against its revision. The entries of the DAM assets are also invalidated by the resource
+ * changes (local or from other cluster nodes) of the assets and of their ancestors.
+ *
+ * The placeholders are generated in the background, with the {@value #SUBSERVICE} service user, so that rendering an image never
+ * waits for its placeholder: until it's generated, the image is rendered without placeholder. The images are decoded from their
+ * smallest rendition or, for the originals and the image files, subsampled while being decoded.
+ */
+@Designate(
+        ocd = PlaceholderServiceImpl.Config.class
+)
+@Component(
+        service = {PlaceholderService.class, ResourceChangeListener.class},
+        property = {
+                ResourceChangeListener.PATHS + "=" + PlaceholderServiceImpl.DAM_ROOT,
+                ResourceChangeListener.CHANGES + "=ADDED",
+                ResourceChangeListener.CHANGES + "=CHANGED",
+                ResourceChangeListener.CHANGES + "=REMOVED"
+        }
+)
+public class PlaceholderServiceImpl implements PlaceholderService, ExternalResourceChangeListener {
+
+    static final String DAM_ROOT = "/content/dam";
+    static final String STORE_DIRECTORY = "placeholders";
+    static final int DEFAULT_CACHE_SIZE = 10000;
+    static final String SUBSERVICE = "image-placeholder";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PlaceholderServiceImpl.class);
+    private static final String PN_REVISION = "revision";
+    private static final String PN_COLOR = "color";
+    private static final String PN_DATA_URI = "dataUri";
+
+    /**
+     * Cached for the images which cannot be decoded, so that they are not decoded over and over again.
+     */
+    private static final Placeholder NONE = new Placeholder(null, "");
+
+    @ObjectClassDefinition(
+            name = "AEM Core WCM Components Image Placeholder Service",
+            description = "Generates and stores the low quality placeholders of the images rendered by the image components."
+    )
+    @interface Config {
+
+        @AttributeDefinition(
+                name = "Cache size",
+                description = "The maximum number of placeholders kept in memory."
+        )
+        int cacheSize() default DEFAULT_CACHE_SIZE;
+    }
+
+    @Reference
+    private AssetStore assetStore;
+
+    @Reference
+    private ResourceResolverFactory resourceResolverFactory;
+
+    private Cache<String, Entry> cache = CacheBuilder.newBuilder().maximumSize(DEFAULT_CACHE_SIZE).build();
+    private File store;
+
+    /**
+     * Incremented on every invalidation, so that placeholders generated concurrently with a change are not cached.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * The paths of the images whose placeholders are being generated.
+     */
+    private final Set<String> pending = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    private ExecutorService executor;
+
+    @Activate
+    @Modified
+    void configure(BundleContext bundleContext, Config config) {
+        shutdown();
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "core-components-image-placeholders");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cache = CacheBuilder.newBuilder().maximumSize(Math.max(0, config.cacheSize())).build();
+        File directory = bundleContext.getDataFile(STORE_DIRECTORY);
+        if (directory != null && (directory.isDirectory() || directory.mkdirs())) {
+            store = directory;
+        } else {
+            LOGGER.warn("Unable to create the placeholder store; the placeholders will only be kept in memory.");
+            store = null;
+        }
+    }
+
+    @Deactivate
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        pending.clear();
+    }
+
+    @CheckForNull
+    @Override
+    public Placeholder getPlaceholder(@Nonnull Resource imageResource, long revision) {
+        String path = imageResource.getPath();
+        Entry entry = cache.getIfPresent(path);
+        if (entry == null || entry.revision != revision) {
+            Placeholder placeholder = read(path, revision);
+            if (placeholder != null) {
+                entry = new Entry(revision, placeholder);
+                cache.put(path, entry);
+            } else {
+                schedule(path, revision);
+                // the placeholder may have been generated in the meantime
+                entry = cache.getIfPresent(path);
+                if (entry == null || entry.revision != revision) {
+                    return null;
+                }
+            }
+        }
+        return entry.placeholder != NONE ? entry.placeholder : null;
+    }
+
+    /**
+     * Schedules the generation of the placeholder of the image stored at the {@code path}, unless it's already being generated.
+     */
+    private void schedule(@Nonnull String path, long revision) {
+        ExecutorService executorService = executor;
+        if (executorService == null || !pending.add(path)) {
+            return;
+        }
+        long generation = invalidations.get();
+        try {
+            executorService.execute(() -> {
+                try {
+                    Placeholder placeholder = generate(path);
+                    if (placeholder != null) {
+                        write(path, revision, placeholder);
+                        if (generation == invalidations.get()) {
+                            cache.put(path, new Entry(revision, placeholder));
+                        }
+                    }
+                } finally {
+                    pending.remove(path);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(path);
+            LOGGER.debug("The placeholder service is shutting down; not generating the placeholder of {}.", path);
+        }
+    }
+
+    @Override
+    public void onChange(@Nonnull List<ResourceChange> changes) {
+        for (ResourceChange change : changes) {
+            invalidate(change.getPath(), change.getType() == ResourceChange.ChangeType.REMOVED);
+        }
+    }
+
+    /**
+     * Invalidates the placeholder of the asset containing the {@code path}. If the {@code path} was removed, the cached placeholders of
+     * all the assets stored below it are invalidated as well; their stored copies are ignored once the assets are recreated, since
+     * their revisions differ.
+     */
+    private void invalidate(@Nonnull String path, boolean removed) {
+        invalidations.incrementAndGet();
+        String assetPath = path;
+        while (assetPath != null && assetPath.startsWith(DAM_ROOT)) {
+            cache.invalidate(assetPath);
+            File file = getStoreFile(assetPath);
+            if (file != null && file.exists() && !file.delete()) {
+                LOGGER.warn("Unable to delete the stored placeholder of {}.", assetPath);
+            }
+            assetPath = ResourceUtil.getParent(assetPath);
+        }
+        if (removed) {
+            String prefix = path + "/";
+            cache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+        }
+    }
+
+    /**
+     * Generates the placeholder of the image stored at the {@code path}.
+     *
+     * @return the placeholder, {@link #NONE} if the image cannot be decoded, or {@code null} if the image cannot be read
+     */
+    @CheckForNull
+    private Placeholder generate(@Nonnull String path) {
+        try (ResourceResolver resourceResolver = resourceResolverFactory.getServiceResourceResolver(
+                Collections.singletonMap(ResourceResolverFactory.SUBSERVICE, SUBSERVICE))) {
+            Resource imageResource = resourceResolver.getResource(path);
+            if (imageResource == null) {
+                return null;
+            }
+            BufferedImage image = null;
+            Asset asset = imageResource.adaptTo(Asset.class);
+            if (asset != null) {
+                Rendition rendition = getSmallestRendition(asset);
+                AssetHandler assetHandler = rendition != null ? assetStore.getAssetHandler(rendition.getMimeType()) : null;
+                if (assetHandler != null) {
+                    image = assetHandler.getImage(rendition);
+                } else if (asset.getOriginal() != null) {
+                    image = decodeSubsampled(asset.getOriginal().getStream());
+                }
+            } else {
+                image = decodeSubsampled(imageResource.adaptTo(InputStream.class));
+            }
+            if (image != null && image.getWidth() > 0 && image.getHeight() > 0) {
+                return Placeholder.create(image);
+            }
+        } catch (LoginException e) {
+            LOGGER.error("Unable to open a resource resolver for the {} service user; no placeholder is generated.", SUBSERVICE, e);
+            return null;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Unable to generate the placeholder of {}.", path, e);
+        }
+        return NONE;
+    }
+
+    /**
+     * Decodes an image, reading only a subset of its pixels, so that large images are never fully decoded in memory.
+     *
+     * @return the decoded image, still wider than the placeholders, or {@code null} if no decoder supports the image
+     */
+    @CheckForNull
+    static BufferedImage decodeSubsampled(@Nullable InputStream inputStream) throws IOException {
+        if (inputStream == null) {
+            return null;
+        }
+        try (ImageInputStream imageInputStream = ImageIO.createImageInputStream(inputStream)) {
+            Iterator<ImageReader> readers = imageInputStream != null ? ImageIO.getImageReaders(imageInputStream) : null;
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInputStream, true, true);
+                int subsampling = Math.max(1, reader.getWidth(0) / (4 * Placeholder.WIDTH));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            IOUtils.closeQuietly(inputStream);
+        }
+    }
+
+    /**
+     * Returns the smallest thumbnail or web rendition of the {@code asset} which is still wider than a placeholder.
+     *
+     * @return the rendition, or {@code null} if the asset has no such rendition
+     */
+    @CheckForNull
+    static Rendition getSmallestRendition(@Nonnull Asset asset) {
+        Rendition smallest = null;
+        int smallestWidth = Integer.MAX_VALUE;
+        for (Rendition rendition : asset.getRenditions()) {
+            String name = rendition.getName();
+            if (name.startsWith(DamConstants.PREFIX_ASSET_THUMBNAIL + ".") || name.startsWith(DamConstants.PREFIX_ASSET_WEB + ".")) {
+                // e.g. cq5dam.thumbnail.48.48.png
+                String[] parts = name.split("\\.");
+                try {
+                    int width = parts.length > 2 ? Integer.parseInt(parts[2]) : 0;
+                    if (width >= Placeholder.WIDTH && width < smallestWidth) {
+                        smallest = rendition;
+                        smallestWidth = width;
+                    }
+                } catch (NumberFormatException e) {
+                    LOGGER.debug("Rendition {} doesn't specify its width.", rendition.getPath());
+                }
+            }
+        }
+        return smallest;
+    }
+
+    @CheckForNull
+    private Placeholder read(@Nonnull String path, long revision) {
+        File file = getStoreFile(path);
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream inputStream = new FileInputStream(file)) {
+            properties.load(inputStream);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to read the stored placeholder of {}.", path, e);
+            return null;
+        }
+        if (!String.valueOf(revision).equals(properties.getProperty(PN_REVISION))) {
+            return null;
+        }
+        String color = properties.getProperty(PN_COLOR, "");
+        return color.isEmpty() ? NONE : new Placeholder(properties.getProperty(PN_DATA_URI), color);
+    }
+
+    private void write(@Nonnull String path, long revision, @Nonnull Placeholder placeholder) {
+        File file = getStoreFile(path);
+        if (file == null) {
+            return;
+        }
+        Properties properties = new Properties();
+        properties.setProperty(PN_REVISION, String.valueOf(revision));
+        properties.setProperty(PN_COLOR, placeholder.getColor());
+        if (placeholder.getDataUri() != null) {
+            properties.setProperty(PN_DATA_URI, placeholder.getDataUri());
+        }
+        File temporaryFile = null;
+        try {
+            // readers never see partially written files
+            temporaryFile = File.createTempFile(STORE_DIRECTORY, null, file.getParentFile());
+            try (OutputStream outputStream = new FileOutputStream(temporaryFile)) {
+                properties.store(outputStream, path);
+            }
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to store the placeholder of {}.", path, e);
+            if (temporaryFile != null && temporaryFile.exists() && !temporaryFile.delete()) {
+                LOGGER.debug("Unable to delete {}.", temporaryFile);
+            }
+        }
+    }
+
+    @Nullable
+    private File getStoreFile(@Nonnull String path) {
+        File directory = store;
+        if (directory == null) {
+            return null;
+        }
+        return new File(directory, Hashing.sha1().hashString(path, StandardCharsets.UTF_8).toString() + ".properties");
+    }
+
+    private static final class Entry {
+
+        private final long revision;
+        private final Placeholder placeholder;
+
+        private Entry(long revision, @Nonnull Placeholder placeholder) {
+            this.revision = revision;
+            this.placeholder = placeholder;
+        }
+    }
+}
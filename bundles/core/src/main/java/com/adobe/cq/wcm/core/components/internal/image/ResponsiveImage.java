@@ -0,0 +1,65 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.image;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * Immutable description of the responsive markup of an image: the {@code srcset} and {@code sizes} attributes which let browsers pick
+ * a rendition natively, and the intrinsic dimensions of the rendered image, which let them reserve the image's space before loading it.
+ */
+public final class ResponsiveImage {
+
+    private final String srcset;
+    private final String sizes;
+    private final int width;
+    private final int height;
+
+    public ResponsiveImage(@CheckForNull String srcset, @CheckForNull String sizes, int width, int height) {
+        this.srcset = srcset;
+        this.sizes = sizes;
+        this.width = width;
+        this.height = height;
+    }
+
+    @CheckForNull
+    public String getSrcset() {
+        return srcset;
+    }
+
+    @CheckForNull
+    public String getSizes() {
+        return sizes;
+    }
+
+    /**
+     * Returns the intrinsic width of the rendered image.
+     *
+     * @return the width in pixels, or 0 if it is not known
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the intrinsic height of the rendered image.
+     *
+     * @return the height in pixels, or 0 if it is not known
+     */
+    public int getHeight() {
+        return height;
+    }
+}
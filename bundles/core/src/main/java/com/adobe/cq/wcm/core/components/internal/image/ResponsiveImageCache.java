@@ -0,0 +1,50 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.image;
+
+import java.util.List;
+import java.util.function.Supplier;
+import javax.annotation.Nonnull;
+
+/**
+ * Shares the {@link ResponsiveImage} descriptions computed by the image models, and the responsive grid breakpoints of the templates,
+ * between requests. The keys have to identify the image
+ * component, its last modified date and the content policy values the description depends on, so that outdated entries are never
+ * returned and simply age out of the cache.
+ */
+public interface ResponsiveImageCache {
+
+    /**
+     * Returns the description cached for the {@code key}, computing and caching it through the {@code loader} if it is not cached yet.
+     *
+     * @param key    the cache key
+     * @param loader computes the description if it is not cached
+     * @return the description
+     */
+    @Nonnull
+    ResponsiveImage get(@Nonnull String key, @Nonnull Supplier<ResponsiveImage> loader);
+
+    /**
+     * Returns the responsive grid breakpoints cached for the {@code key}, reading and caching them through the {@code loader} if they
+     * are not cached yet. The key has to identify the template structure defining the breakpoints and its last modified date.
+     *
+     * @param key    the cache key
+     * @param loader reads the breakpoints if they are not cached
+     * @return the breakpoints, sorted by ascending width
+     */
+    @Nonnull
+    List<LayoutSizes.Breakpoint> getBreakpoints(@Nonnull String key, @Nonnull Supplier<List<LayoutSizes.Breakpoint>> loader);
+}
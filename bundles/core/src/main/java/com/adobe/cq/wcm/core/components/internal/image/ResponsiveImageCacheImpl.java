@@ -0,0 +1,90 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.image;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+import javax.annotation.Nonnull;
+
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * {@link ResponsiveImageCache} keeping the descriptions and the breakpoints in bounded in-memory caches.
+ */
+@Designate(
+        ocd = ResponsiveImageCacheImpl.Config.class
+)
+@Component(
+        service = ResponsiveImageCache.class
+)
+public class ResponsiveImageCacheImpl implements ResponsiveImageCache {
+
+    static final int DEFAULT_CACHE_SIZE = 10000;
+    static final int BREAKPOINTS_CACHE_SIZE = 1000;
+
+    @ObjectClassDefinition(
+            name = "AEM Core WCM Components Responsive Image Cache",
+            description = "Caches the srcset, sizes and intrinsic dimensions computed by the image components."
+    )
+    @interface Config {
+
+        @AttributeDefinition(
+                name = "Cache size",
+                description = "The maximum number of images whose responsive markup is kept in memory."
+        )
+        int cacheSize() default DEFAULT_CACHE_SIZE;
+    }
+
+    private Cache<String, ResponsiveImage> cache = CacheBuilder.newBuilder().maximumSize(DEFAULT_CACHE_SIZE).build();
+    private final Cache<String, List<LayoutSizes.Breakpoint>> breakpointsCache =
+            CacheBuilder.newBuilder().maximumSize(BREAKPOINTS_CACHE_SIZE).build();
+
+    @Activate
+    @Modified
+    void configure(Config config) {
+        cache = CacheBuilder.newBuilder().maximumSize(Math.max(0, config.cacheSize())).build();
+    }
+
+    @Nonnull
+    @Override
+    public ResponsiveImage get(@Nonnull String key, @Nonnull Supplier<ResponsiveImage> loader) {
+        try {
+            return cache.get(key, loader::get);
+        } catch (ExecutionException e) {
+            // the loader doesn't throw checked exceptions
+            return loader.get();
+        }
+    }
+
+    @Nonnull
+    @Override
+    public List<LayoutSizes.Breakpoint> getBreakpoints(@Nonnull String key, @Nonnull Supplier<List<LayoutSizes.Breakpoint>> loader) {
+        try {
+            return breakpointsCache.get(key, loader::get);
+        } catch (ExecutionException e) {
+            return loader.get();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.list;
+
+import java.util.List;
+import java.util.function.Supplier;
+import javax.annotation.Nonnull;
+
+/**
+ * Caches the paths of the pages listed by the list components built from child pages, tags or search results, so that the lists
+ * rendered on many pages, such as the ones placed on page templates, are not built again for every request. The pages are read again
+ * for each request, with the access rights of the requesting user.
+ */
+public interface ListResultCache {
+
+    /**
+     * Returns the paths of the pages listed by the list identified by the {@code key}, building the list through the {@code loader}
+     * if its paths are not cached.
+     *
+     * @param key    the key of the list
+     * @param loader builds the list
+     * @return the paths of the listed pages
+     */
+    @Nonnull
+    List<String> getPaths(@Nonnull ListResultKey key, @Nonnull Supplier<List<String>> loader);
+}
@@ -0,0 +1,157 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.list;
+
+import java.util.List;
+import java.util.function.Supplier;
+import javax.annotation.Nonnull;
+
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+import com.adobe.cq.wcm.core.components.internal.PathListCache;
+
+/**
+ * {@link ListResultCache} keeping the page paths in a {@link PathListCache}. A list is invalidated by the resource changes (local or
+ * from other cluster nodes) below its root, or of its ancestors, and the lists built from tags by the changes of the tag definitions as
+ * well; the lists expire after a configurable time.
+ *
+ * The cache statistics are exposed through JMX.
+ */
+@Designate(
+        ocd = ListResultCacheImpl.Config.class
+)
+@Component(
+        service = {ListResultCache.class, ListResultCacheMBean.class, ResourceChangeListener.class},
+        property = {
+                "jmx.objectname=com.adobe.cq.wcm.core.components:type=List Result Cache",
+                ResourceChangeListener.PATHS + "=" + ListResultCacheImpl.CONTENT_ROOT,
+                ResourceChangeListener.PATHS + "=" + ListResultCacheImpl.LEGACY_TAGS_ROOT,
+                ResourceChangeListener.CHANGES + "=ADDED",
+                ResourceChangeListener.CHANGES + "=CHANGED",
+                ResourceChangeListener.CHANGES + "=REMOVED"
+        }
+)
+public class ListResultCacheImpl implements ListResultCache, ListResultCacheMBean, ExternalResourceChangeListener {
+
+    static final String CONTENT_ROOT = "/content";
+    static final String DAM_ROOT = "/content/dam";
+    static final String TAGS_ROOT = "/content/cq:tags";
+    static final String LEGACY_TAGS_ROOT = "/etc/tags";
+    static final int DEFAULT_MAX_PATHS = 10000;
+    static final int DEFAULT_TIME_TO_LIVE = 300;
+
+    @ObjectClassDefinition(
+            name = "AEM Core WCM Components List Result Cache",
+            description = "Caches the page paths listed by the list components built from child pages, tags or search results."
+    )
+    @interface Config {
+
+        @AttributeDefinition(
+                name = "Maximum cached paths",
+                description = "The maximum number of page paths, over all the cached lists, kept in memory. Set to 0 to disable the " +
+                        "cache."
+        )
+        int maxPaths() default DEFAULT_MAX_PATHS;
+
+        @AttributeDefinition(
+                name = "Time to live",
+                description = "The number of seconds after which a list is built again, even if no page below its root changed."
+        )
+        int timeToLive() default DEFAULT_TIME_TO_LIVE;
+
+        @AttributeDefinition(
+                name = "Stale while revalidate",
+                description = "Answers the requests with the invalidated paths of a list while a single request builds it again."
+        )
+        boolean staleWhileRevalidate() default false;
+    }
+
+    private volatile PathListCache<ListResultKey> cache = new PathListCache<>(DEFAULT_MAX_PATHS, DEFAULT_TIME_TO_LIVE, false);
+
+    @Activate
+    @Modified
+    void configure(Config config) {
+        cache = new PathListCache<>(config.maxPaths(), config.timeToLive(), config.staleWhileRevalidate());
+    }
+
+    @Nonnull
+    @Override
+    public List<String> getPaths(@Nonnull ListResultKey key, @Nonnull Supplier<List<String>> loader) {
+        return cache.get(key, loader);
+    }
+
+    @Override
+    public void onChange(@Nonnull List<ResourceChange> changes) {
+        for (ResourceChange change : changes) {
+            invalidate(change.getPath());
+        }
+    }
+
+    /**
+     * Invalidates the lists having a root that contains the {@code path}, or is contained by it, and the lists depending on the tag
+     * definitions if the {@code path} is a tag.
+     */
+    private void invalidate(@Nonnull String path) {
+        if (PathListCache.isDescendant(DAM_ROOT, path)) {
+            return;
+        }
+        boolean tag = PathListCache.isDescendant(TAGS_ROOT, path) || PathListCache.isDescendant(LEGACY_TAGS_ROOT, path);
+        cache.invalidate(key -> (tag && key.isTagDependent()) || PathListCache.isRelated(key.getRoot(), path));
+    }
+
+    @Override
+    public double getHitRatio() {
+        return cache.getHitRatio();
+    }
+
+    @Override
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    @Override
+    public long getStaleHitCount() {
+        return cache.getStaleHitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
+    @Override
+    public long getSize() {
+        return cache.getSize();
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+    }
+}
@@ -0,0 +1,118 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.list;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import javax.annotation.Nonnull;
+
+import org.apache.sling.api.resource.ResourceResolver;
+
+import com.adobe.cq.wcm.core.components.internal.search.SearchResultKey;
+import com.google.common.hash.Hashing;
+
+/**
+ * Identifies the pages listed by a list component: the path of the component, the source of the list, a digest of its effective
+ * configuration and the principals whose access rights determine which pages the user can see, so that users with the same principals
+ * share the cached lists. The key also carries the dependencies of the list: the root below which the pages are listed and whether the
+ * list depends on the tag definitions.
+ */
+public final class ListResultKey {
+
+    private final String componentPath;
+    private final String source;
+    private final String configuration;
+    private final String root;
+    private final boolean tagDependent;
+    private final String aclFingerprint;
+
+    ListResultKey(@Nonnull String componentPath, @Nonnull String source, @Nonnull String configuration, @Nonnull String root,
+                  boolean tagDependent, @Nonnull String aclFingerprint) {
+        this.componentPath = componentPath;
+        this.source = source;
+        this.configuration = configuration;
+        this.root = root;
+        this.tagDependent = tagDependent;
+        this.aclFingerprint = aclFingerprint;
+    }
+
+    /**
+     * Creates the key of a list built with the {@code resourceResolver}'s access rights.
+     *
+     * @param resourceResolver the resource resolver building the list
+     * @param componentPath    the path of the list component
+     * @param source           the source of the list
+     * @param configuration    the properties determining the listed pages, such as the component's properties and policy
+     * @param root             the path of the page below which the pages are listed
+     * @param tagDependent     {@code true} if the list depends on the tag definitions, {@code false} otherwise
+     * @return the key
+     */
+    @Nonnull
+    public static ListResultKey create(@Nonnull ResourceResolver resourceResolver, @Nonnull String componentPath, @Nonnull String source,
+                                       @Nonnull Map<String, ?> configuration, @Nonnull String root, boolean tagDependent) {
+        return new ListResultKey(componentPath, source, digest(configuration), root, tagDependent,
+                SearchResultKey.getAclFingerprint(resourceResolver));
+    }
+
+    /**
+     * Returns a digest of the {@code configuration}, independent of the order of its entries.
+     */
+    @Nonnull
+    static String digest(@Nonnull Map<String, ?> configuration) {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, ?> entry : new TreeMap<>(configuration).entrySet()) {
+            Object value = entry.getValue();
+            builder.append(entry.getKey()).append('=')
+                    .append(value instanceof Object[] ? Arrays.deepToString((Object[]) value) : String.valueOf(value)).append('\n');
+        }
+        return Hashing.sha1().hashString(builder, StandardCharsets.UTF_8).toString();
+    }
+
+    @Nonnull
+    public String getRoot() {
+        return root;
+    }
+
+    public boolean isTagDependent() {
+        return tagDependent;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ListResultKey that = (ListResultKey) o;
+        return componentPath.equals(that.componentPath) && source.equals(that.source) && configuration.equals(that.configuration) &&
+                aclFingerprint.equals(that.aclFingerprint);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(componentPath, source, configuration, aclFingerprint);
+    }
+
+    @Override
+    public String toString() {
+        return componentPath + "|" + source + "|" + root;
+    }
+}
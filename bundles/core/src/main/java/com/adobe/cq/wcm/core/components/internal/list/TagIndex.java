@@ -0,0 +1,40 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.list;
+
+import java.util.List;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * In-memory index of the tags of the pages, answering the tag queries of the list component without querying the repository.
+ */
+public interface TagIndex {
+
+    /**
+     * Returns the paths of the pages below the {@code rootPath}, including the root page itself, tagged with any or all of the
+     * {@code tagIds}, or with one of their descendant tags. A page is tagged with the tags of its content resource and of the
+     * resources below it. The pages are not checked for read access.
+     *
+     * @param rootPath the path of the page under which the pages are looked up
+     * @param tagIds   the IDs of the tags
+     * @param matchAny {@code true} if the pages tagged with any of the tags are found, {@code false} if the pages have to be tagged
+     *                 with all of them
+     * @return the paths of the tagged pages, or {@code null} if the index is still being built
+     */
+    @CheckForNull
+    List<String> find(@Nonnull String rootPath, @Nonnull String[] tagIds, boolean matchAny);
+}
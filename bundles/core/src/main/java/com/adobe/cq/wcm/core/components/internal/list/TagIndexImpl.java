@@ -0,0 +1,382 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.list;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.adobe.cq.wcm.core.components.internal.PageIndexer;
+import com.day.cq.wcm.api.NameConstants;
+import com.day.cq.wcm.api.Page;
+
+/**
+ * {@link TagIndex} of the pages below the configured roots, maintained by a {@link PageIndexer}; no pages are found until the index is
+ * built, so that the list components query the tag manager instead. The pages are read with the {@value #SUBSERVICE} service user.
+ *
+ * Every tagged page is given an ordinal, and every tag is mapped to the bitmap of the ordinals of its pages, so that the pages matching
+ * any or all of the tags below a root are found by combining the bitmaps of the tags with the bitmap of the pages below the root.
+ */
+@Designate(
+        ocd = TagIndexImpl.Config.class
+)
+@Component(
+        service = {TagIndex.class, ResourceChangeListener.class},
+        property = {
+                ResourceChangeListener.CHANGES + "=ADDED",
+                ResourceChangeListener.CHANGES + "=CHANGED",
+                ResourceChangeListener.CHANGES + "=REMOVED"
+        }
+)
+public class TagIndexImpl implements TagIndex, ExternalResourceChangeListener {
+
+    static final String SUBSERVICE = "search-index";
+    static final String DEFAULT_ROOT = "/content";
+    static final String DEFAULT_NAMESPACE = "default";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TagIndexImpl.class);
+    private static final String[] TAG_ROOTS = {"/content/cq:tags/", "/etc/tags/"};
+
+    @ObjectClassDefinition(
+            name = "AEM Core WCM Components Tag Index",
+            description = "Indexes the tags of the pages listed by the list components built from tags."
+    )
+    @interface Config {
+
+        @AttributeDefinition(
+                name = "Roots",
+                description = "The paths below which the pages are indexed."
+        )
+        String[] resource_paths() default {DEFAULT_ROOT};
+    }
+
+    @Reference
+    private ResourceResolverFactory resourceResolverFactory;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, BitSet> pagesByTag = new TreeMap<>();
+    private final Map<String, Set<String>> tagsByPage = new HashMap<>();
+    private final TreeMap<String, Integer> ordinals = new TreeMap<>();
+    private final List<String> paths = new ArrayList<>();
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+    private final Map<String, BitSet> pagesByRoot = new ConcurrentHashMap<>();
+
+    private volatile boolean built;
+    volatile PageIndexer indexer;
+
+    @Activate
+    @Modified
+    void configure(Config config) {
+        shutdown();
+        lock.writeLock().lock();
+        try {
+            pagesByTag.clear();
+            tagsByPage.clear();
+            ordinals.clear();
+            paths.clear();
+            freeOrdinals.clear();
+        } finally {
+            pagesByRoot.clear();
+            lock.writeLock().unlock();
+        }
+        indexer = new PageIndexer("core-components-tag-index", "tags", config.resource_paths(), this::build);
+    }
+
+    @Deactivate
+    void shutdown() {
+        built = false;
+        PageIndexer currentIndexer = indexer;
+        indexer = null;
+        if (currentIndexer != null) {
+            currentIndexer.shutdown();
+        }
+    }
+
+    private void build(@Nonnull PageIndexer currentIndexer) {
+        try (ResourceResolver resourceResolver = getServiceResourceResolver()) {
+            currentIndexer.indexRoots(resourceResolver, this::index);
+            built = !Thread.currentThread().isInterrupted();
+        } catch (LoginException e) {
+            LOGGER.error("Unable to open a resource resolver for the {} service user; no tags will be indexed.", SUBSERVICE, e);
+        }
+    }
+
+    @CheckForNull
+    @Override
+    public List<String> find(@Nonnull String rootPath, @Nonnull String[] tagIds, boolean matchAny) {
+        if (!built) {
+            return null;
+        }
+        if (tagIds.length == 0) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            BitSet pages = null;
+            for (String tagId : tagIds) {
+                BitSet taggedPages = getTaggedPages(normalizeTagId(tagId));
+                if (pages == null) {
+                    pages = taggedPages;
+                } else if (matchAny) {
+                    pages.or(taggedPages);
+                } else {
+                    pages.and(taggedPages);
+                }
+            }
+            pages.and(getPages(rootPath));
+            List<String> found = new ArrayList<>(pages.cardinality());
+            for (int ordinal = pages.nextSetBit(0); ordinal >= 0; ordinal = pages.nextSetBit(ordinal + 1)) {
+                found.add(paths.get(ordinal));
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a new bitmap of the pages tagged with the tag or with one of its descendants. Must be called with the read lock held.
+     */
+    @Nonnull
+    private BitSet getTaggedPages(@Nonnull String tagId) {
+        BitSet pages = new BitSet();
+        BitSet taggedPages = pagesByTag.get(tagId);
+        if (taggedPages != null) {
+            pages.or(taggedPages);
+        }
+        // the IDs of the descendant tags start with the ID of the tag, or with the namespace for a namespace
+        String prefix = tagId.endsWith(":") ? tagId : tagId + "/";
+        for (BitSet descendantPages : pagesByTag.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+            pages.or(descendantPages);
+        }
+        return pages;
+    }
+
+    /**
+     * Returns the bitmap of the tagged pages below the {@code rootPath}, including the root itself, which must not be modified. Must be
+     * called with the read lock held.
+     */
+    @Nonnull
+    private BitSet getPages(@Nonnull String rootPath) {
+        return pagesByRoot.computeIfAbsent(rootPath, root -> {
+            BitSet pages = new BitSet();
+            Integer rootOrdinal = ordinals.get(root);
+            if (rootOrdinal != null) {
+                pages.set(rootOrdinal);
+            }
+            // '0' follows '/', so that the range holds all the paths starting with the root followed by a slash
+            for (int ordinal : ordinals.subMap(root + "/", root + "0").values()) {
+                pages.set(ordinal);
+            }
+            return pages;
+        });
+    }
+
+    @Override
+    public void onChange(@Nonnull List<ResourceChange> changes) {
+        PageIndexer currentIndexer = indexer;
+        if (currentIndexer != null) {
+            currentIndexer.submit(() -> update(currentIndexer, changes));
+        }
+    }
+
+    private void update(@Nonnull PageIndexer currentIndexer, @Nonnull List<ResourceChange> changes) {
+        try (ResourceResolver resourceResolver = getServiceResourceResolver()) {
+            currentIndexer.update(resourceResolver, changes, new PageIndexer.Target() {
+                @Override
+                public void index(@Nonnull Page page) {
+                    TagIndexImpl.this.index(page);
+                }
+
+                @Override
+                public void remove(@Nonnull String path) {
+                    TagIndexImpl.this.index(path, Collections.emptySet());
+                }
+
+                @Override
+                public void removeTree(@Nonnull String path) {
+                    TagIndexImpl.this.removeTree(path);
+                }
+            });
+        } catch (LoginException e) {
+            LOGGER.error("Unable to open a resource resolver for the {} service user; the tags are not updated.", SUBSERVICE, e);
+        }
+    }
+
+    @Nonnull
+    private ResourceResolver getServiceResourceResolver() throws LoginException {
+        return resourceResolverFactory.getServiceResourceResolver(
+                Collections.singletonMap(ResourceResolverFactory.SUBSERVICE, SUBSERVICE));
+    }
+
+    private void index(@Nonnull Page page) {
+        Set<String> tags = new HashSet<>();
+        Resource content = page.getContentResource();
+        if (content != null) {
+            addTags(tags, content);
+        }
+        index(page.getPath(), tags);
+    }
+
+    /**
+     * Adds the tags of the {@code resource} and of its descendants.
+     */
+    private static void addTags(@Nonnull Set<String> tags, @Nonnull Resource resource) {
+        String[] values = resource.getValueMap().get(NameConstants.PN_TAGS, String[].class);
+        if (values != null) {
+            for (String value : values) {
+                if (StringUtils.isNotBlank(value)) {
+                    tags.add(normalizeTagId(value));
+                }
+            }
+        }
+        for (Resource child : resource.getChildren()) {
+            addTags(tags, child);
+        }
+    }
+
+    /**
+     * Replaces the tags of the page at {@code path}; the untagged pages are not indexed.
+     */
+    private void index(@Nonnull String path, @Nonnull Set<String> tags) {
+        lock.writeLock().lock();
+        try {
+            Set<String> previousTags = tagsByPage.get(path);
+            if (tags.equals(previousTags) || (previousTags == null && tags.isEmpty())) {
+                return;
+            }
+            Integer ordinal = ordinals.get(path);
+            if (previousTags != null && ordinal != null) {
+                for (String tag : previousTags) {
+                    BitSet pages = pagesByTag.get(tag);
+                    if (pages != null) {
+                        pages.clear(ordinal);
+                        if (pages.isEmpty()) {
+                            pagesByTag.remove(tag);
+                        }
+                    }
+                }
+            }
+            if (tags.isEmpty()) {
+                tagsByPage.remove(path);
+                release(path);
+                return;
+            }
+            if (ordinal == null) {
+                ordinal = allocate(path);
+            }
+            for (String tag : tags) {
+                pagesByTag.computeIfAbsent(tag, key -> new BitSet()).set(ordinal);
+            }
+            tagsByPage.put(path, tags);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeTree(@Nonnull String path) {
+        List<String> removedPaths = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (ordinals.containsKey(path)) {
+                removedPaths.add(path);
+            }
+            removedPaths.addAll(ordinals.subMap(path + "/", path + "0").keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (String removedPath : removedPaths) {
+            index(removedPath, Collections.emptySet());
+        }
+    }
+
+    /**
+     * Gives an ordinal to the page at {@code path}, reusing the ordinals of the pages which are no longer tagged. Must be called with
+     * the write lock held.
+     */
+    private int allocate(@Nonnull String path) {
+        Integer ordinal = freeOrdinals.poll();
+        if (ordinal == null) {
+            ordinal = paths.size();
+            paths.add(path);
+        } else {
+            paths.set(ordinal, path);
+        }
+        ordinals.put(path, ordinal);
+        pagesByRoot.clear();
+        return ordinal;
+    }
+
+    /**
+     * Releases the ordinal of the page at {@code path}. Must be called with the write lock held.
+     */
+    private void release(@Nonnull String path) {
+        Integer ordinal = ordinals.remove(path);
+        if (ordinal != null) {
+            paths.set(ordinal, null);
+            freeOrdinals.push(ordinal);
+            pagesByRoot.clear();
+        }
+    }
+
+    /**
+     * Returns the ID of the tag referenced by a {@code cq:tags} value, which can be a tag ID, a tag ID without namespace (in the
+     * {@value #DEFAULT_NAMESPACE} namespace) or the path of a tag.
+     */
+    @Nonnull
+    static String normalizeTagId(@Nonnull String value) {
+        for (String tagRoot : TAG_ROOTS) {
+            if (value.startsWith(tagRoot)) {
+                String tagPath = value.substring(tagRoot.length());
+                int slash = tagPath.indexOf('/');
+                return slash < 0 ? tagPath + ":" : tagPath.substring(0, slash) + ":" + tagPath.substring(slash + 1);
+            }
+        }
+        return value.indexOf(':') < 0 ? DEFAULT_NAMESPACE + ":" + value : value;
+    }
+}
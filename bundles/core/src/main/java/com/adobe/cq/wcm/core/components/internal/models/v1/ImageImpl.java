@@ -15,14 +15,13 @@
  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
 package com.adobe.cq.wcm.core.components.internal.models.v1;
 
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
@@ -42,6 +41,7 @@ import org.apache.sling.models.annotations.Exporter;
 import org.apache.sling.models.annotations.Model;
 import org.apache.sling.models.annotations.Source;
 import org.apache.sling.models.annotations.injectorspecific.InjectionStrategy;
+import org.apache.sling.models.annotations.injectorspecific.OSGiService;
 import org.apache.sling.models.annotations.injectorspecific.ScriptVariable;
 import org.apache.sling.models.annotations.injectorspecific.Self;
 import org.apache.sling.models.annotations.injectorspecific.ValueMapValue;
@@ -51,12 +51,14 @@ import org.slf4j.LoggerFactory;
 import com.adobe.cq.export.json.ComponentExporter;
 import com.adobe.cq.export.json.ExporterConstants;
 import com.adobe.cq.wcm.core.components.internal.Utils;
+import com.adobe.cq.wcm.core.components.internal.image.AssetInfo;
+import com.adobe.cq.wcm.core.components.internal.image.AssetInfoService;
+import com.adobe.cq.wcm.core.components.internal.image.ImageHeader;
 import com.adobe.cq.wcm.core.components.internal.servlets.AdaptiveImageServlet;
 import com.adobe.cq.wcm.core.components.models.Image;
 import com.day.cq.commons.DownloadResource;
 import com.day.cq.commons.ImageResource;
 import com.day.cq.commons.jcr.JcrConstants;
-import com.day.cq.dam.api.Asset;
 import com.day.cq.wcm.api.NameConstants;
 import com.day.cq.wcm.api.Page;
 import com.day.cq.wcm.api.PageManager;
@@ -88,7 +90,7 @@ public class ImageImpl implements Image {
     private PageManager pageManager;
 
     @ScriptVariable
-    private Page currentPage;
+    protected Page currentPage;
 
     @ScriptVariable
     protected Style currentStyle;
@@ -100,6 +102,9 @@ public class ImageImpl implements Image {
     @Source("osgi-services")
     protected MimeTypeService mimeTypeService;
 
+    @OSGiService(injectionStrategy = InjectionStrategy.OPTIONAL)
+    protected AssetInfoService assetInfoService;
+
     @ValueMapValue(name = DownloadResource.PN_REFERENCE, injectionStrategy = InjectionStrategy.OPTIONAL)
     protected String fileReference;
 
@@ -124,10 +129,12 @@ public class ImageImpl implements Image {
     protected String selector;
     protected String extension;
     protected long lastModifiedDate = 0;
+    protected String urlVersion;
     protected boolean inTemplate;
     protected String baseResourcePath;
     protected String templateRelativePath;
     protected boolean disableLazyLoading;
+    protected AssetInfo assetInfo;
 
     public ImageImpl() {
         selector = AdaptiveImageServlet.DEFAULT_SELECTOR;
@@ -143,14 +150,14 @@ public class ImageImpl implements Image {
         mimeType = MIME_TYPE_IMAGE_JPEG;
         displayPopupTitle = properties.get(PN_DISPLAY_POPUP_TITLE, currentStyle.get(PN_DISPLAY_POPUP_TITLE, false));
         isDecorative = properties.get(PN_IS_DECORATIVE, currentStyle.get(PN_IS_DECORATIVE, false));
-        Asset asset = null;
+        Resource file = null;
         if (StringUtils.isNotEmpty(fileReference)) {
             // the image is coming from DAM
             final Resource assetResource = request.getResourceResolver().getResource(fileReference);
             if (assetResource != null) {
-                asset = assetResource.adaptTo(Asset.class);
-                if (asset != null) {
-                    mimeType = PropertiesUtil.toString(asset.getMimeType(), MIME_TYPE_IMAGE_JPEG);
+                assetInfo = AssetInfo.of(assetInfoService, assetResource);
+                if (assetInfo != null) {
+                    mimeType = PropertiesUtil.toString(assetInfo.getMimeType(), MIME_TYPE_IMAGE_JPEG);
                     hasContent = true;
                 } else {
                     LOGGER.error("Unable to adapt resource '{}' used by image '{}' to an asset.", fileReference, resource.getPath());
@@ -159,7 +166,7 @@ public class ImageImpl implements Image {
                 LOGGER.error("Unable to find resource '{}' used by image '{}'.", fileReference, resource.getPath());
             }
         } else {
-            Resource file = resource.getChild(DownloadResource.NN_FILE);
+            file = resource.getChild(DownloadResource.NN_FILE);
             if (file != null) {
                 mimeType = PropertiesUtil.toString(file.getResourceMetadata().get(ResourceMetadata.CONTENT_TYPE), MIME_TYPE_IMAGE_JPEG);
                 hasContent = true;
@@ -186,15 +193,23 @@ public class ImageImpl implements Image {
             if (lastModified != null) {
                 lastModifiedDate = lastModified.getTimeInMillis();
             }
-            if (asset != null) {
-                long assetLastModifiedDate = asset.getLastModified();
+            if (assetInfo != null) {
+                long assetLastModifiedDate = assetInfo.getLastModified();
                 if (assetLastModifiedDate > lastModifiedDate) {
                     lastModifiedDate = assetLastModifiedDate;
                 }
             }
+            urlVersion = getUrlVersion();
             if (extension.equalsIgnoreCase("tif") || extension.equalsIgnoreCase("tiff")) {
                 extension = DEFAULT_EXTENSION;
             }
+            if (ImageHeader.MIME_TYPE_PNG.equals(mimeType) && currentStyle.get(PN_DESIGN_NEGOTIATE_OUTPUT_FORMAT, false)) {
+                ImageHeader imageHeader = assetInfo != null ? assetInfo.getImageHeader() : ImageHeader.probe(file);
+                if (imageHeader != null && !imageHeader.hasAlpha()) {
+                    // opaque PNG images are a lot smaller when served as JPEG images
+                    extension = DEFAULT_EXTENSION;
+                }
+            }
             disableLazyLoading = currentStyle.get(PN_DESIGN_LAZY_LOADING_ENABLED, false);
             Set<Integer> supportedRenditionWidths = getSupportedRenditionWidths();
             smartImages = new String[supportedRenditionWidths.size()];
@@ -214,8 +229,8 @@ public class ImageImpl implements Image {
                 smartImages[index] = baseResourcePath + DOT +
                         selector + DOT + width + DOT + extension +
                         (inTemplate ? Text.escapePath(templateRelativePath) : "") +
-                        (lastModifiedDate > 0
-                                ? "/" + lastModifiedDate + (StringUtils.isNotBlank(imageName) ? "/" + imageName : "")
+                        (urlVersion != null
+                                ? "/" + urlVersion + (StringUtils.isNotBlank(imageName) ? "/" + imageName : "")
                                         + DOT + extension
                                 : "");
                 smartSizes[index] = width;
@@ -228,8 +243,8 @@ public class ImageImpl implements Image {
                 src += extension;
             }
             src += (inTemplate ? Text.escapePath(templateRelativePath) : "")
-                    + (lastModifiedDate > 0
-                            ? "/" + lastModifiedDate + (StringUtils.isNotBlank(imageName) ? "/" + imageName : "") + DOT
+                    + (urlVersion != null
+                            ? "/" + urlVersion + (StringUtils.isNotBlank(imageName) ? "/" + imageName : "") + DOT
                                     + extension
                             : "");
             if (!isDecorative) {
@@ -251,14 +266,22 @@ public class ImageImpl implements Image {
      */
     protected String getImageNameFromDam() {
         String imageName = "";
-        Resource damResource = this.request.getResourceResolver().getResource(this.fileReference);
-        if (damResource != null) {
-            Asset asset = (Asset) damResource.adaptTo(Asset.class);
-            imageName = asset != null ? StringUtils.trimToNull(asset.getName()) : "";
+        if (assetInfo != null) {
+            imageName = StringUtils.trimToNull(assetInfo.getName());
         }
         return getSeoFriendlyName(FilenameUtils.getBaseName(imageName));
     }
 
+    /**
+     * Returns the path segment which versions the image's URLs, so that they change whenever the rendered image changes.
+     *
+     * @return the image's last modified date, or {@code null} if it's not known
+     */
+    @CheckForNull
+    protected String getUrlVersion() {
+        return lastModifiedDate > 0 ? String.valueOf(lastModifiedDate) : null;
+    }
+
     /**
      * Content editors can store DAM assets with white spaces in the name, this
      * method makes the asset name SEO friendly, Translates the string into
@@ -269,13 +292,7 @@ public class ImageImpl implements Image {
      * @return name of the asset without extension
      */
     protected String getSeoFriendlyName(String imageName) {
-        String seoFriendlyName = imageName.replaceAll("[\\ _]", "-").toLowerCase();
-        try {
-            seoFriendlyName = URLEncoder.encode(seoFriendlyName, "utf-8");
-        } catch (UnsupportedEncodingException e) {
-            LOGGER.error(String.format("The Character Encoding is not supported.", new Object[0]));
-        }
-        return seoFriendlyName;
+        return AdaptiveImageServlet.getSeoFriendlyName(imageName);
     }
    
     @Override
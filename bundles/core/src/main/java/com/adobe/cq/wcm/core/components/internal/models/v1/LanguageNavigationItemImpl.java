@@ -48,7 +48,7 @@ public class LanguageNavigationItemImpl extends NavigationItemImpl implements La
         if (locale == null) {
             // looks up jcr:language properties to the root, then considers the page name, falls back to system default
             // we therefore assume the language structure is correctly configured for the site for this to be accurate
-            locale = page.getLanguage(false);
+            locale = getTargetPage().getLanguage(false);
         }
         return locale;
     }
@@ -56,7 +56,7 @@ public class LanguageNavigationItemImpl extends NavigationItemImpl implements La
     @Override
     public String getCountry() {
         if (country == null) {
-            country = page.getLanguage(false).getCountry();
+            country = getTargetPage().getLanguage(false).getCountry();
         }
         return country;
     }
@@ -65,7 +65,7 @@ public class LanguageNavigationItemImpl extends NavigationItemImpl implements La
     public String getLanguage() {
         if (language == null) {
             // uses hyphens to ensure it's hreflang valid
-            language = page.getLanguage(false).toString().replace('_', '-');
+            language = getTargetPage().getLanguage(false).toString().replace('_', '-');
         }
         return language;
     }
@@ -15,12 +15,16 @@
  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
 package com.adobe.cq.wcm.core.components.internal.models.v1;
 
-import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.PostConstruct;
 import javax.jcr.RepositoryException;
@@ -36,6 +40,7 @@ import org.apache.sling.models.annotations.Default;
 import org.apache.sling.models.annotations.Exporter;
 import org.apache.sling.models.annotations.Model;
 import org.apache.sling.models.annotations.injectorspecific.InjectionStrategy;
+import org.apache.sling.models.annotations.injectorspecific.OSGiService;
 import org.apache.sling.models.annotations.injectorspecific.ScriptVariable;
 import org.apache.sling.models.annotations.injectorspecific.Self;
 import org.apache.sling.models.annotations.injectorspecific.SlingObject;
@@ -45,8 +50,15 @@ import org.slf4j.LoggerFactory;
 
 import com.adobe.cq.export.json.ComponentExporter;
 import com.adobe.cq.export.json.ExporterConstants;
+import com.adobe.cq.wcm.core.components.internal.list.ListResultCache;
+import com.adobe.cq.wcm.core.components.internal.list.ListResultKey;
+import com.adobe.cq.wcm.core.components.internal.list.TagIndex;
+import com.adobe.cq.wcm.core.components.internal.search.QueryLog;
+import com.adobe.cq.wcm.core.components.internal.search.SearchBackend;
+import com.adobe.cq.wcm.core.components.internal.search.SearchHit;
 import com.adobe.cq.wcm.core.components.models.List;
 import com.day.cq.commons.RangeIterator;
+import com.day.cq.commons.jcr.JcrConstants;
 import com.day.cq.search.Predicate;
 import com.day.cq.search.SimpleSearch;
 import com.day.cq.search.result.Hit;
@@ -73,6 +85,12 @@ public class ListImpl implements List {
     private static final int PN_DEPTH_DEFAULT = 1;
     private static final String PN_DATE_FORMAT_DEFAULT = "yyyy-MM-dd";
     private static final String TAGS_MATCH_ANY_VALUE = "any";
+    private static final String PREDICATE_FULLTEXT = "fulltext";
+    private static final String PREDICATE_PATH = "path";
+    private static final String PREDICATE_TYPE = "type";
+    private static final String PREDICATE_LIMIT = "p.limit";
+    private static final String CACHE_KEY_CURRENT_PAGE = ":currentPage";
+    private static final String CACHE_KEY_STYLE_PREFIX = ":style/";
 
     @ScriptVariable
     private ValueMap properties;
@@ -92,6 +110,18 @@ public class ListImpl implements List {
     @Self
     private SlingHttpServletRequest request;
 
+    @OSGiService(injectionStrategy = InjectionStrategy.OPTIONAL)
+    private java.util.List<SearchBackend> searchBackends;
+
+    @OSGiService(injectionStrategy = InjectionStrategy.OPTIONAL)
+    private QueryLog queryLog;
+
+    @OSGiService(injectionStrategy = InjectionStrategy.OPTIONAL)
+    private ListResultCache listResultCache;
+
+    @OSGiService(injectionStrategy = InjectionStrategy.OPTIONAL)
+    private TagIndex tagIndex;
+
     @ValueMapValue(injectionStrategy = InjectionStrategy.OPTIONAL)
     @Default(intValues = LIMIT_DEFAULT)
     private int limit;
@@ -185,73 +215,163 @@ public class ListImpl implements List {
     }
 
     protected void populateListItems(Source listType) {
+        ListResultCache cache = listResultCache;
+        ListResultKey key = cache != null ? getCacheKey(listType) : null;
+        if (key != null) {
+            listItems = getPages(cache.getPaths(key, () -> getPaths(collectListItems(listType))));
+        } else {
+            listItems = collectListItems(listType);
+        }
+    }
+
+    private java.util.List<Page> collectListItems(Source listType) {
+        ListItemCollector collector = new ListItemCollector(orderBy, sortOrder, maxItems);
         switch (listType) {
             case STATIC:
-                populateStaticListItems();
+                populateStaticListItems(collector);
                 break;
             case CHILDREN:
-                populateChildListItems();
+                populateChildListItems(collector);
                 break;
             case TAGS:
-                populateTagListItems();
+                populateTagListItems(collector);
                 break;
             case SEARCH:
-                populateSearchListItems();
+                populateSearchListItems(collector);
                 break;
             default:
-                listItems = new ArrayList<>();
                 break;
         }
-        sortListItems();
-        setMaxItems();
+        return collector.getItems();
     }
 
+    /**
+     * Returns the key under which the pages of the list are cached, or {@code null} if they are not cached: the static lists are read
+     * from the paths of their pages anyway.
+     */
+    @CheckForNull
+    private ListResultKey getCacheKey(Source listType) {
+        String root;
+        boolean tagDependent = false;
+        switch (listType) {
+            case CHILDREN:
+                root = properties.get(PN_PARENT_PAGE, currentPage.getPath());
+                break;
+            case TAGS:
+                root = properties.get(PN_TAGS_PARENT_PAGE, currentPage.getPath());
+                tagDependent = true;
+                break;
+            case SEARCH:
+                root = startIn;
+                break;
+            default:
+                return null;
+        }
+        // the pages are listed below the page containing the root
+        root = StringUtils.substringBefore(root, "/" + JcrConstants.JCR_CONTENT);
+        // the lists placed on templates are rendered for many pages, from which the default roots are read
+        Map<String, Object> configuration = new HashMap<>(properties);
+        configuration.put(CACHE_KEY_CURRENT_PAGE, currentPage.getPath());
+        configuration.put(CACHE_KEY_STYLE_PREFIX + PN_SOURCE, currentStyle.get(PN_SOURCE, String.class));
+        configuration.put(CACHE_KEY_STYLE_PREFIX + PN_SEARCH_BACKEND, currentStyle.get(PN_SEARCH_BACKEND, String.class));
+        return ListResultKey.create(resourceResolver, resource.getPath(), listType.value, configuration, root, tagDependent);
+    }
 
-    private void populateStaticListItems() {
-        listItems = new ArrayList<>();
+    private static java.util.List<String> getPaths(java.util.List<Page> pages) {
+        java.util.List<String> paths = new ArrayList<>(pages.size());
+        for (Page page : pages) {
+            paths.add(page.getPath());
+        }
+        return paths;
+    }
+
+    /**
+     * Reads the pages at the cached {@code paths}, with the access rights of the current user.
+     */
+    private java.util.List<Page> getPages(java.util.List<String> paths) {
+        java.util.List<Page> pages = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            Page page = pageManager.getPage(path);
+            if (page != null) {
+                pages.add(page);
+            }
+        }
+        return pages;
+    }
+
+
+    private void populateStaticListItems(ListItemCollector collector) {
         String[] pagesPaths = properties.get(PN_PAGES, new String[0]);
         for (String path : pagesPaths) {
+            if (collector.isFull()) {
+                break;
+            }
             Page page = pageManager.getContainingPage(path);
             if (page != null) {
-                listItems.add(page);
+                collector.add(page);
             }
         }
     }
 
-    private void populateChildListItems() {
-        listItems = new ArrayList<>();
+    private void populateChildListItems(ListItemCollector collector) {
         Page rootPage = getRootPage(PN_PARENT_PAGE);
         if (rootPage != null) {
-            collectChildren(rootPage.getDepth(), rootPage);
+            collectChildren(rootPage.getDepth(), rootPage, collector);
         }
     }
 
-    private void collectChildren(int startLevel, Page parent) {
+    private void collectChildren(int startLevel, Page parent, ListItemCollector collector) {
         Iterator<Page> childIterator = parent.listChildren();
-        while (childIterator.hasNext()) {
+        while (childIterator.hasNext() && !collector.isFull()) {
             Page child = childIterator.next();
-            listItems.add(child);
+            collector.add(child);
             if (child.getDepth() - startLevel < childDepth) {
-                collectChildren(startLevel, child);
+                collectChildren(startLevel, child, collector);
             }
         }
     }
 
-    private void populateTagListItems() {
-        listItems = new ArrayList<>();
+    private void populateTagListItems(ListItemCollector collector) {
         String[] tags = properties.get(PN_TAGS, new String[0]);
         boolean matchAny = properties.get(PN_TAGS_MATCH, TAGS_MATCH_ANY_VALUE).equals(TAGS_MATCH_ANY_VALUE);
         if (ArrayUtils.isNotEmpty(tags)) {
             Page rootPage = getRootPage(PN_TAGS_PARENT_PAGE);
             if (rootPage != null) {
+                TagIndex index = tagIndex;
+                // the tag manager is queried until the index is built
+                Collection<String> paths = index != null ? index.find(rootPage.getPath(), tags, matchAny) : null;
+                if (paths != null) {
+                    for (String path : paths) {
+                        if (collector.isFull()) {
+                            break;
+                        }
+                        // the index does not check the access rights
+                        Page page = pageManager.getPage(path);
+                        if (page != null) {
+                            collector.add(page);
+                        }
+                    }
+                    return;
+                }
                 TagManager tagManager = resourceResolver.adaptTo(TagManager.class);
-                if (tagManager != null) {
-                    RangeIterator<Resource> resourceRangeIterator = tagManager.find(rootPage.getPath(), tags, matchAny);
-                    if (resourceRangeIterator != null) {
-                        while (resourceRangeIterator.hasNext()) {
-                            Page containingPage = pageManager.getContainingPage(resourceRangeIterator.next());
-                            if (containingPage != null) {
-                                listItems.add(containingPage);
+                if (tagManager != null && !collector.isFull()) {
+                    java.util.function.Predicate<Resource> visitor = taggedResource -> {
+                        Page containingPage = pageManager.getContainingPage(taggedResource);
+                        if (containingPage != null) {
+                            collector.add(containingPage);
+                        }
+                        return !collector.isFull();
+                    };
+                    QueryLog log = queryLog;
+                    if (log != null) {
+                        log.find(resource.getPath(), tagManager, rootPage.getPath(), tags, matchAny, visitor);
+                    } else {
+                        RangeIterator<Resource> resourceRangeIterator = tagManager.find(rootPage.getPath(), tags, matchAny);
+                        if (resourceRangeIterator != null) {
+                            while (resourceRangeIterator.hasNext()) {
+                                if (!visitor.test(resourceRangeIterator.next())) {
+                                    break;
+                                }
                             }
                         }
                     }
@@ -260,9 +380,21 @@ public class ListImpl implements List {
         }
     }
 
-    private void populateSearchListItems() {
-        listItems = new ArrayList<>();
+    private void populateSearchListItems(ListItemCollector collector) {
         if (!StringUtils.isBlank(query)) {
+            SearchBackend searchBackend = SearchBackend.select(searchBackends, currentStyle.get(PN_SEARCH_BACKEND, String.class));
+            if (searchBackend != null) {
+                for (SearchHit hit : searchBackend.search(resourceResolver, startIn, query, 0, limit)) {
+                    if (collector.isFull()) {
+                        break;
+                    }
+                    Page page = pageManager.getPage(hit.getPath());
+                    if (page != null) {
+                        collector.add(page);
+                    }
+                }
+                return;
+            }
             SimpleSearch search = resource.adaptTo(SimpleSearch.class);
             if (search != null) {
                 search.setQuery(query);
@@ -270,7 +402,18 @@ public class ListImpl implements List {
                 search.addPredicate(new Predicate("type", "type").set("type", NameConstants.NT_PAGE));
                 search.setHitsPerPage(limit);
                 try {
-                    collectSearchResults(search.getResult());
+                    QueryLog log = queryLog;
+                    if (log != null) {
+                        Map<String, String> predicates = new HashMap<>();
+                        predicates.put(PREDICATE_FULLTEXT, query);
+                        predicates.put(PREDICATE_PATH, startIn);
+                        predicates.put(PREDICATE_TYPE, NameConstants.NT_PAGE);
+                        predicates.put(PREDICATE_LIMIT, Integer.toString(limit));
+                        collectSearchResults(log.getResult(resource.getPath(), predicates, resourceResolver, search::getResult),
+                                collector);
+                    } else {
+                        collectSearchResults(search.getResult(), collector);
+                    }
                 } catch (RepositoryException e) {
                     LOGGER.error("Unable to retrieve search results for query.", e);
                 }
@@ -278,32 +421,15 @@ public class ListImpl implements List {
         }
     }
 
-    private void collectSearchResults(SearchResult result) throws RepositoryException {
+    private void collectSearchResults(SearchResult result, ListItemCollector collector) throws RepositoryException {
         for (Hit hit : result.getHits()) {
+            if (collector.isFull()) {
+                break;
+            }
             Page containingPage = pageManager.getContainingPage(hit.getResource());
             if (containingPage != null) {
-                listItems.add(containingPage);
-            }
-        }
-    }
-
-    private void sortListItems() {
-        if (orderBy != null) {
-            listItems.sort(new ListSort(orderBy, sortOrder));
-        }
-    }
-
-    private void setMaxItems() {
-        if (maxItems != 0) {
-            java.util.List<Page> tmpListItems = new ArrayList<>();
-            for (Page item : listItems) {
-                if (tmpListItems.size() < maxItems) {
-                    tmpListItems.add(item);
-                } else {
-                    break;
-                }
+                collector.add(containingPage);
             }
-            listItems = tmpListItems;
         }
     }
 
@@ -376,33 +502,84 @@ public class ListImpl implements List {
         }
     }
 
-    private static class ListSort implements Comparator<Page>, Serializable {
-
-
-        private static final long serialVersionUID = 204096578105548876L;
-        private SortOrder sortOrder;
-        private OrderBy orderBy;
-
-        ListSort(OrderBy orderBy, SortOrder sortOrder) {
+    /**
+     * Collects the list items, keeping the first {@code maxItems} ones in the configured order. The sort key of each page is read
+     * once, and when {@code maxItems} is set the best items are kept in a heap of that size, so that the other pages are neither
+     * retained nor sorted. Without an order, the collector is full as soon as {@code maxItems} pages are collected.
+     */
+    private static final class ListItemCollector {
+
+        private final OrderBy orderBy;
+        private final int maxItems;
+        private final java.util.List<Page> pages = new ArrayList<>();
+        private final Comparator<SortKey> comparator;
+        private final PriorityQueue<SortKey> heap;
+        private int count;
+
+        ListItemCollector(OrderBy orderBy, SortOrder sortOrder, int maxItems) {
             this.orderBy = orderBy;
-            this.sortOrder = sortOrder;
+            this.maxItems = maxItems;
+            // getLastModified and getTitle may return null, define null to be greater than nonnull values
+            Comparator<SortKey> byKey = orderBy == OrderBy.MODIFIED ?
+                    (key1, key2) -> ObjectUtils.compare(key1.lastModified, key2.lastModified, true) :
+                    (key1, key2) -> ObjectUtils.compare(key1.title, key2.title, true);
+            if (sortOrder == SortOrder.DESC) {
+                byKey = byKey.reversed();
+            }
+            // equal keys keep the order in which the pages were collected
+            comparator = byKey.thenComparingInt(key -> key.index);
+            // the head of the heap is the last of the kept items
+            heap = new PriorityQueue<>(comparator.reversed());
         }
 
-        @Override
-        public int compare(Page item1, Page item2) {
-            int i = 0;
-            if (orderBy == OrderBy.MODIFIED) {
-                // getLastModified may return null, define null to be after nonnull values
-                i = ObjectUtils.compare(item1.getLastModified(), item2.getLastModified(), true);
-            } else if (orderBy == OrderBy.TITLE) {
-                // getTitle may return null, define null to be greater than nonnull values
-                i = ObjectUtils.compare(item1.getTitle(), item2.getTitle(), true);
+        boolean isFull() {
+            return orderBy == null && maxItems > 0 && pages.size() >= maxItems;
+        }
+
+        void add(Page page) {
+            if (orderBy == null) {
+                if (!isFull()) {
+                    pages.add(page);
+                }
+                return;
+            }
+            SortKey key = orderBy == OrderBy.MODIFIED ?
+                    new SortKey(page, null, page.getLastModified(), count++) :
+                    new SortKey(page, page.getTitle(), null, count++);
+            if (maxItems <= 0 || heap.size() < maxItems) {
+                heap.add(key);
+            } else if (comparator.compare(key, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(key);
             }
+        }
 
-            if (sortOrder == SortOrder.DESC) {
-                i = i * -1;
+        java.util.List<Page> getItems() {
+            if (orderBy == null) {
+                return pages;
             }
-            return i;
+            java.util.List<SortKey> keys = new ArrayList<>(heap);
+            keys.sort(comparator);
+            java.util.List<Page> items = new ArrayList<>(keys.size());
+            for (SortKey key : keys) {
+                items.add(key.page);
+            }
+            return items;
+        }
+    }
+
+    private static final class SortKey {
+
+        private final Page page;
+        private final String title;
+        private final Calendar lastModified;
+        private final int index;
+
+        SortKey(Page page, String title, Calendar lastModified, int index) {
+            this.page = page;
+            this.title = title;
+            this.lastModified = lastModified;
+            this.index = index;
         }
     }
 }
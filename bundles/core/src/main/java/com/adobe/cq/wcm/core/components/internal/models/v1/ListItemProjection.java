@@ -0,0 +1,133 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.models.v1;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.SlingHttpServletRequest;
+
+import com.adobe.cq.wcm.core.components.models.ListItem;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * {@link ListItem} serialised with a subset of its JSON properties, requested by the clients through the {@value #PARAM_FIELDS}
+ * parameter, such as {@code ?fields=title,url}. The properties are read from the wrapped item while serialising, so the getters of
+ * the properties that were not requested, and their repository reads, are never called.
+ */
+public final class ListItemProjection implements ListItem {
+
+    public static final String PARAM_FIELDS = "fields";
+
+    private static final Map<String, Function<ListItem, Object>> FIELDS;
+
+    static {
+        Map<String, Function<ListItem, Object>> fields = new LinkedHashMap<>();
+        fields.put("url", ListItem::getURL);
+        fields.put("title", ListItem::getTitle);
+        fields.put("description", ListItem::getDescription);
+        fields.put("lastModified", ListItem::getLastModified);
+        fields.put("path", ListItem::getPath);
+        FIELDS = Collections.unmodifiableMap(fields);
+    }
+
+    private final ListItem item;
+    private final Set<String> fields;
+
+    public ListItemProjection(@Nonnull ListItem item, @Nonnull Set<String> fields) {
+        this.item = item;
+        this.fields = fields;
+    }
+
+    /**
+     * Returns the JSON properties requested by the {@value #PARAM_FIELDS} parameter of the {@code request}, in the order of the
+     * {@link ListItem} properties, or {@code null} if all the properties are requested. Unknown properties are ignored.
+     *
+     * @param request the request
+     * @return the requested properties, or {@code null}
+     */
+    @CheckForNull
+    public static Set<String> getRequestedFields(@Nonnull SlingHttpServletRequest request) {
+        String parameter = request.getParameter(PARAM_FIELDS);
+        if (parameter == null) {
+            return null;
+        }
+        Set<String> requested = new LinkedHashSet<>();
+        for (String field : StringUtils.split(parameter, ',')) {
+            requested.add(field.trim());
+        }
+        Set<String> fields = new LinkedHashSet<>(FIELDS.keySet());
+        fields.retainAll(requested);
+        return fields;
+    }
+
+    /**
+     * Returns the {@code item}, projected on the {@code fields} if not {@code null}.
+     *
+     * @param item   the item
+     * @param fields the requested properties, as returned by {@link #getRequestedFields(SlingHttpServletRequest)}
+     * @return the projected item
+     */
+    @Nonnull
+    public static ListItem of(@Nonnull ListItem item, @CheckForNull Set<String> fields) {
+        return fields != null ? new ListItemProjection(item, fields) : item;
+    }
+
+    @JsonValue
+    public Map<String, Object> getFields() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (String field : fields) {
+            Function<ListItem, Object> getter = FIELDS.get(field);
+            if (getter != null) {
+                values.put(field, getter.apply(item));
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public String getURL() {
+        return item.getURL();
+    }
+
+    @Override
+    public String getTitle() {
+        return item.getTitle();
+    }
+
+    @Override
+    public String getDescription() {
+        return item.getDescription();
+    }
+
+    @Override
+    public Calendar getLastModified() {
+        return item.getLastModified();
+    }
+
+    @Override
+    public String getPath() {
+        return item.getPath();
+    }
+}
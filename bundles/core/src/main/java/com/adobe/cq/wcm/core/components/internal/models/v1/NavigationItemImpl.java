@@ -40,7 +40,12 @@ public class NavigationItemImpl extends PageListItemImpl implements NavigationIt
     @Override
     @JsonIgnore
     public Page getPage() {
-        return page;
+        return getTargetPage();
+    }
+
+    @Override
+    public String getPath() {
+        return getTargetPage().getPath();
     }
 
     @Override
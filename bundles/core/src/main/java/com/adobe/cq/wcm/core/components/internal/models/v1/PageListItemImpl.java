@@ -38,23 +38,41 @@ public class PageListItemImpl implements ListItem {
 
     protected SlingHttpServletRequest request;
     protected Page page;
+    private final String path;
+    private boolean redirectResolved;
 
     public PageListItemImpl(@Nonnull SlingHttpServletRequest request, @Nonnull Page page) {
         this.request = request;
         this.page = page;
-        Page redirectTarget = getRedirectTarget(page);
-        if (redirectTarget != null && !redirectTarget.equals(page)) {
-            this.page = redirectTarget;
+        this.path = page.getPath();
+    }
+
+    /**
+     * Returns the page the item points to, which is the target of the listed page's redirects, if any. The redirects are resolved on
+     * first use, so that the items of which only the path is read don't read them.
+     *
+     * @return the target page
+     */
+    @Nonnull
+    protected Page getTargetPage() {
+        if (!redirectResolved) {
+            redirectResolved = true;
+            Page redirectTarget = getRedirectTarget(page);
+            if (redirectTarget != null && !redirectTarget.equals(page)) {
+                page = redirectTarget;
+            }
         }
+        return page;
     }
 
     @Override
     public String getURL() {
-        return Utils.getURL(request, page);
+        return Utils.getURL(request, getTargetPage());
     }
 
     @Override
     public String getTitle() {
+        Page page = getTargetPage();
         String title = page.getNavigationTitle();
         if (title == null) {
             title = page.getPageTitle();
@@ -70,17 +88,20 @@ public class PageListItemImpl implements ListItem {
 
     @Override
     public String getDescription() {
-        return page.getDescription();
+        return getTargetPage().getDescription();
     }
 
     @Override
     public Calendar getLastModified() {
-        return page.getLastModified();
+        return getTargetPage().getLastModified();
     }
 
+    /**
+     * Returns the path of the listed page, without following its redirects.
+     */
     @Override
     public String getPath() {
-        return page.getPath();
+        return path;
     }
 
 
@@ -62,11 +62,13 @@ public class SearchImpl implements Search {
     private String relativePath;
     private int resultsSize;
     private int searchTermMinimumLength;
+    private boolean cacheableUrls;
 
     @PostConstruct
     private void initModel() {
         resultsSize = currentStyle.get(PN_RESULTS_SIZE, PROP_RESULTS_SIZE_DEFAULT);
         searchTermMinimumLength = currentStyle.get(PN_SEARCH_TERM_MINIMUM_LENGTH, PROP_SEARCH_TERM_MINIMUM_LENGTH_DEFAULT);
+        cacheableUrls = currentStyle.get(PN_CACHEABLE_URLS, false);
         PageManager pageManager = currentPage.getPageManager();
         Resource currentResource = request.getResource();
         if (pageManager != null) {
@@ -87,6 +89,11 @@ public class SearchImpl implements Search {
         return searchTermMinimumLength;
     }
 
+    @Override
+    public boolean isCacheableUrls() {
+        return cacheableUrls;
+    }
+
     @Nonnull
     @Override
     public String getRelativePath() {
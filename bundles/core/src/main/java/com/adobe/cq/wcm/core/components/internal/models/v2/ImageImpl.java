@@ -16,7 +16,12 @@
 package com.adobe.cq.wcm.core.components.internal.models.v2;
 
 import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.PostConstruct;
 
@@ -24,28 +29,54 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.jackrabbit.util.Text;
 import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.models.annotations.Exporter;
 import org.apache.sling.models.annotations.Model;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.apache.sling.models.annotations.injectorspecific.InjectionStrategy;
+import org.apache.sling.models.annotations.injectorspecific.OSGiService;
 
 import com.adobe.cq.export.json.ComponentExporter;
 import com.adobe.cq.export.json.ExporterConstants;
+import com.adobe.cq.wcm.core.components.internal.image.FingerprintService;
+import com.adobe.cq.wcm.core.components.internal.image.ImageHeader;
+import com.adobe.cq.wcm.core.components.internal.image.LayoutSizes;
+import com.adobe.cq.wcm.core.components.internal.image.Placeholder;
+import com.adobe.cq.wcm.core.components.internal.image.PlaceholderService;
+import com.adobe.cq.wcm.core.components.internal.image.ResponsiveImage;
+import com.adobe.cq.wcm.core.components.internal.image.ResponsiveImageCache;
 import com.adobe.cq.wcm.core.components.internal.servlets.AdaptiveImageServlet;
 import com.adobe.cq.wcm.core.components.models.Image;
-import com.day.cq.dam.api.Asset;
-import com.day.cq.dam.api.DamConstants;
+import com.day.cq.commons.DownloadResource;
+import com.day.cq.commons.ImageResource;
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.wcm.api.NameConstants;
+import com.day.cq.wcm.api.Template;
+import com.fasterxml.jackson.annotation.JsonInclude;
 
 @Model(adaptables = SlingHttpServletRequest.class, adapters = {Image.class, ComponentExporter.class}, resourceType = ImageImpl.RESOURCE_TYPE)
 @Exporter(name = ExporterConstants.SLING_MODEL_EXPORTER_NAME, extensions = ExporterConstants.SLING_MODEL_EXTENSION)
 public class ImageImpl extends com.adobe.cq.wcm.core.components.internal.models.v1.ImageImpl implements Image {
 
     public static final String RESOURCE_TYPE = "core/wcm/components/image/v2/image";
-    private static final Logger LOGGER = LoggerFactory.getLogger(ImageImpl.class);
-    private static final String SRC_URI_TEMPLATE_WIDTH_VAR = "{.width}";
     private static final String CONTENT_POLICY_DELEGATE_PATH = "contentPolicyDelegatePath";
+    private static final String NN_STRUCTURE = "structure";
+    private static final String PLACEHOLDER_COLOR = "color";
+    private static final String PLACEHOLDER_IMAGE = "image";
+
+    @OSGiService(injectionStrategy = InjectionStrategy.OPTIONAL)
+    private ResponsiveImageCache responsiveImageCache;
+
+    @OSGiService(injectionStrategy = InjectionStrategy.OPTIONAL)
+    private PlaceholderService placeholderService;
+
+    @OSGiService(injectionStrategy = InjectionStrategy.OPTIONAL)
+    private FingerprintService fingerprintService;
 
     private String srcUriTemplate;
+    private ResponsiveImage responsiveImage;
+    private String srcset;
+    private String placeholderDataUri;
+    private String placeholderColor;
 
     public ImageImpl() {
         selector = AdaptiveImageServlet.CORE_DEFAULT_SELECTOR;
@@ -58,57 +89,159 @@ public class ImageImpl extends com.adobe.cq.wcm.core.components.internal.models.
         boolean titleValueFromDAM = properties.get(PN_TITLE_VALUE_FROM_DAM, currentStyle.get(PN_TITLE_VALUE_FROM_DAM, true));
         displayPopupTitle = properties.get(PN_DISPLAY_POPUP_TITLE, currentStyle.get(PN_DISPLAY_POPUP_TITLE, true));
         String imageName = getImageNameFromDam();
-        if (StringUtils.isNotEmpty(fileReference)) {
+        if (assetInfo != null) {
             // the image is coming from DAM
-            final Resource assetResource = request.getResourceResolver().getResource(fileReference);
-            if (assetResource != null) {
-                Asset asset = assetResource.adaptTo(Asset.class);
-                if (asset != null) {
-                    if (!isDecorative && altValueFromDAM) {
-                        String damDescription = asset.getMetadataValue(DamConstants.DC_DESCRIPTION);
-                        if(StringUtils.isEmpty(damDescription)) {
-                            damDescription = asset.getMetadataValue(DamConstants.DC_TITLE);
-                        }
-                        if (StringUtils.isNotEmpty(damDescription)) {
-                            alt = damDescription;
-                        }
-                    }
-                    if (titleValueFromDAM) {
-                        String damTitle = asset.getMetadataValue(DamConstants.DC_TITLE);
-                        if (StringUtils.isNotEmpty(damTitle)) {
-                            title = damTitle;
-                        }
-                    }
-                } else {
-                    LOGGER.error("Unable to adapt resource '{}' used by image '{}' to an asset.", fileReference,
-                            request.getResource().getPath());
+            if (!isDecorative && altValueFromDAM) {
+                String damDescription = assetInfo.getDescription();
+                if(StringUtils.isEmpty(damDescription)) {
+                    damDescription = assetInfo.getTitle();
+                }
+                if (StringUtils.isNotEmpty(damDescription)) {
+                    alt = damDescription;
+                }
+            }
+            if (titleValueFromDAM) {
+                String damTitle = assetInfo.getTitle();
+                if (StringUtils.isNotEmpty(damTitle)) {
+                    title = damTitle;
                 }
-            } else {
-                LOGGER.error("Unable to find resource '{}' used by image '{}'.", fileReference, request.getResource().getPath());
             }
         }
         if (hasContent) {
             disableLazyLoading = currentStyle.get(PN_DESIGN_LAZY_LOADING_ENABLED, true);
 
-            srcUriTemplate = baseResourcePath + DOT + selector +
-                    SRC_URI_TEMPLATE_WIDTH_VAR + DOT + extension +
-                    (inTemplate ? templateRelativePath : "")
-                    + (lastModifiedDate > 0
-                            ? "/" + lastModifiedDate + (StringUtils.isNotBlank(imageName) ? "/" + imageName : "") + DOT
-                                    + extension
-                            : "");
+            srcUriTemplate = AdaptiveImageServlet.getSrcUriTemplate(baseResourcePath, selector, extension,
+                    inTemplate ? templateRelativePath : null, urlVersion, imageName);
+
+            String sizes = smartSizes.length > 1 ? LayoutSizes.getSizes(resource, getBreakpoints()) : null;
+            responsiveImage = getResponsiveImage(sizes);
+            srcset = responsiveImage.getSrcset();
 
             // if content policy delegate path is provided pass it to the image Uri
             String policyDelegatePath = request.getParameter(CONTENT_POLICY_DELEGATE_PATH);
             if (StringUtils.isNotBlank(policyDelegatePath)) {
-                srcUriTemplate += "?" + CONTENT_POLICY_DELEGATE_PATH + "=" + policyDelegatePath;
-                src += "?" + CONTENT_POLICY_DELEGATE_PATH + "=" + policyDelegatePath;
+                String query = "?" + CONTENT_POLICY_DELEGATE_PATH + "=" + policyDelegatePath;
+                srcUriTemplate += query;
+                src += query;
+                if (srcset != null) {
+                    srcset = buildSrcset(query);
+                }
             }
+            initPlaceholder();
 
             buildJson();
         }
     }
 
+    /**
+     * Versions the image's URLs with the fingerprint of the image's content if requested by the {@link #PN_DESIGN_FINGERPRINT_URLS}
+     * policy, so that the URLs don't change when only the metadata of the image or of the component changes.
+     */
+    @CheckForNull
+    @Override
+    protected String getUrlVersion() {
+        if (fingerprintService != null && currentStyle.get(PN_DESIGN_FINGERPRINT_URLS, false)) {
+            Resource imageResource = assetInfo != null ? request.getResourceResolver().getResource(assetInfo.getPath()) :
+                    resource.getChild(DownloadResource.NN_FILE);
+            String fingerprint = imageResource != null ? fingerprintService.getFingerprint(imageResource, resource.getValueMap()) : null;
+            if (fingerprint != null) {
+                return fingerprint;
+            }
+        }
+        return super.getUrlVersion();
+    }
+
+    /**
+     * Looks up the placeholder requested by the {@link #PN_DESIGN_PLACEHOLDER} policy. The low quality image shows the whole original
+     * image, so cropped, rotated or flipped images only get the average colour. The placeholders are generated in the background, so
+     * the image is never decoded while it's rendered.
+     */
+    private void initPlaceholder() {
+        String placeholderType = currentStyle.get(PN_DESIGN_PLACEHOLDER, "");
+        if (placeholderService == null || (!PLACEHOLDER_COLOR.equals(placeholderType) && !PLACEHOLDER_IMAGE.equals(placeholderType))) {
+            return;
+        }
+        Resource imageResource;
+        long revision;
+        if (assetInfo != null) {
+            imageResource = request.getResourceResolver().getResource(assetInfo.getPath());
+            revision = assetInfo.getLastModified();
+        } else {
+            imageResource = resource.getChild(DownloadResource.NN_FILE);
+            revision = imageResource != null ? imageResource.getResourceMetadata().getModificationTime() : 0;
+        }
+        Placeholder placeholder = imageResource != null ? placeholderService.getPlaceholder(imageResource, revision) : null;
+        if (placeholder != null) {
+            placeholderColor = placeholder.getColor();
+            ValueMap componentProperties = resource.getValueMap();
+            boolean transformed = componentProperties.containsKey(ImageResource.PN_IMAGE_CROP) ||
+                    AdaptiveImageServlet.getRotation(componentProperties) % 360 != 0 ||
+                    componentProperties.get(PN_FLIP_HORIZONTAL, false) || componentProperties.get(PN_FLIP_VERTICAL, false);
+            if (PLACEHOLDER_IMAGE.equals(placeholderType) && !transformed) {
+                placeholderDataUri = placeholder.getDataUri();
+            }
+        }
+    }
+
+    /**
+     * Returns the {@code srcset}, {@code sizes} and intrinsic dimensions of the image. They only depend on the image's URLs, which
+     * already identify the component and its last modified date, on the policy's widths, on the layout and on the cropping and
+     * rotation of the image, so they are shared between requests; the request parameters are added to the {@code srcset} afterwards.
+     */
+    private ResponsiveImage getResponsiveImage(String sizes) {
+        ValueMap componentProperties = resource.getValueMap();
+        String key = srcUriTemplate + "|" + Arrays.toString(smartSizes) + "|" + sizes + "|" +
+                componentProperties.get(ImageResource.PN_IMAGE_CROP, "") + "|" + componentProperties.get(ImageResource.PN_IMAGE_ROTATE, "");
+        Supplier<ResponsiveImage> loader = () -> buildResponsiveImage(sizes);
+        return responsiveImageCache != null ? responsiveImageCache.get(key, loader) : loader.get();
+    }
+
+    /**
+     * Returns the responsive grid breakpoints of the current page. Pages usually inherit them from their template's structure, in
+     * which case they are cached per structure.
+     */
+    private List<LayoutSizes.Breakpoint> getBreakpoints() {
+        Resource pageContent = currentPage.getContentResource();
+        Resource pageResponsiveConfig = pageContent != null ? pageContent.getChild(LayoutSizes.NN_RESPONSIVE) : null;
+        if (pageResponsiveConfig != null) {
+            return LayoutSizes.getBreakpoints(pageResponsiveConfig);
+        }
+        Template template = currentPage.getTemplate();
+        Resource structure = template != null ? request.getResourceResolver().getResource(template.getPath() + "/" + NN_STRUCTURE + "/" +
+                JcrConstants.JCR_CONTENT) : null;
+        if (structure == null) {
+            return Collections.emptyList();
+        }
+        Supplier<List<LayoutSizes.Breakpoint>> loader = () -> LayoutSizes.getBreakpoints(structure.getChild(LayoutSizes.NN_RESPONSIVE));
+        if (responsiveImageCache == null) {
+            return loader.get();
+        }
+        Calendar structureLastModified = structure.getValueMap().get(NameConstants.PN_PAGE_LAST_MOD, Calendar.class);
+        String key = structure.getPath() + "|" + (structureLastModified != null ? structureLastModified.getTimeInMillis() : 0);
+        return responsiveImageCache.getBreakpoints(key, loader);
+    }
+
+    private ResponsiveImage buildResponsiveImage(String sizes) {
+        String srcset = smartSizes.length > 1 ? buildSrcset("") : null;
+        ImageHeader imageHeader = assetInfo != null ? null : ImageHeader.probe(resource.getChild(DownloadResource.NN_FILE));
+        int[] dimensions = AdaptiveImageServlet.getImageDimensions(resource.getValueMap(), imageHeader, assetInfo);
+        if (dimensions != null) {
+            return new ResponsiveImage(srcset, sizes, dimensions[0], dimensions[1]);
+        }
+        return new ResponsiveImage(srcset, sizes, 0, 0);
+    }
+
+    private String buildSrcset(@Nonnull String query) {
+        StringBuilder srcsetBuilder = new StringBuilder();
+        for (int i = 0; i < smartSizes.length; i++) {
+            if (i > 0) {
+                srcsetBuilder.append(", ");
+            }
+            srcsetBuilder.append(smartImages[i]).append(query).append(" ").append(smartSizes[i]).append("w");
+        }
+        return srcsetBuilder.toString();
+    }
+
     @Nonnull
     @Override
     public int[] getWidths() {
@@ -125,4 +258,36 @@ public class ImageImpl extends com.adobe.cq.wcm.core.components.internal.models.
         return !disableLazyLoading;
     }
 
+    @Override
+    public String getSrcset() {
+        return srcset;
+    }
+
+    @Override
+    public String getSizes() {
+        return responsiveImage != null ? responsiveImage.getSizes() : null;
+    }
+
+    @Override
+    public String getPlaceholder() {
+        return placeholderDataUri;
+    }
+
+    @Override
+    public String getPlaceholderColor() {
+        return placeholderColor;
+    }
+
+    @Override
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    public int getWidth() {
+        return responsiveImage != null ? responsiveImage.getWidth() : 0;
+    }
+
+    @Override
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    public int getHeight() {
+        return responsiveImage != null ? responsiveImage.getHeight() : 0;
+    }
+
 }
@@ -17,6 +17,7 @@ package com.adobe.cq.wcm.core.components.internal.models.v2;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Set;
 
 import javax.annotation.Nonnull;
 
@@ -27,6 +28,7 @@ import org.apache.sling.models.annotations.injectorspecific.Self;
 
 import com.adobe.cq.export.json.ComponentExporter;
 import com.adobe.cq.export.json.ExporterConstants;
+import com.adobe.cq.wcm.core.components.internal.models.v1.ListItemProjection;
 import com.adobe.cq.wcm.core.components.internal.models.v1.PageListItemImpl;
 import com.adobe.cq.wcm.core.components.models.List;
 import com.adobe.cq.wcm.core.components.models.ListItem;
@@ -42,15 +44,21 @@ public class ListImpl extends com.adobe.cq.wcm.core.components.internal.models.v
     @Self
     private SlingHttpServletRequest request;
 
+    /**
+     * {@inheritDoc}
+     *
+     * The items are exported with the properties requested by the {@value ListItemProjection#PARAM_FIELDS} parameter, if present.
+     */
     @Override
     @Nonnull
     @JsonProperty("items")
     public Collection<ListItem> getListItems() {
         Collection<ListItem> listItems = new ArrayList<>();
         Collection<Page> pages = getPages();
+        Set<String> fields = ListItemProjection.getRequestedFields(request);
         for (Page page : pages) {
             if (page != null) {
-                listItems.add(new PageListItemImpl(request, page));
+                listItems.add(ListItemProjection.of(new PageListItemImpl(request, page), fields));
             }
         }
         return listItems;
@@ -0,0 +1,61 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import java.util.List;
+import javax.annotation.Nonnull;
+
+import org.apache.sling.api.resource.ResourceResolver;
+
+/**
+ * Executes a search below several search roots in parallel, such as the language copies and live copies searched together by a
+ * search component, so that the search takes as long as the slowest root instead of the sum of all roots.
+ */
+public interface FederatedSearchExecutor {
+
+    /**
+     * Executes the {@code search} below each of the {@code searchRoots}, with a resource resolver of its own, and waits for all the
+     * searches until a common deadline. The results of the roots whose search failed or did not complete before the deadline are
+     * empty.
+     *
+     * @param searchRoots the paths of the pages under which the search is executed
+     * @param search      the search executed below each root
+     * @param <T>         the type of the results
+     * @return the results of each root, in the order of the roots
+     */
+    @Nonnull
+    <T> List<List<T>> execute(@Nonnull List<String> searchRoots, @Nonnull RootSearch<T> search);
+
+    /**
+     * The search executed below a single search root.
+     *
+     * @param <T> the type of the results
+     */
+    @FunctionalInterface
+    interface RootSearch<T> {
+
+        /**
+         * Executes the search below the {@code searchRoot}.
+         *
+         * @param resourceResolver the resource resolver to execute the search with, which is not shared with other threads
+         * @param searchRoot       the path of the page under which the search is executed
+         * @return the results
+         * @throws Exception if the search failed
+         */
+        @Nonnull
+        List<T> search(@Nonnull ResourceResolver resourceResolver, @Nonnull String searchRoot) throws Exception;
+    }
+}
@@ -0,0 +1,203 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nonnull;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link FederatedSearchExecutor} running the searches on a bounded thread pool. Resource resolvers are not thread-safe, so each
+ * search opens a resource resolver of its own for the {@value #SUBSERVICE} service user; callers are responsible for filtering the
+ * results by the user's access rights. When the pool's queue is full, the searches run in the calling thread; once the pool is shut
+ * down, the searches that are pending or can no longer be submitted return no results right away.
+ */
+@Designate(
+        ocd = FederatedSearchExecutorImpl.Config.class
+)
+@Component(
+        service = FederatedSearchExecutor.class
+)
+public class FederatedSearchExecutorImpl implements FederatedSearchExecutor {
+
+    static final String SUBSERVICE = "federated-search";
+    static final int DEFAULT_THREADS = 4;
+    static final int DEFAULT_QUEUE_SIZE = 100;
+    static final long DEFAULT_TIMEOUT = 3000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FederatedSearchExecutorImpl.class);
+
+    @ObjectClassDefinition(
+            name = "AEM Core WCM Components Federated Search Executor",
+            description = "Executes the searches of the search components configured with several search roots."
+    )
+    @interface Config {
+
+        @AttributeDefinition(
+                name = "Threads",
+                description = "The maximum number of searches executed in parallel, for all the requests."
+        )
+        int threads() default DEFAULT_THREADS;
+
+        @AttributeDefinition(
+                name = "Queue size",
+                description = "The maximum number of searches waiting for a thread. Further searches are executed by the requests' threads."
+        )
+        int queueSize() default DEFAULT_QUEUE_SIZE;
+
+        @AttributeDefinition(
+                name = "Timeout",
+                description = "The time, in milliseconds, after which the results of the roots whose search did not complete are " +
+                        "dropped."
+        )
+        long timeout() default DEFAULT_TIMEOUT;
+    }
+
+    @Reference
+    private ResourceResolverFactory resourceResolverFactory;
+
+    private volatile ThreadPoolExecutor executor;
+    private long timeout = DEFAULT_TIMEOUT;
+
+    @Activate
+    @Modified
+    void configure(Config config) {
+        shutdown();
+        int threads = Math.max(1, config.threads());
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, config.queueSize())), new SearchThreadFactory(),
+                new SearchRejectionHandler());
+        executor.allowCoreThreadTimeOut(true);
+        timeout = config.timeout() > 0 ? config.timeout() : DEFAULT_TIMEOUT;
+    }
+
+    @Deactivate
+    void shutdown() {
+        ThreadPoolExecutor pool = executor;
+        executor = null;
+        if (pool != null) {
+            // the searches still queued would never run: cancel them, so that their callers don't wait for the timeout
+            for (Runnable task : pool.shutdownNow()) {
+                if (task instanceof Future) {
+                    ((Future<?>) task).cancel(false);
+                }
+            }
+        }
+    }
+
+    @Nonnull
+    @Override
+    public <T> List<List<T>> execute(@Nonnull List<String> searchRoots, @Nonnull RootSearch<T> search) {
+        ThreadPoolExecutor pool = executor;
+        if (pool == null) {
+            throw new IllegalStateException("The federated search executor is not active.");
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        List<Future<List<T>>> futures = new ArrayList<>(searchRoots.size());
+        for (String searchRoot : searchRoots) {
+            try {
+                futures.add(pool.submit(() -> search(searchRoot, search)));
+            } catch (RejectedExecutionException e) {
+                LOGGER.debug("The federated search executor is shutting down; the search below {} is skipped.", searchRoot);
+                futures.add(null);
+            }
+        }
+        List<List<T>> results = new ArrayList<>(searchRoots.size());
+        for (int i = 0; i < futures.size(); i++) {
+            Future<List<T>> future = futures.get(i);
+            List<T> rootResults = Collections.emptyList();
+            if (future == null) {
+                results.add(rootResults);
+                continue;
+            }
+            try {
+                rootResults = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                LOGGER.warn("The search below {} did not complete within {}ms; its results are dropped.", searchRoots.get(i), timeout);
+                future.cancel(true);
+            } catch (CancellationException e) {
+                LOGGER.debug("The search below {} was cancelled by the shutdown of the federated search executor.", searchRoots.get(i));
+            } catch (ExecutionException e) {
+                LOGGER.error("Unable to search below {}.", searchRoots.get(i), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+            }
+            results.add(rootResults);
+        }
+        return results;
+    }
+
+    @Nonnull
+    private <T> List<T> search(@Nonnull String searchRoot, @Nonnull RootSearch<T> search) throws Exception {
+        try (ResourceResolver resourceResolver = resourceResolverFactory.getServiceResourceResolver(
+                Collections.singletonMap(ResourceResolverFactory.SUBSERVICE, SUBSERVICE))) {
+            return search.search(resourceResolver, searchRoot);
+        }
+    }
+
+    /**
+     * Runs the searches rejected by a full queue in the calling thread, and rejects the searches submitted once the pool is shut down
+     * (instead of silently discarding them, which would leave their futures incomplete).
+     */
+    private static final class SearchRejectionHandler implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(@Nonnull Runnable runnable, @Nonnull ThreadPoolExecutor pool) {
+            if (pool.isShutdown()) {
+                throw new RejectedExecutionException("The federated search executor is shut down.");
+            }
+            runnable.run();
+        }
+    }
+
+    private static final class SearchThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@Nonnull Runnable runnable) {
+            Thread thread = new Thread(runnable, "core-components-federated-search-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
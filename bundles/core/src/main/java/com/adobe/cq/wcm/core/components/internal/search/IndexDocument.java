@@ -0,0 +1,128 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * A page indexed by the {@link InvertedIndex}: the frequencies of the terms of its text, where each occurrence of a term counts as many
+ * times as the weight of the text it occurs in.
+ */
+final class IndexDocument {
+
+    static final int MAX_TERM_LENGTH = 64;
+
+    private static final Pattern MARKUP = Pattern.compile("<[^>]*>");
+
+    private final String path;
+    private final Map<String, Integer> frequencies = new HashMap<>();
+    private int length;
+
+    IndexDocument(@Nonnull String path) {
+        this.path = path;
+    }
+
+    /**
+     * Adds the terms of the {@code text}, each occurrence counting {@code weight} times.
+     */
+    @Nonnull
+    IndexDocument add(@Nullable String text, int weight) {
+        for (String term : tokenize(text)) {
+            addTerm(term, weight);
+        }
+        return this;
+    }
+
+    /**
+     * Adds {@code frequency} occurrences of the {@code term}.
+     */
+    void addTerm(@Nonnull String term, int frequency) {
+        frequencies.merge(term, frequency, Integer::sum);
+        length += frequency;
+    }
+
+    @Nonnull
+    String getPath() {
+        return path;
+    }
+
+    @Nonnull
+    Map<String, Integer> getFrequencies() {
+        return Collections.unmodifiableMap(frequencies);
+    }
+
+    /**
+     * Returns the weighted number of terms of the document, to which the term frequencies are normalised.
+     */
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * Splits the {@code text} into its terms: the sequences of letters and digits, lower-cased, without diacritics and truncated to
+     * {@value #MAX_TERM_LENGTH} characters.
+     */
+    @Nonnull
+    static List<String> tokenize(@Nullable String text) {
+        if (StringUtils.isEmpty(text)) {
+            return Collections.emptyList();
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD).toLowerCase(Locale.ROOT);
+        List<String> terms = new ArrayList<>();
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                if (term.length() < MAX_TERM_LENGTH) {
+                    term.append(c);
+                }
+            } else if (term.length() > 0) {
+                terms.add(term.toString());
+                term.setLength(0);
+            }
+        }
+        if (term.length() > 0) {
+            terms.add(term.toString());
+        }
+        return terms;
+    }
+
+    /**
+     * Returns the text of the {@code html}, without its tags and entities.
+     */
+    @Nullable
+    static String stripMarkup(@Nullable String html) {
+        if (html == null) {
+            return null;
+        }
+        return StringEscapeUtils.unescapeHtml4(MARKUP.matcher(html).replaceAll(" "));
+    }
+}
@@ -0,0 +1,295 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.annotation.Nonnull;
+
+/**
+ * An immutable part of the {@link InvertedIndex}, written once to a file which is then mapped in memory, so that the postings are read
+ * from the page cache of the operating system instead of the heap. A segment holds the documents indexed together, their postings,
+ * and the tombstones of the documents removed from the older segments.
+ *
+ * The file starts with a header (magic number, version, number of documents, terms and tombstones), followed by the tables of the
+ * offsets of the documents, of the terms in ascending order and of the tombstones. A document record holds its length and path; a term
+ * record holds the term, the number of its postings and, for each posting, the document number and the term frequency. A tombstone is
+ * either the path of a removed page, or the path of a removed tree followed by a slash. Strings are stored as their UTF-8 length and
+ * bytes.
+ */
+final class IndexSegment {
+
+    static final String FILE_PREFIX = "segment-";
+    static final String FILE_SUFFIX = ".idx";
+
+    private static final int MAGIC = 0x43434958;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 5 * Integer.BYTES;
+
+    private final long generation;
+    private final File file;
+    private final ByteBuffer buffer;
+    private final String[] paths;
+    private final int[] lengths;
+    private final int termCount;
+    private final int termTable;
+    private final List<String> tombstones;
+
+    private IndexSegment(long generation, @Nonnull File file, @Nonnull ByteBuffer buffer) throws IOException {
+        this.generation = generation;
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException(file + " is not an index segment.");
+        }
+        int documentCount = buffer.getInt(2 * Integer.BYTES);
+        termCount = buffer.getInt(3 * Integer.BYTES);
+        int tombstoneCount = buffer.getInt(4 * Integer.BYTES);
+        termTable = HEADER_SIZE + documentCount * Integer.BYTES;
+        int tombstoneTable = termTable + termCount * Integer.BYTES;
+        paths = new String[documentCount];
+        lengths = new int[documentCount];
+        for (int document = 0; document < documentCount; document++) {
+            int position = buffer.getInt(HEADER_SIZE + document * Integer.BYTES);
+            lengths[document] = buffer.getInt(position);
+            paths[document] = readString(position + Integer.BYTES);
+        }
+        List<String> tombstoneList = new ArrayList<>(tombstoneCount);
+        for (int tombstone = 0; tombstone < tombstoneCount; tombstone++) {
+            tombstoneList.add(readString(buffer.getInt(tombstoneTable + tombstone * Integer.BYTES)));
+        }
+        tombstones = Collections.unmodifiableList(tombstoneList);
+    }
+
+    /**
+     * Writes a segment holding the {@code documents} and the {@code tombstones} to the {@code directory}, and opens it.
+     */
+    @Nonnull
+    static IndexSegment write(@Nonnull File directory, long generation, @Nonnull Collection<IndexDocument> documents,
+                              @Nonnull Collection<String> tombstones) throws IOException {
+        List<IndexDocument> documentList = new ArrayList<>(documents);
+        Map<String, List<int[]>> postings = new TreeMap<>();
+        for (int document = 0; document < documentList.size(); document++) {
+            for (Map.Entry<String, Integer> frequency : documentList.get(document).getFrequencies().entrySet()) {
+                postings.computeIfAbsent(frequency.getKey(), term -> new ArrayList<>()).add(new int[] {document, frequency.getValue()});
+            }
+        }
+        int dataStart = HEADER_SIZE + (documentList.size() + postings.size() + tombstones.size()) * Integer.BYTES;
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        DataOutputStream dataOutput = new DataOutputStream(data);
+        List<Integer> offsets = new ArrayList<>();
+        for (IndexDocument document : documentList) {
+            offsets.add(dataStart + dataOutput.size());
+            dataOutput.writeInt(document.getLength());
+            writeString(dataOutput, document.getPath());
+        }
+        for (Map.Entry<String, List<int[]>> term : postings.entrySet()) {
+            offsets.add(dataStart + dataOutput.size());
+            writeString(dataOutput, term.getKey());
+            dataOutput.writeInt(term.getValue().size());
+            for (int[] posting : term.getValue()) {
+                dataOutput.writeInt(posting[0]);
+                dataOutput.writeInt(posting[1]);
+            }
+        }
+        for (String tombstone : tombstones) {
+            offsets.add(dataStart + dataOutput.size());
+            writeString(dataOutput, tombstone);
+        }
+        dataOutput.flush();
+
+        File file = new File(directory, getFileName(generation));
+        File temporaryFile = new File(directory, file.getName() + ".tmp");
+        try (OutputStream output = Files.newOutputStream(temporaryFile.toPath())) {
+            DataOutputStream headerOutput = new DataOutputStream(output);
+            headerOutput.writeInt(MAGIC);
+            headerOutput.writeInt(VERSION);
+            headerOutput.writeInt(documentList.size());
+            headerOutput.writeInt(postings.size());
+            headerOutput.writeInt(tombstones.size());
+            for (int offset : offsets) {
+                headerOutput.writeInt(offset);
+            }
+            headerOutput.flush();
+            data.writeTo(output);
+        }
+        try {
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return open(file);
+    }
+
+    /**
+     * Opens the segment stored in the {@code file}.
+     *
+     * @throws IOException if the file cannot be read or is not a segment
+     */
+    @Nonnull
+    static IndexSegment open(@Nonnull File file) throws IOException {
+        long generation = getGeneration(file);
+        if (generation < 0) {
+            throw new IOException(file + " is not an index segment.");
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // the mapping remains valid once the channel is closed
+            return new IndexSegment(generation, file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Returns the generation of the segment stored in the {@code file}, or {@code -1} if the file does not store a segment.
+     */
+    static long getGeneration(@Nonnull File file) {
+        String name = file.getName();
+        if (!name.startsWith(FILE_PREFIX) || !name.endsWith(FILE_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Nonnull
+    static String getFileName(long generation) {
+        return String.format("%s%019d%s", FILE_PREFIX, generation, FILE_SUFFIX);
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    @Nonnull
+    File getFile() {
+        return file;
+    }
+
+    int getDocumentCount() {
+        return paths.length;
+    }
+
+    @Nonnull
+    String getPath(int document) {
+        return paths[document];
+    }
+
+    int getLength(int document) {
+        return lengths[document];
+    }
+
+    @Nonnull
+    List<String> getTombstones() {
+        return tombstones;
+    }
+
+    int getTermCount() {
+        return termCount;
+    }
+
+    @Nonnull
+    String getTerm(int term) {
+        return readString(getTermPosition(term));
+    }
+
+    /**
+     * Returns the number of the {@code term}, or {@code -(insertion point) - 1} if the segment does not contain it.
+     */
+    int findTerm(@Nonnull String term) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = getTerm(middle).compareTo(term);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Returns the number of documents containing the {@code term}, including the deleted ones.
+     */
+    int getDocumentFrequency(int term) {
+        int position = getTermPosition(term);
+        return buffer.getInt(position + Integer.BYTES + buffer.getInt(position));
+    }
+
+    /**
+     * Calls the {@code visitor} with each posting of the {@code term}, in ascending document order.
+     */
+    void visitPostings(int term, @Nonnull PostingVisitor visitor) {
+        int position = getTermPosition(term);
+        position += Integer.BYTES + buffer.getInt(position);
+        int count = buffer.getInt(position);
+        position += Integer.BYTES;
+        for (int i = 0; i < count; i++, position += 2 * Integer.BYTES) {
+            visitor.visit(buffer.getInt(position), buffer.getInt(position + Integer.BYTES));
+        }
+    }
+
+    private int getTermPosition(int term) {
+        return buffer.getInt(termTable + term * Integer.BYTES);
+    }
+
+    @Nonnull
+    private String readString(int position) {
+        byte[] bytes = new byte[buffer.getInt(position)];
+        // relative reads on a duplicate, so that concurrent readers do not share a position
+        ByteBuffer reader = buffer.duplicate();
+        reader.position(position + Integer.BYTES);
+        reader.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(@Nonnull DataOutputStream output, @Nonnull String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Receives the postings of a term.
+     */
+    @FunctionalInterface
+    interface PostingVisitor {
+
+        void visit(int document, int frequency);
+    }
+}
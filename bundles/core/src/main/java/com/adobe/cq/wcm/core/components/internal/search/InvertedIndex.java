@@ -0,0 +1,494 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A full-text index of pages made of {@link IndexSegment segments} stored in a directory, ranking the pages found with BM25.
+ *
+ * Every update writes a new segment holding the documents updated and the tombstones of the pages removed; the older versions of the
+ * documents are marked as deleted in memory, the newest version of a document always winning. The newest segments are merged once
+ * {@value #MERGE_FACTOR} of them have similar sizes, so that each document is rewritten a number of times logarithmic in the size of
+ * the index, or once there are more segments than the configured maximum. Searches read an immutable snapshot of the segments and
+ * are not blocked by the updates.
+ */
+final class InvertedIndex {
+
+    static final double K1 = 1.2;
+    static final double B = 0.75;
+    static final int MAX_QUERY_TERMS = 32;
+    static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    /**
+     * The number of segments of a size tier merged together; the segments of a tier hold up to this many times the documents of the
+     * segments of the tier below.
+     */
+    static final int MERGE_FACTOR = 4;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InvertedIndex.class);
+    private static final Comparator<Candidate> BY_SCORE = Comparator.<Candidate>comparingDouble(candidate -> candidate.score).reversed()
+            .thenComparing(candidate -> candidate.path);
+
+    private final File directory;
+    private final int maxSegments;
+    private volatile Snapshot snapshot;
+
+    /**
+     * The location of the live version of each document, as the position of its segment in the snapshot in the high 32 bits and its
+     * document number in the low ones. The paths are sorted, so that the pages of a removed tree are found by a range lookup; only
+     * accessed with the lock of the index held.
+     */
+    private final NavigableMap<String, Long> locations = new TreeMap<>();
+    private long nextGeneration;
+    private boolean closed;
+
+    /**
+     * Opens the index stored in the {@code directory}, creating it if needed. The files which cannot be read are deleted.
+     */
+    InvertedIndex(@Nonnull File directory, int maxSegments) throws IOException {
+        this.directory = directory;
+        this.maxSegments = Math.max(1, maxSegments);
+        Files.createDirectories(directory.toPath());
+        List<IndexSegment> segments = new ArrayList<>();
+        File[] files = directory.listFiles();
+        for (File file : files != null ? files : new File[0]) {
+            if (IndexSegment.getGeneration(file) < 0) {
+                delete(file);
+                continue;
+            }
+            try {
+                segments.add(IndexSegment.open(file));
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Unable to read the index segment {}; it is deleted.", file, e);
+                delete(file);
+            }
+        }
+        segments.sort(Comparator.comparingLong(IndexSegment::getGeneration));
+        nextGeneration = segments.isEmpty() ? 1 : segments.get(segments.size() - 1).getGeneration() + 1;
+
+        // the documents of a segment are deleted by the newer versions and by the tombstones of the newer segments
+        List<BitSet> deleted = new ArrayList<>(Collections.nCopies(segments.size(), null));
+        Set<String> newerPaths = new HashSet<>();
+        List<String> newerTombstones = new ArrayList<>();
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            IndexSegment segment = segments.get(i);
+            BitSet segmentDeleted = new BitSet(segment.getDocumentCount());
+            for (int document = 0; document < segment.getDocumentCount(); document++) {
+                String path = segment.getPath(document);
+                if (!newerPaths.add(path) || isRemoved(path, newerTombstones)) {
+                    segmentDeleted.set(document);
+                }
+            }
+            deleted.set(i, segmentDeleted);
+            newerTombstones.addAll(segment.getTombstones());
+        }
+        int documents = 0;
+        int liveDocuments = 0;
+        long totalLength = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            IndexSegment segment = segments.get(i);
+            BitSet segmentDeleted = deleted.get(i);
+            documents += segment.getDocumentCount();
+            for (int document = segmentDeleted.nextClearBit(0); document < segment.getDocumentCount();
+                 document = segmentDeleted.nextClearBit(document + 1)) {
+                locations.put(segment.getPath(document), getLocation(i, document));
+                liveDocuments++;
+                totalLength += segment.getLength(document);
+            }
+        }
+        snapshot = new Snapshot(segments, deleted, documents, liveDocuments, totalLength);
+    }
+
+    /**
+     * Indexes the {@code documents}, replacing their previous version, and removes the {@code removedPages} and the pages of the
+     * {@code removedTrees}; the documents take precedence over the removals.
+     */
+    synchronized void update(@Nonnull Collection<IndexDocument> documents, @Nonnull Collection<String> removedPages,
+                             @Nonnull Collection<String> removedTrees) throws IOException {
+        if (documents.isEmpty() && removedPages.isEmpty() && removedTrees.isEmpty()) {
+            return;
+        }
+        if (closed) {
+            throw new IOException("The index stored in " + directory + " is closed.");
+        }
+        List<String> tombstones = new ArrayList<>(removedPages);
+        for (String removedTree : removedTrees) {
+            tombstones.add(removedTree);
+            tombstones.add(removedTree + "/");
+        }
+        IndexSegment segment = IndexSegment.write(directory, nextGeneration++, documents, tombstones);
+        // only the documents replaced or removed are looked up, so that an update costs what it changes, not the size of the index
+        List<Long> removedLocations = new ArrayList<>();
+        for (IndexDocument document : documents) {
+            removeLocation(document.getPath(), removedLocations);
+        }
+        for (String removedPage : removedPages) {
+            removeLocation(removedPage, removedLocations);
+        }
+        for (String removedTree : removedTrees) {
+            removeLocation(removedTree, removedLocations);
+            // '0' follows '/', so the range holds the paths below the tree
+            Map<String, Long> descendants = locations.subMap(removedTree + "/", removedTree + "0");
+            removedLocations.addAll(descendants.values());
+            descendants.clear();
+        }
+        Snapshot current = snapshot;
+        List<IndexSegment> segments = new ArrayList<>(current.segments);
+        List<BitSet> deleted = new ArrayList<>(current.deleted);
+        Set<Integer> copied = new HashSet<>();
+        int liveDocuments = current.liveDocuments;
+        long totalLength = current.totalLength;
+        for (long location : removedLocations) {
+            int i = (int) (location >>> 32);
+            int document = (int) location;
+            if (copied.add(i)) {
+                // the snapshot read by the searches is not modified
+                deleted.set(i, (BitSet) deleted.get(i).clone());
+            }
+            deleted.get(i).set(document);
+            liveDocuments--;
+            totalLength -= segments.get(i).getLength(document);
+        }
+        for (int document = 0; document < segment.getDocumentCount(); document++) {
+            locations.put(segment.getPath(document), getLocation(segments.size(), document));
+            liveDocuments++;
+            totalLength += segment.getLength(document);
+        }
+        segments.add(segment);
+        deleted.add(new BitSet());
+        snapshot = new Snapshot(segments, deleted, current.documents + segment.getDocumentCount(), liveDocuments, totalLength);
+        for (int from = findMerge(); from >= 0; from = findMerge()) {
+            merge(from);
+        }
+    }
+
+    /**
+     * Stops writing to the directory, once the update in progress, if any, is written.
+     */
+    synchronized void close() {
+        closed = true;
+    }
+
+    /**
+     * Returns the position of the oldest of the newest segments to merge, or {@code -1} if the segments are not to be merged. The
+     * newest segments are merged with the older segments of the same or of a lower size tier once there are {@value #MERGE_FACTOR} of
+     * them; when there are more segments than the maximum, enough of the newest segments are merged to get back to the maximum.
+     */
+    private int findMerge() {
+        Snapshot current = snapshot;
+        int count = current.segments.size();
+        if (count < 2) {
+            return -1;
+        }
+        int tier = getTier(current, count - 1);
+        int from = count - 1;
+        while (from > 0 && getTier(current, from - 1) <= tier) {
+            from--;
+        }
+        if (count - from >= MERGE_FACTOR) {
+            return from;
+        }
+        return count > maxSegments ? maxSegments - 1 : -1;
+    }
+
+    /**
+     * Returns the size tier of the {@code i}th segment, computed from its number of live documents.
+     */
+    private static int getTier(@Nonnull Snapshot snapshot, int i) {
+        int liveDocuments = snapshot.segments.get(i).getDocumentCount() - snapshot.deleted.get(i).cardinality();
+        return liveDocuments <= 1 ? 0 : (int) (Math.log(liveDocuments) / Math.log(MERGE_FACTOR));
+    }
+
+    /**
+     * Merges the segments from the {@code from}th one into a single one, without their deleted documents. The tombstones of the
+     * merged segments are kept, since they still apply to the older segments, unless all the segments are merged.
+     */
+    private void merge(int from) throws IOException {
+        Snapshot current = snapshot;
+        List<IndexDocument> documents = new ArrayList<>();
+        Set<String> tombstones = new LinkedHashSet<>();
+        int documentCount = current.documents;
+        long totalLength = current.totalLength;
+        for (int i = from; i < current.segments.size(); i++) {
+            IndexSegment segment = current.segments.get(i);
+            documentCount -= segment.getDocumentCount();
+            BitSet segmentDeleted = current.deleted.get(i);
+            IndexDocument[] segmentDocuments = new IndexDocument[segment.getDocumentCount()];
+            for (int document = segmentDeleted.nextClearBit(0); document < segmentDocuments.length;
+                 document = segmentDeleted.nextClearBit(document + 1)) {
+                segmentDocuments[document] = new IndexDocument(segment.getPath(document));
+                documents.add(segmentDocuments[document]);
+                totalLength -= segment.getLength(document);
+            }
+            for (int term = 0; term < segment.getTermCount(); term++) {
+                String termText = segment.getTerm(term);
+                segment.visitPostings(term, (document, frequency) -> {
+                    if (segmentDocuments[document] != null) {
+                        segmentDocuments[document].addTerm(termText, frequency);
+                    }
+                });
+            }
+            if (from > 0) {
+                tombstones.addAll(segment.getTombstones());
+            }
+        }
+        IndexSegment merged = IndexSegment.write(directory, nextGeneration++, documents, tombstones);
+        for (int document = 0; document < merged.getDocumentCount(); document++) {
+            locations.put(merged.getPath(document), getLocation(from, document));
+            totalLength += merged.getLength(document);
+        }
+        List<IndexSegment> segments = new ArrayList<>(current.segments.subList(0, from));
+        segments.add(merged);
+        List<BitSet> deleted = new ArrayList<>(current.deleted.subList(0, from));
+        deleted.add(new BitSet());
+        snapshot = new Snapshot(segments, deleted, documentCount + merged.getDocumentCount(), current.liveDocuments, totalLength);
+        for (IndexSegment segment : current.segments.subList(from, current.segments.size())) {
+            delete(segment.getFile());
+        }
+    }
+
+    /**
+     * Finds the documents below the {@code searchRoot} containing all the terms of the {@code fulltext}, the last term being
+     * considered as a prefix unless followed by a space, and returns those accepted by the {@code filter} by descending BM25 score.
+     *
+     * @param limit the maximum number of results, or {@code 0} for all of them
+     */
+    @Nonnull
+    List<SearchHit> search(@Nonnull String searchRoot, @Nonnull String fulltext, @Nonnull Predicate<String> filter, long offset,
+                           int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(IndexDocument.tokenize(fulltext)));
+        Snapshot current = snapshot;
+        if (terms.isEmpty() || current.liveDocuments == 0) {
+            return Collections.emptyList();
+        }
+        boolean prefixQuery = !Character.isWhitespace(fulltext.charAt(fulltext.length() - 1)) && terms.size() <= MAX_QUERY_TERMS;
+        if (terms.size() > MAX_QUERY_TERMS) {
+            terms = terms.subList(0, MAX_QUERY_TERMS);
+        }
+        double averageLength = (double) current.totalLength / current.liveDocuments;
+        String rootPrefix = searchRoot + "/";
+        Map<Long, Candidate> candidates = new HashMap<>();
+        for (int group = 0; group < terms.size(); group++) {
+            String term = terms.get(group);
+            Set<String> expansions = prefixQuery && group == terms.size() - 1 ? expand(current, term) : Collections.singleton(term);
+            int groupBit = 1 << group;
+            for (String expansion : expansions) {
+                int documentFrequency = 0;
+                int[] termNumbers = new int[current.segments.size()];
+                for (int i = 0; i < current.segments.size(); i++) {
+                    IndexSegment segment = current.segments.get(i);
+                    termNumbers[i] = segment.findTerm(expansion);
+                    if (termNumbers[i] >= 0) {
+                        documentFrequency += segment.getDocumentFrequency(termNumbers[i]);
+                    }
+                }
+                if (documentFrequency == 0) {
+                    continue;
+                }
+                // the deleted documents are counted in the frequencies as in the total, so that the ratio stays meaningful
+                double idf = Math.log(1 + (current.documents - documentFrequency + 0.5) / (documentFrequency + 0.5));
+                for (int i = 0; i < current.segments.size(); i++) {
+                    if (termNumbers[i] < 0) {
+                        continue;
+                    }
+                    IndexSegment segment = current.segments.get(i);
+                    BitSet segmentDeleted = current.deleted.get(i);
+                    long segmentKey = (long) i << 32;
+                    segment.visitPostings(termNumbers[i], (document, frequency) -> {
+                        if (segmentDeleted.get(document)) {
+                            return;
+                        }
+                        String path = segment.getPath(document);
+                        if (!path.equals(searchRoot) && !path.startsWith(rootPrefix)) {
+                            return;
+                        }
+                        double lengthRatio = segment.getLength(document) / averageLength;
+                        Candidate candidate = candidates.computeIfAbsent(segmentKey | document, key -> new Candidate(path));
+                        candidate.score += idf * frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * lengthRatio));
+                        candidate.groups |= groupBit;
+                    });
+                }
+            }
+        }
+        int allGroups = terms.size() == Integer.SIZE ? -1 : (1 << terms.size()) - 1;
+        List<Candidate> matches = new ArrayList<>();
+        for (Candidate candidate : candidates.values()) {
+            if (candidate.groups == allGroups) {
+                matches.add(candidate);
+            }
+        }
+        matches.sort(BY_SCORE);
+        List<SearchHit> hits = new ArrayList<>();
+        long skipped = 0;
+        for (Candidate candidate : matches) {
+            if (limit > 0 && hits.size() >= limit) {
+                break;
+            }
+            if (!filter.test(candidate.path)) {
+                continue;
+            }
+            if (skipped < offset) {
+                skipped++;
+                continue;
+            }
+            hits.add(new SearchHit(candidate.path, candidate.score));
+        }
+        return hits;
+    }
+
+    /**
+     * Returns the number of documents indexed.
+     */
+    int size() {
+        return snapshot.liveDocuments;
+    }
+
+    /**
+     * Returns the paths of the documents indexed.
+     */
+    @Nonnull
+    Set<String> getPaths() {
+        Snapshot current = snapshot;
+        Set<String> paths = new HashSet<>();
+        for (int i = 0; i < current.segments.size(); i++) {
+            IndexSegment segment = current.segments.get(i);
+            BitSet segmentDeleted = current.deleted.get(i);
+            for (int document = segmentDeleted.nextClearBit(0); document < segment.getDocumentCount();
+                 document = segmentDeleted.nextClearBit(document + 1)) {
+                paths.add(segment.getPath(document));
+            }
+        }
+        return paths;
+    }
+
+    int getSegmentCount() {
+        return snapshot.segments.size();
+    }
+
+    /**
+     * Returns the terms of the index starting with the {@code prefix}, up to {@value #MAX_PREFIX_EXPANSIONS} of them.
+     */
+    @Nonnull
+    private static Set<String> expand(@Nonnull Snapshot snapshot, @Nonnull String prefix) {
+        Set<String> terms = new TreeSet<>();
+        for (IndexSegment segment : snapshot.segments) {
+            int term = segment.findTerm(prefix);
+            if (term < 0) {
+                term = -term - 1;
+            }
+            for (; term < segment.getTermCount(); term++) {
+                String candidate = segment.getTerm(term);
+                if (!candidate.startsWith(prefix)) {
+                    break;
+                }
+                terms.add(candidate);
+            }
+        }
+        while (terms.size() > MAX_PREFIX_EXPANSIONS) {
+            // the shortest terms are the closest to the prefix
+            String longest = null;
+            for (String term : terms) {
+                if (longest == null || term.length() >= longest.length()) {
+                    longest = term;
+                }
+            }
+            terms.remove(longest);
+        }
+        return terms;
+    }
+
+    private void removeLocation(@Nonnull String path, @Nonnull List<Long> removedLocations) {
+        Long location = locations.remove(path);
+        if (location != null) {
+            removedLocations.add(location);
+        }
+    }
+
+    private static long getLocation(int segment, int document) {
+        return (long) segment << 32 | document;
+    }
+
+    private static boolean isRemoved(@Nonnull String path, @Nonnull Collection<String> tombstones) {
+        for (String tombstone : tombstones) {
+            if (tombstone.endsWith("/") ? path.startsWith(tombstone) : path.equals(tombstone)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void delete(@Nonnull File file) {
+        if (!file.delete() && file.exists()) {
+            // still mapped on some platforms
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * The segments searched together and their deleted documents.
+     */
+    private static final class Snapshot {
+        private final List<IndexSegment> segments;
+        private final List<BitSet> deleted;
+        private final int documents;
+        private final int liveDocuments;
+        private final long totalLength;
+
+        private Snapshot(@Nonnull List<IndexSegment> segments, @Nonnull List<BitSet> deleted, int documents, int liveDocuments,
+                         long totalLength) {
+            this.segments = Collections.unmodifiableList(new ArrayList<>(segments));
+            this.deleted = Collections.unmodifiableList(new ArrayList<>(deleted));
+            this.documents = documents;
+            this.liveDocuments = liveDocuments;
+            this.totalLength = totalLength;
+        }
+    }
+
+    /**
+     * A document containing some of the terms searched.
+     */
+    private static final class Candidate {
+        private final String path;
+        private double score;
+        private int groups;
+
+        private Candidate(String path) {
+            this.path = path;
+        }
+    }
+}
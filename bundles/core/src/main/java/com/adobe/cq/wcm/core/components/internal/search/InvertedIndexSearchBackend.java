@@ -0,0 +1,319 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.adobe.cq.wcm.core.components.internal.PageIndexer;
+import com.day.cq.tagging.Tag;
+import com.day.cq.wcm.api.Page;
+
+/**
+ * {@link SearchBackend} searching a local {@link InvertedIndex} of the titles, descriptions, tag titles and text components of the
+ * pages below the configured roots, stored in the bundle's data area unless another directory is configured.
+ *
+ * The index persisted by a previous activation is searched right away, while the {@link PageIndexer} indexes the pages again to catch
+ * up with the changes made in the meantime, and then the changes; the pages no longer found are removed once the pages are indexed,
+ * before the changes. The pages are read with the {@value #SUBSERVICE} service user, and the results are filtered by the access rights
+ * of the user searching.
+ */
+@Designate(
+        ocd = InvertedIndexSearchBackend.Config.class
+)
+@Component(
+        service = {SearchBackend.class, ResourceChangeListener.class},
+        property = {
+                ResourceChangeListener.CHANGES + "=ADDED",
+                ResourceChangeListener.CHANGES + "=CHANGED",
+                ResourceChangeListener.CHANGES + "=REMOVED"
+        }
+)
+public class InvertedIndexSearchBackend implements SearchBackend, ExternalResourceChangeListener {
+
+    /**
+     * The name by which the content policies select this backend.
+     */
+    public static final String NAME = "inverted-index";
+
+    static final String SUBSERVICE = "search-index";
+    static final String DEFAULT_ROOT = "/content";
+    static final String DATA_DIRECTORY = "search-index";
+    static final int DEFAULT_MAX_SEGMENTS = 10;
+    static final int BATCH_SIZE = 500;
+
+    static final int TITLE_WEIGHT = 3;
+    static final int DESCRIPTION_WEIGHT = 2;
+    static final int TAG_WEIGHT = 2;
+    static final int TEXT_WEIGHT = 1;
+
+    static final String[] TEXT_RESOURCE_TYPES = {"core/wcm/components/text/v1/text", "core/wcm/components/text/v2/text"};
+    static final String PN_TEXT = "text";
+    static final String PN_TEXT_IS_RICH = "textIsRich";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InvertedIndexSearchBackend.class);
+
+    @ObjectClassDefinition(
+            name = "AEM Core WCM Components Inverted Index Search Backend",
+            description = "Indexes the text of the pages for the search and list components whose policy selects the \"" + NAME +
+                    "\" search backend."
+    )
+    @interface Config {
+
+        @AttributeDefinition(
+                name = "Roots",
+                description = "The paths below which the pages are indexed."
+        )
+        String[] resource_paths() default {DEFAULT_ROOT};
+
+        @AttributeDefinition(
+                name = "Directory",
+                description = "The directory dedicated to the index files. Defaults to the data area of the bundle."
+        )
+        String directory() default "";
+
+        @AttributeDefinition(
+                name = "Maximum segments",
+                description = "The number of index segments, each written by an update, above which the newest ones are merged even " +
+                        "if their sizes differ. The segments of similar sizes are merged regardless."
+        )
+        int maxSegments() default DEFAULT_MAX_SEGMENTS;
+    }
+
+    @Reference
+    private ResourceResolverFactory resourceResolverFactory;
+
+    private volatile InvertedIndex index;
+    volatile PageIndexer indexer;
+
+    @Activate
+    @Modified
+    void configure(BundleContext bundleContext, Config config) {
+        shutdown();
+        File directory = StringUtils.isNotEmpty(config.directory()) ? new File(config.directory()) :
+                bundleContext.getDataFile(DATA_DIRECTORY);
+        if (directory == null) {
+            LOGGER.error("The bundle has no data area for the search index; no pages will be found.");
+            return;
+        }
+        try {
+            index = new InvertedIndex(directory, config.maxSegments());
+        } catch (IOException e) {
+            LOGGER.error("Unable to open the search index in {}; no pages will be found.", directory, e);
+            return;
+        }
+        indexer = new PageIndexer("core-components-search-index", "pages for the search", config.resource_paths(), this::reindex);
+    }
+
+    /**
+     * Stops the indexing and waits for the indexing thread to terminate, then closes the index, so that the index files are no longer
+     * written once the directory is opened again.
+     */
+    @Deactivate
+    void shutdown() {
+        PageIndexer currentIndexer = indexer;
+        indexer = null;
+        if (currentIndexer != null) {
+            currentIndexer.shutdown();
+        }
+        InvertedIndex currentIndex = index;
+        index = null;
+        if (currentIndex != null) {
+            currentIndex.close();
+        }
+    }
+
+    @Nonnull
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Nonnull
+    @Override
+    public List<SearchHit> search(@Nonnull ResourceResolver resourceResolver, @Nonnull String searchRoot, @Nonnull String fulltext,
+                                  long offset, int limit) {
+        InvertedIndex currentIndex = index;
+        if (currentIndex == null) {
+            return Collections.emptyList();
+        }
+        return currentIndex.search(searchRoot, fulltext, path -> resourceResolver.getResource(path) != null, offset, limit);
+    }
+
+    @Override
+    public void onChange(@Nonnull List<ResourceChange> changes) {
+        PageIndexer currentIndexer = indexer;
+        if (currentIndexer != null) {
+            currentIndexer.submit(() -> update(currentIndexer, changes));
+        }
+    }
+
+    private void update(@Nonnull PageIndexer currentIndexer, @Nonnull List<ResourceChange> changes) {
+        InvertedIndex currentIndex = index;
+        if (currentIndex == null) {
+            return;
+        }
+        Map<String, IndexDocument> documents = new LinkedHashMap<>();
+        Set<String> removedPages = new LinkedHashSet<>();
+        Set<String> removedTrees = new LinkedHashSet<>();
+        try (ResourceResolver resourceResolver = getServiceResourceResolver()) {
+            currentIndexer.update(resourceResolver, changes, new PageIndexer.Target() {
+                @Override
+                public void index(@Nonnull Page page) {
+                    documents.put(page.getPath(), toDocument(page));
+                    removedPages.remove(page.getPath());
+                }
+
+                @Override
+                public void remove(@Nonnull String path) {
+                    documents.remove(path);
+                    removedPages.add(path);
+                }
+
+                @Override
+                public void removeTree(@Nonnull String path) {
+                    String treePrefix = path + "/";
+                    documents.keySet().removeIf(pagePath -> pagePath.equals(path) || pagePath.startsWith(treePrefix));
+                    removedTrees.add(path);
+                }
+            });
+            currentIndex.update(documents.values(), removedPages, removedTrees);
+        } catch (LoginException e) {
+            LOGGER.error("Unable to open a resource resolver for the {} service user; the search index is not updated.", SUBSERVICE, e);
+        } catch (IOException e) {
+            LOGGER.error("Unable to update the search index.", e);
+        }
+    }
+
+    /**
+     * Indexes all the pages below the roots, in batches, then removes the pages which no longer exist from the index.
+     */
+    private void reindex(@Nonnull PageIndexer currentIndexer) {
+        InvertedIndex currentIndex = index;
+        if (currentIndex == null) {
+            return;
+        }
+        Set<String> indexedPaths = new HashSet<>();
+        List<IndexDocument> batch = new ArrayList<>();
+        try (ResourceResolver resourceResolver = getServiceResourceResolver()) {
+            currentIndexer.indexRoots(resourceResolver, page -> {
+                indexedPaths.add(page.getPath());
+                batch.add(toDocument(page));
+                if (batch.size() >= BATCH_SIZE) {
+                    update(currentIndex, batch);
+                }
+            });
+            update(currentIndex, batch);
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            Set<String> stalePaths = currentIndex.getPaths();
+            stalePaths.removeAll(indexedPaths);
+            currentIndex.update(Collections.emptyList(), stalePaths, Collections.emptyList());
+            LOGGER.info("Indexed {} pages for the search.", currentIndex.size());
+        } catch (LoginException e) {
+            LOGGER.error("Unable to open a resource resolver for the {} service user; the search index is not rebuilt.", SUBSERVICE, e);
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.error("Unable to rebuild the search index.", e);
+        }
+    }
+
+    @Nonnull
+    private ResourceResolver getServiceResourceResolver() throws LoginException {
+        return resourceResolverFactory.getServiceResourceResolver(
+                Collections.singletonMap(ResourceResolverFactory.SUBSERVICE, SUBSERVICE));
+    }
+
+    @Nonnull
+    private IndexDocument toDocument(@Nonnull Page page) {
+        IndexDocument document = new IndexDocument(page.getPath())
+                .add(page.getTitle(), TITLE_WEIGHT)
+                .add(page.getDescription(), DESCRIPTION_WEIGHT);
+        for (Tag tag : page.getTags()) {
+            document.add(tag.getTitle(), TAG_WEIGHT);
+        }
+        Resource contentResource = page.getContentResource();
+        if (contentResource != null) {
+            addText(document, contentResource);
+        }
+        return document;
+    }
+
+    /**
+     * Adds the text of the text components contained by the {@code resource}.
+     */
+    private void addText(@Nonnull IndexDocument document, @Nonnull Resource resource) {
+        for (Resource child : resource.getChildren()) {
+            if (isText(child)) {
+                ValueMap properties = child.getValueMap();
+                String text = properties.get(PN_TEXT, String.class);
+                document.add(properties.get(PN_TEXT_IS_RICH, false) ? IndexDocument.stripMarkup(text) : text, TEXT_WEIGHT);
+            } else {
+                addText(document, child);
+            }
+        }
+    }
+
+    private static boolean isText(@Nonnull Resource resource) {
+        ResourceResolver resourceResolver = resource.getResourceResolver();
+        for (String resourceType : TEXT_RESOURCE_TYPES) {
+            if (resourceResolver.isResourceType(resource, resourceType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void update(@Nonnull InvertedIndex index, @Nonnull List<IndexDocument> batch) {
+        try {
+            index.update(batch, Collections.emptyList(), Collections.emptyList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        batch.clear();
+    }
+}
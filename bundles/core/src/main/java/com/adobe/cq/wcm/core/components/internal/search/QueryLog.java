@@ -0,0 +1,82 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import java.util.Map;
+import java.util.function.Predicate;
+import javax.annotation.Nonnull;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+
+import com.day.cq.search.result.SearchResult;
+import com.day.cq.tagging.TagManager;
+
+/**
+ * Executes the queries issued by the components and records their execution time and number of hits, so that the component
+ * instances issuing expensive queries can be identified. The queries slower than the configured threshold are logged with their plan.
+ */
+public interface QueryLog {
+
+    /**
+     * Executes a query built with the query builder, or a simple search, and records it.
+     *
+     * @param componentPath    the path of the component issuing the query
+     * @param predicates       the predicates of the query
+     * @param resourceResolver the resource resolver executing the query, with which its plan is captured
+     * @param search           executes the query
+     * @param <E>              the type of the exception thrown by the query
+     * @return the result of the query
+     * @throws E if the query failed
+     */
+    @Nonnull
+    <E extends Exception> SearchResult getResult(@Nonnull String componentPath, @Nonnull Map<String, String> predicates,
+                                                 @Nonnull ResourceResolver resourceResolver, @Nonnull Search<E> search) throws E;
+
+    /**
+     * Finds the resources tagged with the {@code tags} below the {@code basePath}, passes them to the {@code visitor} and records the
+     * query. The tag manager executes its query while the resources are iterated, so the recorded time includes the iteration and the
+     * recorded hits are the resources visited; the total number of resources found is never computed.
+     *
+     * @param componentPath the path of the component issuing the query
+     * @param tagManager    the tag manager executing the query
+     * @param basePath      the path below which the resources are found
+     * @param tags          the tags of the resources
+     * @param matchAny      {@code true} if the resources must have any of the tags, {@code false} for all of them
+     * @param visitor       receives the resources found, in the order returned by {@link TagManager#find(String, String[], boolean)},
+     *                      and returns {@code false} once it doesn't need more resources
+     */
+    void find(@Nonnull String componentPath, @Nonnull TagManager tagManager, @Nonnull String basePath, @Nonnull String[] tags,
+              boolean matchAny, @Nonnull Predicate<Resource> visitor);
+
+    /**
+     * A query returning a search result.
+     *
+     * @param <E> the type of the exception thrown by the query
+     */
+    @FunctionalInterface
+    interface Search<E extends Exception> {
+
+        /**
+         * Executes the query.
+         *
+         * @return the result of the query
+         * @throws E if the query failed
+         */
+        @Nonnull
+        SearchResult execute() throws E;
+    }
+}
@@ -0,0 +1,275 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.Query;
+import javax.jcr.query.RowIterator;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.day.cq.commons.RangeIterator;
+import com.day.cq.search.result.Hit;
+import com.day.cq.search.result.SearchResult;
+import com.day.cq.tagging.TagManager;
+
+/**
+ * {@link QueryLog} logging the queries slower than the configured threshold with their plan, as explained by the query engine, and
+ * keeping the most recent of them in a ring buffer exposed through JMX. The other queries are only logged at debug level.
+ */
+@Designate(
+        ocd = QueryLogImpl.Config.class
+)
+@Component(
+        service = {QueryLog.class, QueryLogMBean.class},
+        property = {
+                "jmx.objectname=com.adobe.cq.wcm.core.components:type=Query Log"
+        }
+)
+public class QueryLogImpl implements QueryLog, QueryLogMBean {
+
+    static final long DEFAULT_THRESHOLD = 500;
+    static final int DEFAULT_CAPACITY = 100;
+
+    static final String PREDICATE_PATH = "path";
+    static final String PREDICATE_TAGS = "tagid";
+    static final String PREDICATE_TAGS_OR = "tagid.or";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryLogImpl.class);
+    private static final String EXPLAIN = "explain ";
+    private static final String PLAN_COLUMN = "plan";
+    private static final String[] ITEMS = {"id", "time", "component", "predicates", "duration", "hits", "statement", "plan"};
+    private static final OpenType<?>[] ITEM_TYPES = {SimpleType.LONG, SimpleType.DATE, SimpleType.STRING, SimpleType.STRING,
+            SimpleType.LONG, SimpleType.LONG, SimpleType.STRING, SimpleType.STRING};
+
+    @ObjectClassDefinition(
+            name = "AEM Core WCM Components Query Log",
+            description = "Records the queries issued by the search and list components, logging the slow ones with their plan."
+    )
+    @interface Config {
+
+        @AttributeDefinition(
+                name = "Threshold",
+                description = "The execution time, in milliseconds, above which a query is logged with its plan and kept for JMX."
+        )
+        long threshold() default DEFAULT_THRESHOLD;
+
+        @AttributeDefinition(
+                name = "Capacity",
+                description = "The number of most recent slow queries kept for JMX."
+        )
+        int capacity() default DEFAULT_CAPACITY;
+
+        @AttributeDefinition(
+                name = "Explain",
+                description = "Captures the plan of the slow queries by explaining them to the query engine."
+        )
+        boolean explain() default true;
+    }
+
+    private final AtomicLong queryCount = new AtomicLong();
+    private final AtomicLong slowQueryCount = new AtomicLong();
+    private final Deque<SlowQuery> slowQueries = new ArrayDeque<>();
+
+    private long threshold = DEFAULT_THRESHOLD;
+    private int capacity = DEFAULT_CAPACITY;
+    private boolean explain = true;
+
+    LongSupplier clock = System::nanoTime;
+
+    @Activate
+    @Modified
+    void configure(Config config) {
+        threshold = Math.max(0, config.threshold());
+        capacity = Math.max(1, config.capacity());
+        explain = config.explain();
+        synchronized (slowQueries) {
+            while (slowQueries.size() > capacity) {
+                slowQueries.removeFirst();
+            }
+        }
+    }
+
+    @Nonnull
+    @Override
+    public <E extends Exception> SearchResult getResult(@Nonnull String componentPath, @Nonnull Map<String, String> predicates,
+                                                        @Nonnull ResourceResolver resourceResolver, @Nonnull Search<E> search) throws E {
+        long start = clock.getAsLong();
+        SearchResult result = search.execute();
+        long duration = clock.getAsLong() - start;
+        List<Hit> hits = result.getHits();
+        record(componentPath, predicates, duration, hits != null ? hits.size() : -1, result.getQueryStatement(), resourceResolver);
+        return result;
+    }
+
+    @Override
+    public void find(@Nonnull String componentPath, @Nonnull TagManager tagManager, @Nonnull String basePath, @Nonnull String[] tags,
+                     boolean matchAny, @Nonnull Predicate<Resource> visitor) {
+        long start = clock.getAsLong();
+        long hits = 0;
+        RangeIterator<Resource> resources = tagManager.find(basePath, tags, matchAny);
+        if (resources != null) {
+            // the query is executed lazily, while the resources are iterated
+            while (resources.hasNext()) {
+                hits++;
+                if (!visitor.test(resources.next())) {
+                    break;
+                }
+            }
+        }
+        long duration = clock.getAsLong() - start;
+        Map<String, String> predicates = new LinkedHashMap<>();
+        predicates.put(PREDICATE_PATH, basePath);
+        predicates.put(PREDICATE_TAGS, StringUtils.join(tags, ","));
+        predicates.put(PREDICATE_TAGS_OR, Boolean.toString(matchAny));
+        // the tag manager does not expose its statement, so the plan cannot be captured
+        record(componentPath, predicates, duration, hits, null, null);
+    }
+
+    @Override
+    public long getQueryCount() {
+        return queryCount.get();
+    }
+
+    @Override
+    public long getSlowQueryCount() {
+        return slowQueryCount.get();
+    }
+
+    @Override
+    public TabularData getSlowQueries() throws OpenDataException {
+        CompositeType rowType = new CompositeType("SlowQuery", "A slow query", ITEMS, ITEMS, ITEM_TYPES);
+        TabularDataSupport data = new TabularDataSupport(new TabularType("SlowQueries", "The most recent slow queries", rowType,
+                new String[] {"id"}));
+        synchronized (slowQueries) {
+            for (SlowQuery query : slowQueries) {
+                data.put(new CompositeDataSupport(rowType, ITEMS, new Object[] {query.id, new Date(query.time), query.componentPath,
+                        query.predicates, query.duration, query.hits, query.statement, query.plan}));
+            }
+        }
+        return data;
+    }
+
+    @Override
+    public void clear() {
+        synchronized (slowQueries) {
+            slowQueries.clear();
+        }
+    }
+
+    private void record(@Nonnull String componentPath, @Nonnull Map<String, String> predicates, long duration, long hits,
+                        @Nullable String statement, @Nullable ResourceResolver resourceResolver) {
+        long id = queryCount.incrementAndGet();
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(duration);
+        String sortedPredicates = new TreeMap<>(predicates).toString();
+        if (durationMillis < threshold) {
+            LOGGER.debug("Query issued by {} took {}ms for {} hits: {}", componentPath, durationMillis, hits, sortedPredicates);
+            return;
+        }
+        slowQueryCount.incrementAndGet();
+        String plan = explain && resourceResolver != null ? explain(statement, resourceResolver) : null;
+        LOGGER.warn("Slow query issued by {} took {}ms for {} hits: {}\nStatement: {}\nPlan: {}", componentPath, durationMillis, hits,
+                sortedPredicates, statement, plan);
+        SlowQuery slowQuery = new SlowQuery(id, System.currentTimeMillis(), componentPath, sortedPredicates, durationMillis, hits,
+                statement, plan);
+        synchronized (slowQueries) {
+            if (slowQueries.size() >= capacity) {
+                slowQueries.removeFirst();
+            }
+            slowQueries.addLast(slowQuery);
+        }
+    }
+
+    /**
+     * Returns the plan of the XPath {@code statement}, or {@code null} if it cannot be explained.
+     */
+    @CheckForNull
+    private static String explain(@Nullable String statement, @Nonnull ResourceResolver resourceResolver) {
+        Session session = resourceResolver.adaptTo(Session.class);
+        if (StringUtils.isEmpty(statement) || session == null) {
+            return null;
+        }
+        try {
+            Query query = session.getWorkspace().getQueryManager().createQuery(EXPLAIN + statement, Query.XPATH);
+            RowIterator rows = query.execute().getRows();
+            if (rows.hasNext()) {
+                return rows.nextRow().getValue(PLAN_COLUMN).getString();
+            }
+        } catch (RepositoryException | RuntimeException e) {
+            LOGGER.debug("Unable to explain {}.", statement, e);
+        }
+        return null;
+    }
+
+    /**
+     * A query slower than the threshold.
+     */
+    private static final class SlowQuery {
+        private final long id;
+        private final long time;
+        private final String componentPath;
+        private final String predicates;
+        private final long duration;
+        private final long hits;
+        private final String statement;
+        private final String plan;
+
+        private SlowQuery(long id, long time, String componentPath, String predicates, long duration, long hits,
+                          @Nullable String statement, @Nullable String plan) {
+            this.id = id;
+            this.time = time;
+            this.componentPath = componentPath;
+            this.predicates = predicates;
+            this.duration = duration;
+            this.hits = hits;
+            this.statement = statement;
+            this.plan = plan;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.TabularData;
+
+/**
+ * Management interface of the {@link QueryLog}.
+ */
+public interface QueryLogMBean {
+
+    /**
+     * @return the number of queries recorded
+     */
+    long getQueryCount();
+
+    /**
+     * @return the number of queries slower than the threshold
+     */
+    long getSlowQueryCount();
+
+    /**
+     * @return the most recent queries slower than the threshold, with their time, component, predicates, duration, number of hits,
+     * statement and plan
+     * @throws OpenDataException if the queries cannot be represented
+     */
+    TabularData getSlowQueries() throws OpenDataException;
+
+    /**
+     * Removes all the slow queries.
+     */
+    void clear();
+}
@@ -0,0 +1,168 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import javax.annotation.Nonnull;
+
+/**
+ * Compressed prefix tree mapping string keys to sets of values: the chains of nodes with a single child are merged into one edge,
+ * so that the number of nodes is bounded by twice the number of keys. The tree is not thread safe.
+ *
+ * @param <V> the type of the values
+ */
+final class RadixTree<V> {
+
+    private final Node<V> root = new Node<>("");
+
+    /**
+     * Associates the {@code value} with the {@code key}.
+     */
+    void put(@Nonnull String key, @Nonnull V value) {
+        Node<V> node = root;
+        int index = 0;
+        while (index < key.length()) {
+            Node<V> child = node.children.get(key.charAt(index));
+            if (child == null) {
+                child = new Node<>(key.substring(index));
+                node.children.put(key.charAt(index), child);
+                node = child;
+                break;
+            }
+            int common = commonPrefixLength(child.label, key, index);
+            if (common < child.label.length()) {
+                Node<V> intermediate = new Node<>(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                intermediate.children.put(child.label.charAt(0), child);
+                node.children.put(intermediate.label.charAt(0), intermediate);
+                child = intermediate;
+            }
+            node = child;
+            index += common;
+        }
+        if (node.values.isEmpty()) {
+            node.values = new LinkedHashSet<>(2);
+        }
+        node.values.add(value);
+    }
+
+    /**
+     * Removes the association of the {@code value} with the {@code key}, pruning the nodes left without values and merging the
+     * edges left with a single child.
+     */
+    void remove(@Nonnull String key, @Nonnull V value) {
+        Deque<Node<V>> path = new ArrayDeque<>();
+        Node<V> node = root;
+        int index = 0;
+        while (index < key.length()) {
+            path.push(node);
+            node = node.children.get(key.charAt(index));
+            if (node == null || !key.startsWith(node.label, index)) {
+                return;
+            }
+            index += node.label.length();
+        }
+        if (!node.values.remove(value)) {
+            return;
+        }
+        while (!path.isEmpty() && node.values.isEmpty() && node.children.size() <= 1) {
+            Node<V> parent = path.pop();
+            if (node.children.isEmpty()) {
+                parent.children.remove(node.label.charAt(0));
+            } else {
+                Node<V> child = node.children.values().iterator().next();
+                child.label = node.label + child.label;
+                parent.children.put(child.label.charAt(0), child);
+            }
+            node = parent;
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} values associated with the keys starting with the {@code prefix} and accepted by the
+     * {@code filter}, in the lexicographic order of their keys.
+     */
+    @Nonnull
+    Set<V> find(@Nonnull String prefix, @Nonnull Predicate<V> filter, int limit) {
+        Set<V> result = new LinkedHashSet<>();
+        Node<V> node = root;
+        int index = 0;
+        while (index < prefix.length()) {
+            node = node.children.get(prefix.charAt(index));
+            if (node == null) {
+                return result;
+            }
+            int common = commonPrefixLength(node.label, prefix, index);
+            if (common < node.label.length() && index + common < prefix.length()) {
+                return result;
+            }
+            index += common;
+        }
+        Deque<Iterator<Node<V>>> stack = new ArrayDeque<>();
+        collect(node, filter, limit, result);
+        stack.push(node.children.values().iterator());
+        while (!stack.isEmpty() && result.size() < limit) {
+            Iterator<Node<V>> children = stack.peek();
+            if (children.hasNext()) {
+                Node<V> child = children.next();
+                collect(child, filter, limit, result);
+                stack.push(child.children.values().iterator());
+            } else {
+                stack.pop();
+            }
+        }
+        return result;
+    }
+
+    private static <V> void collect(@Nonnull Node<V> node, @Nonnull Predicate<V> filter, int limit, @Nonnull Set<V> result) {
+        for (V value : node.values) {
+            if (result.size() >= limit) {
+                return;
+            }
+            if (filter.test(value)) {
+                result.add(value);
+            }
+        }
+    }
+
+    private static int commonPrefixLength(@Nonnull String label, @Nonnull String key, int offset) {
+        int length = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < length && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static final class Node<V> {
+
+        private String label;
+        private final Map<Character, Node<V>> children = new TreeMap<>();
+        private Set<V> values = Collections.emptySet();
+
+        private Node(@Nonnull String label) {
+            this.label = label;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import java.util.Collection;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.ResourceResolver;
+
+/**
+ * A full-text search engine finding the pages for the search component and the list component, selected by name through their content
+ * policy instead of the repository's query engine.
+ */
+public interface SearchBackend {
+
+    /**
+     * Returns the name by which the content policies select this backend.
+     *
+     * @return the name of the backend
+     */
+    @Nonnull
+    String getName();
+
+    /**
+     * Finds the pages below the {@code searchRoot} matching the {@code fulltext}, by descending relevance. Only the pages the
+     * {@code resourceResolver} can read are returned.
+     *
+     * @param resourceResolver the resource resolver of the user searching
+     * @param searchRoot       the path of the page under which the pages are searched, included
+     * @param fulltext         the search term
+     * @param offset           the number of results to skip
+     * @param limit            the maximum number of results, or {@code 0} for all of them
+     * @return the pages found
+     */
+    @Nonnull
+    List<SearchHit> search(@Nonnull ResourceResolver resourceResolver, @Nonnull String searchRoot, @Nonnull String fulltext, long offset,
+                           int limit);
+
+    /**
+     * Returns the backend of the {@code backends} with the given {@code name}, or {@code null} if there is none or the name is empty.
+     *
+     * @param backends the available backends
+     * @param name     the name of the backend, as configured in a content policy
+     * @return the backend, or {@code null}
+     */
+    @CheckForNull
+    static SearchBackend select(@Nullable Collection<SearchBackend> backends, @Nullable String name) {
+        if (backends == null || StringUtils.isEmpty(name)) {
+            return null;
+        }
+        for (SearchBackend backend : backends) {
+            if (name.equals(backend.getName())) {
+                return backend;
+            }
+        }
+        return null;
+    }
+}
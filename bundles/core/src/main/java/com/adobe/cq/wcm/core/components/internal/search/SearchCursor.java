@@ -0,0 +1,147 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+import java.util.Calendar;
+import java.util.Objects;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.sling.api.resource.Resource;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.wcm.api.Page;
+
+/**
+ * Position in the results of a search ordered by descending page creation date and ascending page path, used to resume the search
+ * after the last page returned instead of skipping the results already returned. Clients receive the cursor as an opaque token.
+ */
+public final class SearchCursor implements Comparable<SearchCursor> {
+
+    /**
+     * The cursor of the first page of results.
+     */
+    public static final SearchCursor START = new SearchCursor(Long.MAX_VALUE, "");
+
+    private static final char SEPARATOR = ':';
+    private static final DateTimeFormatter ISO_8601 = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX").withZone(ZoneOffset.UTC);
+
+    private final long created;
+    private final String path;
+
+    SearchCursor(long created, @Nonnull String path) {
+        this.created = created;
+        this.path = path;
+    }
+
+    /**
+     * Returns the cursor positioned after the {@code page}, or {@code null} if the page's creation date is unknown.
+     *
+     * @param page the last page returned
+     * @return the cursor positioned after the page
+     */
+    @CheckForNull
+    public static SearchCursor after(@Nonnull Page page) {
+        Resource pageResource = page.adaptTo(Resource.class);
+        Calendar created = pageResource != null ? pageResource.getValueMap().get(JcrConstants.JCR_CREATED, Calendar.class) : null;
+        if (created == null) {
+            return null;
+        }
+        return new SearchCursor(created.getTimeInMillis(), page.getPath());
+    }
+
+    /**
+     * Parses a token returned by {@link #toToken()}. The empty token designates the first page of results.
+     *
+     * @param token the token
+     * @return the cursor
+     * @throws IllegalArgumentException if the token is not valid
+     */
+    @Nonnull
+    public static SearchCursor parse(@Nonnull String token) {
+        if (token.isEmpty()) {
+            return START;
+        }
+        String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        int separator = value.indexOf(SEPARATOR);
+        if (separator < 0 || !value.startsWith("/", separator + 1)) {
+            throw new IllegalArgumentException("Invalid search cursor: " + token);
+        }
+        return new SearchCursor(Long.parseLong(value.substring(0, separator)), value.substring(separator + 1));
+    }
+
+    /**
+     * @return the opaque token of this cursor
+     */
+    @Nonnull
+    public String toToken() {
+        if (this == START) {
+            return "";
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString((created + String.valueOf(SEPARATOR) + path)
+                .getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return {@code true} if this cursor designates the first page of results
+     */
+    public boolean isStart() {
+        return this == START;
+    }
+
+    /**
+     * @return the creation date of the last page returned, formatted as the upper bound of a date range predicate
+     */
+    @Nonnull
+    public String getUpperBound() {
+        return ISO_8601.format(Instant.ofEpochMilli(created));
+    }
+
+    /**
+     * Compares the positions of two cursors in the results: the cursors of the pages created last come first, the cursors of the
+     * pages created at the same time are ordered by path.
+     *
+     * @param other the other cursor
+     * @return a negative integer, zero, or a positive integer as this cursor comes before, at or after the {@code other} cursor
+     */
+    @Override
+    public int compareTo(@Nonnull SearchCursor other) {
+        int result = Long.compare(other.created, created);
+        return result != 0 ? result : path.compareTo(other.path);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SearchCursor that = (SearchCursor) o;
+        return created == that.created && path.equals(that.path);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(created, path);
+    }
+}
@@ -0,0 +1,61 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import javax.annotation.Nonnull;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+
+/**
+ * Protects the repository from the searches executed on behalf of anonymous clients: the cost of each search is estimated and charged
+ * to the client's rate limit, and the number of searches executed concurrently is capped.
+ */
+public interface SearchGuard {
+
+    /**
+     * Requests the permission to execute a search. The returned permit has to be closed once the search was executed.
+     *
+     * @param request     the request triggering the search, identifying the client
+     * @param fulltext    the search term
+     * @param offset      the index of the first result
+     * @param subtreeSize the number of pages below the search root, or a negative number if unknown
+     * @return the permit, granted or not
+     */
+    @Nonnull
+    Permit tryAcquire(@Nonnull SlingHttpServletRequest request, @Nonnull String fulltext, long offset, int subtreeSize);
+
+    /**
+     * The permission to execute a search.
+     */
+    interface Permit extends AutoCloseable {
+
+        /**
+         * @return {@code true} if the search can be executed
+         */
+        boolean isGranted();
+
+        /**
+         * @return the number of seconds after which the client should retry, if the permit was not granted
+         */
+        long getRetryAfter();
+
+        /**
+         * Releases the permit.
+         */
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,294 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * {@link SearchGuard} charging the estimated cost of the searches to a token bucket per client, identified by a request header set by a
+ * trusted proxy or, if enabled, by its IP address. Behind a dispatcher or a CDN, all the clients share the proxy's IP address, so the
+ * searches are only limited per client once one of them is configured. The counters are exposed through JMX.
+ */
+@Designate(
+        ocd = SearchGuardImpl.Config.class
+)
+@Component(
+        service = {SearchGuard.class, SearchGuardMBean.class},
+        property = {
+                "jmx.objectname=com.adobe.cq.wcm.core.components:type=Search Guard"
+        }
+)
+public class SearchGuardImpl implements SearchGuard, SearchGuardMBean {
+
+    static final int DEFAULT_BUCKET_CAPACITY = 100;
+    static final double DEFAULT_REFILL_RATE = 10;
+    static final int DEFAULT_MAX_CONCURRENT_SEARCHES = 10;
+    static final int MAX_CLIENTS = 10000;
+
+    /**
+     * Search terms shorter than this, wildcards excluded, match too many pages to be cheap.
+     */
+    static final int SHORT_TERM_LENGTH = 4;
+
+    @ObjectClassDefinition(
+            name = "AEM Core WCM Components Search Guard",
+            description = "Limits the rate and the concurrency of the searches executed by the search component's servlet."
+    )
+    @interface Config {
+
+        @AttributeDefinition(
+                name = "Bucket capacity",
+                description = "The maximum cost of the searches a client can execute in a burst. A simple search costs between 2 and " +
+                        "10, depending on the length of the search term, on the offset of the results and on the size of the search root."
+        )
+        int bucketCapacity() default DEFAULT_BUCKET_CAPACITY;
+
+        @AttributeDefinition(
+                name = "Refill rate",
+                description = "The cost of the searches a client can execute per second, sustained."
+        )
+        double refillRate() default DEFAULT_REFILL_RATE;
+
+        @AttributeDefinition(
+                name = "Maximum concurrent searches",
+                description = "The maximum number of searches executed concurrently, for all the clients. Set to 0 for no limit."
+        )
+        int maxConcurrentSearches() default DEFAULT_MAX_CONCURRENT_SEARCHES;
+
+        @AttributeDefinition(
+                name = "Client header",
+                description = "The request header identifying the client, set by the dispatcher or the CDN in front of the instance, " +
+                        "such as True-Client-IP. The first value of the header is used, so the header must be overwritten by the proxy " +
+                        "rather than appended to. Leave empty to identify the clients by their IP address, if enabled, or not to limit " +
+                        "the rate of the searches per client."
+        )
+        String clientHeader() default "";
+
+        @AttributeDefinition(
+                name = "Limit by IP address",
+                description = "Identifies the clients by their IP address when the client header is not configured or not sent. Only " +
+                        "enable this if the clients connect directly to the instance: behind a dispatcher or a CDN, all of them share " +
+                        "the proxy's IP address, and therefore a single bucket, and would be rejected together."
+        )
+        boolean limitByRemoteAddress() default false;
+    }
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong concurrencyLimited = new AtomicLong();
+
+    private Cache<String, TokenBucket> buckets = buildCache();
+    private Semaphore concurrency = new Semaphore(DEFAULT_MAX_CONCURRENT_SEARCHES);
+    private int maxConcurrentSearches = DEFAULT_MAX_CONCURRENT_SEARCHES;
+    private int bucketCapacity = DEFAULT_BUCKET_CAPACITY;
+    private double refillRate = DEFAULT_REFILL_RATE;
+    private String clientHeader = "";
+    private boolean limitByRemoteAddress;
+
+    LongSupplier clock = System::nanoTime;
+
+    @Activate
+    @Modified
+    void configure(Config config) {
+        bucketCapacity = Math.max(1, config.bucketCapacity());
+        refillRate = config.refillRate() > 0 ? config.refillRate() : DEFAULT_REFILL_RATE;
+        maxConcurrentSearches = Math.max(0, config.maxConcurrentSearches());
+        concurrency = new Semaphore(maxConcurrentSearches);
+        clientHeader = StringUtils.trimToEmpty(config.clientHeader());
+        limitByRemoteAddress = config.limitByRemoteAddress();
+        buckets = buildCache();
+    }
+
+    @Nonnull
+    private static Cache<String, TokenBucket> buildCache() {
+        return CacheBuilder.newBuilder().maximumSize(MAX_CLIENTS).expireAfterAccess(10, TimeUnit.MINUTES).build();
+    }
+
+    @Nonnull
+    @Override
+    public Permit tryAcquire(@Nonnull SlingHttpServletRequest request, @Nonnull String fulltext, long offset, int subtreeSize) {
+        int cost = Math.min(estimateCost(fulltext, offset, subtreeSize), bucketCapacity);
+        String client = getClient(request);
+        if (client != null) {
+            TokenBucket bucket = buckets.asMap().computeIfAbsent(client, key -> new TokenBucket(bucketCapacity, clock.getAsLong()));
+            long wait = bucket.tryConsume(cost, bucketCapacity, refillRate, clock.getAsLong());
+            if (wait > 0) {
+                rateLimited.incrementAndGet();
+                return new RejectedPermit(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1)));
+            }
+        }
+        Semaphore currentConcurrency = concurrency;
+        if (maxConcurrentSearches > 0 && !currentConcurrency.tryAcquire()) {
+            concurrencyLimited.incrementAndGet();
+            return new RejectedPermit(1);
+        }
+        admitted.incrementAndGet();
+        return new GrantedPermit(maxConcurrentSearches > 0 ? currentConcurrency : null);
+    }
+
+    /**
+     * Estimates the cost of a search: short search terms and wildcards match many pages, deep offsets force the query engine to read
+     * and skip all the preceding results, and large search roots contain many pages to match.
+     */
+    static int estimateCost(@Nonnull String fulltext, long offset, int subtreeSize) {
+        int cost = 1;
+        String significant = fulltext.replaceAll("[\\s*?~\"]", "");
+        cost += 2 * Math.max(0, SHORT_TERM_LENGTH - significant.length());
+        if (StringUtils.containsAny(fulltext, '*', '?')) {
+            cost += 4;
+        }
+        cost += (int) Math.min(offset / 100, 20);
+        cost += subtreeSize < 0 ? 3 : (int) Math.ceil(Math.log10(subtreeSize + 1d));
+        return cost;
+    }
+
+    /**
+     * Returns the key of the client's token bucket, or {@code null} if the client cannot be identified and the search is not to be
+     * limited per client.
+     */
+    @CheckForNull
+    private String getClient(@Nonnull SlingHttpServletRequest request) {
+        if (!clientHeader.isEmpty()) {
+            String header = request.getHeader(clientHeader);
+            if (StringUtils.isNotBlank(header)) {
+                return StringUtils.substringBefore(header, ",").trim();
+            }
+        }
+        return limitByRemoteAddress ? StringUtils.defaultString(request.getRemoteAddr()) : null;
+    }
+
+    @Override
+    public long getAdmittedCount() {
+        return admitted.get();
+    }
+
+    @Override
+    public long getRateLimitedCount() {
+        return rateLimited.get();
+    }
+
+    @Override
+    public long getConcurrencyLimitedCount() {
+        return concurrencyLimited.get();
+    }
+
+    @Override
+    public int getActiveCount() {
+        return maxConcurrentSearches > 0 ? maxConcurrentSearches - concurrency.availablePermits() : 0;
+    }
+
+    @Override
+    public long getClientCount() {
+        return buckets.size();
+    }
+
+    /**
+     * Token bucket refilled continuously at the refill rate, up to its capacity.
+     */
+    private static final class TokenBucket {
+
+        private double tokens;
+        private long updated;
+
+        private TokenBucket(int capacity, long now) {
+            this.tokens = capacity;
+            this.updated = now;
+        }
+
+        /**
+         * Consumes the {@code cost} from the bucket if it contains enough tokens and returns 0, or returns the number of nanoseconds
+         * after which it will.
+         */
+        private synchronized long tryConsume(int cost, int capacity, double refillRate, long now) {
+            tokens = Math.min(capacity, tokens + (now - updated) * refillRate / TimeUnit.SECONDS.toNanos(1));
+            updated = now;
+            if (tokens >= cost) {
+                tokens -= cost;
+                return 0;
+            }
+            return (long) Math.ceil((cost - tokens) / refillRate * TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    private static final class GrantedPermit implements Permit {
+
+        private final Semaphore semaphore;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private GrantedPermit(Semaphore semaphore) {
+            this.semaphore = semaphore;
+        }
+
+        @Override
+        public boolean isGranted() {
+            return true;
+        }
+
+        @Override
+        public long getRetryAfter() {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+            if (semaphore != null && released.compareAndSet(false, true)) {
+                semaphore.release();
+            }
+        }
+    }
+
+    private static final class RejectedPermit implements Permit {
+
+        private final long retryAfter;
+
+        private RejectedPermit(long retryAfter) {
+            this.retryAfter = retryAfter;
+        }
+
+        @Override
+        public boolean isGranted() {
+            return false;
+        }
+
+        @Override
+        public long getRetryAfter() {
+            return retryAfter;
+        }
+
+        @Override
+        public void close() {
+            // nothing to release
+        }
+    }
+}
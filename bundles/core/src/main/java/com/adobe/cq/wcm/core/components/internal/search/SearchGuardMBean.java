@@ -0,0 +1,47 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+/**
+ * Management interface of the {@link SearchGuard}.
+ */
+public interface SearchGuardMBean {
+
+    /**
+     * @return the number of searches executed
+     */
+    long getAdmittedCount();
+
+    /**
+     * @return the number of searches rejected because the client exceeded its rate limit
+     */
+    long getRateLimitedCount();
+
+    /**
+     * @return the number of searches rejected because too many searches were executing
+     */
+    long getConcurrencyLimitedCount();
+
+    /**
+     * @return the number of searches executing
+     */
+    int getActiveCount();
+
+    /**
+     * @return the number of clients whose rate limit is tracked
+     */
+    long getClientCount();
+}
@@ -0,0 +1,56 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A page found by a {@link SearchBackend}, with its relevance.
+ */
+public final class SearchHit {
+
+    private final String path;
+    private final double score;
+
+    public SearchHit(@Nonnull String path, double score) {
+        this.path = path;
+        this.score = score;
+    }
+
+    /**
+     * Returns the path of the page found.
+     *
+     * @return the path of the page
+     */
+    @Nonnull
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the relevance of the page for the search term, only comparable with the scores of the same search.
+     *
+     * @return the score of the page
+     */
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return path + " (" + score + ")";
+    }
+}
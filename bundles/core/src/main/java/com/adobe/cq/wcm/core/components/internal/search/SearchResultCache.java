@@ -0,0 +1,48 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import java.util.List;
+import java.util.function.Supplier;
+import javax.annotation.Nonnull;
+
+/**
+ * Caches the paths of the pages found by the searches of the search component, so that repeated searches, such as the ones sent while
+ * users type, don't execute the same queries over and over again. The pages are read again for each request, with the access rights
+ * of the requesting user.
+ */
+public interface SearchResultCache {
+
+    /**
+     * Returns the paths of the pages found by the search identified by the {@code key}, executing the search through the
+     * {@code loader} if its results are not cached.
+     *
+     * @param key    the key of the search
+     * @param loader executes the search
+     * @return the paths of the pages found by the search
+     */
+    @Nonnull
+    List<String> getResults(@Nonnull SearchResultKey key, @Nonnull Supplier<List<String>> loader);
+
+    /**
+     * Returns the version of the content seen by the cache, which changes whenever cached results are invalidated. The versions of
+     * different instances of the cache never match.
+     *
+     * @return the version of the content
+     */
+    @Nonnull
+    String getVersion();
+}
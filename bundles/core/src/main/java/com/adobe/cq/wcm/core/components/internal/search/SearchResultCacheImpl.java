@@ -0,0 +1,148 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import java.util.List;
+import java.util.function.Supplier;
+import javax.annotation.Nonnull;
+
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+import com.adobe.cq.wcm.core.components.internal.PathListCache;
+
+/**
+ * {@link SearchResultCache} keeping the page paths in a {@link PathListCache}. The results of a search are invalidated by the resource
+ * changes (local or from other cluster nodes) below any of its search roots, or of their ancestors, and expire after a configurable
+ * time as well.
+ *
+ * The cache statistics are exposed through JMX.
+ */
+@Designate(
+        ocd = SearchResultCacheImpl.Config.class
+)
+@Component(
+        service = {SearchResultCache.class, SearchResultCacheMBean.class, ResourceChangeListener.class},
+        property = {
+                "jmx.objectname=com.adobe.cq.wcm.core.components:type=Search Result Cache",
+                ResourceChangeListener.PATHS + "=" + SearchResultCacheImpl.CONTENT_ROOT,
+                ResourceChangeListener.CHANGES + "=ADDED",
+                ResourceChangeListener.CHANGES + "=CHANGED",
+                ResourceChangeListener.CHANGES + "=REMOVED"
+        }
+)
+public class SearchResultCacheImpl implements SearchResultCache, SearchResultCacheMBean, ExternalResourceChangeListener {
+
+    static final String CONTENT_ROOT = "/content";
+    static final String DAM_ROOT = "/content/dam";
+    static final int DEFAULT_MAX_PATHS = 100000;
+    static final int DEFAULT_TIME_TO_LIVE = 300;
+
+    @ObjectClassDefinition(
+            name = "AEM Core WCM Components Search Result Cache",
+            description = "Caches the page paths found by the search component's queries."
+    )
+    @interface Config {
+
+        @AttributeDefinition(
+                name = "Maximum cached paths",
+                description = "The maximum number of page paths, over all the cached searches, kept in memory. Set to 0 to disable the " +
+                        "cache."
+        )
+        int maxPaths() default DEFAULT_MAX_PATHS;
+
+        @AttributeDefinition(
+                name = "Time to live",
+                description = "The number of seconds after which the results of a search are executed again, even if no page below " +
+                        "the search root changed."
+        )
+        int timeToLive() default DEFAULT_TIME_TO_LIVE;
+    }
+
+    private volatile PathListCache<SearchResultKey> cache = new PathListCache<>(DEFAULT_MAX_PATHS, DEFAULT_TIME_TO_LIVE, false);
+
+    @Activate
+    @Modified
+    void configure(Config config) {
+        cache = new PathListCache<>(config.maxPaths(), config.timeToLive(), false);
+    }
+
+    @Nonnull
+    @Override
+    public List<String> getResults(@Nonnull SearchResultKey key, @Nonnull Supplier<List<String>> loader) {
+        return cache.get(key, loader);
+    }
+
+    @Nonnull
+    @Override
+    public String getVersion() {
+        return cache.getVersion();
+    }
+
+    @Override
+    public void onChange(@Nonnull List<ResourceChange> changes) {
+        for (ResourceChange change : changes) {
+            invalidate(change.getPath());
+        }
+    }
+
+    /**
+     * Invalidates the results of the searches having a root that contains the {@code path}, or is contained by it.
+     */
+    private void invalidate(@Nonnull String path) {
+        if (PathListCache.isDescendant(DAM_ROOT, path)) {
+            return;
+        }
+        cache.invalidate(key -> key.getSearchRoots().stream().anyMatch(searchRoot -> PathListCache.isRelated(searchRoot, path)));
+    }
+
+    @Override
+    public double getHitRatio() {
+        return cache.getHitRatio();
+    }
+
+    @Override
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
+    @Override
+    public long getSize() {
+        return cache.getSize();
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+    }
+}
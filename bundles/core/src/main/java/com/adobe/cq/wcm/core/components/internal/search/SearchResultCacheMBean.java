@@ -0,0 +1,52 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+/**
+ * Management interface of the {@link SearchResultCache}.
+ */
+public interface SearchResultCacheMBean {
+
+    /**
+     * @return the ratio of the searches answered from the cache
+     */
+    double getHitRatio();
+
+    /**
+     * @return the number of searches answered from the cache
+     */
+    long getHitCount();
+
+    /**
+     * @return the number of searches executed because their results were not cached
+     */
+    long getMissCount();
+
+    /**
+     * @return the number of cached results evicted because of the size limit or of their age
+     */
+    long getEvictionCount();
+
+    /**
+     * @return the number of cached searches
+     */
+    long getSize();
+
+    /**
+     * Removes all the cached results.
+     */
+    void clear();
+}
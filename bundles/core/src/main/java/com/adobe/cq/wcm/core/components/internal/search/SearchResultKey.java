@@ -0,0 +1,152 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.TreeSet;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jackrabbit.api.JackrabbitSession;
+import org.apache.jackrabbit.api.security.user.Authorizable;
+import org.apache.jackrabbit.api.security.user.Group;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Identifies the results of a search: the search roots, the normalised search term, the requested page of results (by offset or by
+ * cursor) and the principals
+ * whose access rights determine which pages the user can see, so that users with the same principals share the cached results.
+ */
+public final class SearchResultKey {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchResultKey.class);
+
+    private final List<String> searchRoots;
+    private final String fulltext;
+    private final long offset;
+    private final int resultsSize;
+    private final String cursor;
+    private final String aclFingerprint;
+
+    SearchResultKey(@Nonnull List<String> searchRoots, @Nonnull String fulltext, long offset, int resultsSize, @Nullable String cursor,
+                    @Nonnull String aclFingerprint) {
+        this.searchRoots = Collections.unmodifiableList(new ArrayList<>(searchRoots));
+        this.fulltext = normalize(fulltext);
+        this.offset = offset;
+        this.resultsSize = resultsSize;
+        this.cursor = cursor;
+        this.aclFingerprint = aclFingerprint;
+    }
+
+    /**
+     * Creates the key of a search executed with the {@code resourceResolver}'s access rights.
+     *
+     * @param resourceResolver the resource resolver executing the search
+     * @param searchRoots      the paths of the pages under which the search is executed
+     * @param fulltext         the search term
+     * @param offset           the index of the first result
+     * @param resultsSize      the maximum number of results
+     * @param cursor           the position after which the results are requested, or {@code null} if they are requested by offset
+     * @return the key
+     */
+    @Nonnull
+    public static SearchResultKey create(@Nonnull ResourceResolver resourceResolver, @Nonnull List<String> searchRoots,
+                                         @Nonnull String fulltext, long offset, int resultsSize, @Nullable SearchCursor cursor) {
+        return new SearchResultKey(searchRoots, fulltext, offset, resultsSize, cursor != null ? cursor.toToken() : null,
+                getAclFingerprint(resourceResolver));
+    }
+
+    @Nonnull
+    public List<String> getSearchRoots() {
+        return searchRoots;
+    }
+
+    /**
+     * Fulltext searches are neither case nor whitespace sensitive.
+     */
+    @Nonnull
+    static String normalize(@Nonnull String fulltext) {
+        return StringUtils.normalizeSpace(fulltext).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns a digest of the principals of the {@code resourceResolver}'s user: the user itself and the groups it is a member of. If
+     * the principals cannot be read, the digest of the user ID is returned, so that the results are not shared with other users.
+     */
+    @Nonnull
+    public static String getAclFingerprint(@Nonnull ResourceResolver resourceResolver) {
+        String userId = StringUtils.defaultString(resourceResolver.getUserID());
+        TreeSet<String> principals = new TreeSet<>();
+        Session session = resourceResolver.adaptTo(Session.class);
+        if (session instanceof JackrabbitSession) {
+            try {
+                Authorizable user = ((JackrabbitSession) session).getUserManager().getAuthorizable(userId);
+                if (user != null) {
+                    principals.add(user.getPrincipal().getName());
+                    Iterator<Group> groups = user.memberOf();
+                    while (groups.hasNext()) {
+                        Principal principal = groups.next().getPrincipal();
+                        principals.add(principal.getName());
+                    }
+                }
+            } catch (RepositoryException e) {
+                LOGGER.debug("Unable to read the principals of user {}.", userId, e);
+                principals.clear();
+            }
+        }
+        if (principals.isEmpty()) {
+            principals.add("user:" + userId);
+        }
+        return Hashing.sha1().hashString(String.join("\n", principals), StandardCharsets.UTF_8).toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SearchResultKey that = (SearchResultKey) o;
+        return offset == that.offset && resultsSize == that.resultsSize && searchRoots.equals(that.searchRoots) &&
+                fulltext.equals(that.fulltext) && Objects.equals(cursor, that.cursor) && aclFingerprint.equals(that.aclFingerprint);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(searchRoots, fulltext, offset, resultsSize, cursor, aclFingerprint);
+    }
+
+    @Override
+    public String toString() {
+        return String.join(",", searchRoots) + "|" + fulltext + "|" + offset + "|" + resultsSize + "|" + cursor;
+    }
+}
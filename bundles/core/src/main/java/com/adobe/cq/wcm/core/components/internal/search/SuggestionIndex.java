@@ -0,0 +1,46 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import java.util.List;
+import javax.annotation.Nonnull;
+
+/**
+ * In-memory index of the titles, navigation titles and tag titles of the pages, answering the prefix queries of the search
+ * component's suggestions without querying the repository.
+ */
+public interface SuggestionIndex {
+
+    /**
+     * Returns the paths of the pages below the {@code searchRoot} with a title, navigation title or tag title containing a word
+     * starting with the {@code prefix}, in the lexicographic order of the matched titles. The pages are not checked for read access.
+     *
+     * @param searchRoot the path of the page under which the suggestions are looked up
+     * @param prefix     the prefix typed by the user
+     * @param limit      the maximum number of suggestions
+     * @return the paths of the suggested pages
+     */
+    @Nonnull
+    List<String> suggest(@Nonnull String searchRoot, @Nonnull String prefix, int limit);
+
+    /**
+     * Returns the number of indexed pages below the {@code searchRoot}, including the search root itself.
+     *
+     * @param searchRoot the path of the search root
+     * @return the number of pages
+     */
+    int countPages(@Nonnull String searchRoot);
+}
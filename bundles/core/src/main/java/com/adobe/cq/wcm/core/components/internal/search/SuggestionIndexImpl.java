@@ -0,0 +1,282 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.adobe.cq.wcm.core.components.internal.PageIndexer;
+import com.day.cq.tagging.Tag;
+import com.day.cq.wcm.api.Page;
+
+/**
+ * {@link SuggestionIndex} of the pages below the configured roots, maintained by a {@link PageIndexer}; until the index is built, only
+ * the pages indexed so far are suggested. The pages are read with the {@value #SUBSERVICE} service user.
+ *
+ * Every title is indexed from each of its words, so that "Yoda is back" is suggested for both "yo" and "ba".
+ */
+@Designate(
+        ocd = SuggestionIndexImpl.Config.class
+)
+@Component(
+        service = {SuggestionIndex.class, ResourceChangeListener.class},
+        property = {
+                ResourceChangeListener.CHANGES + "=ADDED",
+                ResourceChangeListener.CHANGES + "=CHANGED",
+                ResourceChangeListener.CHANGES + "=REMOVED"
+        }
+)
+public class SuggestionIndexImpl implements SuggestionIndex, ExternalResourceChangeListener {
+
+    static final String SUBSERVICE = "search-index";
+    static final String DEFAULT_ROOT = "/content";
+    static final int MAX_KEY_LENGTH = 64;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SuggestionIndexImpl.class);
+
+    @ObjectClassDefinition(
+            name = "AEM Core WCM Components Search Suggestion Index",
+            description = "Indexes the page titles, navigation titles and tag titles suggested by the search component."
+    )
+    @interface Config {
+
+        @AttributeDefinition(
+                name = "Roots",
+                description = "The paths below which the pages are indexed."
+        )
+        String[] resource_paths() default {DEFAULT_ROOT};
+    }
+
+    @Reference
+    private ResourceResolverFactory resourceResolverFactory;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final RadixTree<String> tree = new RadixTree<>();
+    private final Map<String, Set<String>> keysByPage = new HashMap<>();
+    private final Map<String, Integer> pageCounts = new ConcurrentHashMap<>();
+
+    volatile PageIndexer indexer;
+
+    @Activate
+    @Modified
+    void configure(Config config) {
+        shutdown();
+        lock.writeLock().lock();
+        try {
+            keysByPage.keySet().forEach(this::removeKeys);
+            keysByPage.clear();
+        } finally {
+            pageCounts.clear();
+            lock.writeLock().unlock();
+        }
+        indexer = new PageIndexer("core-components-search-suggestions", "search suggestions", config.resource_paths(), this::build);
+    }
+
+    @Deactivate
+    void shutdown() {
+        PageIndexer currentIndexer = indexer;
+        indexer = null;
+        if (currentIndexer != null) {
+            currentIndexer.shutdown();
+        }
+    }
+
+    private void build(@Nonnull PageIndexer currentIndexer) {
+        try (ResourceResolver resourceResolver = getServiceResourceResolver()) {
+            currentIndexer.indexRoots(resourceResolver, this::index);
+        } catch (LoginException e) {
+            LOGGER.error("Unable to open a resource resolver for the {} service user; no suggestions will be available.", SUBSERVICE, e);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public List<String> suggest(@Nonnull String searchRoot, @Nonnull String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        String rootPrefix = searchRoot + "/";
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(tree.find(key, path -> path.equals(searchRoot) || path.startsWith(rootPrefix), limit));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int countPages(@Nonnull String searchRoot) {
+        return pageCounts.computeIfAbsent(searchRoot, root -> {
+            String rootPrefix = root + "/";
+            lock.readLock().lock();
+            try {
+                return (int) keysByPage.keySet().stream().filter(path -> path.equals(root) || path.startsWith(rootPrefix)).count();
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    @Override
+    public void onChange(@Nonnull List<ResourceChange> changes) {
+        PageIndexer currentIndexer = indexer;
+        if (currentIndexer != null) {
+            currentIndexer.submit(() -> update(currentIndexer, changes));
+        }
+    }
+
+    private void update(@Nonnull PageIndexer currentIndexer, @Nonnull List<ResourceChange> changes) {
+        try (ResourceResolver resourceResolver = getServiceResourceResolver()) {
+            currentIndexer.update(resourceResolver, changes, new PageIndexer.Target() {
+                @Override
+                public void index(@Nonnull Page page) {
+                    SuggestionIndexImpl.this.index(page);
+                }
+
+                @Override
+                public void remove(@Nonnull String path) {
+                    SuggestionIndexImpl.this.remove(path);
+                }
+
+                @Override
+                public void removeTree(@Nonnull String path) {
+                    SuggestionIndexImpl.this.removeTree(path);
+                }
+            });
+        } catch (LoginException e) {
+            LOGGER.error("Unable to open a resource resolver for the {} service user; the suggestions are not updated.", SUBSERVICE, e);
+        }
+    }
+
+    @Nonnull
+    private ResourceResolver getServiceResourceResolver() throws LoginException {
+        return resourceResolverFactory.getServiceResourceResolver(
+                Collections.singletonMap(ResourceResolverFactory.SUBSERVICE, SUBSERVICE));
+    }
+
+    private void index(@Nonnull Page page) {
+        Set<String> keys = new LinkedHashSet<>();
+        addKeys(keys, page.getTitle());
+        addKeys(keys, page.getNavigationTitle());
+        for (Tag tag : page.getTags()) {
+            addKeys(keys, tag.getTitle());
+        }
+        String path = page.getPath();
+        lock.writeLock().lock();
+        try {
+            removeKeys(path);
+            if (keys.isEmpty()) {
+                keysByPage.remove(path);
+            } else {
+                keysByPage.put(path, keys);
+                for (String key : keys) {
+                    tree.put(key, path);
+                }
+            }
+        } finally {
+            pageCounts.clear();
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(@Nonnull String path) {
+        lock.writeLock().lock();
+        try {
+            removeKeys(path);
+            keysByPage.remove(path);
+        } finally {
+            pageCounts.clear();
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeTree(@Nonnull String path) {
+        String prefix = path + "/";
+        lock.writeLock().lock();
+        try {
+            keysByPage.keySet().removeIf(pagePath -> {
+                if (pagePath.equals(path) || pagePath.startsWith(prefix)) {
+                    removeKeys(pagePath);
+                    return true;
+                }
+                return false;
+            });
+        } finally {
+            pageCounts.clear();
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the keys of the page at {@code path} from the tree, without forgetting them. Must be called with the write lock held.
+     */
+    private void removeKeys(@Nonnull String path) {
+        Set<String> keys = keysByPage.get(path);
+        if (keys != null) {
+            for (String key : keys) {
+                tree.remove(key, path);
+            }
+        }
+    }
+
+    /**
+     * Adds the keys of the {@code title}: the normalised title starting at each of its words, truncated to {@value #MAX_KEY_LENGTH}
+     * characters.
+     */
+    private static void addKeys(@Nonnull Set<String> keys, @Nullable String title) {
+        String normalized = normalize(StringUtils.defaultString(title));
+        int start = 0;
+        while (start < normalized.length()) {
+            keys.add(StringUtils.left(normalized.substring(start), MAX_KEY_LENGTH));
+            int space = normalized.indexOf(' ', start);
+            start = space < 0 ? normalized.length() : space + 1;
+        }
+    }
+
+    @Nonnull
+    static String normalize(@Nonnull String text) {
+        return SearchResultKey.normalize(text);
+    }
+}
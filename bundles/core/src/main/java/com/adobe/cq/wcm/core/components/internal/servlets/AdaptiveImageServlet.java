@@ -18,6 +18,7 @@ package com.adobe.cq.wcm.core.components.internal.servlets;
 import java.awt.Rectangle;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -26,6 +27,7 @@ import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletResponse;
@@ -40,6 +42,7 @@ import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.SlingHttpServletResponse;
 import org.apache.sling.api.request.RequestPathInfo;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceMetadata;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.api.resource.ValueMap;
@@ -49,6 +52,12 @@ import org.apache.sling.commons.mime.MimeTypeService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.adobe.cq.wcm.core.components.internal.image.AssetInfo;
+import com.adobe.cq.wcm.core.components.internal.image.AssetInfoService;
+import com.adobe.cq.wcm.core.components.internal.image.FingerprintService;
+import com.adobe.cq.wcm.core.components.internal.image.GifTransformer;
+import com.adobe.cq.wcm.core.components.internal.image.ImageHeader;
+import com.adobe.cq.wcm.core.components.internal.image.MetadataStripper;
 import com.adobe.cq.wcm.core.components.internal.models.v1.AbstractImageDelegatingModel;
 import com.adobe.cq.wcm.core.components.internal.resource.ImageResourceWrapper;
 import com.adobe.cq.wcm.core.components.models.Image;
@@ -63,6 +72,7 @@ import com.day.cq.wcm.api.NameConstants;
 import com.day.cq.wcm.api.Page;
 import com.day.cq.wcm.api.PageManager;
 import com.day.cq.wcm.api.Template;
+import com.day.cq.wcm.api.WCMMode;
 import com.day.cq.wcm.api.components.ComponentManager;
 import com.day.cq.wcm.api.policies.ContentPolicy;
 import com.day.cq.wcm.api.policies.ContentPolicyManager;
@@ -85,19 +95,43 @@ public class AdaptiveImageServlet extends SlingSafeMethodsServlet {
 
     public static final String DEFAULT_SELECTOR = "img";
     public static final String CORE_DEFAULT_SELECTOR = "coreimg";
-    private static final String IMAGE_RESOURCE_TYPE = "core/wcm/components/image";
+    public static final String SRC_URI_TEMPLATE_WIDTH_VAR = "{.width}";
+    static final String IMAGE_RESOURCE_TYPE = "core/wcm/components/image";
     static final int DEFAULT_RESIZE_WIDTH = 1280;
     private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveImageServlet.class);
     private static final String DEFAULT_MIME = "image/jpeg";
+    private static final String HEADER_ACCEPT = "Accept";
+    private static final String HEADER_VARY = "Vary";
+    private static final String HEADER_CACHE_CONTROL = "Cache-Control";
+    private static final double FULL_QUALITY = 1.0;
+    static final double PREVIEW_QUALITY = 0.7;
+    static final int PREVIEW_MAX_AGE = 24 * 60 * 60;
+    private static final Pattern FINGERPRINT_PATTERN = Pattern.compile("[0-9a-f]{" + FingerprintService.FINGERPRINT_LENGTH + "}");
     private int defaultResizeWidth;
 
     private MimeTypeService mimeTypeService;
 
     private AssetStore assetStore;
 
+    private AssetInfoService assetInfoService;
+
+    private FingerprintService fingerprintService;
+
     public AdaptiveImageServlet(MimeTypeService mimeTypeService, AssetStore assetStore, int defaultResizeWidth) {
+        this(mimeTypeService, assetStore, null, defaultResizeWidth);
+    }
+
+    public AdaptiveImageServlet(MimeTypeService mimeTypeService, AssetStore assetStore, AssetInfoService assetInfoService,
+                                int defaultResizeWidth) {
+        this(mimeTypeService, assetStore, assetInfoService, null, defaultResizeWidth);
+    }
+
+    public AdaptiveImageServlet(MimeTypeService mimeTypeService, AssetStore assetStore, AssetInfoService assetInfoService,
+                                FingerprintService fingerprintService, int defaultResizeWidth) {
         this.mimeTypeService = mimeTypeService;
         this.assetStore = assetStore;
+        this.assetInfoService = assetInfoService;
+        this.fingerprintService = fingerprintService;
         this.defaultResizeWidth = defaultResizeWidth > 0 ? defaultResizeWidth : DEFAULT_RESIZE_WIDTH;
     }
 
@@ -126,6 +160,8 @@ public class AdaptiveImageServlet extends SlingSafeMethodsServlet {
                 return;
             }
         }
+        // the version segment may hold a fingerprint, which is only honoured if the image's policy enables the fingerprint URLs
+        String versionFingerprint = getRequestFingerprint(suffix);
         Resource component = request.getResource();
         ResourceResolver resourceResolver = request.getResourceResolver();
         if (!component.isResourceType(IMAGE_RESOURCE_TYPE)) {
@@ -138,12 +174,18 @@ public class AdaptiveImageServlet extends SlingSafeMethodsServlet {
                     Template template = page.getTemplate();
                     if (template != null) {
                         if (StringUtils.isNotEmpty(suffix)) {
-                            long lastModifiedSuffix = getRequestLastModifiedSuffix(suffix);
-                            String relativeTemplatePath = lastModifiedSuffix == 0 ?
-                                    // no timestamp info, but extension is valid; get resource name
-                                    suffix.substring(0, suffix.lastIndexOf('.')) :
-                                    // timestamp info, get parent path from suffix
-                                    suffix.substring(0, suffix.lastIndexOf("/" + String.valueOf(lastModifiedSuffix)));
+                            String relativeTemplatePath;
+                            if (versionFingerprint != null) {
+                                // fingerprint info, get parent path from suffix
+                                relativeTemplatePath = suffix.substring(0, suffix.lastIndexOf("/" + versionFingerprint));
+                            } else {
+                                long lastModifiedSuffix = getRequestLastModifiedSuffix(suffix);
+                                relativeTemplatePath = lastModifiedSuffix == 0 ?
+                                        // no timestamp info, but extension is valid; get resource name
+                                        suffix.substring(0, suffix.lastIndexOf('.')) :
+                                        // timestamp info, get parent path from suffix
+                                        suffix.substring(0, suffix.lastIndexOf("/" + String.valueOf(lastModifiedSuffix)));
+                            }
                             String imagePath = ResourceUtil.normalize(template.getPath() + relativeTemplatePath);
                             if (StringUtils.isNotEmpty(imagePath) && !template.getPath().equals(imagePath)) {
                                 componentCandidate = resourceResolver.getResource(imagePath);
@@ -166,46 +208,80 @@ public class AdaptiveImageServlet extends SlingSafeMethodsServlet {
             return;
         }
         ValueMap componentProperties = component.getValueMap();
-        long lastModifiedEpoch = 0;
-        Calendar lastModifiedDate = componentProperties.get(JcrConstants.JCR_LASTMODIFIED, Calendar.class);
-        if (lastModifiedDate == null) {
-            lastModifiedDate = componentProperties.get(NameConstants.PN_PAGE_LAST_MOD, Calendar.class);
-        }
-        if (lastModifiedDate != null) {
-            lastModifiedEpoch = lastModifiedDate.getTimeInMillis();
-        }
-        Asset asset = null;
+        AssetInfo assetInfo = null;
         if (imageComponent.source == Source.ASSET) {
-            asset = imageComponent.imageResource.adaptTo(Asset.class);
-            if (asset == null) {
+            assetInfo = AssetInfo.of(assetInfoService, imageComponent.imageResource);
+            if (assetInfo == null) {
                 LOGGER.error("Unable to adapt resource {} used by image {} to an asset.", imageComponent.imageResource.getPath(), component.getPath());
                 response.sendError(HttpServletResponse.SC_NOT_FOUND);
                 return;
             }
-            long assetLastModifiedEpoch = asset.getLastModified();
-            if (assetLastModifiedEpoch > lastModifiedEpoch) {
-                lastModifiedEpoch = assetLastModifiedEpoch;
-            }
         }
-        long requestLastModifiedSuffix = getRequestLastModifiedSuffix(suffix);
-        if (requestLastModifiedSuffix >= 0 && requestLastModifiedSuffix != lastModifiedEpoch) {
-            String redirectLocation = getRedirectLocation(request, lastModifiedEpoch);
-            if (StringUtils.isNotEmpty(redirectLocation)) {
-                LOGGER.info("The last modified information present in the request ({}) is different than expected. Redirect request to " +
-                        "correct suffix ({})", requestLastModifiedSuffix, redirectLocation);
+        long lastModifiedEpoch = getLastModified(component, assetInfo);
+        ContentPolicy contentPolicy = getContentPolicy(resourceResolver, component, request);
+        String requestFingerprint = fingerprintService != null && contentPolicy != null &&
+                contentPolicy.getProperties().get(Image.PN_DESIGN_FINGERPRINT_URLS, false) ? versionFingerprint : null;
+        if (requestFingerprint != null) {
+            String fingerprint = fingerprintService.getFingerprint(imageComponent.imageResource, componentProperties);
+            if (fingerprint != null && !fingerprint.equals(requestFingerprint)) {
+                String redirectLocation = getFingerprintRedirectLocation(request, requestFingerprint, fingerprint);
+                LOGGER.info("The fingerprint present in the request ({}) is different than expected. Redirect request to correct suffix " +
+                        "({})", requestFingerprint, redirectLocation);
                 response.setStatus(HttpServletResponse.SC_MOVED_TEMPORARILY);
                 response.setHeader("Location", redirectLocation);
                 return;
-            } else {
-                LOGGER.error("Unable to determine correct redirect location.");
-                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                return;
+            }
+        } else {
+            long requestLastModifiedSuffix = getRequestLastModifiedSuffix(suffix);
+            if (requestLastModifiedSuffix >= 0 && requestLastModifiedSuffix != lastModifiedEpoch) {
+                String redirectLocation = getRedirectLocation(request, lastModifiedEpoch);
+                if (StringUtils.isNotEmpty(redirectLocation)) {
+                    LOGGER.info("The last modified information present in the request ({}) is different than expected. Redirect request " +
+                            "to correct suffix ({})", requestLastModifiedSuffix, redirectLocation);
+                    response.setStatus(HttpServletResponse.SC_MOVED_TEMPORARILY);
+                    response.setHeader("Location", redirectLocation);
+                    return;
+                } else {
+                    LOGGER.error("Unable to determine correct redirect location.");
+                    response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                    return;
+                }
             }
         }
+        String imageType = getImageType(requestPathInfo.getExtension());
+        if (ImageHeader.MIME_TYPE_PNG.equals(imageType) && contentPolicy != null &&
+                contentPolicy.getProperties().get(Image.PN_DESIGN_NEGOTIATE_OUTPUT_FORMAT, false)) {
+            response.setHeader(HEADER_VARY, HEADER_ACCEPT);
+            if (acceptsMimeType(request.getHeader(HEADER_ACCEPT), DEFAULT_MIME) && !hasAlpha(imageComponent, assetInfo)) {
+                LOGGER.debug("The image from {} has no transparency and the client accepts JPEG images; will render a JPEG image.",
+                        component.getPath());
+                imageType = DEFAULT_MIME;
+                if (StringUtils.isNotEmpty(imageName)) {
+                    imageName = FilenameUtils.getBaseName(imageName) + "." + mimeTypeService.getExtension(imageType);
+                }
+            }
+        }
+        boolean stripMetadata = contentPolicy != null && contentPolicy.getProperties().get(Image.PN_DESIGN_STRIP_METADATA, false);
+        boolean preview = isAuthorPreview(request);
+        if (preview && lastModifiedEpoch > 0) {
+            // the URL changes with every edit of the image, therefore the authors' browsers can keep the previews
+            response.setHeader(HEADER_CACHE_CONTROL, "private, max-age=" + PREVIEW_MAX_AGE);
+        }
         if (!handleIfModifiedSinceHeader(request, response, lastModifiedEpoch)) {
+            Asset asset = null;
+            if (assetInfo != null) {
+                // the asset is only needed for rendering the image, not for redirects and for not modified responses
+                asset = imageComponent.imageResource.adaptTo(Asset.class);
+                if (asset == null) {
+                    LOGGER.error("Unable to adapt resource {} used by image {} to an asset.", imageComponent.imageResource.getPath(),
+                            component.getPath());
+                    response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                    return;
+                }
+            }
             int resizeWidth = defaultResizeWidth;
             String widthSelector = selectors[selectors.length - 1];
-            List<Integer> allowedRenditionWidths = getAllowedRenditionWidths(resourceResolver, component, request);
+            List<Integer> allowedRenditionWidths = getAllowedRenditionWidths(contentPolicy);
             if (selectors.length > 1 || StringUtils.isNumeric(widthSelector)) {
                 try {
                     Integer width = Integer.parseInt(widthSelector);
@@ -223,11 +299,12 @@ public class AdaptiveImageServlet extends SlingSafeMethodsServlet {
                             return;
                         }
                         if (isRequestedWidthAllowed) {
-                            String imageType = getImageType(requestPathInfo.getExtension());
                             if (imageComponent.source == Source.FILE) {
-                                transformAndStreamFile(response, componentProperties, resizeWidth, imageComponent.imageResource, imageType, imageName);
+                                transformAndStreamFile(response, componentProperties, resizeWidth, imageComponent.imageResource, imageType, imageName,
+                                        stripMetadata, preview);
                             } else if (imageComponent.source == Source.ASSET) {
-                                transformAndStreamAsset(response, componentProperties, resizeWidth, asset, imageType, imageName);
+                                transformAndStreamAsset(response, componentProperties, resizeWidth, asset, assetInfo, imageType, imageName, stripMetadata,
+                                        preview);
                             }
                         } else {
                             LOGGER.error("The requested width ({}) is not allowed by the content policy.", width);
@@ -243,11 +320,12 @@ public class AdaptiveImageServlet extends SlingSafeMethodsServlet {
                 }
             } else {
                 LOGGER.debug("The image request contains no width information. Will resize the image to {}px.", defaultResizeWidth);
-                String imageType = getImageType(requestPathInfo.getExtension());
                 if (imageComponent.source == Source.FILE) {
-                    transformAndStreamFile(response, componentProperties, defaultResizeWidth, imageComponent.imageResource, imageType, imageName);
+                    transformAndStreamFile(response, componentProperties, defaultResizeWidth, imageComponent.imageResource, imageType, imageName,
+                            stripMetadata, preview);
                 } else if (imageComponent.source == Source.ASSET) {
-                    transformAndStreamAsset(response, componentProperties, defaultResizeWidth, asset, imageType, imageName);
+                    transformAndStreamAsset(response, componentProperties, defaultResizeWidth, asset, assetInfo, imageType, imageName, stripMetadata,
+                            preview);
                 }
             }
         }
@@ -276,12 +354,39 @@ public class AdaptiveImageServlet extends SlingSafeMethodsServlet {
         return null;
     }
 
-    private void transformAndStreamAsset(SlingHttpServletResponse response, ValueMap componentProperties, int resizeWidth, Asset asset, String
-            imageType, String imageName) throws IOException {
+    /**
+     * Returns the location of the request with the {@code fingerprint} replacing the outdated {@code requestFingerprint} of the suffix.
+     */
+    @Nonnull
+    private String getFingerprintRedirectLocation(@Nonnull SlingHttpServletRequest request, @Nonnull String requestFingerprint,
+                                                  @Nonnull String fingerprint) {
+        RequestPathInfo requestPathInfo = request.getRequestPathInfo();
+        String suffix = requestPathInfo.getSuffix();
+        int index = suffix.lastIndexOf("/" + requestFingerprint) + 1;
+        String redirectSuffix = suffix.substring(0, index) + fingerprint + suffix.substring(index + requestFingerprint.length());
+        return Joiner.on('.').join(Text.escapePath(request.getContextPath() + requestPathInfo.getResourcePath()),
+                requestPathInfo.getSelectorString(), requestPathInfo.getExtension() + Text.escapePath(redirectSuffix));
+    }
+
+    private void transformAndStreamAsset(SlingHttpServletResponse response, ValueMap componentProperties, int resizeWidth, Asset asset,
+                                         AssetInfo assetInfo, String imageType, String imageName, boolean stripMetadata, boolean preview)
+            throws IOException {
         String extension = mimeTypeService.getExtension(imageType);
+        if (preview && !"gif".equalsIgnoreCase(extension)) {
+            Rendition webRendition = getAWebRendition(asset, assetInfo);
+            if (webRendition != null) {
+                transformAndStreamPreview(response, componentProperties, resizeWidth, webRendition, imageType, imageName, stripMetadata);
+                return;
+            }
+        }
         if ("gif".equalsIgnoreCase(extension)) {
-            LOGGER.debug("GIF asset detected; will render the original rendition.");
-            stream(response, asset.getOriginal().getStream(), imageType, imageName);
+            ImageHeader imageHeader = assetInfo.getImageHeader();
+            Rectangle rectangle = getCropRect(componentProperties);
+            if (rectangle != null && imageHeader != null) {
+                rectangle = scaleCropRect(assetInfo, rectangle, imageHeader.getWidth());
+            }
+            transformAndStreamGif(response, componentProperties, rectangle, resizeWidth, imageHeader, asset.getOriginal(), imageType,
+                    imageName, stripMetadata);
             return;
         }
         int rotationAngle = getRotation(componentProperties);
@@ -289,42 +394,15 @@ public class AdaptiveImageServlet extends SlingSafeMethodsServlet {
         boolean flipHorizontally = componentProperties.get(Image.PN_FLIP_HORIZONTAL, Boolean.FALSE);
         boolean flipVertically = componentProperties.get(Image.PN_FLIP_VERTICAL, Boolean.FALSE);
         if (rotationAngle != 0 || rectangle != null || resizeWidth > 0 || flipHorizontally || flipVertically) {
-            int originalWidth = getDimension(asset.getMetadataValue(DamConstants.TIFF_IMAGEWIDTH));
-            int originalHeight = getDimension(asset.getMetadataValue(DamConstants.TIFF_IMAGELENGTH));
+            int originalWidth = assetInfo.getWidth();
+            int originalHeight = assetInfo.getHeight();
             AssetHandler assetHandler = assetStore.getAssetHandler(imageType);
             Layer layer = null;
             boolean appliedTransformation = false;
             if (rectangle != null) {
-                double scaling;
-                Rendition webRendition = getAWebRendition(asset);
-                double renditionWidth;
-                if (webRendition != null) {
-                    try (InputStream renditionStream = webRendition.getStream()) {
-                        Layer rendition = new Layer(renditionStream);
-                        renditionWidth = rendition.getWidth();
-                        LOGGER.debug("Found rendition {} with width {}px; assuming the cropping rectangle was calculated using this " +
-                                "rendition.", webRendition.getPath(), renditionWidth);
-                    }
-                } else {
-                    renditionWidth = originalWidth;
-                }
-                if (originalWidth > renditionWidth) {
-                    scaling = (double) originalWidth / renditionWidth;
-                } else {
-                    scaling = renditionWidth / originalWidth;
-                }
+                Rectangle scaledRectangle = scaleCropRect(assetInfo, rectangle, originalWidth);
                 layer = new Layer(assetHandler.getImage(asset.getOriginal()));
-                if (Math.abs(scaling - 1.0D) != 0) {
-                    Rectangle scaledRectangle = new Rectangle(
-                            (int) (rectangle.x * scaling),
-                            (int) (rectangle.y * scaling),
-                            (int) (rectangle.getWidth() * scaling),
-                            (int) (rectangle.getHeight() * scaling)
-                    );
-                    layer.crop(scaledRectangle);
-                } else {
-                    layer.crop(rectangle);
-                }
+                layer.crop(scaledRectangle);
                 appliedTransformation = true;
             }
             if (rotationAngle != 0) {
@@ -357,7 +435,7 @@ public class AdaptiveImageServlet extends SlingSafeMethodsServlet {
                 if (rendition != null) {
                     LOGGER.debug("Found rendition {} with a width equal to the resize width ({}px); rendering.", rendition.getPath(),
                             resizeWidth);
-                    stream(response, rendition.getStream(), imageType, imageName);
+                    stream(response, rendition, imageType, imageName, stripMetadata);
                 } else {
                     int resizeHeight = calculateResizeHeight(originalWidth, originalHeight, resizeWidth);
                     if (resizeHeight > 0 && resizeHeight != originalHeight) {
@@ -369,61 +447,162 @@ public class AdaptiveImageServlet extends SlingSafeMethodsServlet {
                     } else {
                         LOGGER.debug("Rendering the original asset {} since its width ({}px) is either smaller than the requested " +
                                 "width ({}px) or since no resize is needed.", asset.getPath(), originalWidth, resizeWidth);
-                        stream(response, asset.getOriginal().getStream(), imageType, imageName);
+                        streamOrTranscode(response, asset.getOriginal(), asset.getMimeType(), imageType, imageName, stripMetadata);
                     }
                 }
             } else {
-                resizeAndStreamLayer(response, layer, imageType, resizeWidth);
+                resizeAndStreamLayer(response, layer, imageType, resizeWidth, FULL_QUALITY);
             }
         } else {
             LOGGER.debug("No need to perform any processing on asset {}; rendering.", asset.getPath());
-            stream(response, asset.getOriginal().getStream(), imageType, imageName);
+            streamOrTranscode(response, asset.getOriginal(), asset.getMimeType(), imageType, imageName, stripMetadata);
         }
     }
 
+    /**
+     * Renders an image stored in an {@code nt:file} resource. The image's binary is only opened by the branch consuming it, so each
+     * request reads it once; the resource is known to hold a binary, see {@link ImageComponent}.
+     */
     private void transformAndStreamFile(SlingHttpServletResponse response, ValueMap componentProperties, int
-            resizeWidth, Resource imageFile, String imageType, String imageName) throws
+            resizeWidth, Resource imageFile, String imageType, String imageName, boolean stripMetadata, boolean preview) throws
             IOException {
-        InputStream is = null;
-        try {
-            is = imageFile.adaptTo(InputStream.class);
-            if ("gif".equalsIgnoreCase(mimeTypeService.getExtension(imageType))) {
-                LOGGER.debug("GIF file detected; will render the original file.");
-                if (is != null) {
-                    stream(response, is, imageType, imageName);
-                }
-                return;
+        if ("gif".equalsIgnoreCase(mimeTypeService.getExtension(imageType))) {
+            transformAndStreamGif(response, componentProperties, getCropRect(componentProperties), resizeWidth,
+                    ImageHeader.probe(imageFile), imageFile, imageType, imageName, stripMetadata);
+            return;
+        }
+        int rotationAngle = getRotation(componentProperties);
+        Rectangle rectangle = getCropRect(componentProperties);
+        boolean flipHorizontally = componentProperties.get(Image.PN_FLIP_HORIZONTAL, Boolean.FALSE);
+        boolean flipVertically = componentProperties.get(Image.PN_FLIP_VERTICAL, Boolean.FALSE);
+        if (rotationAngle != 0 || rectangle != null || resizeWidth > 0 || flipHorizontally || flipVertically) {
+            InputStream is = getBinaryStream(imageFile);
+            Layer layer;
+            try {
+                layer = new Layer(is);
+            } finally {
+                IOUtils.closeQuietly(is);
             }
-            int rotationAngle = getRotation(componentProperties);
-            Rectangle rectangle = getCropRect(componentProperties);
-            boolean flipHorizontally = componentProperties.get(Image.PN_FLIP_HORIZONTAL, Boolean.FALSE);
-            boolean flipVertically = componentProperties.get(Image.PN_FLIP_VERTICAL, Boolean.FALSE);
-            if (is != null) {
-                if (rotationAngle != 0 || rectangle != null || resizeWidth > 0 || flipHorizontally || flipVertically) {
-                    Layer layer = new Layer(is);
-                    if (rectangle != null) {
-                        layer.crop(rectangle);
-                        LOGGER.debug("Applied cropping transformation.");
-                    }
-                    if (rotationAngle != 0) {
-                        layer.rotate(rotationAngle);
-                        LOGGER.debug("Applied rotation transformation ({} degrees).", rotationAngle);
-                    }
-                    if (flipHorizontally) {
-                        layer.flipHorizontally();
-                    }
-                    if (flipVertically) {
-                        layer.flipVertically();
-                    }
-                    resizeAndStreamLayer(response, layer, imageType, resizeWidth);
-                } else {
-                    LOGGER.debug("No need to perform any processing on file {}; rendering.", imageFile.getPath());
-                    stream(response, is, imageType, imageName);
-                }
+            if (rectangle != null) {
+                layer.crop(rectangle);
+                LOGGER.debug("Applied cropping transformation.");
             }
+            if (rotationAngle != 0) {
+                layer.rotate(rotationAngle);
+                LOGGER.debug("Applied rotation transformation ({} degrees).", rotationAngle);
+            }
+            if (flipHorizontally) {
+                layer.flipHorizontally();
+            }
+            if (flipVertically) {
+                layer.flipVertically();
+            }
+            resizeAndStreamLayer(response, layer, imageType, resizeWidth, preview ? PREVIEW_QUALITY : FULL_QUALITY);
+        } else {
+            LOGGER.debug("No need to perform any processing on file {}; rendering.", imageFile.getPath());
+            streamOrTranscode(response, imageFile, (String) imageFile.getResourceMetadata().get(ResourceMetadata.CONTENT_TYPE),
+                    imageType, imageName, stripMetadata);
+        }
+    }
+
+    /**
+     * Crops, rotates, flips and resizes a (possibly animated) GIF image frame by frame. If no transformation is needed, or if the
+     * image's header cannot be read, the original image is rendered.
+     *
+     * @param response            the response
+     * @param componentProperties the image component's properties
+     * @param rectangle           the cropping rectangle, in the coordinates of the original image
+     * @param resizeWidth         the resize width
+     * @param imageHeader         the header of the original image
+     * @param binary              the resource holding the original image's binary (an asset rendition or an {@code nt:file})
+     * @param imageType           the mime type of the image
+     * @param imageName           the name of the image
+     * @param stripMetadata       {@code true} if the image's metadata should be removed
+     * @throws IOException if the image cannot be streamed into the response's output stream
+     */
+    private void transformAndStreamGif(@Nonnull SlingHttpServletResponse response, @Nonnull ValueMap componentProperties, @Nullable
+            Rectangle rectangle, int resizeWidth, @Nullable ImageHeader imageHeader, @Nonnull Resource binary, @Nonnull String
+            imageType, String imageName, boolean stripMetadata) throws IOException {
+        int rotationAngle = getRotation(componentProperties);
+        boolean flipHorizontally = componentProperties.get(Image.PN_FLIP_HORIZONTAL, Boolean.FALSE);
+        boolean flipVertically = componentProperties.get(Image.PN_FLIP_VERTICAL, Boolean.FALSE);
+        if (imageHeader == null) {
+            LOGGER.debug("Cannot read the GIF image's header; will render the original image.");
+            stream(response, binary, imageType, imageName, stripMetadata);
+            return;
+        }
+        int width = rectangle != null ? rectangle.width : imageHeader.getWidth();
+        int height = rectangle != null ? rectangle.height : imageHeader.getHeight();
+        int transformedWidth = rotationAngle % 180 != 0 ? height : width;
+        if (rectangle == null && rotationAngle == 0 && !flipHorizontally && !flipVertically && (resizeWidth <= 0 || resizeWidth >=
+                transformedWidth)) {
+            LOGGER.debug("No need to perform any processing on the GIF image; rendering.");
+            stream(response, binary, imageType, imageName, stripMetadata);
+            return;
+        }
+        InputStream inputStream = getBinaryStream(binary);
+        response.setContentType(imageType);
+        try {
+            LOGGER.debug("Transforming GIF image frame by frame.");
+            new GifTransformer()
+                    .crop(rectangle)
+                    .rotate(rotationAngle)
+                    .flipHorizontally(flipHorizontally)
+                    .flipVertically(flipVertically)
+                    .resize(resizeWidth)
+                    .stripMetadata(stripMetadata)
+                    .transform(inputStream, response.getOutputStream());
         } finally {
-            IOUtils.closeQuietly(is);
+            IOUtils.closeQuietly(inputStream);
+        }
+    }
+
+    /**
+     * Renders an image component in the author edit and preview modes. The image is rendered from the asset's web rendition, on which
+     * the image editor defines the cropping rectangle, at a reduced quality; the asset's original rendition is only used for the
+     * published images. The rendered image can therefore be narrower than the requested width.
+     */
+    private void transformAndStreamPreview(SlingHttpServletResponse response, ValueMap componentProperties, int resizeWidth,
+                                           Rendition webRendition, String imageType, String imageName, boolean stripMetadata)
+            throws IOException {
+        int rotationAngle = getRotation(componentProperties);
+        Rectangle rectangle = getCropRect(componentProperties);
+        boolean flipHorizontally = componentProperties.get(Image.PN_FLIP_HORIZONTAL, Boolean.FALSE);
+        boolean flipVertically = componentProperties.get(Image.PN_FLIP_VERTICAL, Boolean.FALSE);
+        if (rotationAngle == 0 && rectangle == null && !flipHorizontally && !flipVertically) {
+            ImageHeader renditionHeader = ImageHeader.probe(webRendition);
+            if (renditionHeader != null && renditionHeader.getWidth() <= resizeWidth) {
+                LOGGER.debug("No need to perform any processing on the web rendition {}; rendering.", webRendition.getPath());
+                streamOrTranscode(response, webRendition, webRendition.getMimeType(), imageType, imageName, stripMetadata);
+                return;
+            }
+        }
+        Layer layer = new Layer(assetStore.getAssetHandler(imageType).getImage(webRendition));
+        if (rectangle != null) {
+            layer.crop(rectangle.intersection(new Rectangle(0, 0, layer.getWidth(), layer.getHeight())));
+        }
+        if (rotationAngle != 0) {
+            layer.rotate(rotationAngle);
+        }
+        if (flipHorizontally) {
+            layer.flipHorizontally();
         }
+        if (flipVertically) {
+            layer.flipVertically();
+        }
+        LOGGER.debug("Rendering a preview of the image from the web rendition {}.", webRendition.getPath());
+        resizeAndStreamLayer(response, layer, imageType, resizeWidth, PREVIEW_QUALITY);
+    }
+
+    /**
+     * Checks if the request was issued by the author edit or preview modes.
+     *
+     * @param request the request
+     * @return {@code true} if the request is an author preview request, {@code false} otherwise
+     */
+    static boolean isAuthorPreview(@Nonnull SlingHttpServletRequest request) {
+        WCMMode wcmMode = WCMMode.fromRequest(request);
+        return wcmMode != null && wcmMode != WCMMode.DISABLED;
     }
 
     /**
@@ -434,9 +613,10 @@ public class AdaptiveImageServlet extends SlingSafeMethodsServlet {
      * @param layer       the layer
      * @param imageType   the mime type of the image represented by the {@code layer}
      * @param resizeWidth the resize width
+     * @param quality     the quality of the rendered image
      * @throws IOException if the streaming of the {@link Layer} into the response's output stream cannot be performed
      */
-    private void resizeAndStreamLayer(SlingHttpServletResponse response, Layer layer, String imageType, int resizeWidth)
+    private void resizeAndStreamLayer(SlingHttpServletResponse response, Layer layer, String imageType, int resizeWidth, double quality)
             throws IOException {
         int width = layer.getWidth();
         int height = layer.getHeight();
@@ -445,28 +625,59 @@ public class AdaptiveImageServlet extends SlingSafeMethodsServlet {
             layer.resize(resizeWidth, resizeHeight);
             response.setContentType(imageType);
             LOGGER.debug("Resizing processed (cropped and/or rotated) layer from its current width of {}px to {}px.", width, resizeWidth);
-            layer.write(imageType, 1.0, response.getOutputStream());
+            layer.write(imageType, quality, response.getOutputStream());
         } else {
             response.setContentType(imageType);
             LOGGER.debug("No need to resize processed (cropped and/or rotated) layer since it would lead to upscaling; rendering.");
-            layer.write(imageType, 1.0, response.getOutputStream());
+            layer.write(imageType, quality, response.getOutputStream());
+        }
+    }
+
+    /**
+     * The cropping rectangle of DAM images is calculated by the image editor on one of the asset's web renditions. This method
+     * scales the {@code rectangle} to the coordinates of the asset's original rendition.
+     *
+     * @param assetInfo     the asset's information
+     * @param rectangle     the cropping rectangle
+     * @param originalWidth the width of the asset's original rendition
+     * @return the scaled cropping rectangle
+     */
+    static Rectangle scaleCropRect(@Nonnull AssetInfo assetInfo, @Nonnull Rectangle rectangle, int originalWidth) {
+        double scaling;
+        double renditionWidth;
+        if (assetInfo.getWebRenditionWidth() > 0) {
+            renditionWidth = assetInfo.getWebRenditionWidth();
+            LOGGER.debug("Found rendition {} with width {}px; assuming the cropping rectangle was calculated using this " +
+                    "rendition.", assetInfo.getWebRenditionName(), renditionWidth);
+        } else {
+            renditionWidth = originalWidth;
         }
+        if (originalWidth > renditionWidth) {
+            scaling = (double) originalWidth / renditionWidth;
+        } else {
+            scaling = renditionWidth / originalWidth;
+        }
+        if (Math.abs(scaling - 1.0D) != 0) {
+            return new Rectangle(
+                    (int) (rectangle.x * scaling),
+                    (int) (rectangle.y * scaling),
+                    (int) (rectangle.getWidth() * scaling),
+                    (int) (rectangle.getHeight() * scaling)
+            );
+        }
+        return rectangle;
     }
 
     /**
      * Given an {@link Asset}, this method will return the first web {@link Rendition} it finds in the asset's renditions list.
      *
-     * @param asset the asset for which to retrieve the web rendition
+     * @param asset     the asset for which to retrieve the web rendition
+     * @param assetInfo the asset's information, providing the renditions list
      * @return the rendition, if found, {@code null} otherwise
      */
-    private Rendition getAWebRendition(Asset asset) {
-        List<Rendition> renditions = asset.getRenditions();
-        for (Rendition rendition : renditions) {
-            if (rendition.getName().startsWith(DamConstants.PREFIX_ASSET_WEB)) {
-                return rendition;
-            }
-        }
-        return null;
+    private static Rendition getAWebRendition(@Nonnull Asset asset, @Nonnull AssetInfo assetInfo) {
+        String webRenditionName = assetInfo.getWebRenditionName();
+        return webRenditionName != null ? asset.getRendition(webRenditionName) : null;
     }
 
     private void stream(@Nonnull SlingHttpServletResponse response, @Nonnull InputStream inputStream, @Nonnull String contentType, String imageName)
@@ -480,13 +691,149 @@ public class AdaptiveImageServlet extends SlingSafeMethodsServlet {
         }
     }
 
+    /**
+     * Streams the image stored by the {@code binary} resource, optionally removing the image's metadata without re-encoding it.
+     *
+     * @param response      the response
+     * @param binary        the resource holding the image's binary (an asset rendition or an {@code nt:file})
+     * @param contentType   the mime type of the image
+     * @param imageName     the name of the image
+     * @param stripMetadata {@code true} if the image's metadata should be removed
+     * @throws IOException if the image cannot be streamed into the response's output stream
+     */
+    private void stream(@Nonnull SlingHttpServletResponse response, @Nonnull Resource binary, @Nonnull String contentType, String
+            imageName, boolean stripMetadata) throws IOException {
+        if (!stripMetadata) {
+            stream(response, getBinaryStream(binary), contentType, imageName);
+            return;
+        }
+        response.setContentType(contentType);
+        response.setHeader("Content-Disposition", "inline; filename=" + URLEncoder.encode(imageName, CharEncoding.UTF_8));
+        LOGGER.debug("Removing the metadata of {}; rendering.", binary.getPath());
+        MetadataStripper.copy(binary, response.getOutputStream());
+    }
+
+    @Nonnull
+    private InputStream getBinaryStream(@Nonnull Resource binary) throws IOException {
+        InputStream inputStream = binary instanceof Rendition ? ((Rendition) binary).getStream() : binary.adaptTo(InputStream.class);
+        if (inputStream == null) {
+            throw new IOException("Unable to read the binary of " + binary.getPath() + ".");
+        }
+        return inputStream;
+    }
+
+    /**
+     * Streams the image stored by the {@code binary} resource unchanged if it already uses the requested {@code imageType}; otherwise
+     * the image is decoded and encoded again using the requested type.
+     *
+     * @param response      the response
+     * @param binary        the resource holding the image's binary (an asset rendition or an {@code nt:file})
+     * @param sourceType    the mime type of the image's binary, if known
+     * @param imageType     the requested mime type
+     * @param imageName     the name of the image
+     * @param stripMetadata {@code true} if the image's metadata should be removed when the image is streamed unchanged
+     * @throws IOException if the image cannot be streamed into the response's output stream
+     */
+    private void streamOrTranscode(@Nonnull SlingHttpServletResponse response, @Nonnull Resource binary, @Nullable String sourceType,
+            @Nonnull String imageType, String imageName, boolean stripMetadata) throws IOException {
+        if (sourceType == null || sourceType.equals(imageType)) {
+            stream(response, binary, imageType, imageName, stripMetadata);
+            return;
+        }
+        InputStream inputStream = getBinaryStream(binary);
+        try {
+            Layer layer = new Layer(inputStream);
+            response.setContentType(imageType);
+            LOGGER.debug("Converting image from {} to {}; rendering.", sourceType, imageType);
+            layer.write(imageType, 1.0, response.getOutputStream());
+        } finally {
+            IOUtils.closeQuietly(inputStream);
+        }
+    }
+
+    /**
+     * Checks if the image rendered by the {@code imageComponent} may contain transparent pixels. Images whose header cannot be read are
+     * assumed to contain transparent pixels.
+     *
+     * @param imageComponent the image component
+     * @param assetInfo      the information of the image's asset, if the image is coming from DAM
+     * @return {@code true} if the image may contain transparent pixels, {@code false} otherwise
+     */
+    private boolean hasAlpha(@Nonnull ImageComponent imageComponent, @Nullable AssetInfo assetInfo) {
+        ImageHeader imageHeader = assetInfo != null ? assetInfo.getImageHeader() : ImageHeader.probe(imageComponent.imageResource);
+        return imageHeader == null || imageHeader.hasAlpha();
+    }
+
+    /**
+     * Checks if the media ranges of an {@code Accept} header allow the provided {@code mimeType}. Media ranges with a quality value of
+     * 0 are considered to explicitly reject the matching types.
+     *
+     * @param acceptHeader the value of the {@code Accept} header
+     * @param mimeType     the mime type to check
+     * @return {@code true} if the {@code mimeType} is acceptable, {@code false} otherwise
+     */
+    static boolean acceptsMimeType(@Nullable String acceptHeader, @Nonnull String mimeType) {
+        if (StringUtils.isBlank(acceptHeader)) {
+            return false;
+        }
+        String typeRange = StringUtils.substringBefore(mimeType, "/") + "/*";
+        for (String mediaRange : acceptHeader.split(",")) {
+            String[] parameters = mediaRange.split(";");
+            String range = parameters[0].trim().toLowerCase();
+            if (range.equals(mimeType) || range.equals(typeRange) || range.equals("*/*")) {
+                double quality = 1.0;
+                for (int i = 1; i < parameters.length; i++) {
+                    String parameter = parameters[i].trim();
+                    if (parameter.startsWith("q=")) {
+                        try {
+                            quality = Double.parseDouble(parameter.substring(2));
+                        } catch (NumberFormatException e) {
+                            quality = 0;
+                        }
+                    }
+                }
+                if (quality > 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the effective last modified date of an image component, i.e. the most recent of the component's and of the referenced
+     * asset's last modified dates.
+     *
+     * @param component the image component
+     * @param assetInfo the information of the asset referenced by the image component, if any
+     * @return the last modified date in milliseconds, or 0 if the date cannot be determined
+     */
+    static long getLastModified(@Nonnull Resource component, @Nullable AssetInfo assetInfo) {
+        ValueMap componentProperties = component.getValueMap();
+        long lastModifiedEpoch = 0;
+        Calendar lastModifiedDate = componentProperties.get(JcrConstants.JCR_LASTMODIFIED, Calendar.class);
+        if (lastModifiedDate == null) {
+            lastModifiedDate = componentProperties.get(NameConstants.PN_PAGE_LAST_MOD, Calendar.class);
+        }
+        if (lastModifiedDate != null) {
+            lastModifiedEpoch = lastModifiedDate.getTimeInMillis();
+        }
+        if (assetInfo != null) {
+            long assetLastModifiedEpoch = assetInfo.getLastModified();
+            if (assetLastModifiedEpoch > lastModifiedEpoch) {
+                lastModifiedEpoch = assetLastModifiedEpoch;
+            }
+        }
+        return lastModifiedEpoch;
+    }
+
     /**
      * Retrieves the cropping rectangle, if one is defined for the image.
      *
      * @param properties the image component's properties
      * @return the cropping rectangle, if one is found, {@code null} otherwise
      */
-    private Rectangle getCropRect(@Nonnull ValueMap properties) {
+    static Rectangle getCropRect(@Nonnull ValueMap properties) {
         String csv = properties.get(ImageResource.PN_IMAGE_CROP, String.class);
         if (StringUtils.isNotEmpty(csv)) {
             try {
@@ -514,7 +861,7 @@ public class AdaptiveImageServlet extends SlingSafeMethodsServlet {
      * @param properties the image component's properties
      * @return the rotation angle
      */
-    private int getRotation(@Nonnull ValueMap properties) {
+    public static int getRotation(@Nonnull ValueMap properties) {
         String rotationString = properties.get(ImageResource.PN_IMAGE_ROTATE, String.class);
         if (rotationString != null) {
             try {
@@ -527,17 +874,50 @@ public class AdaptiveImageServlet extends SlingSafeMethodsServlet {
     }
 
     /**
-     * Given a {@code String} value, this method will try to convert it to an {@code int}.
+     * Returns the intrinsic width and height of the image rendered for an image component, after applying the component's cropping
+     * and rotation, without decoding the image.
      *
-     * @param stringValue the string value to convert
-     * @return the {@code int} representation of the provided string, or 0 if the string cannot be parsed
+     * @param properties  the image component's properties
+     * @param imageHeader the header of the image's binary, if it could be read
+     * @param assetInfo   the information of the referenced asset, if the image comes from DAM
+     * @return an array containing the width and the height, or {@code null} if the dimensions cannot be determined
      */
-    private int getDimension(String stringValue) {
-        try {
-            return Integer.parseInt(stringValue);
-        } catch (NumberFormatException e) {
-            return 0;
+    @CheckForNull
+    public static int[] getImageDimensions(@Nonnull ValueMap properties, @Nullable ImageHeader imageHeader, @Nullable AssetInfo assetInfo) {
+        int width = 0;
+        int height = 0;
+        if (assetInfo != null) {
+            width = assetInfo.getWidth();
+            height = assetInfo.getHeight();
+        } else if (imageHeader != null) {
+            width = imageHeader.getWidth();
+            height = imageHeader.getHeight();
         }
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        Rectangle rectangle = getCropRect(properties);
+        if (rectangle != null) {
+            if (assetInfo != null) {
+                rectangle = scaleCropRect(assetInfo, rectangle, width);
+            }
+            rectangle = rectangle.intersection(new Rectangle(0, 0, width, height));
+            if (!rectangle.isEmpty()) {
+                width = rectangle.width;
+                height = rectangle.height;
+            }
+        }
+        int rotation = getRotation(properties);
+        if (rotation % 360 != 0) {
+            double radians = Math.toRadians(rotation);
+            double sin = Math.abs(Math.sin(radians));
+            double cos = Math.abs(Math.cos(radians));
+            int rotatedWidth = (int) Math.round(width * cos + height * sin);
+            int rotatedHeight = (int) Math.round(width * sin + height * cos);
+            width = rotatedWidth;
+            height = rotatedHeight;
+        }
+        return new int[]{width, height};
     }
 
     /**
@@ -581,8 +961,8 @@ public class AdaptiveImageServlet extends SlingSafeMethodsServlet {
      * @return {@code true} if the {@code response}'s status code was set (to {@link HttpServletResponse#SC_NOT_MODIFIED}, {@code false}
      * otherwise
      */
-    private boolean handleIfModifiedSinceHeader(@Nonnull SlingHttpServletRequest request, @Nonnull SlingHttpServletResponse response,
-                                                long lastModified) {
+    static boolean handleIfModifiedSinceHeader(@Nonnull SlingHttpServletRequest request, @Nonnull SlingHttpServletResponse response,
+                                               long lastModified) {
         if (lastModified > 0) {
             long ifModifiedSince = request.getDateHeader(HttpConstants.HEADER_IF_MODIFIED_SINCE) / 1000;
             if (lastModified / 1000 <= ifModifiedSince) {
@@ -607,15 +987,16 @@ public class AdaptiveImageServlet extends SlingSafeMethodsServlet {
     }
 
     /**
-     * Returns the list of allowed renditions sizes from this component's content policy. If the component doesn't have a content policy,
-     * then the list will be empty. Rendition widths that are not valid {@link Integer} numbers will be ignored.
+     * Returns the content policy of the accessed image component, taking into account image delegating components.
      *
      * @param resourceResolver the request's resource resolver
      * @param imageResource    the resource identifying the accessed image component
-     * @return the list of the allowed widths; the list will be <i>empty</i> if the component doesn't have a content policy
+     * @param request          the request
+     * @return the content policy, or {@code null} if the component doesn't have a content policy
      */
-    private List<Integer> getAllowedRenditionWidths(@Nonnull ResourceResolver resourceResolver, Resource imageResource, @Nonnull SlingHttpServletRequest request) {
-        List<Integer> list = new ArrayList<>();
+    @Nullable
+    static ContentPolicy getContentPolicy(@Nonnull ResourceResolver resourceResolver, Resource imageResource, @Nonnull
+            SlingHttpServletRequest request) {
         ContentPolicyManager policyManager = resourceResolver.adaptTo(ContentPolicyManager.class);
         if (policyManager != null) {
             ComponentManager componentManager = resourceResolver.adaptTo(ComponentManager.class);
@@ -629,24 +1010,96 @@ public class AdaptiveImageServlet extends SlingSafeMethodsServlet {
                     }
                 }
             }
-            ContentPolicy contentPolicy = policyManager.getPolicy(imageResource, request);
-            if (contentPolicy != null) {
-                String[] allowedRenditionWidths = contentPolicy.getProperties()
-                        .get(com.adobe.cq.wcm.core.components.models.Image.PN_DESIGN_ALLOWED_RENDITION_WIDTHS, new String[0]);
-                for (String width : allowedRenditionWidths) {
-                    try {
-                        list.add(Integer.parseInt(width));
-                    } catch (NumberFormatException e) {
-                        LOGGER.warn("One of the configured widths ({}) from the {} content policy is not a valid Integer.", width,
-                                contentPolicy.getPath());
-                        return list;
-                    }
+            return policyManager.getPolicy(imageResource, request);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the list of allowed renditions sizes from this component's content policy. If the component doesn't have a content policy,
+     * then the list will be empty. Rendition widths that are not valid {@link Integer} numbers will be ignored.
+     *
+     * @param contentPolicy the content policy of the accessed image component
+     * @return the list of the allowed widths; the list will be <i>empty</i> if the component doesn't have a content policy
+     */
+    static List<Integer> getAllowedRenditionWidths(@Nullable ContentPolicy contentPolicy) {
+        List<Integer> list = new ArrayList<>();
+        if (contentPolicy != null) {
+            String[] allowedRenditionWidths = contentPolicy.getProperties()
+                    .get(com.adobe.cq.wcm.core.components.models.Image.PN_DESIGN_ALLOWED_RENDITION_WIDTHS, new String[0]);
+            for (String width : allowedRenditionWidths) {
+                try {
+                    list.add(Integer.parseInt(width));
+                } catch (NumberFormatException e) {
+                    LOGGER.warn("One of the configured widths ({}) from the {} content policy is not a valid Integer.", width,
+                            contentPolicy.getPath());
+                    return list;
                 }
             }
         }
         return list;
     }
 
+    /**
+     * Builds the URL template of the renditions served by this servlet for an image, as exposed by the image models and by the
+     * {@link ImageMetadataServlet}.
+     *
+     * @param baseResourcePath     the mapped path of the image component, or of the page if the image comes from the page's template
+     * @param selector             the selector of this servlet
+     * @param extension            the extension of the renditions
+     * @param templateRelativePath the path of the image relative to the page's template, if the image comes from the template
+     * @param urlVersion           the path segment versioning the URL, if any
+     * @param imageName            the SEO friendly name of the image, if any
+     * @return the URL template, with a {@code {.width}} variable
+     */
+    @Nonnull
+    public static String getSrcUriTemplate(@Nonnull String baseResourcePath, @Nonnull String selector, @Nonnull String extension,
+                                           @Nullable String templateRelativePath, @Nullable String urlVersion,
+                                           @Nullable String imageName) {
+        return baseResourcePath + "." + selector + SRC_URI_TEMPLATE_WIDTH_VAR + "." + extension +
+                StringUtils.defaultString(templateRelativePath) +
+                (urlVersion != null ? "/" + urlVersion + (StringUtils.isNotBlank(imageName) ? "/" + imageName : "") + "." + extension : "");
+    }
+
+    /**
+     * Content editors can store DAM assets with white spaces in the name; this method makes the asset name SEO friendly, by replacing
+     * white spaces and underscores with dashes and translating the name into {@code application/x-www-form-urlencoded} format using
+     * the {@code utf-8} encoding scheme.
+     *
+     * @param imageName the name of the asset, without extension
+     * @return the SEO friendly name of the asset
+     */
+    @Nonnull
+    public static String getSeoFriendlyName(@Nonnull String imageName) {
+        String seoFriendlyName = imageName.replaceAll("[\\ _]", "-").toLowerCase();
+        try {
+            seoFriendlyName = URLEncoder.encode(seoFriendlyName, CharEncoding.UTF_8);
+        } catch (UnsupportedEncodingException e) {
+            LOGGER.error("The Character Encoding is not supported.", e);
+        }
+        return seoFriendlyName;
+    }
+
+    /**
+     * Returns the fingerprint present in the version segment of the {@code suffix}, instead of the last modified date. The version
+     * segment precedes the image name ({@code /<version>/<name>.<extension>}) or, for URLs without image name, is the name of the
+     * suffix's last segment ({@code /<version>.<extension>}); the image name itself is never taken for a fingerprint.
+     */
+    @CheckForNull
+    static String getRequestFingerprint(@Nullable String suffix) {
+        if (StringUtils.isNotEmpty(suffix)) {
+            String[] segments = suffix.split("/");
+            if (segments.length >= 2 && FINGERPRINT_PATTERN.matcher(segments[segments.length - 2]).matches()) {
+                return segments[segments.length - 2];
+            }
+            String name = FilenameUtils.getBaseName(segments[segments.length - 1]);
+            if (FINGERPRINT_PATTERN.matcher(name).matches()) {
+                return name;
+            }
+        }
+        return null;
+    }
+
     private long getRequestLastModifiedSuffix(@Nullable String suffix) {
         long requestLastModified = 0;
         if (StringUtils.isNotEmpty(suffix) && suffix.contains(".")) {
@@ -667,13 +1120,13 @@ public class AdaptiveImageServlet extends SlingSafeMethodsServlet {
 
 
 
-    private enum Source {
+    enum Source {
         ASSET,
         FILE,
         NONEXISTING
     }
 
-    private static class ImageComponent {
+    static class ImageComponent {
         Source source = Source.NONEXISTING;
         Resource imageResource;
 
@@ -41,6 +41,8 @@ import org.osgi.service.component.annotations.ReferencePolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.adobe.cq.wcm.core.components.internal.image.AssetInfoService;
+import com.adobe.cq.wcm.core.components.internal.image.FingerprintService;
 import com.day.cq.dam.api.handler.store.AssetStore;
 
 /**
@@ -59,6 +61,12 @@ public class AdaptiveImageServletMappingConfigurationConsumer {
     @Reference
     private AssetStore assetStore;
 
+    @Reference
+    private AssetInfoService assetInfoService;
+
+    @Reference
+    private FingerprintService fingerprintService;
+
     private BundleContext bundleContext;
 
     private Map<String, AdaptiveImageServletMappingConfigurationFactory> configs = new HashMap<>();
@@ -164,6 +172,8 @@ public class AdaptiveImageServletMappingConfigurationConsumer {
                                 new AdaptiveImageServlet(
                                         mimeTypeService,
                                         assetStore,
+                                        assetInfoService,
+                                        fingerprintService,
                                         oldAISDefaultResizeWidth > 0 ? oldAISDefaultResizeWidth : config.getDefaultResizeWidth()),
                                 properties
                         )
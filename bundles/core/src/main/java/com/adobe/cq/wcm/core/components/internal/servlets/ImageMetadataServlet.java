@@ -0,0 +1,261 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.servlets;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.servlet.Servlet;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.servlets.SlingSafeMethodsServlet;
+import org.apache.sling.commons.mime.MimeTypeService;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.adobe.cq.wcm.core.components.internal.image.AssetInfo;
+import com.adobe.cq.wcm.core.components.internal.image.AssetInfoService;
+import com.adobe.cq.wcm.core.components.internal.image.FingerprintService;
+import com.adobe.cq.wcm.core.components.internal.image.ImageHeader;
+import com.adobe.cq.wcm.core.components.models.Image;
+import com.day.cq.wcm.api.Page;
+import com.day.cq.wcm.api.PageManager;
+import com.day.cq.wcm.api.Template;
+import com.day.cq.wcm.api.policies.ContentPolicy;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Describes the image rendered by an image component through the {@link AdaptiveImageServlet}, so that clients can reserve the
+ * image's space and build rendition URLs before requesting any pixels. The response contains the intrinsic dimensions of the
+ * (cropped and rotated) image, its aspect ratio, the widths allowed by the content policy, the effective last modified date, the
+ * available output formats and the URL template of the renditions.
+ *
+ * The dimensions are obtained from the cached image header or from the asset's metadata; the image is never decoded.
+ *
+ * As for the renditions, images coming from a page's template are described through the page, with the image's path relative to
+ * the template as suffix (e.g. {@code /content/page.coreimg.json/structure/jcr:content/root/image.json}).
+ */
+@Component(
+        service = Servlet.class,
+        property = {
+                "sling.servlet.selectors=" + AdaptiveImageServlet.CORE_DEFAULT_SELECTOR,
+                "sling.servlet.resourceTypes=" + AdaptiveImageServlet.IMAGE_RESOURCE_TYPE,
+                "sling.servlet.resourceTypes=cq/Page",
+                "sling.servlet.extensions=json",
+                "sling.servlet.methods=GET"
+        }
+)
+public class ImageMetadataServlet extends SlingSafeMethodsServlet {
+
+    static final String PN_WIDTH = "width";
+    static final String PN_HEIGHT = "height";
+    static final String PN_ASPECT_RATIO = "aspectRatio";
+    static final String PN_MIME_TYPE = "mimeType";
+    static final String PN_ALLOWED_WIDTHS = "allowedWidths";
+    static final String PN_LAST_MODIFIED = "lastModified";
+    static final String PN_FORMATS = "formats";
+    static final String PN_SRC_URI_TEMPLATE = "srcUriTemplate";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImageMetadataServlet.class);
+    private static final String EXTENSION_JPEG = "jpeg";
+    private static final String EXTENSION_PNG = "png";
+    private static final String EXTENSION_GIF = "gif";
+    private static final String EXTENSION_JSON = "json";
+    private static final ObjectWriter WRITER = new ObjectMapper().writer();
+
+    @Reference
+    private MimeTypeService mimeTypeService;
+
+    @Reference
+    private AssetInfoService assetInfoService;
+
+    @Reference
+    private FingerprintService fingerprintService;
+
+    @Override
+    protected void doGet(@Nonnull SlingHttpServletRequest request, @Nonnull SlingHttpServletResponse response) throws IOException {
+        Resource component = request.getResource();
+        ResourceResolver resourceResolver = request.getResourceResolver();
+        String baseResourcePath = component.getPath();
+        String templateRelativePath = null;
+        if (!component.isResourceType(AdaptiveImageServlet.IMAGE_RESOURCE_TYPE)) {
+            // image coming from template; need to switch resource
+            Page page = null;
+            PageManager pageManager = resourceResolver.adaptTo(PageManager.class);
+            if (pageManager != null) {
+                page = pageManager.getContainingPage(component);
+            }
+            templateRelativePath = getTemplateRelativePath(request.getRequestPathInfo().getSuffix());
+            Resource componentCandidate = null;
+            if (page != null && templateRelativePath != null) {
+                Template template = page.getTemplate();
+                if (template != null) {
+                    componentCandidate = resourceResolver.getResource(template.getPath() + templateRelativePath);
+                    baseResourcePath = page.getPath();
+                }
+            }
+            if (componentCandidate == null) {
+                LOGGER.error("Unable to retrieve an image from this page's template.");
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            component = componentCandidate;
+        }
+        AdaptiveImageServlet.ImageComponent imageComponent = new AdaptiveImageServlet.ImageComponent(component);
+        if (imageComponent.source == AdaptiveImageServlet.Source.NONEXISTING) {
+            LOGGER.error("The image from {} does not have a valid file reference.", component.getPath());
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        AssetInfo assetInfo = null;
+        ImageHeader imageHeader;
+        if (imageComponent.source == AdaptiveImageServlet.Source.ASSET) {
+            assetInfo = AssetInfo.of(assetInfoService, imageComponent.imageResource);
+            if (assetInfo == null) {
+                LOGGER.error("Unable to adapt resource {} used by image {} to an asset.", imageComponent.imageResource.getPath(),
+                        component.getPath());
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            imageHeader = assetInfo.getImageHeader();
+        } else {
+            imageHeader = ImageHeader.probe(imageComponent.imageResource);
+        }
+        long lastModified = AdaptiveImageServlet.getLastModified(component, assetInfo);
+        if (AdaptiveImageServlet.handleIfModifiedSinceHeader(request, response, lastModified)) {
+            return;
+        }
+        ContentPolicy contentPolicy = AdaptiveImageServlet.getContentPolicy(resourceResolver, component, request);
+        String mimeType = getMimeType(imageHeader, assetInfo);
+        List<String> formats = getFormats(mimeType, imageHeader, contentPolicy);
+
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        int[] dimensions = AdaptiveImageServlet.getImageDimensions(component.getValueMap(), imageHeader, assetInfo);
+        if (dimensions != null) {
+            metadata.put(PN_WIDTH, dimensions[0]);
+            metadata.put(PN_HEIGHT, dimensions[1]);
+            metadata.put(PN_ASPECT_RATIO, Math.round((double) dimensions[0] / dimensions[1] * 10000) / 10000d);
+        }
+        metadata.put(PN_MIME_TYPE, mimeType);
+        metadata.put(PN_ALLOWED_WIDTHS, AdaptiveImageServlet.getAllowedRenditionWidths(contentPolicy));
+        metadata.put(PN_LAST_MODIFIED, lastModified);
+        metadata.put(PN_FORMATS, formats);
+        metadata.put(PN_SRC_URI_TEMPLATE, AdaptiveImageServlet.getSrcUriTemplate(resourceResolver.map(request, baseResourcePath),
+                AdaptiveImageServlet.CORE_DEFAULT_SELECTOR, formats.get(0), templateRelativePath,
+                getUrlVersion(component, imageComponent.imageResource, contentPolicy, lastModified), getImageName(assetInfo)));
+
+        response.setContentType("application/json");
+        response.setCharacterEncoding("utf-8");
+        WRITER.writeValue(response.getWriter(), metadata);
+    }
+
+    @Nonnull
+    private String getMimeType(@Nullable ImageHeader imageHeader, @Nullable AssetInfo assetInfo) {
+        if (imageHeader != null) {
+            return imageHeader.getMimeType();
+        }
+        if (assetInfo != null && StringUtils.isNotEmpty(assetInfo.getMimeType())) {
+            return assetInfo.getMimeType();
+        }
+        return ImageHeader.MIME_TYPE_JPEG;
+    }
+
+    /**
+     * Returns the extensions the {@link AdaptiveImageServlet} can render the image with. The first extension is the one used by the
+     * image component models.
+     */
+    @Nonnull
+    private List<String> getFormats(@Nonnull String mimeType, @Nullable ImageHeader imageHeader, @Nullable ContentPolicy contentPolicy) {
+        List<String> formats = new ArrayList<>();
+        if (ImageHeader.MIME_TYPE_GIF.equals(mimeType)) {
+            formats.add(EXTENSION_GIF);
+        } else if (ImageHeader.MIME_TYPE_PNG.equals(mimeType)) {
+            boolean negotiate = contentPolicy != null && contentPolicy.getProperties().get(Image.PN_DESIGN_NEGOTIATE_OUTPUT_FORMAT, false);
+            if (negotiate && imageHeader != null && !imageHeader.hasAlpha()) {
+                formats.add(EXTENSION_JPEG);
+                formats.add(EXTENSION_PNG);
+            } else {
+                formats.add(EXTENSION_PNG);
+                formats.add(EXTENSION_JPEG);
+            }
+        } else {
+            String extension = mimeTypeService.getExtension(mimeType);
+            if (StringUtils.isEmpty(extension) || "tif".equalsIgnoreCase(extension) || "tiff".equalsIgnoreCase(extension)) {
+                extension = EXTENSION_JPEG;
+            }
+            formats.add(extension);
+            if (!EXTENSION_PNG.equals(extension)) {
+                formats.add(EXTENSION_PNG);
+            }
+        }
+        return formats;
+    }
+
+    /**
+     * Returns the path segment versioning the rendition URLs, as the image models do: the image's fingerprint if requested by the
+     * content policy, its last modified date otherwise.
+     */
+    @Nullable
+    private String getUrlVersion(@Nonnull Resource component, @Nonnull Resource imageResource, @Nullable ContentPolicy contentPolicy,
+                                 long lastModified) {
+        if (fingerprintService != null && contentPolicy != null &&
+                contentPolicy.getProperties().get(Image.PN_DESIGN_FINGERPRINT_URLS, false)) {
+            String fingerprint = fingerprintService.getFingerprint(imageResource, component.getValueMap());
+            if (fingerprint != null) {
+                return fingerprint;
+            }
+        }
+        return lastModified > 0 ? String.valueOf(lastModified) : null;
+    }
+
+    /**
+     * Returns the path of the image relative to the page's template, from a {@code /<path>.json} suffix.
+     */
+    @CheckForNull
+    private String getTemplateRelativePath(@Nullable String suffix) {
+        if (StringUtils.isEmpty(suffix) || !EXTENSION_JSON.equals(FilenameUtils.getExtension(suffix))) {
+            return null;
+        }
+        String relativePath = ResourceUtil.normalize(suffix.substring(0, suffix.lastIndexOf('.')));
+        return StringUtils.isNotEmpty(relativePath) && !"/".equals(relativePath) ? relativePath : null;
+    }
+
+    /**
+     * Returns the SEO friendly name of the image's asset, as used by the image models in the rendition URLs.
+     */
+    @CheckForNull
+    private String getImageName(@Nullable AssetInfo assetInfo) {
+        if (assetInfo == null || StringUtils.isBlank(assetInfo.getName())) {
+            return null;
+        }
+        return AdaptiveImageServlet.getSeoFriendlyName(FilenameUtils.getBaseName(assetInfo.getName().trim()));
+    }
+}
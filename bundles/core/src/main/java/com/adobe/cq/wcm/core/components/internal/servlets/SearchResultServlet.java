@@ -16,16 +16,24 @@
 package com.adobe.cq.wcm.core.components.internal.servlets;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.jcr.RangeIterator;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.servlet.Servlet;
+import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.SlingHttpServletRequest;
@@ -39,13 +47,26 @@ import org.apache.sling.api.servlets.SlingSafeMethodsServlet;
 import org.apache.sling.api.wrappers.ValueMapDecorator;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.adobe.cq.wcm.core.components.internal.models.v1.ListItemProjection;
 import com.adobe.cq.wcm.core.components.internal.models.v1.PageListItemImpl;
 import com.adobe.cq.wcm.core.components.internal.models.v1.SearchImpl;
-import com.adobe.cq.wcm.core.components.models.ListItem;
+import com.adobe.cq.wcm.core.components.internal.search.FederatedSearchExecutor;
+import com.adobe.cq.wcm.core.components.internal.search.QueryLog;
+import com.adobe.cq.wcm.core.components.internal.search.SearchBackend;
+import com.adobe.cq.wcm.core.components.internal.search.SearchCursor;
+import com.adobe.cq.wcm.core.components.internal.search.SearchGuard;
+import com.adobe.cq.wcm.core.components.internal.search.SearchHit;
+import com.adobe.cq.wcm.core.components.internal.search.SearchResultCache;
+import com.adobe.cq.wcm.core.components.internal.search.SearchResultKey;
+import com.adobe.cq.wcm.core.components.internal.search.SuggestionIndex;
 import com.adobe.cq.wcm.core.components.models.Search;
+import com.day.cq.commons.jcr.JcrConstants;
 import com.day.cq.search.PredicateConverter;
 import com.day.cq.search.PredicateGroup;
 import com.day.cq.search.Query;
@@ -62,12 +83,17 @@ import com.day.cq.wcm.api.policies.ContentPolicy;
 import com.day.cq.wcm.api.policies.ContentPolicyManager;
 import com.day.cq.wcm.msm.api.LiveRelationship;
 import com.day.cq.wcm.msm.api.LiveRelationshipManager;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 @Component(
         service = Servlet.class,
         property = {
                 "sling.servlet.selectors=" + SearchResultServlet.DEFAULT_SELECTOR,
+                "sling.servlet.selectors=" + SearchResultServlet.SUGGEST_SELECTOR,
                 "sling.servlet.resourceTypes=cq/Page",
                 "sling.servlet.extensions=json",
                 "sling.servlet.methods=GET"
@@ -76,15 +102,42 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 public class SearchResultServlet extends SlingSafeMethodsServlet {
 
     protected static final String DEFAULT_SELECTOR = "searchresults";
+    protected static final String SUGGEST_SELECTOR = "searchsuggest";
     protected static final String PARAM_FULLTEXT = "fulltext";
 
+    protected static final String PARAM_CURSOR = "cursor";
+    protected static final String PN_RESULTS = "results";
+    protected static final String PN_CURSOR = "cursor";
+
     private static final String PARAM_RESULTS_OFFSET = "resultsOffset";
     private static final String PREDICATE_FULLTEXT = "fulltext";
     private static final String PREDICATE_TYPE = "type";
     private static final String PREDICATE_PATH = "path";
+    private static final String PREDICATE_GUESS_TOTAL = "p.guessTotal";
+    private static final String PREDICATE_DATERANGE = "daterange";
+    private static final String PREDICATE_PROPERTY = "property";
+    private static final String PREDICATE_ORDER_BY = "orderby";
+    private static final String PREDICATE_LIMIT = "p.limit";
+    private static final String PREDICATE_OFFSET = "p.offset";
     private static final String NN_STRUCTURE = "structure";
 
+    private static final int FLUSH_INTERVAL = 10;
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+    private static final String HEADER_RETRY_AFTER = "Retry-After";
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String HEADER_CACHE_CONTROL = "Cache-Control";
+    private static final String ANONYMOUS = "anonymous";
+
+    /**
+     * The time, in seconds, during which the responses to cacheable URLs can be reused by browsers and CDNs without revalidation. The
+     * dispatcher invalidates them when pages are published.
+     */
+    private static final int CACHEABLE_MAX_AGE = 300;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(SearchResultServlet.class);
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final ObjectWriter LIST_ITEM_WRITER = OBJECT_MAPPER.writer();
 
     @Reference
     private QueryBuilder queryBuilder;
@@ -95,14 +148,70 @@ public class SearchResultServlet extends SlingSafeMethodsServlet {
     @Reference
     private LiveRelationshipManager relationshipManager;
 
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC, policyOption = ReferencePolicyOption.GREEDY)
+    private volatile SearchResultCache searchResultCache;
+
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC, policyOption = ReferencePolicyOption.GREEDY)
+    private volatile SuggestionIndex suggestionIndex;
+
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC, policyOption = ReferencePolicyOption.GREEDY)
+    private volatile SearchGuard searchGuard;
+
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC, policyOption = ReferencePolicyOption.GREEDY)
+    private volatile FederatedSearchExecutor federatedSearchExecutor;
+
+    @Reference(cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC, policyOption = ReferencePolicyOption.GREEDY)
+    private volatile List<SearchBackend> searchBackends;
+
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC, policyOption = ReferencePolicyOption.GREEDY)
+    private volatile QueryLog queryLog;
+
     @Override
     protected void doGet(@Nonnull SlingHttpServletRequest request, @Nonnull SlingHttpServletResponse response)
             throws IOException {
         Page currentPage = getCurrentPage(request);
         if (currentPage != null) {
-            Resource searchResource = getSearchContentResource(request, currentPage);
-            List<ListItem> results = getResults(request, searchResource, currentPage);
-            writeJson(results, response);
+            RequestPathInfo requestPathInfo = request.getRequestPathInfo();
+            CacheableSuffix cacheableSuffix = CacheableSuffix.parse(requestPathInfo.getSuffix(), requestPathInfo.getExtension());
+            String relativeContentPath = requestPathInfo.getSuffix();
+            String fulltext = request.getParameter(PARAM_FULLTEXT);
+            String cursorToken = request.getParameter(PARAM_CURSOR);
+            if (cacheableSuffix != null) {
+                relativeContentPath = cacheableSuffix.relativeContentPath;
+                fulltext = cacheableSuffix.fulltext;
+                cursorToken = null;
+            }
+            SearchCursor cursor = null;
+            if (cursorToken != null) {
+                try {
+                    cursor = SearchCursor.parse(cursorToken);
+                } catch (IllegalArgumentException e) {
+                    LOGGER.debug("Invalid search cursor {}.", cursorToken, e);
+                    response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+                    return;
+                }
+            }
+            Resource searchResource = getSearchContentResource(request, currentPage, relativeContentPath);
+            SearchParameters parameters = getSearchParameters(request, searchResource, currentPage, fulltext, cursor);
+            if (cacheableSuffix != null) {
+                if (!parameters.cacheableUrls) {
+                    response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                    return;
+                }
+                parameters.cacheable = true;
+                parameters.resultsOffset = cacheableSuffix.resultsOffset;
+            }
+            List<String> resultPaths;
+            try {
+                resultPaths = getResultPaths(request, parameters);
+            } catch (SearchRejectedException e) {
+                response.setHeader(HEADER_RETRY_AFTER, String.valueOf(e.retryAfter));
+                response.sendError(SC_TOO_MANY_REQUESTS);
+                return;
+            }
+            // read once the results are known, so that the pages written are at least as recent as the version
+            SearchResultCache cache = searchResultCache;
+            writeJson(request, resultPaths, parameters, cache != null ? cache.getVersion() : null, response);
         }
     }
 
@@ -117,22 +226,115 @@ public class SearchResultServlet extends SlingSafeMethodsServlet {
         return currentPage;
     }
 
-    private void writeJson(List<ListItem> results, SlingHttpServletResponse response) {
+    /**
+     * Streams the pages found by the search to the response as a JSON array. The pages are read with the request's resource resolver,
+     * so that cached results never expose pages the user cannot read. Only the item properties requested by the
+     * {@value ListItemProjection#PARAM_FIELDS} parameter are written, if present.
+     *
+     * For the searches paginated by cursor, the array is wrapped in an object together with the token of the cursor of the next page
+     * of results, which is {@code null} once the results are exhausted. The search returns one page more than the page of results for
+     * these searches, which tells whether there is a next page and is not written.
+     *
+     * If the {@link SearchResultCache} is available, the response is tagged with an entity tag computed from the paths of the pages
+     * found and from the cache's {@code version}, which changes with the content, so that unchanged results are answered with a
+     * {@code 304} status without reading the pages. The responses to cacheable URLs can be stored by shared caches as well, if
+     * anonymous.
+     */
+    private void writeJson(@Nonnull SlingHttpServletRequest request, @Nonnull List<String> resultPaths,
+                           @Nonnull SearchParameters parameters, @Nullable String version,
+                           @Nonnull SlingHttpServletResponse response) {
+        SearchCursor cursor = parameters.cursor;
+        ResourceResolver resourceResolver = request.getResourceResolver();
+        PageManager pageManager = resourceResolver.adaptTo(PageManager.class);
+        Set<String> fields = ListItemProjection.getRequestedFields(request);
+        if (parameters.cacheable) {
+            boolean anonymous = ANONYMOUS.equals(resourceResolver.getUserID());
+            response.setHeader(HEADER_CACHE_CONTROL, (anonymous ? "public" : "private") + ", max-age=" + CACHEABLE_MAX_AGE);
+        }
+        if (version != null) {
+            String etag = getETag(version, resourceResolver.getUserID(), resultPaths, fields);
+            response.setHeader(HEADER_ETAG, etag);
+            if (matches(request.getHeader(HEADER_IF_NONE_MATCH), etag)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
         response.setContentType("application/json");
         response.setCharacterEncoding("utf-8");
-        ObjectMapper mapper = new ObjectMapper();
-        try {
-            mapper.writeValue(response.getWriter(), results);
+        try (JsonGenerator generator = OBJECT_MAPPER.getFactory().createGenerator(response.getWriter())) {
+            if (cursor != null) {
+                generator.writeStartObject();
+                generator.writeFieldName(PN_RESULTS);
+            }
+            generator.writeStartArray();
+            int count = 0;
+            Page last = null;
+            for (String path : resultPaths) {
+                if (cursor != null && parameters.resultsSize > 0 && count >= parameters.resultsSize) {
+                    break;
+                }
+                Page page = pageManager != null ? pageManager.getPage(path) : null;
+                if (page == null) {
+                    continue;
+                }
+                LIST_ITEM_WRITER.writeValue(generator, ListItemProjection.of(new PageListItemImpl(request, page), fields));
+                last = page;
+                count++;
+                if (count % FLUSH_INTERVAL == 0) {
+                    generator.flush();
+                }
+            }
+            generator.writeEndArray();
+            if (cursor != null) {
+                SearchCursor next = null;
+                if (last != null && parameters.resultsSize > 0 && resultPaths.size() > parameters.resultsSize) {
+                    next = SearchCursor.after(last);
+                }
+                generator.writeStringField(PN_CURSOR, next != null ? next.toToken() : null);
+                generator.writeEndObject();
+            }
         } catch (IOException e) {
             LOGGER.error(e.getMessage());
         }
     }
 
-    private Resource getSearchContentResource(SlingHttpServletRequest request, Page currentPage) {
+    /**
+     * Returns the entity tag of the response listing the pages found at the {@code paths} for the user, which changes whenever the
+     * {@code version} of the content changes. The user is part of the tag, since the pages the users cannot read are not listed.
+     */
+    @Nonnull
+    private static String getETag(@Nonnull String version, @Nullable String userId, @Nonnull List<String> paths,
+                                  @CheckForNull Set<String> fields) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        hasher.putString(version, StandardCharsets.UTF_8).putChar('\n');
+        hasher.putString(StringUtils.defaultString(userId), StandardCharsets.UTF_8).putChar('\n');
+        hasher.putString(fields != null ? String.join(",", fields) : "", StandardCharsets.UTF_8);
+        for (String path : paths) {
+            hasher.putChar('\n').putString(path, StandardCharsets.UTF_8);
+        }
+        return "\"" + hasher.hash().toString() + "\"";
+    }
+
+    /**
+     * Returns {@code true} if the {@code If-None-Match} header lists the {@code etag}.
+     */
+    private static boolean matches(@Nullable String ifNoneMatch, @Nonnull String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String value : StringUtils.split(ifNoneMatch, ',')) {
+            String tag = StringUtils.removeStart(value.trim(), "W/");
+            if ("*".equals(tag) || etag.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Resource getSearchContentResource(SlingHttpServletRequest request, Page currentPage, @Nullable String relativeContentPath) {
         Resource searchContentResource = null;
-        RequestPathInfo requestPathInfo = request.getRequestPathInfo();
         Resource resource = request.getResource();
-        String relativeContentResource = requestPathInfo.getSuffix();
+        String relativeContentResource = relativeContentPath;
         if (StringUtils.startsWith(relativeContentResource, "/")) {
             relativeContentResource = StringUtils.substring(relativeContentResource, 1);
         }
@@ -155,19 +357,31 @@ public class SearchResultServlet extends SlingSafeMethodsServlet {
     }
 
 
-    private List<ListItem> getResults(SlingHttpServletRequest request, Resource searchResource, Page currentPage) {
-        int searchTermMinimumLength = SearchImpl.PROP_SEARCH_TERM_MINIMUM_LENGTH_DEFAULT;
-        int resultsSize = SearchImpl.PROP_RESULTS_SIZE_DEFAULT;
+    /**
+     * Reads the parameters of the search from the request and from the search component, or its content policy. The search root and
+     * the {@value Search#PN_ADDITIONAL_SEARCH_ROOTS additional search roots} are resolved to their language copy or live copy for the
+     * current page; the roots contained by another root are not searched twice.
+     */
+    @Nonnull
+    private SearchParameters getSearchParameters(SlingHttpServletRequest request, Resource searchResource, Page currentPage,
+                                                 @Nullable String fulltext, @Nullable SearchCursor cursor) {
+        SearchParameters parameters = new SearchParameters();
+        parameters.componentPath = searchResource != null ? searchResource.getPath() : request.getResource().getPath();
         String searchRootPagePath;
+        String[] additionalSearchRoots = new String[0];
         if (searchResource != null) {
             ValueMap valueMap = searchResource.getValueMap();
             ValueMap contentPolicyMap = getContentPolicyProperties(searchResource, request.getResource());
-            searchTermMinimumLength = valueMap.get(Search.PN_SEARCH_TERM_MINIMUM_LENGTH, contentPolicyMap.get(Search
+            parameters.searchTermMinimumLength = valueMap.get(Search.PN_SEARCH_TERM_MINIMUM_LENGTH, contentPolicyMap.get(Search
                         .PN_SEARCH_TERM_MINIMUM_LENGTH, SearchImpl.PROP_SEARCH_TERM_MINIMUM_LENGTH_DEFAULT));
-            resultsSize = valueMap.get(Search.PN_RESULTS_SIZE, contentPolicyMap.get(Search.PN_RESULTS_SIZE,
+            parameters.resultsSize = valueMap.get(Search.PN_RESULTS_SIZE, contentPolicyMap.get(Search.PN_RESULTS_SIZE,
                         SearchImpl.PROP_RESULTS_SIZE_DEFAULT));
             String searchRoot = valueMap.get(Search.PN_SEARCH_ROOT, contentPolicyMap.get(Search.PN_SEARCH_ROOT, SearchImpl.PROP_SEARCH_ROOT_DEFAULT));
             searchRootPagePath = getSearchRootPagePath(searchRoot, currentPage);
+            additionalSearchRoots = valueMap.get(Search.PN_ADDITIONAL_SEARCH_ROOTS, contentPolicyMap.get(Search
+                        .PN_ADDITIONAL_SEARCH_ROOTS, additionalSearchRoots));
+            parameters.searchBackend = contentPolicyMap.get(Search.PN_SEARCH_BACKEND, String.class);
+            parameters.cacheableUrls = contentPolicyMap.get(Search.PN_CACHEABLE_URLS, false);
         } else {
             String languageRoot = languageManager.getLanguageRoot(currentPage.getContentResource()).getPath();
             searchRootPagePath = getSearchRootPagePath(languageRoot, currentPage);
@@ -175,45 +389,343 @@ public class SearchResultServlet extends SlingSafeMethodsServlet {
         if (StringUtils.isEmpty(searchRootPagePath)) {
             searchRootPagePath = currentPage.getPath();
         }
-        List<ListItem> results = new ArrayList<>();
-        String fulltext = request.getParameter(PARAM_FULLTEXT);
-        if (fulltext == null || fulltext.length() < searchTermMinimumLength) {
-            return results;
+        parameters.searchRootPagePath = searchRootPagePath;
+        parameters.searchRootPagePaths.add(searchRootPagePath);
+        for (String additionalSearchRoot : additionalSearchRoots) {
+            String additionalSearchRootPagePath = getSearchRootPagePath(additionalSearchRoot, currentPage);
+            if (StringUtils.isNotEmpty(additionalSearchRootPagePath)) {
+                addSearchRoot(parameters.searchRootPagePaths, additionalSearchRootPagePath);
+            }
         }
-        long resultsOffset = 0;
-        if (request.getParameter(PARAM_RESULTS_OFFSET) != null) {
-            resultsOffset = Long.parseLong(request.getParameter(PARAM_RESULTS_OFFSET));
+        parameters.fulltext = fulltext;
+        if (cursor == null && request.getParameter(PARAM_RESULTS_OFFSET) != null) {
+            parameters.resultsOffset = Long.parseLong(request.getParameter(PARAM_RESULTS_OFFSET));
+        }
+        parameters.cursor = cursor;
+        return parameters;
+    }
+
+    /**
+     * Returns the paths of the pages found by the search, from the {@link SearchResultCache} if available. For the
+     * {@value #SUGGEST_SELECTOR} selector, the paths of the pages suggested by the {@link SuggestionIndex} for the search term are
+     * returned instead.
+     */
+    @Nonnull
+    private List<String> getResultPaths(SlingHttpServletRequest request, SearchParameters parameters) {
+        String fulltext = parameters.fulltext;
+        if (fulltext == null || fulltext.length() < parameters.searchTermMinimumLength) {
+            return Collections.emptyList();
+        }
+        if (SUGGEST_SELECTOR.equals(request.getRequestPathInfo().getSelectorString())) {
+            SuggestionIndex index = suggestionIndex;
+            if (index == null) {
+                return Collections.emptyList();
+            }
+            return index.suggest(parameters.searchRootPagePath, fulltext,
+                    parameters.resultsSize > 0 ? parameters.resultsSize : SearchImpl.PROP_RESULTS_SIZE_DEFAULT);
         }
-        Map<String, String> predicatesMap = new HashMap<>();
-        predicatesMap.put(PREDICATE_FULLTEXT, fulltext);
-        predicatesMap.put(PREDICATE_PATH, searchRootPagePath);
-        predicatesMap.put(PREDICATE_TYPE, NameConstants.NT_PAGE);
-        PredicateGroup predicates = PredicateConverter.createPredicates(predicatesMap);
         ResourceResolver resourceResolver = request.getResource().getResourceResolver();
-        Query query = queryBuilder.createQuery(predicates, resourceResolver.adaptTo(Session.class));
-        if (resultsSize != 0) {
-            query.setHitsPerPage(resultsSize);
+        SearchResultCache cache = searchResultCache;
+        if (cache != null) {
+            return cache.getResults(SearchResultKey.create(resourceResolver, parameters.searchRootPagePaths, fulltext,
+                    parameters.resultsOffset, parameters.resultsSize, parameters.cursor), () -> guardedSearch(request, parameters));
         }
-        if (resultsOffset != 0) {
-            query.setStart(resultsOffset);
+        return guardedSearch(request, parameters);
+    }
+
+    /**
+     * Executes the search if the {@link SearchGuard} permits it.
+     *
+     * @throws SearchRejectedException if the search was rejected
+     */
+    @Nonnull
+    private List<String> guardedSearch(SlingHttpServletRequest request, SearchParameters parameters) {
+        ResourceResolver resourceResolver = request.getResource().getResourceResolver();
+        SearchGuard guard = searchGuard;
+        if (guard == null) {
+            return search(resourceResolver, parameters);
         }
-        SearchResult searchResult = query.getResult();
+        int subtreeSize = countPages(parameters.searchRootPagePaths);
+        try (SearchGuard.Permit permit = guard.tryAcquire(request, parameters.fulltext, parameters.resultsOffset, subtreeSize)) {
+            if (!permit.isGranted()) {
+                LOGGER.debug("Rejected the search for {} below {}.", parameters.fulltext, parameters.searchRootPagePath);
+                throw new SearchRejectedException(permit.getRetryAfter());
+            }
+            return search(resourceResolver, parameters);
+        }
+    }
 
+    /**
+     * Returns the number of pages below the search roots, or {@code -1} if unknown.
+     */
+    private int countPages(List<String> searchRoots) {
+        SuggestionIndex index = suggestionIndex;
+        if (index == null) {
+            return -1;
+        }
+        int count = 0;
+        for (String searchRoot : searchRoots) {
+            int rootCount = index.countPages(searchRoot);
+            if (rootCount < 0) {
+                return -1;
+            }
+            count += rootCount;
+        }
+        return count;
+    }
+
+    /**
+     * Executes the search and returns the paths of the pages found, stopping once the page of results is full.
+     *
+     * The searches paginated by cursor are ordered by descending page creation date and ascending page path, and resume after the
+     * cursor's position; they return one page more than the page of results, if any, so that the last page of results can be told
+     * apart. Other searches are ordered by relevance and paginated by offset; they are executed by the {@link SearchBackend} selected
+     * by the content policy, if available.
+     */
+    @Nonnull
+    private List<String> search(ResourceResolver resourceResolver, SearchParameters parameters) {
+        if (parameters.searchRootPagePaths.size() > 1) {
+            return federatedSearch(resourceResolver, parameters);
+        }
+        if (parameters.cursor != null) {
+            List<String> resultPaths = new ArrayList<>();
+            long limit = parameters.resultsSize > 0 ? parameters.resultsSize + 1 : 0;
+            for (ScoredPage page : searchAfterCursor(resourceResolver, parameters.searchRootPagePaths.get(0), parameters, limit)) {
+                resultPaths.add(page.path);
+            }
+            return resultPaths;
+        }
+        SearchBackend searchBackend = getSearchBackend(parameters);
+        if (searchBackend != null) {
+            List<String> resultPaths = new ArrayList<>();
+            for (SearchHit hit : searchBackend.search(resourceResolver, parameters.searchRootPagePaths.get(0), parameters.fulltext,
+                    parameters.resultsOffset, parameters.resultsSize)) {
+                resultPaths.add(hit.getPath());
+            }
+            return resultPaths;
+        }
+        SearchResult searchResult = getResult(resourceResolver, parameters.searchRootPagePaths.get(0), parameters,
+                parameters.resultsSize, parameters.resultsOffset);
+        List<String> resultPaths = new ArrayList<>();
         List<Hit> hits = searchResult.getHits();
         if (hits != null) {
+            long maxResults = searchResult.getHitsPerPage();
             for (Hit hit : hits) {
+                if (maxResults > 0 && resultPaths.size() >= maxResults) {
+                    break;
+                }
                 try {
-                    Resource hitRes = hit.getResource();
-                    Page page = getPage(hitRes);
+                    Page page = getPage(hit.getResource());
                     if (page != null) {
-                        results.add(new PageListItemImpl(request, page));
+                        resultPaths.add(page.getPath());
                     }
                 } catch (RepositoryException e) {
                     LOGGER.error("Unable to retrieve search results for query.", e);
                 }
             }
         }
-        return results;
+        return resultPaths;
+    }
+
+    /**
+     * Executes the search paginated by cursor below the {@code searchRoot} and returns the pages found after the cursor's position, at
+     * most {@code limit} of them if positive. The date range predicate resuming the search includes the pages created at the same time
+     * as the cursor's page, so the query is repeated from the following hits, in larger batches, until enough pages are found after
+     * the cursor or the hits are exhausted. The pages whose creation date is unknown cannot be positioned and are not returned.
+     */
+    @Nonnull
+    private List<ScoredPage> searchAfterCursor(ResourceResolver resourceResolver, String searchRoot, SearchParameters parameters,
+                                               long limit) {
+        SearchCursor cursor = parameters.cursor;
+        List<ScoredPage> pages = new ArrayList<>();
+        // the cursor's page is found again when resuming the search
+        long batchSize = limit > 0 ? limit + (cursor.isStart() ? 0 : 1) : 0;
+        long start = 0;
+        while (true) {
+            SearchResult searchResult = getResult(resourceResolver, searchRoot, parameters, batchSize, start);
+            List<Hit> hits = searchResult.getHits();
+            if (hits == null) {
+                return pages;
+            }
+            for (Hit hit : hits) {
+                if (limit > 0 && pages.size() >= limit) {
+                    return pages;
+                }
+                try {
+                    Page page = getPage(hit.getResource());
+                    SearchCursor position = page != null ? SearchCursor.after(page) : null;
+                    if (position != null && position.compareTo(cursor) > 0) {
+                        pages.add(new ScoredPage(page.getPath(), hit.getScore(), position));
+                    }
+                } catch (RepositoryException e) {
+                    LOGGER.error("Unable to retrieve search results for query.", e);
+                }
+            }
+            if (batchSize <= 0 || pages.size() >= limit || hits.size() < batchSize) {
+                return pages;
+            }
+            start += hits.size();
+            batchSize *= 2;
+        }
+    }
+
+    /**
+     * Executes the search below each of the search roots, in parallel if the {@link FederatedSearchExecutor} is available, and merges
+     * their results: by descending score for the searches paginated by offset, in the order of the cursors otherwise. Each root
+     * returns the results from the first one up to the requested page, so that the page can be cut from the merged results.
+     *
+     * The executor searches with service resource resolvers, so the merged results are filtered by the access rights of the
+     * {@code resourceResolver} before being paginated.
+     */
+    @Nonnull
+    private List<String> federatedSearch(ResourceResolver resourceResolver, SearchParameters parameters) {
+        SearchCursor cursor = parameters.cursor;
+        int resultsSize = parameters.resultsSize;
+        long hitsPerPage = 0;
+        if (resultsSize != 0) {
+            // the searches paginated by cursor return one page more than the page of results
+            hitsPerPage = parameters.resultsOffset + resultsSize + (cursor != null ? 1 : 0);
+        }
+        final long rootHitsPerPage = hitsPerPage;
+        FederatedSearchExecutor.RootSearch<ScoredPage> rootSearch =
+                (rootResolver, searchRoot) -> searchRoot(rootResolver, searchRoot, parameters, rootHitsPerPage);
+        List<List<ScoredPage>> rootResults;
+        FederatedSearchExecutor executor = federatedSearchExecutor;
+        if (executor != null) {
+            rootResults = executor.execute(parameters.searchRootPagePaths, rootSearch);
+        } else {
+            rootResults = new ArrayList<>();
+            for (String searchRoot : parameters.searchRootPagePaths) {
+                try {
+                    rootResults.add(rootSearch.search(resourceResolver, searchRoot));
+                } catch (Exception e) {
+                    LOGGER.error("Unable to search below {}.", searchRoot, e);
+                }
+            }
+        }
+        Map<String, ScoredPage> pages = new LinkedHashMap<>();
+        for (List<ScoredPage> results : rootResults) {
+            for (ScoredPage page : results) {
+                pages.merge(page.path, page, (first, second) -> first.score >= second.score ? first : second);
+            }
+        }
+        List<ScoredPage> merged = new ArrayList<>(pages.values());
+        merged.sort(cursor != null ? ScoredPage.BY_POSITION : ScoredPage.BY_SCORE);
+        List<String> resultPaths = new ArrayList<>();
+        long maxResults = resultsSize > 0 && cursor != null ? resultsSize + 1 : resultsSize;
+        long skipped = 0;
+        for (ScoredPage page : merged) {
+            if (maxResults > 0 && resultPaths.size() >= maxResults) {
+                break;
+            }
+            if (resourceResolver.getResource(page.path) == null) {
+                continue;
+            }
+            if (skipped < parameters.resultsOffset) {
+                skipped++;
+                continue;
+            }
+            resultPaths.add(page.path);
+        }
+        return resultPaths;
+    }
+
+    /**
+     * Executes the search below a single root of a federated search and returns the pages found with their score and position.
+     */
+    @Nonnull
+    private List<ScoredPage> searchRoot(ResourceResolver resourceResolver, String searchRoot, SearchParameters parameters,
+                                        long hitsPerPage) throws RepositoryException {
+        if (parameters.cursor != null) {
+            return searchAfterCursor(resourceResolver, searchRoot, parameters, hitsPerPage);
+        }
+        SearchBackend searchBackend = getSearchBackend(parameters);
+        if (searchBackend != null) {
+            List<ScoredPage> pages = new ArrayList<>();
+            for (SearchHit hit : searchBackend.search(resourceResolver, searchRoot, parameters.fulltext, 0, (int) hitsPerPage)) {
+                pages.add(new ScoredPage(hit.getPath(), hit.getScore(), null));
+            }
+            return pages;
+        }
+        SearchResult searchResult = getResult(resourceResolver, searchRoot, parameters, hitsPerPage, 0);
+        List<ScoredPage> pages = new ArrayList<>();
+        List<Hit> hits = searchResult.getHits();
+        if (hits != null) {
+            for (Hit hit : hits) {
+                Page page = getPage(hit.getResource());
+                if (page != null) {
+                    pages.add(new ScoredPage(page.getPath(), hit.getScore(), null));
+                }
+            }
+        }
+        return pages;
+    }
+
+    /**
+     * Returns the {@link SearchBackend} selected by the content policy for the searches ordered by relevance, or {@code null} if the
+     * pages are to be found by the query engine.
+     */
+    @CheckForNull
+    private SearchBackend getSearchBackend(SearchParameters parameters) {
+        return parameters.cursor == null ? SearchBackend.select(searchBackends, parameters.searchBackend) : null;
+    }
+
+    /**
+     * Executes the query finding the pages below the {@code searchRoot}, returning at most {@code hitsPerPage} hits if positive, from
+     * the {@code start} one. The query is recorded by the {@link QueryLog}, if available.
+     */
+    @Nonnull
+    private SearchResult getResult(ResourceResolver resourceResolver, String searchRoot, SearchParameters parameters, long hitsPerPage,
+                                   long start) {
+        SearchCursor cursor = parameters.cursor;
+        Map<String, String> predicatesMap = new HashMap<>();
+        predicatesMap.put(PREDICATE_FULLTEXT, parameters.fulltext);
+        predicatesMap.put(PREDICATE_PATH, searchRoot);
+        predicatesMap.put(PREDICATE_TYPE, NameConstants.NT_PAGE);
+        // the total number of results is never displayed
+        predicatesMap.put(PREDICATE_GUESS_TOTAL, Boolean.TRUE.toString());
+        if (cursor != null) {
+            predicatesMap.put("1_" + PREDICATE_ORDER_BY, "@" + JcrConstants.JCR_CREATED);
+            predicatesMap.put("1_" + PREDICATE_ORDER_BY + ".sort", "desc");
+            predicatesMap.put("2_" + PREDICATE_ORDER_BY, PREDICATE_PATH);
+            // the pages whose creation date is unknown cannot be positioned
+            predicatesMap.put(PREDICATE_PROPERTY, JcrConstants.JCR_CREATED);
+            predicatesMap.put(PREDICATE_PROPERTY + ".operation", "exists");
+            if (!cursor.isStart()) {
+                predicatesMap.put(PREDICATE_DATERANGE + ".property", JcrConstants.JCR_CREATED);
+                predicatesMap.put(PREDICATE_DATERANGE + ".upperBound", cursor.getUpperBound());
+                predicatesMap.put(PREDICATE_DATERANGE + ".upperOperation", "<=");
+            }
+        }
+        PredicateGroup predicates = PredicateConverter.createPredicates(predicatesMap);
+        Query query = queryBuilder.createQuery(predicates, resourceResolver.adaptTo(Session.class));
+        if (hitsPerPage > 0) {
+            query.setHitsPerPage(hitsPerPage);
+        }
+        if (start > 0) {
+            query.setStart(start);
+        }
+        QueryLog log = queryLog;
+        if (log == null) {
+            return query.getResult();
+        }
+        Map<String, String> loggedPredicates = new HashMap<>(predicatesMap);
+        loggedPredicates.put(PREDICATE_LIMIT, Long.toString(hitsPerPage));
+        loggedPredicates.put(PREDICATE_OFFSET, Long.toString(start));
+        return log.getResult(parameters.componentPath, loggedPredicates, resourceResolver, query::getResult);
+    }
+
+    /**
+     * Adds the {@code searchRoot} to the {@code searchRoots}, unless it is contained by one of them; the roots it contains are removed.
+     */
+    private void addSearchRoot(List<String> searchRoots, String searchRoot) {
+        for (String root : searchRoots) {
+            if (searchRoot.equals(root) || searchRoot.startsWith(root + "/")) {
+                return;
+            }
+        }
+        searchRoots.removeIf(root -> root.startsWith(searchRoot + "/"));
+        searchRoots.add(searchRoot);
     }
 
     private String getSearchRootPagePath(String searchRoot, Page currentPage) {
@@ -289,4 +801,99 @@ public class SearchResultServlet extends SlingSafeMethodsServlet {
         }
         return null;
     }
+
+    /**
+     * The parameters of a search, read from the request and from the search component.
+     */
+    private static final class SearchParameters {
+        private String componentPath;
+        private String searchRootPagePath;
+        private final List<String> searchRootPagePaths = new ArrayList<>();
+        private String fulltext;
+        private int searchTermMinimumLength = SearchImpl.PROP_SEARCH_TERM_MINIMUM_LENGTH_DEFAULT;
+        private int resultsSize = SearchImpl.PROP_RESULTS_SIZE_DEFAULT;
+        private long resultsOffset;
+        private SearchCursor cursor;
+        private boolean cacheable;
+        private boolean cacheableUrls;
+        private String searchBackend;
+    }
+
+    /**
+     * The suffix of the cacheable URLs, which carry the search term and the offset of the results instead of request parameters, so
+     * that the dispatcher and CDNs can cache the responses: {@code /<component path>/<term>/<offset>.json}, where the term is encoded
+     * in base64url. The results are ordered by relevance, like the ones requested with parameters.
+     */
+    static final class CacheableSuffix {
+        private final String relativeContentPath;
+        private final String fulltext;
+        private final long resultsOffset;
+
+        private CacheableSuffix(String relativeContentPath, String fulltext, long resultsOffset) {
+            this.relativeContentPath = relativeContentPath;
+            this.fulltext = fulltext;
+            this.resultsOffset = resultsOffset;
+        }
+
+        /**
+         * Parses the {@code suffix} of a cacheable URL, or returns {@code null} if the suffix is not one.
+         */
+        @CheckForNull
+        static CacheableSuffix parse(@Nullable String suffix, @Nullable String extension) {
+            if (suffix == null || extension == null || !suffix.endsWith("." + extension)) {
+                return null;
+            }
+            String path = suffix.substring(0, suffix.length() - extension.length() - 1);
+            int offsetStart = path.lastIndexOf('/');
+            int termStart = offsetStart > 0 ? path.lastIndexOf('/', offsetStart - 1) : -1;
+            if (termStart < 0) {
+                return null;
+            }
+            String offset = path.substring(offsetStart + 1);
+            if (offset.isEmpty() || !StringUtils.isNumeric(offset)) {
+                return null;
+            }
+            String fulltext;
+            long resultsOffset;
+            try {
+                fulltext = new String(Base64.getUrlDecoder().decode(path.substring(termStart + 1, offsetStart)), StandardCharsets.UTF_8);
+                resultsOffset = Long.parseLong(offset);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            return new CacheableSuffix(path.substring(0, termStart), fulltext, resultsOffset);
+        }
+    }
+
+    /**
+     * A page found below one of the roots of a federated search.
+     */
+    private static final class ScoredPage {
+        private static final Comparator<ScoredPage> BY_SCORE = Comparator.<ScoredPage>comparingDouble(page -> page.score).reversed()
+                .thenComparing(page -> page.path);
+        private static final Comparator<ScoredPage> BY_POSITION = Comparator.comparing((ScoredPage page) -> page.position,
+                Comparator.nullsLast(Comparator.naturalOrder())).thenComparing(page -> page.path);
+
+        private final String path;
+        private final double score;
+        private final SearchCursor position;
+
+        private ScoredPage(String path, double score, @Nullable SearchCursor position) {
+            this.path = path;
+            this.score = score;
+            this.position = position;
+        }
+    }
+
+    /**
+     * Thrown when the {@link SearchGuard} rejects a search.
+     */
+    private static final class SearchRejectedException extends RuntimeException {
+        private final long retryAfter;
+
+        private SearchRejectedException(long retryAfter) {
+            super(null, null, false, false);
+            this.retryAfter = retryAfter;
+        }
+    }
 }
@@ -117,6 +117,39 @@ public interface Image extends ComponentExporter {
      */
     String PN_FLIP_VERTICAL = "imageFlipVertical";
 
+    /**
+     * Name of the configuration policy property that will indicate if images without transparency should be served as JPEG images,
+     * for clients that accept them, even if their binary is stored as a PNG image.
+     *
+     * @since com.adobe.cq.wcm.core.components.models 12.4.0
+     */
+    String PN_DESIGN_NEGOTIATE_OUTPUT_FORMAT = "negotiateOutputFormat";
+
+    /**
+     * Name of the configuration policy property that will indicate if the metadata which is not needed for rendering an image (e.g.
+     * EXIF, XMP or IPTC) should be removed from the rendered images.
+     *
+     * @since com.adobe.cq.wcm.core.components.models 12.4.0
+     */
+    String PN_DESIGN_STRIP_METADATA = "stripMetadata";
+
+    /**
+     * Name of the configuration policy property that will define the placeholder displayed until a lazy loaded image is loaded:
+     * {@code color} for the average colour of the image, {@code image} for a low quality version of the image (falling back to the
+     * average colour for cropped, rotated or flipped images). No placeholder is displayed if the property is not set.
+     *
+     * @since com.adobe.cq.wcm.core.components.models 12.5.0
+     */
+    String PN_DESIGN_PLACEHOLDER = "placeholder";
+
+    /**
+     * Name of the configuration policy property that will define if the image URLs are versioned with a fingerprint of the image's
+     * content and of its cropping, rotation and flipping, instead of the last modified date, so that they don't change when only
+     * metadata is edited.
+     *
+     * @since com.adobe.cq.wcm.core.components.models 12.5.0
+     */
+    String PN_DESIGN_FINGERPRINT_URLS = "fingerprintUrls";
 
     /**
      * Returns the value for the {@code src} attribute of the image.
@@ -232,6 +265,68 @@ public interface Image extends ComponentExporter {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Returns the value for the {@code srcset} attribute of the image, listing the URLs of the image's renditions together with their
+     * width descriptors, so that browsers can select the optimal rendition without running any script.
+     *
+     * @return the value for the image's {@code srcset} attribute, or {@code null} if the image doesn't have alternative widths
+     * @since com.adobe.cq.wcm.core.components.models 12.5.0
+     */
+    default String getSrcset() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns the value for the {@code sizes} attribute of the image, describing the width the image will be displayed with.
+     *
+     * @return the value for the image's {@code sizes} attribute, or {@code null} if the image doesn't provide a {@code srcset}
+     * @since com.adobe.cq.wcm.core.components.models 12.5.0
+     */
+    default String getSizes() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns the intrinsic width of the image, after applying its cropping and rotation.
+     *
+     * @return the image's width in pixels, or {@code 0} if it is not known
+     * @since com.adobe.cq.wcm.core.components.models 12.5.0
+     */
+    default int getWidth() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns the intrinsic height of the image, after applying its cropping and rotation.
+     *
+     * @return the image's height in pixels, or {@code 0} if it is not known
+     * @since com.adobe.cq.wcm.core.components.models 12.5.0
+     */
+    default int getHeight() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns the {@code data:} URI of a low quality version of the image (at most 1KB large), to be displayed, scaled up, until the
+     * image is loaded.
+     *
+     * @return the placeholder's URI, or {@code null} if the {@link #PN_DESIGN_PLACEHOLDER} policy doesn't request it
+     * @since com.adobe.cq.wcm.core.components.models 12.5.0
+     */
+    default String getPlaceholder() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns the average colour of the image, as a CSS hexadecimal colour, to be displayed until the image is loaded.
+     *
+     * @return the image's average colour, or {@code null} if the {@link #PN_DESIGN_PLACEHOLDER} policy doesn't request a placeholder
+     * @since com.adobe.cq.wcm.core.components.models 12.5.0
+     */
+    default String getPlaceholderColor() {
+        throw new UnsupportedOperationException();
+    }
+
     /**
      * @see ComponentExporter#getExportedType()
      * @since com.adobe.cq.wcm.core.components.models 12.2.0
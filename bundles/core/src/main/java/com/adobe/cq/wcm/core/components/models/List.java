@@ -119,6 +119,15 @@ public interface List extends ComponentExporter {
      */
     String PN_SEARCH_IN = "searchIn";
 
+    /**
+     * Name of the configuration policy property storing the name of the search backend finding the pages if the source of the list is
+     * <code>search</code>. When empty or when no such backend is available, the pages are found by the repository's query engine.
+     *
+     * @see #PN_SOURCE
+     * @since com.adobe.cq.wcm.core.components.models 12.6.0
+     */
+    String PN_SEARCH_BACKEND = "searchBackend";
+
     /**
      * Name of the resource property indicating how the list items should be sorted. Possible values: <code>asc</code>, <code>desc</code>.
      *
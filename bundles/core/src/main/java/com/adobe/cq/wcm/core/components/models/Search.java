@@ -34,6 +34,15 @@ public interface Search extends ComponentExporter {
      */
     String PN_SEARCH_ROOT = "searchRoot";
 
+    /**
+     * Name of the resource / configuration policy property that defines the further search roots searched together with the
+     * {@link #PN_SEARCH_ROOT search root}. Like the search root, each of them is resolved to its language copy or live copy for the
+     * current page. The property should provide a String array value.
+     *
+     * @since com.adobe.cq.wcm.core.components.models 12.6.0
+     */
+    String PN_ADDITIONAL_SEARCH_ROOTS = "additionalSearchRoots";
+
     /**
      * Name of the configuration policy property that defines the minimum length of the search term to start the search.
      *
@@ -48,6 +57,22 @@ public interface Search extends ComponentExporter {
      */
     String PN_RESULTS_SIZE = "resultsSize";
 
+    /**
+     * Name of the configuration policy property that defines if the search results are fetched through cacheable URLs, which carry the
+     * search term and the position in the results in their suffix instead of request parameters.
+     *
+     * @since com.adobe.cq.wcm.core.components.models 12.6.0
+     */
+    String PN_CACHEABLE_URLS = "cacheableUrls";
+
+    /**
+     * Name of the configuration policy property that defines the name of the search backend finding the pages for the search requests
+     * ordered by relevance. When empty or when no such backend is available, the pages are found by the repository's query engine.
+     *
+     * @since com.adobe.cq.wcm.core.components.models 12.6.0
+     */
+    String PN_SEARCH_BACKEND = "searchBackend";
+
     /**
      * The maximal number of results fetched by a search request.
      *
@@ -68,6 +93,17 @@ public interface Search extends ComponentExporter {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Indicates if the search results are fetched through cacheable URLs.
+     *
+     * @return {@code true} if the search results are fetched through cacheable URLs
+     * @see #PN_CACHEABLE_URLS
+     * @since com.adobe.cq.wcm.core.components.models 12.6.0
+     */
+    default boolean isCacheableUrls() {
+        throw new UnsupportedOperationException();
+    }
+
     /**
      * Relative path of the search component in the current page.
      *
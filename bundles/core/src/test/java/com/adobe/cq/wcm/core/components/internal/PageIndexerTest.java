@@ -0,0 +1,139 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2017 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.adobe.cq.wcm.core.components.context.CoreComponentTestContext;
+import com.day.cq.wcm.api.Page;
+import io.wcm.testing.mock.aem.junit.AemContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PageIndexerTest {
+
+    private static final String ROOT = "/content/en";
+    private static final String SEARCH = ROOT + "/search";
+    private static final String PAGE = SEARCH + "/page";
+    private static final String PAGE_TEMPLATE = SEARCH + "/page-template";
+
+    @Rule
+    public AemContext context = CoreComponentTestContext.createContext("/search", "/content");
+
+    private final List<String> events = new ArrayList<>();
+    private PageIndexer indexer;
+
+    @After
+    public void tearDown() {
+        if (indexer != null) {
+            indexer.shutdown();
+        }
+    }
+
+    @Test
+    public void testBuild() throws Exception {
+        indexer = new PageIndexer("test-indexer", "test pages", new String[] {ROOT},
+                currentIndexer -> currentIndexer.indexRoots(context.resourceResolver(), page -> events.add(page.getPath())));
+        indexer.getIndexing().get(10, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList(ROOT, SEARCH, PAGE, PAGE_TEMPLATE), events);
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        indexer = new PageIndexer("test-indexer", "test pages", new String[] {ROOT}, currentIndexer -> {
+        });
+        update(change(PAGE + "/jcr:content/root/text", ResourceChange.ChangeType.ADDED));
+        update(change(PAGE + "/jcr:content", ResourceChange.ChangeType.CHANGED));
+        assertEquals(Arrays.asList("index " + PAGE, "index " + PAGE), events);
+
+        events.clear();
+        update(change(SEARCH, ResourceChange.ChangeType.ADDED));
+        assertEquals(Arrays.asList("index " + SEARCH, "index " + PAGE, "index " + PAGE_TEMPLATE), events);
+
+        events.clear();
+        ResourceResolver resourceResolver = context.resourceResolver();
+        resourceResolver.delete(resourceResolver.getResource(PAGE));
+        resourceResolver.commit();
+        update(change(PAGE + "/jcr:content", ResourceChange.ChangeType.REMOVED));
+        update(change(PAGE, ResourceChange.ChangeType.REMOVED));
+        assertEquals(Arrays.asList("remove " + PAGE, "removeTree " + PAGE), events);
+
+        // the changes in the DAM and outside of the roots are ignored
+        events.clear();
+        update(change("/content/dam/en/image", ResourceChange.ChangeType.ADDED));
+        update(change("/content/de/search", ResourceChange.ChangeType.REMOVED));
+        assertEquals(Collections.emptyList(), events);
+    }
+
+    @Test
+    public void testChangedPageNodeIndexesOnlyThatPage() throws Exception {
+        indexer = new PageIndexer("test-indexer", "test pages", new String[] {ROOT}, currentIndexer -> {
+        });
+        update(change(ROOT, ResourceChange.ChangeType.CHANGED));
+        update(change(SEARCH, ResourceChange.ChangeType.CHANGED));
+        assertEquals(Arrays.asList("index " + ROOT, "index " + SEARCH), events);
+    }
+
+    @Test
+    public void testShutdown() throws Exception {
+        indexer = new PageIndexer("test-indexer", "test pages", new String[] {ROOT}, currentIndexer -> {
+        });
+        indexer.shutdown();
+        // the tasks submitted once the indexer is shut down are dropped
+        indexer.submit(() -> events.add("task"));
+        assertEquals(Collections.emptyList(), events);
+    }
+
+    private void update(ResourceChange change) {
+        indexer.update(context.resourceResolver(), Collections.singletonList(change), new PageIndexer.Target() {
+            @Override
+            public void index(@Nonnull Page page) {
+                events.add("index " + page.getPath());
+            }
+
+            @Override
+            public void remove(@Nonnull String path) {
+                events.add("remove " + path);
+            }
+
+            @Override
+            public void removeTree(@Nonnull String path) {
+                events.add("removeTree " + path);
+            }
+        });
+    }
+
+    private static ResourceChange change(String path, ResourceChange.ChangeType type) {
+        ResourceChange change = mock(ResourceChange.class);
+        when(change.getPath()).thenReturn(path);
+        when(change.getType()).thenReturn(type);
+        return change;
+    }
+}
@@ -0,0 +1,84 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2017 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PathListCacheTest {
+
+    private static final List<String> PATHS = Arrays.asList("/content/en/page", "/content/en/page-template");
+
+    @Test
+    public void testInvalidate() {
+        PathListCache<String> cache = new PathListCache<>(100, 300, false);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("a", () -> load(loads));
+        cache.get("b", () -> load(loads));
+        String version = cache.getVersion();
+        cache.invalidate("a"::equals);
+        assertNotEquals(version, cache.getVersion());
+        assertEquals(1, cache.getSize());
+        cache.get("a", () -> load(loads));
+        cache.get("b", () -> load(loads));
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void testStaleWhileRevalidate() {
+        PathListCache<String> cache = new PathListCache<>(100, 300, true);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("a", () -> load(loads));
+        cache.invalidate(key -> true);
+        assertEquals(1, cache.getSize());
+        // the concurrent request is answered with the stale paths while the list is loaded again
+        assertEquals(PATHS, cache.get("a", () -> cache.get("a", () -> load(loads))));
+        assertEquals(1, cache.getStaleHitCount());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testWeight() {
+        PathListCache<String> cache = new PathListCache<>(5, 300, false);
+        cache.get("a", () -> PATHS);
+        cache.get("b", () -> PATHS);
+        assertEquals(1, cache.getSize());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testIsRelated() {
+        assertTrue(PathListCache.isRelated("/content/en", "/content/en"));
+        assertTrue(PathListCache.isRelated("/content/en", "/content/en/page"));
+        assertTrue(PathListCache.isRelated("/content/en", "/content"));
+        assertFalse(PathListCache.isRelated("/content/en", "/content/english"));
+        assertFalse(PathListCache.isRelated("/content/en", "/content/de"));
+        assertFalse(PathListCache.isDescendant("/content/en", "/content"));
+    }
+
+    private static List<String> load(AtomicInteger loads) {
+        loads.incrementAndGet();
+        return PATHS;
+    }
+}
@@ -0,0 +1,110 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.image;
+
+import java.util.Collections;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.adobe.cq.wcm.core.components.context.CoreComponentTestContext;
+import io.wcm.testing.mock.aem.junit.AemContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AssetInfoServiceImplTest {
+
+    private static final String DAM_ROOT = "/content/dam/core/images";
+    private static final String ASSET_NAME = "Adobe_Systems_logo_and_wordmark.png";
+    private static final String ASSET_PATH = DAM_ROOT + "/" + ASSET_NAME;
+
+    @Rule
+    public AemContext context = CoreComponentTestContext.createContext();
+
+    private AssetInfoServiceImpl assetInfoService;
+
+    @Before
+    public void setUp() {
+        context.load().json("/image/test-content-dam.json", DAM_ROOT);
+        context.load().binaryFile("/image/" + ASSET_NAME, ASSET_PATH + "/jcr:content/renditions/original");
+        context.load().binaryFile("/image/cq5dam.web.1280.1280_" + ASSET_NAME, ASSET_PATH + "/jcr:content/renditions/cq5dam.web.1280.1280.png");
+        assetInfoService = new AssetInfoServiceImpl();
+    }
+
+    @Test
+    public void testAssetInfo() {
+        AssetInfo assetInfo = assetInfoService.getAssetInfo(getResource(ASSET_PATH));
+        assertNotNull(assetInfo);
+        assertEquals(ASSET_PATH, assetInfo.getPath());
+        assertEquals(ASSET_NAME, assetInfo.getName());
+        assertEquals("image/png", assetInfo.getMimeType());
+        assertEquals(1490005239000L, assetInfo.getLastModified());
+        assertEquals("Adobe Systems Logo and Wordmark", assetInfo.getTitle());
+        assertEquals("Adobe Systems Logo and Wordmark in PNG format", assetInfo.getDescription());
+        assertEquals(2000, assetInfo.getWidth());
+        assertEquals(2000, assetInfo.getHeight());
+        assertTrue(assetInfo.getRenditionNames().contains("original"));
+        assertEquals("cq5dam.web.1280.1280.png", assetInfo.getWebRenditionName());
+        assertEquals(1280, assetInfo.getWebRenditionWidth());
+    }
+
+    @Test
+    public void testCaching() {
+        AssetInfo assetInfo = assetInfoService.getAssetInfo(getResource(ASSET_PATH));
+        assertSame(assetInfo, assetInfoService.getAssetInfo(getResource(ASSET_PATH)));
+    }
+
+    @Test
+    public void testInvalidation() {
+        AssetInfo assetInfo = assetInfoService.getAssetInfo(getResource(ASSET_PATH));
+        assetInfoService.onChange(Collections.singletonList(change(ASSET_PATH + "/jcr:content/metadata", ResourceChange.ChangeType.CHANGED)));
+        AssetInfo updatedAssetInfo = assetInfoService.getAssetInfo(getResource(ASSET_PATH));
+        assertNotSame(assetInfo, updatedAssetInfo);
+        assertSame(updatedAssetInfo, assetInfoService.getAssetInfo(getResource(ASSET_PATH)));
+
+        // removing an ancestor folder invalidates the assets stored below it
+        assetInfoService.onChange(Collections.singletonList(change(DAM_ROOT, ResourceChange.ChangeType.REMOVED)));
+        assertNotSame(updatedAssetInfo, assetInfoService.getAssetInfo(getResource(ASSET_PATH)));
+    }
+
+    @Test
+    public void testNotAnAsset() {
+        assertNull(assetInfoService.getAssetInfo(getResource(ASSET_PATH + "/jcr:content")));
+    }
+
+    private Resource getResource(String path) {
+        Resource resource = context.resourceResolver().getResource(path);
+        assertNotNull(resource);
+        return resource;
+    }
+
+    private static ResourceChange change(String path, ResourceChange.ChangeType type) {
+        ResourceChange change = mock(ResourceChange.class);
+        when(change.getPath()).thenReturn(path);
+        when(change.getType()).thenReturn(type);
+        return change;
+    }
+}
@@ -0,0 +1,123 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.image;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.adobe.cq.wcm.core.components.context.CoreComponentTestContext;
+import com.adobe.cq.wcm.core.components.models.Image;
+import com.day.cq.commons.ImageResource;
+import io.wcm.testing.mock.aem.junit.AemContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class FingerprintServiceImplTest {
+
+    private static final String DAM_ROOT = "/content/dam/core/images";
+    private static final String ASSET_NAME = "Adobe_Systems_logo_and_wordmark.png";
+    private static final String ASSET_PATH = DAM_ROOT + "/" + ASSET_NAME;
+    private static final String FILE_PATH = "/content/files/image.png";
+    private static final String FILE_COPY_PATH = "/content/files/copy.png";
+
+    @Rule
+    public AemContext context = CoreComponentTestContext.createContext();
+
+    private FingerprintServiceImpl fingerprintService;
+
+    @Before
+    public void setUp() {
+        context.load().json("/image/test-content-dam.json", DAM_ROOT);
+        context.load().binaryFile("/image/" + ASSET_NAME, ASSET_PATH + "/jcr:content/renditions/original");
+        context.load().binaryFile("/image/" + ASSET_NAME, FILE_PATH, "image/png");
+        context.load().binaryFile("/image/" + ASSET_NAME, FILE_COPY_PATH, "image/png");
+        fingerprintService = new FingerprintServiceImpl();
+    }
+
+    @Test
+    public void testFingerprint() {
+        String fingerprint = fingerprintService.getFingerprint(getResource(ASSET_PATH), properties());
+        assertNotNull(fingerprint);
+        assertTrue(fingerprint.matches("[0-9a-f]{" + FingerprintService.FINGERPRINT_LENGTH + "}"));
+        assertEquals(fingerprint, fingerprintService.getFingerprint(getResource(ASSET_PATH), properties()));
+    }
+
+    @Test
+    public void testMetadataChanges() throws Exception {
+        String fingerprint = fingerprintService.getFingerprint(getResource(ASSET_PATH), properties());
+        ModifiableValueMap metadata = getResource(ASSET_PATH + "/jcr:content/metadata").adaptTo(ModifiableValueMap.class);
+        metadata.put("dc:title", "Another title");
+        context.resourceResolver().commit();
+        assertEquals(fingerprint, fingerprintService.getFingerprint(getResource(ASSET_PATH), properties()));
+
+        // DAM updates the digest of the assets when their original rendition changes
+        metadata.put(FingerprintServiceImpl.PN_SHA1, "da39a3ee5e6b4b0d3255bfef95601890afd80709");
+        context.resourceResolver().commit();
+        assertNotEquals(fingerprint, fingerprintService.getFingerprint(getResource(ASSET_PATH), properties()));
+    }
+
+    @Test
+    public void testTransformations() {
+        String fingerprint = fingerprintService.getFingerprint(getResource(ASSET_PATH), properties());
+        assertNotEquals(fingerprint, fingerprintService.getFingerprint(getResource(ASSET_PATH),
+                properties(ImageResource.PN_IMAGE_CROP, "0,0,100,100")));
+        assertNotEquals(fingerprint, fingerprintService.getFingerprint(getResource(ASSET_PATH),
+                properties(ImageResource.PN_IMAGE_ROTATE, "90")));
+        assertNotEquals(fingerprint, fingerprintService.getFingerprint(getResource(ASSET_PATH),
+                properties(Image.PN_FLIP_HORIZONTAL, true)));
+        // other properties of the component don't change the rendered image
+        assertEquals(fingerprint, fingerprintService.getFingerprint(getResource(ASSET_PATH), properties("alt", "Adobe Logo")));
+    }
+
+    @Test
+    public void testBinaryDigest() throws Exception {
+        String fingerprint = fingerprintService.getFingerprint(getResource(FILE_PATH), properties());
+        assertNotNull(fingerprint);
+        // the fingerprint identifies the content, not the location of the binary
+        assertEquals(fingerprint, fingerprintService.getFingerprint(getResource(FILE_COPY_PATH), properties()));
+
+        // assets without a stored digest are identified by the digest of their original rendition
+        ModifiableValueMap metadata = getResource(ASSET_PATH + "/jcr:content/metadata").adaptTo(ModifiableValueMap.class);
+        metadata.remove(FingerprintServiceImpl.PN_SHA1);
+        context.resourceResolver().commit();
+        assertEquals(fingerprint, fingerprintService.getFingerprint(getResource(ASSET_PATH), properties()));
+    }
+
+    private Resource getResource(String path) {
+        Resource resource = context.resourceResolver().getResource(path);
+        assertNotNull(resource);
+        return resource;
+    }
+
+    private static ValueMap properties(Object... keysAndValues) {
+        Map<String, Object> properties = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            properties.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return new ValueMapDecorator(properties);
+    }
+}
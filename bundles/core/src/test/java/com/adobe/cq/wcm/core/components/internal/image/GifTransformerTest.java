@@ -0,0 +1,248 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.image;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class GifTransformerTest {
+
+    private static final String IMAGE_METADATA_FORMAT = "javax_imageio_gif_image_1.0";
+    private static final String STREAM_METADATA_FORMAT = "javax_imageio_gif_stream_1.0";
+    private static final IndexColorModel PALETTE = new IndexColorModel(8, 4,
+            new byte[]{0, (byte) 255, 0, 0},
+            new byte[]{0, 0, (byte) 255, 0},
+            new byte[]{0, 0, 0, (byte) 255}, 0);
+
+    @Test
+    public void testResizeKeepsAnimationMetadata() throws IOException {
+        byte[] gif = createAnimation();
+        ImageReader reader = transform(new GifTransformer().resize(20), gif);
+        try {
+            assertEquals(3, reader.getNumImages(true));
+            assertScreen(reader, 20, 10);
+            assertFrame(reader, 0, new Rectangle(0, 0, 20, 10), 10, "none");
+            assertFrame(reader, 1, new Rectangle(10, 5, 10, 5), 20, "doNotDispose");
+            assertFrame(reader, 2, new Rectangle(0, 0, 5, 5), 30, "restoreToBackgroundColor");
+            assertEquals("Expected the loop count to be preserved.", "NETSCAPE",
+                    getChild(getChild(getImageMetadata(reader, 0), "ApplicationExtensions"), "ApplicationExtension")
+                            .getAttribute("applicationID"));
+            assertEquals(Color.RED.getRGB(), reader.read(0).getRGB(5, 5));
+            assertEquals(Color.GREEN.getRGB(), reader.read(1).getRGB(2, 2));
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    @Test
+    public void testCropAndFlip() throws IOException {
+        byte[] gif = createAnimation();
+        ImageReader reader = transform(new GifTransformer().crop(new Rectangle(10, 0, 30, 20)).flipHorizontally(true)
+                .flipVertically(true), gif);
+        try {
+            assertEquals(3, reader.getNumImages(true));
+            assertScreen(reader, 30, 20);
+            assertFrame(reader, 0, new Rectangle(0, 0, 30, 20), 10, "none");
+            // the second frame covers the bottom right quarter, which becomes the top left quarter once flipped
+            assertFrame(reader, 1, new Rectangle(0, 0, 20, 10), 20, "doNotDispose");
+            // the third frame is outside of the cropping rectangle, so only its timing is kept
+            assertFrame(reader, 2, new Rectangle(29, 19, 1, 1), 30, "restoreToBackgroundColor");
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    @Test
+    public void testRotate() throws IOException {
+        byte[] gif = createAnimation();
+        ImageReader reader = transform(new GifTransformer().rotate(90).resize(10), gif);
+        try {
+            assertScreen(reader, 10, 20);
+            assertFrame(reader, 1, new Rectangle(0, 10, 5, 10), 20, "doNotDispose");
+            assertFrame(reader, 2, new Rectangle(5, 0, 5, 5), 30, "restoreToBackgroundColor");
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    @Test
+    public void testNoUpscaling() throws IOException {
+        byte[] gif = createAnimation();
+        ImageReader reader = transform(new GifTransformer().resize(80), gif);
+        try {
+            assertScreen(reader, 40, 20);
+            assertFrame(reader, 1, new Rectangle(20, 10, 20, 10), 20, "doNotDispose");
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    @Test
+    public void testStripMetadata() throws IOException {
+        byte[] gif = createAnimation();
+        ImageReader reader = transform(new GifTransformer().resize(20), gif);
+        try {
+            assertEquals("comment", getChild(getChild(getImageMetadata(reader, 0), "CommentExtensions"), "CommentExtension")
+                    .getAttribute("value"));
+        } finally {
+            reader.dispose();
+        }
+        reader = transform(new GifTransformer().resize(20).stripMetadata(true), gif);
+        try {
+            IIOMetadataNode metadata = getImageMetadata(reader, 0);
+            assertEquals(0, metadata.getElementsByTagName("CommentExtensions").getLength());
+            assertEquals("Expected the loop count to be preserved.", "NETSCAPE",
+                    getChild(getChild(metadata, "ApplicationExtensions"), "ApplicationExtension").getAttribute("applicationID"));
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    @Test
+    public void testStaticImage() throws IOException {
+        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("image/Adobe_Systems_logo_and_wordmark.gif")) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            new GifTransformer().resize(100).transform(inputStream, outputStream);
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(outputStream.toByteArray()));
+            assertEquals(100, image.getWidth());
+            assertEquals(100, image.getHeight());
+        }
+    }
+
+    /**
+     * Creates a 40x20px animation: a full red frame, a green frame covering the bottom right quarter and a blue 10x10px frame in the
+     * top left corner.
+     */
+    private static byte[] createAnimation() throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("gif").next();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(outputStream)) {
+            writer.setOutput(output);
+            writer.prepareWriteSequence(null);
+            writeFrame(writer, new Rectangle(0, 0, 40, 20), Color.RED, 10, "none", true);
+            writeFrame(writer, new Rectangle(20, 10, 20, 10), Color.GREEN, 20, "doNotDispose", false);
+            writeFrame(writer, new Rectangle(0, 0, 10, 10), Color.BLUE, 30, "restoreToBackgroundColor", false);
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static void writeFrame(ImageWriter writer, Rectangle bounds, Color color, int delay, String disposal, boolean loop)
+            throws IOException {
+        BufferedImage image = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_BYTE_INDEXED, PALETTE);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, bounds.width, bounds.height);
+        graphics.dispose();
+        IIOMetadata metadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(image), null);
+        IIOMetadataNode root = new IIOMetadataNode(IMAGE_METADATA_FORMAT);
+        IIOMetadataNode descriptor = new IIOMetadataNode("ImageDescriptor");
+        descriptor.setAttribute("imageLeftPosition", Integer.toString(bounds.x));
+        descriptor.setAttribute("imageTopPosition", Integer.toString(bounds.y));
+        descriptor.setAttribute("imageWidth", Integer.toString(bounds.width));
+        descriptor.setAttribute("imageHeight", Integer.toString(bounds.height));
+        descriptor.setAttribute("interlaceFlag", "FALSE");
+        root.appendChild(descriptor);
+        IIOMetadataNode control = new IIOMetadataNode("GraphicControlExtension");
+        control.setAttribute("disposalMethod", disposal);
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", "TRUE");
+        control.setAttribute("delayTime", Integer.toString(delay));
+        control.setAttribute("transparentColorIndex", "0");
+        root.appendChild(control);
+        if (loop) {
+            IIOMetadataNode extensions = new IIOMetadataNode("ApplicationExtensions");
+            IIOMetadataNode extension = new IIOMetadataNode("ApplicationExtension");
+            extension.setAttribute("applicationID", "NETSCAPE");
+            extension.setAttribute("authenticationCode", "2.0");
+            extension.setUserObject(new byte[]{1, 0, 0});
+            extensions.appendChild(extension);
+            root.appendChild(extensions);
+            IIOMetadataNode comments = new IIOMetadataNode("CommentExtensions");
+            IIOMetadataNode comment = new IIOMetadataNode("CommentExtension");
+            comment.setAttribute("value", "comment");
+            comments.appendChild(comment);
+            root.appendChild(comments);
+        }
+        metadata.mergeTree(IMAGE_METADATA_FORMAT, root);
+        writer.writeToSequence(new IIOImage(image, null, metadata), null);
+    }
+
+    private static ImageReader transform(GifTransformer transformer, byte[] gif) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        transformer.transform(new ByteArrayInputStream(gif), outputStream);
+        ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+        ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+        reader.setInput(input);
+        return reader;
+    }
+
+    private static void assertScreen(ImageReader reader, int width, int height) throws IOException {
+        IIOMetadataNode screen = getChild((IIOMetadataNode) reader.getStreamMetadata().getAsTree(STREAM_METADATA_FORMAT),
+                "LogicalScreenDescriptor");
+        assertEquals(width, Integer.parseInt(screen.getAttribute("logicalScreenWidth")));
+        assertEquals(height, Integer.parseInt(screen.getAttribute("logicalScreenHeight")));
+    }
+
+    private static void assertFrame(ImageReader reader, int index, Rectangle bounds, int delay, String disposal) throws IOException {
+        IIOMetadataNode metadata = getImageMetadata(reader, index);
+        IIOMetadataNode descriptor = getChild(metadata, "ImageDescriptor");
+        assertEquals(bounds, new Rectangle(Integer.parseInt(descriptor.getAttribute("imageLeftPosition")),
+                Integer.parseInt(descriptor.getAttribute("imageTopPosition")),
+                Integer.parseInt(descriptor.getAttribute("imageWidth")),
+                Integer.parseInt(descriptor.getAttribute("imageHeight"))));
+        IIOMetadataNode control = getChild(metadata, "GraphicControlExtension");
+        assertEquals(Integer.toString(delay), control.getAttribute("delayTime"));
+        assertEquals(disposal, control.getAttribute("disposalMethod"));
+        assertEquals("TRUE", control.getAttribute("transparentColorFlag"));
+    }
+
+    private static IIOMetadataNode getImageMetadata(ImageReader reader, int index) throws IOException {
+        return (IIOMetadataNode) reader.getImageMetadata(index).getAsTree(IMAGE_METADATA_FORMAT);
+    }
+
+    private static IIOMetadataNode getChild(IIOMetadataNode parent, String name) {
+        for (int i = 0; i < parent.getLength(); i++) {
+            if (name.equals(parent.item(i).getNodeName())) {
+                return (IIOMetadataNode) parent.item(i);
+            }
+        }
+        throw new AssertionError("Missing metadata node " + name + ".");
+    }
+}
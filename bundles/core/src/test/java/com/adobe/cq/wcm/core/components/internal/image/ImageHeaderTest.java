@@ -0,0 +1,88 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.image;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ImageHeaderTest {
+
+    @Test
+    public void testPngWithAlpha() throws IOException {
+        ImageHeader header = read("image/Adobe_Systems_logo_and_wordmark.png");
+        assertEquals(ImageHeader.MIME_TYPE_PNG, header.getMimeType());
+        assertEquals(2000, header.getWidth());
+        assertEquals(2000, header.getHeight());
+        assertTrue("Expected the PNG image to have an alpha channel.", header.hasAlpha());
+    }
+
+    @Test
+    public void testOpaquePng() throws IOException {
+        ImageHeader header = ImageHeader.read(new ByteArrayInputStream(encode(BufferedImage.TYPE_INT_RGB, "png")));
+        assertEquals(ImageHeader.MIME_TYPE_PNG, header.getMimeType());
+        assertEquals(40, header.getWidth());
+        assertEquals(30, header.getHeight());
+        assertFalse("Expected the PNG image to be opaque.", header.hasAlpha());
+    }
+
+    @Test
+    public void testGif() throws IOException {
+        ImageHeader header = read("image/Adobe_Systems_logo_and_wordmark.gif");
+        assertEquals(ImageHeader.MIME_TYPE_GIF, header.getMimeType());
+        assertEquals(2000, header.getWidth());
+        assertEquals(2000, header.getHeight());
+        assertTrue("Expected the GIF image to define a transparent colour.", header.hasAlpha());
+    }
+
+    @Test
+    public void testJpeg() throws IOException {
+        ImageHeader header = read("image/Adobe_Systems_logo_and_wordmark.jpg");
+        assertEquals(ImageHeader.MIME_TYPE_JPEG, header.getMimeType());
+        assertEquals(2000, header.getWidth());
+        assertEquals(2000, header.getHeight());
+        assertFalse("JPEG images cannot be transparent.", header.hasAlpha());
+    }
+
+    @Test
+    public void testUnsupportedFormat() throws IOException {
+        assertNull(read("image/test-conf.json"));
+    }
+
+    private ImageHeader read(String path) throws IOException {
+        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(path)) {
+            return ImageHeader.read(inputStream);
+        }
+    }
+
+    static byte[] encode(int imageType, String format) throws IOException {
+        BufferedImage image = new BufferedImage(40, 30, imageType);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(image, format, outputStream);
+        return outputStream.toByteArray();
+    }
+}
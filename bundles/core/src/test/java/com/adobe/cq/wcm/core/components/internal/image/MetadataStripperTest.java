@@ -0,0 +1,161 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.image;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MetadataStripperTest {
+
+    @Test
+    public void testJpegWithXmpAndIptc() throws IOException {
+        byte[] original = load("image/Adobe_Systems_logo_and_wordmark.jpg");
+        byte[] stripped = strip(original);
+        // APP1 (XMP) and APP13 (IPTC) segments, including their markers
+        assertEquals(original.length - 2386 - 46, stripped.length);
+        assertFalse("Did not expect XMP data.", new String(stripped, StandardCharsets.ISO_8859_1).contains("http://ns.adobe.com/xap"));
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(stripped));
+        assertEquals(2000, image.getWidth());
+        assertEquals(2000, image.getHeight());
+    }
+
+    @Test
+    public void testJpegOrientation() throws IOException {
+        byte[] jpeg = encode("jpeg");
+        byte[] exif = concat("Exif\0\0".getBytes(StandardCharsets.US_ASCII), tiff(ByteOrder.LITTLE_ENDIAN, 6));
+        byte[] comment = "a comment".getBytes(StandardCharsets.US_ASCII);
+        byte[] image = concat(Arrays.copyOf(jpeg, 2), segment(0xE1, exif), segment(0xFE, comment),
+                Arrays.copyOfRange(jpeg, 2, jpeg.length), "trailing data".getBytes(StandardCharsets.US_ASCII));
+
+        byte[] stripped = strip(image);
+        byte[] expectedExif = concat("Exif\0\0".getBytes(StandardCharsets.US_ASCII), MetadataStripper.createOrientationExif(6));
+        assertArrayEquals(concat(Arrays.copyOf(jpeg, 2), segment(0xE1, expectedExif), Arrays.copyOfRange(jpeg, 2, jpeg.length)),
+                stripped);
+        assertEquals(6, MetadataStripper.readOrientation(expectedExif, 6));
+    }
+
+    @Test
+    public void testUprightJpeg() throws IOException {
+        byte[] jpeg = encode("jpeg");
+        byte[] exif = concat("Exif\0\0".getBytes(StandardCharsets.US_ASCII), tiff(ByteOrder.BIG_ENDIAN, 1));
+        byte[] image = concat(Arrays.copyOf(jpeg, 2), segment(0xE1, exif), Arrays.copyOfRange(jpeg, 2, jpeg.length));
+        assertArrayEquals(jpeg, strip(image));
+    }
+
+    @Test
+    public void testPng() throws IOException {
+        byte[] png = encode("png");
+        // signature and IHDR chunk
+        int ihdrEnd = 8 + 12 + 13;
+        byte[] image = concat(Arrays.copyOf(png, ihdrEnd), chunk("tEXt", "Comment\0generated".getBytes(StandardCharsets.ISO_8859_1)),
+                chunk("eXIf", tiff(ByteOrder.BIG_ENDIAN, 1)), Arrays.copyOfRange(png, ihdrEnd, png.length));
+        assertArrayEquals(png, strip(image));
+    }
+
+    @Test
+    public void testGif() throws IOException {
+        byte[] gif = load("image/Adobe_Systems_logo_and_wordmark.gif");
+        int headerEnd = 13 + 3 * (1 << ((gif[10] & 0x07) + 1));
+        byte[] comment = new byte[]{0x21, (byte) 0xFE, 3, 'a', 'b', 'c', 0};
+        byte[] xmp = concat(new byte[]{0x21, (byte) 0xFF, 11}, "XMP DataXMP".getBytes(StandardCharsets.US_ASCII), new byte[]{2, 1, 2, 0});
+        byte[] image = concat(Arrays.copyOf(gif, headerEnd), comment, xmp, Arrays.copyOfRange(gif, headerEnd, gif.length));
+        byte[] stripped = strip(gif);
+        // the test image carries an XMP application extension of 581 bytes before its trailer
+        assertEquals(gif.length - 581, stripped.length);
+        assertFalse("Did not expect XMP data.", new String(stripped, StandardCharsets.ISO_8859_1).contains("XMP DataXMP"));
+        assertArrayEquals(stripped, strip(image));
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(stripped));
+        assertEquals(2000, decoded.getWidth());
+    }
+
+    @Test
+    public void testUnsupportedFormat() throws IOException {
+        byte[] json = load("image/test-conf.json");
+        MetadataStripper.Plan plan = MetadataStripper.plan(new ByteArrayInputStream(json));
+        assertTrue(plan.isEmpty());
+        assertArrayEquals(json, strip(json));
+    }
+
+    private static byte[] strip(byte[] image) throws IOException {
+        MetadataStripper.Plan plan = MetadataStripper.plan(new ByteArrayInputStream(image));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        plan.apply(new ByteArrayInputStream(image), outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] tiff(ByteOrder order, int orientation) {
+        ByteBuffer buffer = ByteBuffer.allocate(50).order(order);
+        buffer.put(order == ByteOrder.LITTLE_ENDIAN ? (byte) 'I' : (byte) 'M').put(order == ByteOrder.LITTLE_ENDIAN ? (byte) 'I' : (byte) 'M')
+                .putShort((short) 42).putInt(8).putShort((short) 2);
+        // image description, as an ASCII value stored outside of the IFD
+        buffer.putShort((short) 0x010E).putShort((short) 2).putInt(8).putInt(38);
+        buffer.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) orientation).putShort((short) 0);
+        buffer.putInt(0);
+        buffer.put("a photo\0".getBytes(StandardCharsets.US_ASCII));
+        return buffer.array();
+    }
+
+    private static byte[] segment(int marker, byte[] payload) {
+        return ByteBuffer.allocate(4 + payload.length).put((byte) 0xFF).put((byte) marker).putShort((short) (payload.length + 2))
+                .put(payload).array();
+    }
+
+    private static byte[] chunk(String type, byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(type.getBytes(StandardCharsets.US_ASCII));
+        crc.update(data);
+        return ByteBuffer.allocate(12 + data.length).putInt(data.length).put(type.getBytes(StandardCharsets.US_ASCII)).put(data)
+                .putInt((int) crc.getValue()).array();
+    }
+
+    private static byte[] concat(byte[]... arrays) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        for (byte[] array : arrays) {
+            outputStream.write(array);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] encode(String format) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB), format, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] load(String path) throws IOException {
+        try (InputStream inputStream = MetadataStripperTest.class.getClassLoader().getResourceAsStream(path)) {
+            return IOUtils.toByteArray(inputStream);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.image;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import javax.imageio.ImageIO;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.powermock.reflect.Whitebox;
+
+import com.adobe.cq.wcm.core.components.context.CoreComponentTestContext;
+import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.Rendition;
+import com.day.cq.dam.api.handler.AssetHandler;
+import com.day.cq.dam.api.handler.store.AssetStore;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.wcm.testing.mock.aem.junit.AemContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PlaceholderServiceImplTest {
+
+    private static final String DAM_ROOT = "/content/dam/core/images";
+    private static final String ASSET_NAME = "Adobe_Systems_logo_and_wordmark.png";
+    private static final String ASSET_PATH = DAM_ROOT + "/" + ASSET_NAME;
+    private static final String DATA_URI_PREFIX = "data:image/jpeg;base64,";
+    private static final long REVISION = 1490005239000L;
+
+    @Rule
+    public AemContext context = CoreComponentTestContext.createContext();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private AssetHandler assetHandler;
+    private AssetStore assetStore;
+
+    @Before
+    public void setUp() throws Exception {
+        context.load().json("/image/test-content-dam.json", DAM_ROOT);
+        context.load().binaryFile("/image/" + ASSET_NAME, ASSET_PATH + "/jcr:content/renditions/original");
+        context.load().binaryFile("/image/cq5dam.web.1280.1280_" + ASSET_NAME, ASSET_PATH + "/jcr:content/renditions/cq5dam.web.1280.1280.png");
+        assetHandler = mock(AssetHandler.class);
+        assetStore = mock(AssetStore.class);
+        when(assetStore.getAssetHandler(anyString())).thenReturn(assetHandler);
+        when(assetHandler.getImage(any(Rendition.class))).thenAnswer(invocation -> {
+            Rendition rendition = invocation.getArgumentAt(0, Rendition.class);
+            return ImageIO.read(rendition.getStream());
+        });
+    }
+
+    @Test
+    public void testPlaceholder() throws Exception {
+        Placeholder placeholder = createService().getPlaceholder(getResource(ASSET_PATH), REVISION);
+        assertNotNull(placeholder);
+        assertTrue(placeholder.getColor().matches("#[0-9a-f]{6}"));
+        String dataUri = placeholder.getDataUri();
+        assertNotNull(dataUri);
+        assertTrue(dataUri.startsWith(DATA_URI_PREFIX));
+        byte[] jpeg = Base64.getDecoder().decode(dataUri.substring(DATA_URI_PREFIX.length()));
+        assertTrue(jpeg.length <= Placeholder.MAX_SIZE);
+    }
+
+    @Test
+    public void testBackgroundGeneration() throws Exception {
+        List<Runnable> tasks = new ArrayList<>();
+        ExecutorService executor = mock(ExecutorService.class);
+        doAnswer(invocation -> tasks.add(invocation.getArgumentAt(0, Runnable.class))).when(executor).execute(any(Runnable.class));
+        PlaceholderServiceImpl placeholderService = createService(executor);
+
+        // the image is rendered without placeholder until it's generated, and the generation is only scheduled once
+        assertNull(placeholderService.getPlaceholder(getResource(ASSET_PATH), REVISION));
+        assertNull(placeholderService.getPlaceholder(getResource(ASSET_PATH), REVISION));
+        assertEquals(1, tasks.size());
+        verify(assetHandler, never()).getImage(any(Rendition.class));
+
+        tasks.get(0).run();
+        assertNotNull(placeholderService.getPlaceholder(getResource(ASSET_PATH), REVISION));
+        assertEquals(1, tasks.size());
+    }
+
+    @Test
+    public void testOriginalIsSubsampled() throws Exception {
+        Asset asset = getResource(ASSET_PATH).adaptTo(Asset.class);
+        assertNotNull(asset);
+        BufferedImage image = PlaceholderServiceImpl.decodeSubsampled(asset.getOriginal().getStream());
+        assertNotNull(image);
+        assertTrue(image.getWidth() >= Placeholder.WIDTH);
+        assertTrue(image.getWidth() < 4 * Placeholder.WIDTH * 2);
+    }
+
+    @Test
+    public void testSmallestRendition() {
+        Asset asset = getResource(ASSET_PATH).adaptTo(Asset.class);
+        assertNotNull(asset);
+        assertEquals("cq5dam.web.1280.1280.png", PlaceholderServiceImpl.getSmallestRendition(asset).getName());
+    }
+
+    @Test
+    public void testCaching() throws Exception {
+        PlaceholderServiceImpl placeholderService = createService();
+        Placeholder placeholder = placeholderService.getPlaceholder(getResource(ASSET_PATH), REVISION);
+        assertSame(placeholder, placeholderService.getPlaceholder(getResource(ASSET_PATH), REVISION));
+        verify(assetHandler, times(1)).getImage(any(Rendition.class));
+
+        // a new revision of the image is decoded again
+        assertNotSame(placeholder, placeholderService.getPlaceholder(getResource(ASSET_PATH), REVISION + 1));
+        verify(assetHandler, times(2)).getImage(any(Rendition.class));
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        PlaceholderServiceImpl placeholderService = createService();
+        Placeholder placeholder = placeholderService.getPlaceholder(getResource(ASSET_PATH), REVISION);
+        placeholderService.onChange(Collections.singletonList(change(ASSET_PATH + "/jcr:content/renditions/original",
+                ResourceChange.ChangeType.CHANGED)));
+        assertNotSame(placeholder, placeholderService.getPlaceholder(getResource(ASSET_PATH), REVISION));
+        verify(assetHandler, times(2)).getImage(any(Rendition.class));
+    }
+
+    @Test
+    public void testStore() throws Exception {
+        Placeholder placeholder = createService().getPlaceholder(getResource(ASSET_PATH), REVISION);
+        assertNotNull(placeholder);
+
+        // a new instance, as after a restart, reads the stored placeholder instead of decoding the image
+        Placeholder storedPlaceholder = createService().getPlaceholder(getResource(ASSET_PATH), REVISION);
+        assertNotNull(storedPlaceholder);
+        assertEquals(placeholder.getDataUri(), storedPlaceholder.getDataUri());
+        assertEquals(placeholder.getColor(), storedPlaceholder.getColor());
+        verify(assetHandler, times(1)).getImage(any(Rendition.class));
+    }
+
+    @Test
+    public void testUndecodableImage() throws Exception {
+        when(assetHandler.getImage(any(Rendition.class))).thenReturn(null);
+        PlaceholderServiceImpl placeholderService = createService();
+        assertNull(placeholderService.getPlaceholder(getResource(ASSET_PATH), REVISION));
+        assertNull(placeholderService.getPlaceholder(getResource(ASSET_PATH), REVISION));
+        verify(assetHandler, times(1)).getImage(any(Rendition.class));
+    }
+
+    private PlaceholderServiceImpl createService() throws Exception {
+        return createService(MoreExecutors.newDirectExecutorService());
+    }
+
+    private PlaceholderServiceImpl createService(ExecutorService executor) throws Exception {
+        ResourceResolver serviceResourceResolver = mock(ResourceResolver.class);
+        when(serviceResourceResolver.getResource(anyString())).thenAnswer(invocation ->
+                context.resourceResolver().getResource(invocation.getArgumentAt(0, String.class)));
+        ResourceResolverFactory resourceResolverFactory = mock(ResourceResolverFactory.class);
+        when(resourceResolverFactory.getServiceResourceResolver(any())).thenReturn(serviceResourceResolver);
+        PlaceholderServiceImpl placeholderService = new PlaceholderServiceImpl();
+        Whitebox.setInternalState(placeholderService, "assetStore", assetStore);
+        Whitebox.setInternalState(placeholderService, "resourceResolverFactory", resourceResolverFactory);
+        Whitebox.setInternalState(placeholderService, "executor", executor);
+        Whitebox.setInternalState(placeholderService, "store", temporaryFolder.getRoot());
+        return placeholderService;
+    }
+
+    private Resource getResource(String path) {
+        Resource resource = context.resourceResolver().getResource(path);
+        assertNotNull(resource);
+        return resource;
+    }
+
+    private static ResourceChange change(String path, ResourceChange.ChangeType type) {
+        ResourceChange change = mock(ResourceChange.class);
+        when(change.getPath()).thenReturn(path);
+        when(change.getType()).thenReturn(type);
+        return change;
+    }
+}
@@ -0,0 +1,163 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.list;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ListResultCacheImplTest {
+
+    private static final String ROOT = "/content/en/news";
+    private static final List<String> PATHS = Arrays.asList(ROOT + "/first", ROOT + "/second");
+
+    private ListResultCacheImpl cache;
+    private AtomicInteger builds;
+
+    @Before
+    public void setUp() {
+        cache = new ListResultCacheImpl();
+        builds = new AtomicInteger();
+    }
+
+    @Test
+    public void testCaching() {
+        assertEquals(PATHS, build(key(ROOT, false)));
+        assertEquals(PATHS, build(key(ROOT, false)));
+        assertEquals(1, builds.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getSize());
+
+        // another configuration or another user
+        build(new ListResultKey("/content/en/jcr:content/list", "children", "other", ROOT, false, "anonymous"));
+        build(new ListResultKey("/content/en/jcr:content/list", "children", "configuration", ROOT, false, "admin"));
+        assertEquals(3, builds.get());
+    }
+
+    @Test
+    public void testDigest() {
+        assertEquals(ListResultKey.digest(Collections.singletonMap("tags", new String[] {"a", "b"})),
+                ListResultKey.digest(Collections.singletonMap("tags", new String[] {"a", "b"})));
+        assertNotEquals(ListResultKey.digest(Collections.singletonMap("tags", new String[] {"a", "b"})),
+                ListResultKey.digest(Collections.singletonMap("tags", new String[] {"a"})));
+    }
+
+    @Test
+    public void testInvalidation() {
+        build(key(ROOT, false));
+        cache.onChange(Collections.singletonList(change("/content/en/about")));
+        cache.onChange(Collections.singletonList(change("/content/dam/en/news")));
+        cache.onChange(Collections.singletonList(change("/content/cq:tags/news")));
+        build(key(ROOT, false));
+        assertEquals(1, builds.get());
+
+        cache.onChange(Collections.singletonList(change(ROOT + "/third/jcr:content")));
+        build(key(ROOT, false));
+        assertEquals(2, builds.get());
+
+        // the removal of an ancestor of the root
+        cache.onChange(Collections.singletonList(change("/content/en")));
+        build(key(ROOT, false));
+        assertEquals(3, builds.get());
+    }
+
+    @Test
+    public void testTagInvalidation() {
+        build(key(ROOT, true));
+        cache.onChange(Collections.singletonList(change("/etc/tags/news/sports")));
+        build(key(ROOT, true));
+        assertEquals(2, builds.get());
+        cache.onChange(Collections.singletonList(change("/content/cq:tags/news")));
+        build(key(ROOT, true));
+        assertEquals(3, builds.get());
+    }
+
+    @Test
+    public void testConcurrentChange() {
+        ListResultKey key = key(ROOT, false);
+        cache.getPaths(key, () -> {
+            builds.incrementAndGet();
+            cache.onChange(Collections.singletonList(change(ROOT + "/third")));
+            return PATHS;
+        });
+        build(key);
+        assertEquals(2, builds.get());
+    }
+
+    @Test
+    public void testStaleWhileRevalidate() {
+        cache.configure(config(ListResultCacheImpl.DEFAULT_MAX_PATHS, ListResultCacheImpl.DEFAULT_TIME_TO_LIVE, true));
+        ListResultKey key = key(ROOT, false);
+        build(key);
+        cache.onChange(Collections.singletonList(change(ROOT + "/third")));
+        List<String> updated = Arrays.asList(ROOT + "/third", ROOT + "/first");
+        assertEquals(updated, cache.getPaths(key, () -> {
+            builds.incrementAndGet();
+            // concurrent requests get the stale paths while the list is built again
+            assertEquals(PATHS, build(key));
+            return updated;
+        }));
+        assertEquals(2, builds.get());
+        assertEquals(1, cache.getStaleHitCount());
+        assertEquals(updated, build(key));
+        assertEquals(2, builds.get());
+    }
+
+    @Test
+    public void testDisabled() {
+        cache.configure(config(0, ListResultCacheImpl.DEFAULT_TIME_TO_LIVE, false));
+        build(key(ROOT, false));
+        build(key(ROOT, false));
+        assertEquals(2, builds.get());
+    }
+
+    private List<String> build(ListResultKey key) {
+        return cache.getPaths(key, () -> {
+            builds.incrementAndGet();
+            return PATHS;
+        });
+    }
+
+    private static ListResultKey key(String root, boolean tagDependent) {
+        return new ListResultKey("/content/en/jcr:content/list", tagDependent ? "tags" : "children", "configuration", root,
+                tagDependent, "anonymous");
+    }
+
+    private static ResourceChange change(String path) {
+        ResourceChange change = mock(ResourceChange.class);
+        when(change.getPath()).thenReturn(path);
+        return change;
+    }
+
+    private static ListResultCacheImpl.Config config(int maxPaths, int timeToLive, boolean staleWhileRevalidate) {
+        ListResultCacheImpl.Config config = mock(ListResultCacheImpl.Config.class);
+        when(config.maxPaths()).thenReturn(maxPaths);
+        when(config.timeToLive()).thenReturn(timeToLive);
+        when(config.staleWhileRevalidate()).thenReturn(staleWhileRevalidate);
+        return config;
+    }
+}
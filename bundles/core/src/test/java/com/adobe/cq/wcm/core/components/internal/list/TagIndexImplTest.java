@@ -0,0 +1,125 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.list;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.adobe.cq.wcm.core.components.context.CoreComponentTestContext;
+import com.day.cq.wcm.api.NameConstants;
+import io.wcm.testing.mock.aem.junit.AemContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TagIndexImplTest {
+
+    private static final String ROOT = "/content/list/pages/page_1";
+    private static final String PAGE_1_1 = ROOT + "/page_1_1";
+    private static final String PAGE_1_3 = ROOT + "/page_1_3";
+    private static final String TAG = "list:test_category/test_tag";
+
+    @Rule
+    public AemContext context = CoreComponentTestContext.createContext("/list", "/content/list");
+
+    private TagIndexImpl index;
+
+    @Before
+    public void setUp() throws Exception {
+        index = context.registerInjectActivateService(new TagIndexImpl());
+        awaitIndexing();
+    }
+
+    @Test
+    public void testFind() {
+        assertEquals(Collections.singletonList(PAGE_1_3), index.find(ROOT, new String[] {TAG}, true));
+        // the descendant tags are matched as well
+        assertEquals(Collections.singletonList(PAGE_1_3), index.find(ROOT, new String[] {"list:test_category"}, true));
+        assertEquals(Collections.singletonList(PAGE_1_3), index.find(PAGE_1_3, new String[] {"list:"}, true));
+        assertEquals(Collections.emptyList(), index.find(ROOT, new String[] {"list:test_category/test"}, true));
+        assertEquals(Collections.emptyList(), index.find(ROOT, new String[] {TAG, "list:other"}, false));
+        assertEquals(Collections.emptyList(), index.find("/content/list/pages/page_2", new String[] {TAG}, true));
+        assertEquals(Collections.emptyList(), index.find(ROOT, new String[0], true));
+    }
+
+    @Test
+    public void testTagChange() throws Exception {
+        ResourceResolver resourceResolver = context.resourceResolver();
+        Resource content = resourceResolver.getResource(PAGE_1_1 + "/jcr:content");
+        assertNotNull(content);
+        content.adaptTo(ModifiableValueMap.class).put(NameConstants.PN_TAGS, new String[] {"/content/cq:tags/list/other", TAG});
+        resourceResolver.commit();
+        index.onChange(Collections.singletonList(change(PAGE_1_1 + "/jcr:content", ResourceChange.ChangeType.CHANGED)));
+        awaitIndexing();
+        assertEquals(Arrays.asList(PAGE_1_3, PAGE_1_1), index.find(ROOT, new String[] {TAG}, true));
+        assertEquals(Collections.singletonList(PAGE_1_1), index.find(ROOT, new String[] {TAG, "list:other"}, false));
+
+        content.adaptTo(ModifiableValueMap.class).remove(NameConstants.PN_TAGS);
+        resourceResolver.commit();
+        index.onChange(Collections.singletonList(change(PAGE_1_1 + "/jcr:content", ResourceChange.ChangeType.CHANGED)));
+        awaitIndexing();
+        assertEquals(Collections.singletonList(PAGE_1_3), index.find(ROOT, new String[] {TAG}, true));
+    }
+
+    @Test
+    public void testPageRemoval() throws Exception {
+        ResourceResolver resourceResolver = context.resourceResolver();
+        resourceResolver.delete(resourceResolver.getResource(PAGE_1_3));
+        resourceResolver.commit();
+        index.onChange(Collections.singletonList(change(PAGE_1_3, ResourceChange.ChangeType.REMOVED)));
+        awaitIndexing();
+        assertEquals(Collections.emptyList(), index.find(ROOT, new String[] {TAG}, true));
+    }
+
+    @Test
+    public void testNotBuilt() {
+        index.shutdown();
+        // the list components query the tag manager until the index is built
+        assertNull(index.find(ROOT, new String[] {TAG}, true));
+    }
+
+    @Test
+    public void testNormalizeTagId() {
+        assertEquals("list:test_category/test_tag", TagIndexImpl.normalizeTagId("/content/cq:tags/list/test_category/test_tag"));
+        assertEquals("list:test_category", TagIndexImpl.normalizeTagId("/etc/tags/list/test_category"));
+        assertEquals("list:", TagIndexImpl.normalizeTagId("/etc/tags/list"));
+        assertEquals("default:test_tag", TagIndexImpl.normalizeTagId("test_tag"));
+        assertEquals(TAG, TagIndexImpl.normalizeTagId(TAG));
+    }
+
+    private void awaitIndexing() throws Exception {
+        index.indexer.getIndexing().get(10, TimeUnit.SECONDS);
+    }
+
+    private static ResourceChange change(String path, ResourceChange.ChangeType type) {
+        ResourceChange change = mock(ResourceChange.class);
+        when(change.getPath()).thenReturn(path);
+        when(change.getType()).thenReturn(type);
+        return change;
+    }
+}
@@ -15,21 +15,40 @@
  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
 package com.adobe.cq.wcm.core.components.internal.models.v1;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.IOException;
 import javax.annotation.Nullable;
+import javax.imageio.ImageIO;
 
+import org.apache.sling.api.resource.LoginException;
 import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
 import org.apache.sling.commons.mime.MimeTypeService;
 import org.junit.ClassRule;
+import org.powermock.reflect.Whitebox;
 
 import com.adobe.cq.wcm.core.components.context.CoreComponentTestContext;
+import com.adobe.cq.wcm.core.components.internal.image.AssetInfoService;
+import com.adobe.cq.wcm.core.components.internal.image.AssetInfoServiceImpl;
+import com.adobe.cq.wcm.core.components.internal.image.FingerprintService;
+import com.adobe.cq.wcm.core.components.internal.image.FingerprintServiceImpl;
+import com.adobe.cq.wcm.core.components.internal.image.PlaceholderService;
+import com.adobe.cq.wcm.core.components.internal.image.PlaceholderServiceImpl;
+import com.adobe.cq.wcm.core.components.internal.image.ResponsiveImageCache;
+import com.adobe.cq.wcm.core.components.internal.image.ResponsiveImageCacheImpl;
 import com.adobe.cq.wcm.core.components.internal.servlets.AdaptiveImageServlet;
 import com.adobe.cq.wcm.core.components.testing.MockAdapterFactory;
+import com.day.cq.dam.api.Rendition;
+import com.day.cq.dam.api.handler.AssetHandler;
+import com.day.cq.dam.api.handler.store.AssetStore;
 import com.day.cq.dam.commons.handler.StandardImageHandler;
 import com.day.cq.wcm.api.policies.ContentPolicyManager;
 import com.google.common.base.Function;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import io.wcm.testing.mock.aem.junit.AemContext;
 
@@ -126,6 +145,33 @@ public class AbstractImageTest {
         aemContext.load().binaryFile("/image/" + _1PX_IMAGE_BINARY_NAME, PNG20_FILE_PATH, StandardImageHandler.PNG1_MIMETYPE);
         aemContext.load().binaryFile("/image/" + PNG_IMAGE_BINARY_NAME, PNG23_FILE_PATH, StandardImageHandler.PNG1_MIMETYPE);
         aemContext.registerInjectActivateService(new MockAdapterFactory());
+        aemContext.registerService(AssetInfoService.class, new AssetInfoServiceImpl());
+        aemContext.registerService(ResponsiveImageCache.class, new ResponsiveImageCacheImpl());
+        AssetHandler assetHandler = mock(AssetHandler.class);
+        AssetStore assetStore = mock(AssetStore.class);
+        when(assetStore.getAssetHandler(anyString())).thenReturn(assetHandler);
+        try {
+            when(assetHandler.getImage(any(Rendition.class))).thenAnswer(invocation ->
+                    ImageIO.read(invocation.getArgumentAt(0, Rendition.class).getStream()));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        ResourceResolver serviceResourceResolver = mock(ResourceResolver.class);
+        when(serviceResourceResolver.getResource(anyString())).thenAnswer(invocation ->
+                aemContext.resourceResolver().getResource(invocation.getArgumentAt(0, String.class)));
+        ResourceResolverFactory resourceResolverFactory = mock(ResourceResolverFactory.class);
+        try {
+            when(resourceResolverFactory.getServiceResourceResolver(any())).thenReturn(serviceResourceResolver);
+        } catch (LoginException e) {
+            throw new IllegalStateException(e);
+        }
+        PlaceholderServiceImpl placeholderService = new PlaceholderServiceImpl();
+        Whitebox.setInternalState(placeholderService, "assetStore", assetStore);
+        Whitebox.setInternalState(placeholderService, "resourceResolverFactory", resourceResolverFactory);
+        // the placeholders are generated while rendering, instead of in the background
+        Whitebox.setInternalState(placeholderService, "executor", MoreExecutors.newDirectExecutorService());
+        aemContext.registerService(PlaceholderService.class, placeholderService);
+        aemContext.registerService(FingerprintService.class, new FingerprintServiceImpl());
         contentPolicyManager = mock(ContentPolicyManager.class);
         aemContext.registerAdapter(ResourceResolver.class, ContentPolicyManager.class,
                 new Function<ResourceResolver, ContentPolicyManager>() {
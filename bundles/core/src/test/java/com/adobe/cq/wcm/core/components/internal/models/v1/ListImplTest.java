@@ -15,21 +15,32 @@
  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
 package com.adobe.cq.wcm.core.components.internal.models.v1;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.function.Supplier;
 
 import javax.jcr.Session;
 
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.scripting.SlingBindings;
+import org.apache.sling.testing.mock.osgi.MockOsgi;
 import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletRequest;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
 import org.junit.Test;
+import org.osgi.framework.ServiceRegistration;
 
 import com.adobe.cq.sightly.WCMBindings;
 import com.adobe.cq.wcm.core.components.Utils;
 import com.adobe.cq.wcm.core.components.context.CoreComponentTestContext;
+import com.adobe.cq.wcm.core.components.internal.list.ListResultCache;
+import com.adobe.cq.wcm.core.components.internal.list.ListResultKey;
+import com.adobe.cq.wcm.core.components.internal.list.TagIndex;
+import com.adobe.cq.wcm.core.components.internal.list.TagIndexImpl;
+import com.adobe.cq.wcm.core.components.internal.search.SearchBackend;
+import com.adobe.cq.wcm.core.components.internal.search.SearchHit;
 import com.adobe.cq.wcm.core.components.models.List;
 import com.day.cq.search.SimpleSearch;
 import com.day.cq.search.result.Hit;
@@ -39,8 +50,10 @@ import com.day.cq.wcm.api.designer.Style;
 import io.wcm.testing.mock.aem.junit.AemContext;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -63,6 +76,8 @@ public class ListImplTest {
     private static final String LIST_13 = "/content/list/listTypes/staticOrderByModificationDateListTypeWithNoModificationDateForOneItem";
     private static final String LIST_14 = "/content/list/listTypes/staticOrderByTitleListTypeWithNoTitle";
     private static final String LIST_15 = "/content/list/listTypes/staticOrderByTitleListTypeWithNoTitleForOneItem";
+    private static final String LIST_16 = "/content/list/listTypes/childrenMaxItemsListType";
+    private static final String LIST_17 = "/content/list/listTypes/childrenOrderByTitleDescMaxItemsListType";
 
     @ClassRule
     public static final AemContext CONTEXT = CoreComponentTestContext.createContext(TEST_BASE, "/content/list");
@@ -109,6 +124,27 @@ public class ListImplTest {
         Utils.testJSONExport(list, Utils.getTestExporterJSONPath(TEST_BASE, LIST_5));
     }
 
+    @Test
+    public void testTagIndex() throws Exception {
+        TagIndexImpl tagIndex = new TagIndexImpl();
+        MockOsgi.injectServices(tagIndex, CONTEXT.bundleContext());
+        MockOsgi.activate(tagIndex, CONTEXT.bundleContext());
+        // the index is built in the background
+        long timeout = System.currentTimeMillis() + 10000;
+        while (tagIndex.find(CURRENT_PAGE, new String[] {"list:"}, true) == null && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        // the context is shared by all the tests, the index is only registered for this one
+        ServiceRegistration<TagIndex> registration = CONTEXT.bundleContext().registerService(TagIndex.class, tagIndex, null);
+        try {
+            List list = getListUnderTest(LIST_5);
+            checkListConsistencyByPaths(list, new String[]{"/content/list/pages/page_1/page_1_3"});
+        } finally {
+            registration.unregister();
+            MockOsgi.deactivate(tagIndex, CONTEXT.bundleContext());
+        }
+    }
+
     @Test
     public void testSearchListType() throws Exception {
         Session mockSession = mock(Session.class);
@@ -128,6 +164,29 @@ public class ListImplTest {
         Utils.testJSONExport(list, Utils.getTestExporterJSONPath(TEST_BASE, LIST_6));
     }
 
+    @Test
+    public void testSearchBackend() throws Exception {
+        SearchBackend searchBackend = mock(SearchBackend.class);
+        when(searchBackend.getName()).thenReturn("test");
+        when(searchBackend.search(any(ResourceResolver.class), eq(CURRENT_PAGE), eq("Page 1.2"), eq(0L), eq(100))).thenReturn(Arrays.asList(
+                new SearchHit("/content/list/pages/page_2", 2), new SearchHit("/content/list/missing", 1.5),
+                new SearchHit("/content/list/pages/page_1", 1)));
+        // the context is shared by all the tests, the backend is only registered for this one
+        ServiceRegistration<SearchBackend> registration = CONTEXT.bundleContext().registerService(SearchBackend.class, searchBackend,
+                null);
+        try {
+            Style style = mock(Style.class);
+            when(style.get(any(), any(Object.class))).thenAnswer(
+                    invocation -> invocation.getArguments()[1]
+            );
+            when(style.get(List.PN_SEARCH_BACKEND, String.class)).thenReturn("test");
+            List list = getListUnderTest(LIST_6, style);
+            checkListConsistencyByPaths(list, new String[]{"/content/list/pages/page_2", "/content/list/pages/page_1"});
+        } finally {
+            registration.unregister();
+        }
+    }
+
     @Test
     public void testOrderBy() throws Exception {
         List list = getListUnderTest(LIST_7);
@@ -187,7 +246,57 @@ public class ListImplTest {
         checkListConsistencyByPaths(list, new String[]{"/content/list/pages/page_1", "/content/list/pages/page_2", "/content/list/pages/page_4"});
     }
 
+    @Test
+    public void testChildrenMaxItems() throws Exception {
+        List list = getListUnderTest(LIST_16);
+        checkListConsistency(list, new String[]{"Page 1.1", "Page 1.2"});
+    }
+
+    @Test
+    public void testChildrenOrderByTitleDescWithMaxItems() throws Exception {
+        List list = getListUnderTest(LIST_17);
+        checkListConsistency(list, new String[]{"Page 1.3", "Page 1.2.1"});
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testResultCache() throws Exception {
+        java.util.List<ListResultKey> keys = new ArrayList<>();
+        ListResultCache cache = mock(ListResultCache.class);
+        when(cache.getPaths(any(ListResultKey.class), any(Supplier.class))).thenAnswer(invocation -> {
+            keys.add((ListResultKey) invocation.getArguments()[0]);
+            java.util.List<String> paths = new ArrayList<>(((Supplier<java.util.List<String>>) invocation.getArguments()[1]).get());
+            // a cached page that was removed since
+            paths.add("/content/list/missing");
+            return paths;
+        });
+        // the context is shared by all the tests, the cache is only registered for this one
+        ServiceRegistration<ListResultCache> registration = CONTEXT.bundleContext().registerService(ListResultCache.class, cache, null);
+        try {
+            List list = getListUnderTest(LIST_4);
+            assertEquals(4, list.getItems().size());
+            assertEquals(1, keys.size());
+            assertEquals("/content/list/pages/page_1", keys.get(0).getRoot());
+            assertFalse(keys.get(0).isTagDependent());
+
+            // the static lists are not cached
+            list = getListUnderTest(LIST_2);
+            assertEquals(2, list.getItems().size());
+            assertEquals(1, keys.size());
+        } finally {
+            registration.unregister();
+        }
+    }
+
     private List getListUnderTest(String resourcePath) {
+        Style style = mock(Style.class);
+        when(style.get(any(), any(Object.class))).thenAnswer(
+                invocation -> invocation.getArguments()[1]
+        );
+        return getListUnderTest(resourcePath, style);
+    }
+
+    private List getListUnderTest(String resourcePath, Style style) {
         Resource resource = CONTEXT.resourceResolver().getResource(resourcePath);
         if (resource == null) {
             throw new IllegalStateException("Did you forget to defines test resource " + resourcePath + "?");
@@ -198,10 +307,6 @@ public class ListImplTest {
         bindings.put(SlingBindings.RESOURCE, resource);
         bindings.put(SlingBindings.REQUEST, request);
         bindings.put(WCMBindings.PROPERTIES, resource.getValueMap());
-        Style style = mock(Style.class);
-        when(style.get(any(), any(Object.class))).thenAnswer(
-                invocation -> invocation.getArguments()[1]
-        );
         bindings.put(WCMBindings.CURRENT_STYLE, style);
         bindings.put(WCMBindings.CURRENT_PAGE, CONTEXT.pageManager().getPage(CURRENT_PAGE));
         request.setAttribute(SlingBindings.class.getName(), bindings);
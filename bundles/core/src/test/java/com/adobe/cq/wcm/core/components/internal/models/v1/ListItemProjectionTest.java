@@ -0,0 +1,94 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.models.v1;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.junit.Test;
+
+import com.adobe.cq.wcm.core.components.internal.models.v2.PageImpl;
+import com.adobe.cq.wcm.core.components.models.ListItem;
+import com.day.cq.wcm.api.Page;
+import com.day.cq.wcm.api.PageManager;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ListItemProjectionTest {
+
+    @Test
+    public void testOnlyRequestedGettersAreCalled() throws Exception {
+        ListItem item = mock(ListItem.class);
+        when(item.getTitle()).thenReturn("Page");
+        when(item.getPath()).thenReturn("/content/page");
+        ListItem projection = ListItemProjection.of(item, new LinkedHashSet<>(Arrays.asList("title", "path")));
+        assertEquals("{\"title\":\"Page\",\"path\":\"/content/page\"}", new ObjectMapper().writeValueAsString(projection));
+        verify(item, never()).getURL();
+        verify(item, never()).getDescription();
+        verify(item, never()).getLastModified();
+    }
+
+    @Test
+    public void testPathProjectionDoesNotFollowRedirects() throws Exception {
+        Page page = mock(Page.class);
+        when(page.getPath()).thenReturn("/content/page");
+        ListItem projection = ListItemProjection.of(new PageListItemImpl(mock(SlingHttpServletRequest.class), page),
+                Collections.singleton("path"));
+        assertEquals("{\"path\":\"/content/page\"}", new ObjectMapper().writeValueAsString(projection));
+        verify(page, never()).getProperties();
+        verify(page, never()).getPageManager();
+    }
+
+    @Test
+    public void testTitleProjectionFollowsRedirects() throws Exception {
+        Page target = mock(Page.class);
+        when(target.getPath()).thenReturn("/content/target");
+        when(target.getTitle()).thenReturn("Target");
+        when(target.getProperties()).thenReturn(new ValueMapDecorator(new HashMap<>()));
+        PageManager pageManager = mock(PageManager.class);
+        when(pageManager.getPage("/content/target")).thenReturn(target);
+        Page page = mock(Page.class);
+        when(page.getPath()).thenReturn("/content/page");
+        when(page.getPageManager()).thenReturn(pageManager);
+        when(page.getProperties()).thenReturn(new ValueMapDecorator(Collections.singletonMap(PageImpl.PN_REDIRECT_TARGET,
+                "/content/target")));
+        ListItem projection = ListItemProjection.of(new PageListItemImpl(mock(SlingHttpServletRequest.class), page),
+                new LinkedHashSet<>(Arrays.asList("title", "path")));
+        assertEquals("{\"title\":\"Target\",\"path\":\"/content/page\"}", new ObjectMapper().writeValueAsString(projection));
+    }
+
+    @Test
+    public void testNoProjection() {
+        ListItem item = mock(ListItem.class);
+        assertSame(item, ListItemProjection.of(item, null));
+    }
+
+    @Test
+    public void testEmptyProjection() throws Exception {
+        ListItem item = mock(ListItem.class);
+        assertEquals("{}", new ObjectMapper().writeValueAsString(ListItemProjection.of(item, Collections.emptySet())));
+    }
+}
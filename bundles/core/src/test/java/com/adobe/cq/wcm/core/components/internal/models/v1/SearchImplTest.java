@@ -31,6 +31,7 @@ import com.adobe.cq.wcm.core.components.testing.MockStyle;
 import io.wcm.testing.mock.aem.junit.AemContext;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 @RunWith(MockitoJUnitRunner.class)
 public class SearchImplTest {
@@ -61,6 +62,7 @@ public class SearchImplTest {
         assertEquals(10, search.getResultsSize());
         assertEquals(3, search.getSearchTermMinimumLength());
         assertEquals("/jcr:content/search", search.getRelativePath());
+        assertFalse(search.isCacheableUrls());
         assertEquals("core/wcm/components/search/v1/search", search.getExportedType());
     }
 
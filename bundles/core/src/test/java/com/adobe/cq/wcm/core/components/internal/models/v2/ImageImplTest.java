@@ -15,17 +15,22 @@
  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
 package com.adobe.cq.wcm.core.components.internal.models.v2;
 
+import java.util.regex.Pattern;
+
 import org.apache.jackrabbit.util.Text;
+import org.apache.sling.api.resource.Resource;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import com.adobe.cq.wcm.core.components.Utils;
+import com.adobe.cq.wcm.core.components.internal.image.FingerprintServiceImpl;
 import com.adobe.cq.wcm.core.components.internal.models.v1.AbstractImageTest;
 import com.adobe.cq.wcm.core.components.internal.servlets.AdaptiveImageServlet;
 import com.adobe.cq.wcm.core.components.models.Image;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
@@ -35,6 +40,10 @@ public class ImageImplTest extends com.adobe.cq.wcm.core.components.internal.mod
     protected static String SELECTOR = AdaptiveImageServlet.CORE_DEFAULT_SELECTOR;
     private static final String IMAGE20_PATH = PAGE + "/jcr:content/root/image20";
     private static final String IMAGE21_PATH = PAGE + "/jcr:content/root/image21";
+    private static final String IMAGE_LAYOUT_PATH = PAGE + "/jcr:content/root/grid/image_layout";
+    private static final String IMAGE_PLACEHOLDER_PATH = PAGE + "/jcr:content/root/image_placeholder";
+    private static final String IMAGE_PLACEHOLDER_CROPPED_PATH = PAGE + "/jcr:content/root/image_placeholder_cropped";
+    private static final String IMAGE_FINGERPRINT_PATH = PAGE + "/jcr:content/root/image_fingerprint";
 
     @BeforeClass
     public static void setUp() {
@@ -157,6 +166,86 @@ public class ImageImplTest extends com.adobe.cq.wcm.core.components.internal.mod
         Utils.testJSONExport(image, Utils.getTestExporterJSONPath(testBase, TEMPLATE_IMAGE_PATH));
     }
 
+    @Test
+    public void testSrcsetAndIntrinsicDimensions() {
+        String escapedResourcePath = AbstractImageTest.IMAGE0_PATH.replace("jcr:content", "_jcr_content");
+        Image image = getImageUnderTest(AbstractImageTest.IMAGE0_PATH);
+        assertEquals(CONTEXT_PATH + escapedResourcePath + "." + selector + ".600.png/1490005239000/adobe-systems-logo-and-wordmark.png 600w, " +
+                CONTEXT_PATH + escapedResourcePath + "." + selector + ".700.png/1490005239000/adobe-systems-logo-and-wordmark.png 700w, " +
+                CONTEXT_PATH + escapedResourcePath + "." + selector + ".800.png/1490005239000/adobe-systems-logo-and-wordmark.png 800w, " +
+                CONTEXT_PATH + escapedResourcePath + "." + selector + ".2000.png/1490005239000/adobe-systems-logo-and-wordmark.png 2000w, " +
+                CONTEXT_PATH + escapedResourcePath + "." + selector + ".2500.png/1490005239000/adobe-systems-logo-and-wordmark.png 2500w",
+                image.getSrcset());
+        assertEquals("100vw", image.getSizes());
+        assertEquals(2000, image.getWidth());
+        assertEquals(2000, image.getHeight());
+
+        // a single width doesn't need a srcset
+        image = getImageUnderTest(AbstractImageTest.IMAGE3_PATH);
+        assertNull(image.getSrcset());
+        assertNull(image.getSizes());
+        assertEquals(2000, image.getWidth());
+
+        // the dimensions reflect the cropping and the rotation of the image
+        image = getImageUnderTest(AbstractImageTest.IMAGE13_PATH);
+        assertEquals(515, image.getWidth());
+        assertEquals(1390, image.getHeight());
+    }
+
+    @Test
+    public void testSrcsetWithPolicyDelegate() {
+        String query = "?contentPolicyDelegatePath=" + AbstractImageTest.IMAGE3_PATH;
+        // the srcset is cached for all the requests, so the first request's parameter must not leak into the later ones
+        Image image = getImageUnderTest(AbstractImageTest.IMAGE0_PATH, AbstractImageTest.IMAGE3_PATH);
+        for (String candidate : image.getSrcset().split(", ")) {
+            assertTrue(candidate, candidate.matches("\\S+" + Pattern.quote(query) + " \\d+w"));
+        }
+        image = getImageUnderTest(AbstractImageTest.IMAGE0_PATH);
+        assertFalse(image.getSrcset().contains("contentPolicyDelegatePath"));
+        image = getImageUnderTest(AbstractImageTest.IMAGE0_PATH, AbstractImageTest.IMAGE0_PATH);
+        assertTrue(image.getSrcset().contains("?contentPolicyDelegatePath=" + AbstractImageTest.IMAGE0_PATH + " "));
+        assertFalse(image.getSrcset().contains(query));
+    }
+
+    @Test
+    public void testSizesFromLayout() {
+        Image image = getImageUnderTest(IMAGE_LAYOUT_PATH);
+        // 6 of 12 columns in a grid spanning 8 of 12 columns, full width on tablets (in the 8 columns grid) and on phones
+        assertEquals("(max-width: 768px) 100vw, (max-width: 1200px) 67vw, 34vw", image.getSizes());
+        // images which are not laid out take the full width of the viewport at every breakpoint
+        image = getImageUnderTest(AbstractImageTest.IMAGE0_PATH);
+        assertEquals("100vw", image.getSizes());
+    }
+
+    @Test
+    public void testPlaceholder() {
+        Image image = getImageUnderTest(IMAGE_PLACEHOLDER_PATH);
+        assertTrue(image.getPlaceholder().startsWith("data:image/jpeg;base64,"));
+        assertTrue(image.getPlaceholderColor().matches("#[0-9a-f]{6}"));
+        // the low quality image would show the whole image, so cropped images only get the average colour
+        image = getImageUnderTest(IMAGE_PLACEHOLDER_CROPPED_PATH);
+        assertNull(image.getPlaceholder());
+        assertTrue(image.getPlaceholderColor().matches("#[0-9a-f]{6}"));
+        // no placeholder unless requested by the policy
+        image = getImageUnderTest(AbstractImageTest.IMAGE0_PATH);
+        assertNull(image.getPlaceholder());
+        assertNull(image.getPlaceholderColor());
+    }
+
+    @Test
+    public void testFingerprintUrls() {
+        Resource component = CONTEXT.resourceResolver().getResource(IMAGE_FINGERPRINT_PATH);
+        String fingerprint = new FingerprintServiceImpl().getFingerprint(CONTEXT.resourceResolver().getResource(PNG_ASSET_PATH),
+                component.getValueMap());
+        Image image = getImageUnderTest(IMAGE_FINGERPRINT_PATH);
+        // the fingerprint replaces the last modified date of the component, which is more recent than the asset's
+        String versionSuffix = "/" + fingerprint + "/" + PNG_IMAGE_BINARY_NAME.replace("_", "-").toLowerCase();
+        assertEquals(CONTEXT_PATH + IMAGE_FINGERPRINT_PATH.replace("jcr:content", "_jcr_content") + ".coreimg.png" + versionSuffix,
+                image.getSrc());
+        assertEquals(CONTEXT_PATH + IMAGE_FINGERPRINT_PATH.replace("jcr:content", "_jcr_content") + ".coreimg{.width}.png" + versionSuffix,
+                image.getSrcUriTemplate());
+    }
+
     private Image getImageUnderTest(String resourcePath, String contentPolicyDelegatePath) {
         return getImageUnderTest(resourcePath, Image.class, contentPolicyDelegatePath);
     }
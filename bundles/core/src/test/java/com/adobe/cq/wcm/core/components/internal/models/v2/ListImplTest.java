@@ -27,6 +27,7 @@ import com.adobe.cq.wcm.core.components.Utils;
 import com.adobe.cq.wcm.core.components.context.CoreComponentTestContext;
 import com.adobe.cq.wcm.core.components.models.List;
 import com.day.cq.wcm.api.designer.Style;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.wcm.testing.mock.aem.junit.AemContext;
 
 import static org.junit.Assert.assertEquals;
@@ -61,7 +62,19 @@ public class ListImplTest {
         Utils.testJSONExport(list, Utils.getTestExporterJSONPath(TEST_BASE, LIST_1));
     }
 
+    @Test
+    public void testFieldProjection() throws Exception {
+        List list = getListUnderTest(LIST_1, "fields=title,url");
+        String json = new ObjectMapper().writeValueAsString(list.getListItems());
+        assertEquals("[{\"url\":\"/context/content/list/pages/page_1.html\",\"title\":\"Page 1\"}," +
+                "{\"url\":\"/context/content/list/pages/page_2.html\",\"title\":\"Page 2\"}]", json);
+    }
+
     private List getListUnderTest(String resourcePath) {
+        return getListUnderTest(resourcePath, null);
+    }
+
+    private List getListUnderTest(String resourcePath, String queryString) {
         Resource resource = CONTEXT.resourceResolver().getResource(resourcePath);
         if (resource == null) {
             throw new IllegalStateException("Did you forget to defines test resource " + resourcePath + "?");
@@ -69,6 +82,7 @@ public class ListImplTest {
         MockSlingHttpServletRequest request = new MockSlingHttpServletRequest(CONTEXT.resourceResolver(), CONTEXT.bundleContext());
         request.setResource(resource);
         request.setContextPath(CONTEXT_PATH);
+        request.setQueryString(queryString);
         SlingBindings bindings = new SlingBindings();
         bindings.put(SlingBindings.RESOURCE, resource);
         bindings.put(SlingBindings.REQUEST, request);
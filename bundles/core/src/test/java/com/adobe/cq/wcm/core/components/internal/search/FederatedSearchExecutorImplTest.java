@@ -0,0 +1,144 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2017 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.internal.util.reflection.Whitebox;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FederatedSearchExecutorImplTest {
+
+    private static final List<String> SEARCH_ROOTS = Arrays.asList("/content/de/search", "/content/en/search");
+
+    private FederatedSearchExecutorImpl executor;
+    private ResourceResolver resourceResolver;
+
+    @Before
+    public void setUp() throws Exception {
+        resourceResolver = mock(ResourceResolver.class);
+        ResourceResolverFactory resourceResolverFactory = mock(ResourceResolverFactory.class);
+        when(resourceResolverFactory.getServiceResourceResolver(any())).thenReturn(resourceResolver);
+        executor = new FederatedSearchExecutorImpl();
+        Whitebox.setInternalState(executor, "resourceResolverFactory", resourceResolverFactory);
+        executor.configure(config(2, 500));
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testParallelExecution() {
+        // each search waits for the other one, so they only complete if they are executed in parallel
+        CountDownLatch started = new CountDownLatch(SEARCH_ROOTS.size());
+        List<List<String>> results = executor.execute(SEARCH_ROOTS, (rootResolver, searchRoot) -> {
+            started.countDown();
+            started.await(5, TimeUnit.SECONDS);
+            return started.getCount() == 0 ? Collections.singletonList(searchRoot + "/page") : Collections.emptyList();
+        });
+        assertEquals(Arrays.asList(Collections.singletonList("/content/de/search/page"),
+                Collections.singletonList("/content/en/search/page")), results);
+        verify(resourceResolver, times(2)).close();
+    }
+
+    @Test
+    public void testDeadline() {
+        long start = System.nanoTime();
+        List<List<String>> results = executor.execute(SEARCH_ROOTS, (rootResolver, searchRoot) -> {
+            if (searchRoot.startsWith("/content/de")) {
+                Thread.sleep(10000);
+            }
+            return Collections.singletonList(searchRoot + "/page");
+        });
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(Arrays.asList(Collections.<String>emptyList(), Collections.singletonList("/content/en/search/page")), results);
+    }
+
+    @Test
+    public void testFailure() {
+        List<List<String>> results = executor.execute(SEARCH_ROOTS, (rootResolver, searchRoot) -> {
+            if (searchRoot.startsWith("/content/de")) {
+                throw new IllegalStateException("The query failed.");
+            }
+            return Collections.singletonList(searchRoot + "/page");
+        });
+        assertEquals(Arrays.asList(Collections.<String>emptyList(), Collections.singletonList("/content/en/search/page")), results);
+    }
+
+    @Test
+    public void testShutdownPool() {
+        // the pool is shut down while the executor still references it: the searches are rejected instead of waiting for the timeout
+        executor.configure(config(2, 10000));
+        ((ThreadPoolExecutor) Whitebox.getInternalState(executor, "executor")).shutdown();
+        long start = System.nanoTime();
+        List<List<String>> results = executor.execute(SEARCH_ROOTS,
+                (rootResolver, searchRoot) -> Collections.singletonList(searchRoot + "/page"));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(Arrays.asList(Collections.<String>emptyList(), Collections.<String>emptyList()), results);
+    }
+
+    @Test
+    public void testShutdownDuringExecution() throws Exception {
+        // a single thread: the second search waits in the queue while the first one runs, until the executor is shut down
+        executor.configure(config(1, 10000));
+        CountDownLatch started = new CountDownLatch(1);
+        Thread shutdown = new Thread(() -> {
+            try {
+                started.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executor.shutdown();
+        });
+        shutdown.start();
+        long start = System.nanoTime();
+        List<List<String>> results = executor.execute(SEARCH_ROOTS, (rootResolver, searchRoot) -> {
+            started.countDown();
+            new CountDownLatch(1).await(10, TimeUnit.SECONDS);
+            return Collections.singletonList(searchRoot + "/page");
+        });
+        shutdown.join();
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(Arrays.asList(Collections.<String>emptyList(), Collections.<String>emptyList()), results);
+    }
+
+    private static FederatedSearchExecutorImpl.Config config(int threads, long timeout) {
+        FederatedSearchExecutorImpl.Config config = mock(FederatedSearchExecutorImpl.Config.class);
+        when(config.threads()).thenReturn(threads);
+        when(config.queueSize()).thenReturn(FederatedSearchExecutorImpl.DEFAULT_QUEUE_SIZE);
+        when(config.timeout()).thenReturn(timeout);
+        return config;
+    }
+}
@@ -0,0 +1,158 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.adobe.cq.wcm.core.components.context.CoreComponentTestContext;
+import io.wcm.testing.mock.aem.junit.AemContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class InvertedIndexSearchBackendTest {
+
+    private static final String PAGE = "/content/en/search/page";
+    private static final String PAGE_TEMPLATE = "/content/en/search/page-template";
+
+    @Rule
+    public AemContext context = CoreComponentTestContext.createContext("/search", "/content");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private InvertedIndexSearchBackend backend;
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = temporaryFolder.newFolder();
+        backend = context.registerInjectActivateService(new InvertedIndexSearchBackend(), "directory", directory.getPath());
+        awaitIndexing();
+    }
+
+    @Test
+    public void testSearch() {
+        assertEquals(InvertedIndexSearchBackend.NAME, backend.getName());
+        assertEquals(Arrays.asList(PAGE, PAGE_TEMPLATE), search("/content/en", "yoda"));
+        assertEquals(Collections.singletonList("/content/de/search/page"), search("/content/de", "zuruck"));
+        assertEquals(Collections.emptyList(), search("/content/en", "zuruck"));
+    }
+
+    @Test
+    public void testAccessRights() {
+        ResourceResolver resourceResolver = mock(ResourceResolver.class);
+        when(resourceResolver.getResource(PAGE_TEMPLATE)).thenReturn(mock(Resource.class));
+        assertEquals(Collections.singletonList(PAGE_TEMPLATE), backend.search(resourceResolver, "/content/en", "yoda", 0, 0).stream()
+                .map(SearchHit::getPath).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testTextChange() throws Exception {
+        context.create().resource(PAGE + "/jcr:content/root/text",
+                "sling:resourceType", InvertedIndexSearchBackend.TEXT_RESOURCE_TYPES[1],
+                InvertedIndexSearchBackend.PN_TEXT, "<p>Master <strong>Luke</strong> &amp; Leia</p>",
+                InvertedIndexSearchBackend.PN_TEXT_IS_RICH, true);
+        backend.onChange(Collections.singletonList(change(PAGE + "/jcr:content/root/text", ResourceChange.ChangeType.ADDED)));
+        awaitIndexing();
+        assertEquals(Collections.singletonList(PAGE), search("/content", "luke leia"));
+        // the markup is not indexed
+        assertEquals(Collections.emptyList(), search("/content", "strong "));
+        assertEquals(Collections.emptyList(), search("/content", "amp "));
+    }
+
+    @Test
+    public void testPageRemoval() throws Exception {
+        ResourceResolver resourceResolver = context.resourceResolver();
+        resourceResolver.delete(resourceResolver.getResource(PAGE));
+        resourceResolver.commit();
+        backend.onChange(Collections.singletonList(change(PAGE, ResourceChange.ChangeType.REMOVED)));
+        awaitIndexing();
+        assertEquals(Collections.singletonList(PAGE_TEMPLATE), search("/content/en", "yoda"));
+
+        backend.onChange(Collections.singletonList(change("/content/en", ResourceChange.ChangeType.REMOVED)));
+        awaitIndexing();
+        assertEquals(Collections.singletonList("/content/de/search/page"), search("/content", "yoda"));
+    }
+
+    @Test
+    public void testChangesQueuedBehindIndexing() throws Exception {
+        // the changes are indexed by the indexing thread, after the indexing in progress
+        CountDownLatch latch = new CountDownLatch(1);
+        backend.indexer.submit(() -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        context.create().resource(PAGE + "/jcr:content/root/text",
+                "sling:resourceType", InvertedIndexSearchBackend.TEXT_RESOURCE_TYPES[1],
+                InvertedIndexSearchBackend.PN_TEXT, "Master Luke");
+        backend.onChange(Collections.singletonList(change(PAGE + "/jcr:content/root/text", ResourceChange.ChangeType.ADDED)));
+        assertEquals(Collections.emptyList(), search("/content", "luke"));
+        latch.countDown();
+        awaitIndexing();
+        assertEquals(Collections.singletonList(PAGE), search("/content", "luke"));
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        backend.shutdown();
+        assertEquals(Collections.emptyList(), search("/content/en", "yoda"));
+        // the changes received once the backend is shut down are ignored
+        backend.onChange(Collections.singletonList(change(PAGE, ResourceChange.ChangeType.REMOVED)));
+
+        InvertedIndexSearchBackend reopened = context.registerInjectActivateService(new InvertedIndexSearchBackend(), "directory",
+                directory.getPath());
+        // the index persisted by the previous activation is searched before the pages are indexed again
+        assertEquals(Arrays.asList(PAGE, PAGE_TEMPLATE), reopened.search(context.resourceResolver(), "/content/en", "yoda", 0, 0)
+                .stream().map(SearchHit::getPath).collect(Collectors.toList()));
+        reopened.indexer.getIndexing().get(10, TimeUnit.SECONDS);
+        reopened.shutdown();
+    }
+
+    private void awaitIndexing() throws Exception {
+        backend.indexer.getIndexing().get(10, TimeUnit.SECONDS);
+    }
+
+    private List<String> search(String searchRoot, String fulltext) {
+        return backend.search(context.resourceResolver(), searchRoot, fulltext, 0, 0).stream().map(SearchHit::getPath)
+                .collect(Collectors.toList());
+    }
+
+    private static ResourceChange change(String path, ResourceChange.ChangeType type) {
+        ResourceChange change = mock(ResourceChange.class);
+        when(change.getPath()).thenReturn(path);
+        when(change.getType()).thenReturn(type);
+        return change;
+    }
+}
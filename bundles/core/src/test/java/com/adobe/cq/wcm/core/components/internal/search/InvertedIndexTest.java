@@ -0,0 +1,200 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InvertedIndexTest {
+
+    private static final String YODA = "/content/en/yoda";
+    private static final String LUKE = "/content/en/yoda/luke";
+    private static final String VADER = "/content/en/vader";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File directory;
+    private InvertedIndex index;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = temporaryFolder.newFolder();
+        index = new InvertedIndex(directory, 3);
+        index.update(Arrays.asList(
+                new IndexDocument(YODA).add("Yoda is back", 3).add("The Jedi master returns to Dagobah.", 1),
+                new IndexDocument(LUKE).add("Jedi training", 3).add("Yoda teaches Luke the ways of the force.", 1),
+                new IndexDocument(VADER).add("Sith lords", 3).add(IndexDocument.stripMarkup("<p>Darth &amp; Vader</p>"), 1)),
+                Collections.emptyList(), Collections.emptyList());
+    }
+
+    @Test
+    public void testTokenize() {
+        assertEquals(Arrays.asList("munchen", "koln", "2018"), IndexDocument.tokenize("München & Köln, 2018"));
+        assertEquals(Collections.emptyList(), IndexDocument.tokenize(" - "));
+    }
+
+    @Test
+    public void testSearch() {
+        // the title weighs more than the text
+        assertEquals(Arrays.asList(YODA, LUKE), search("/content", "yoda"));
+        assertEquals(Arrays.asList(LUKE, YODA), search("/content", "jedi"));
+        // all the terms must match, the last one being a prefix unless followed by a space
+        assertEquals(Collections.singletonList(LUKE), search("/content", "jedi lu"));
+        assertEquals(Collections.emptyList(), search("/content", "jedi lu "));
+        assertEquals(Collections.singletonList(VADER), search("/content", "darth"));
+        assertEquals(Collections.singletonList(LUKE), search(LUKE, "yoda"));
+        assertEquals(Collections.emptyList(), search("/content/en/yo", "yoda"));
+        assertEquals(Collections.emptyList(), search("/content", " "));
+    }
+
+    @Test
+    public void testPagination() {
+        assertEquals(Collections.singletonList(LUKE), index.search("/content", "yoda", path -> true, 1, 1).stream()
+                .map(SearchHit::getPath).collect(Collectors.toList()));
+        // the results filtered out are not counted in the offset
+        assertEquals(Collections.singletonList(LUKE), index.search("/content", "yoda", path -> !path.equals(YODA), 0, 1).stream()
+                .map(SearchHit::getPath).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        index.update(Collections.singletonList(new IndexDocument(VADER).add("Darth Vader", 3)), Collections.emptyList(),
+                Collections.emptyList());
+        assertEquals(Collections.emptyList(), search("/content", "sith"));
+        assertEquals(Collections.singletonList(VADER), search("/content", "vader"));
+        assertEquals(3, index.size());
+
+        index.update(Collections.emptyList(), Collections.singletonList(YODA), Collections.emptyList());
+        assertEquals(Collections.singletonList(LUKE), search("/content", "yoda"));
+        index.update(Collections.emptyList(), Collections.emptyList(), Collections.singletonList(YODA));
+        assertEquals(Collections.emptyList(), search("/content", "yoda"));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void testPersistence() throws Exception {
+        index.update(Collections.emptyList(), Collections.emptyList(), Collections.singletonList(YODA));
+        InvertedIndex reopened = new InvertedIndex(directory, 3);
+        assertEquals(2, reopened.getSegmentCount());
+        assertEquals(Collections.singleton(VADER), reopened.getPaths());
+        assertEquals(Collections.singletonList(VADER), reopened.search("/content", "vader", path -> true, 0, 0).stream()
+                .map(SearchHit::getPath).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            index.update(Collections.singletonList(new IndexDocument(VADER).add("Darth Vader " + i, 3)), Collections.emptyList(),
+                    Collections.emptyList());
+        }
+        assertEquals(1, index.getSegmentCount());
+        String[] files = directory.list();
+        assertTrue(files != null && files.length == 1);
+        assertEquals(Arrays.asList(YODA, LUKE), search("/content", "yoda"));
+        assertEquals(Collections.singletonList(VADER), search("/content", "2"));
+        assertEquals(Collections.emptyList(), search("/content", "1"));
+        assertEquals(3, new InvertedIndex(directory, 3).size());
+    }
+
+    @Test
+    public void testTieredMerge() throws Exception {
+        File tieredDirectory = temporaryFolder.newFolder();
+        InvertedIndex tiered = new InvertedIndex(tieredDirectory, 100);
+        List<IndexDocument> documents = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            documents.add(new IndexDocument("/content/en/page" + i).add("Page " + i, 3));
+        }
+        tiered.update(documents, Collections.emptyList(), Collections.emptyList());
+        tiered.update(Collections.emptyList(), Collections.singletonList("/content/en/page0"), Collections.emptyList());
+        for (int i = 0; i < InvertedIndex.MERGE_FACTOR - 2; i++) {
+            tiered.update(Collections.singletonList(new IndexDocument(VADER + i).add("Darth Vader", 3)), Collections.emptyList(),
+                    Collections.emptyList());
+        }
+        assertEquals(InvertedIndex.MERGE_FACTOR, tiered.getSegmentCount());
+
+        // the small segments are merged together, keeping their tombstones, while the large one is left alone
+        tiered.update(Collections.singletonList(new IndexDocument(YODA).add("Yoda", 3)), Collections.emptyList(),
+                Collections.emptyList());
+        assertEquals(2, tiered.getSegmentCount());
+        assertEquals(22, tiered.size());
+        assertTrue(new File(tieredDirectory, IndexSegment.getFileName(1)).exists());
+    }
+
+    @Test
+    public void testMergeKeepsTombstones() throws Exception {
+        File tieredDirectory = temporaryFolder.newFolder();
+        InvertedIndex tiered = new InvertedIndex(tieredDirectory, 100);
+        List<IndexDocument> documents = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            documents.add(new IndexDocument("/content/en/page" + i).add("Page " + i, 3));
+        }
+        tiered.update(documents, Collections.emptyList(), Collections.emptyList());
+        tiered.update(Collections.emptyList(), Collections.singletonList("/content/en/page0"), Collections.emptyList());
+        for (int i = 0; i < InvertedIndex.MERGE_FACTOR - 1; i++) {
+            tiered.update(Collections.singletonList(new IndexDocument(VADER + i).add("Darth Vader", 3)), Collections.emptyList(),
+                    Collections.emptyList());
+        }
+        assertEquals(2, tiered.getSegmentCount());
+        InvertedIndex reopened = new InvertedIndex(tieredDirectory, 100);
+        assertEquals(2, reopened.getSegmentCount());
+        assertEquals(22, reopened.size());
+        assertFalse(reopened.getPaths().contains("/content/en/page0"));
+    }
+
+    @Test
+    public void testUpdateMatchesReopenedIndex() throws Exception {
+        String sibling = "/content/en/yoda-sibling";
+        index.update(Arrays.asList(new IndexDocument(sibling).add("Yoda has a sibling", 3),
+                new IndexDocument(LUKE).add("Luke returns to Yoda", 3)), Collections.emptyList(), Collections.emptyList());
+        index.update(Collections.emptyList(), Collections.emptyList(), Collections.singletonList(YODA));
+        // the pages sharing the prefix of a removed tree are not removed
+        assertEquals(new HashSet<>(Arrays.asList(VADER, sibling)), index.getPaths());
+        // the statistics kept up to date by the updates are those computed when the index is opened
+        InvertedIndex reopened = new InvertedIndex(directory, 3);
+        assertEquals(reopened.size(), index.size());
+        List<SearchHit> hits = index.search("/content", "yoda", path -> true, 0, 0);
+        List<SearchHit> reopenedHits = reopened.search("/content", "yoda", path -> true, 0, 0);
+        assertEquals(1, hits.size());
+        assertEquals(sibling, hits.get(0).getPath());
+        assertEquals(reopenedHits.get(0).getScore(), hits.get(0).getScore(), 0.0001);
+    }
+
+    @Test(expected = IOException.class)
+    public void testClose() throws Exception {
+        index.close();
+        index.update(Collections.emptyList(), Collections.singletonList(YODA), Collections.emptyList());
+    }
+
+    private List<String> search(String searchRoot, String fulltext) {
+        return index.search(searchRoot, fulltext, path -> true, 0, 0).stream().map(SearchHit::getPath).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,198 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.jcr.Session;
+import javax.jcr.Value;
+import javax.jcr.Workspace;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryManager;
+import javax.jcr.query.QueryResult;
+import javax.jcr.query.Row;
+import javax.jcr.query.RowIterator;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.day.cq.commons.RangeIterator;
+import com.day.cq.search.result.Hit;
+import com.day.cq.search.result.SearchResult;
+import com.day.cq.tagging.TagManager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class QueryLogImplTest {
+
+    private static final String COMPONENT = "/content/en/search/page/jcr:content/search";
+    private static final String STATEMENT = "/jcr:root/content/en//element(*, cq:Page)[jcr:contains(., 'yoda')]";
+    private static final String PLAN = "[cq:Page] as [a] /* lucene:cqPageLucene(/oak:index/cqPageLucene) +:fulltext:yoda */";
+
+    private QueryLogImpl log;
+    private ResourceResolver resourceResolver;
+    private SearchResult searchResult;
+    private long now;
+
+    @Before
+    public void setUp() throws Exception {
+        log = new QueryLogImpl();
+        log.clock = () -> now;
+        log.configure(config(500, 2, true));
+
+        searchResult = mock(SearchResult.class);
+        when(searchResult.getHits()).thenReturn(Arrays.asList(mock(Hit.class), mock(Hit.class)));
+        when(searchResult.getQueryStatement()).thenReturn(STATEMENT);
+
+        Value plan = mock(Value.class);
+        when(plan.getString()).thenReturn(PLAN);
+        Row row = mock(Row.class);
+        when(row.getValue("plan")).thenReturn(plan);
+        RowIterator rows = mock(RowIterator.class);
+        when(rows.hasNext()).thenReturn(true);
+        when(rows.nextRow()).thenReturn(row);
+        QueryResult queryResult = mock(QueryResult.class);
+        when(queryResult.getRows()).thenReturn(rows);
+        Query explainQuery = mock(Query.class);
+        when(explainQuery.execute()).thenReturn(queryResult);
+        QueryManager queryManager = mock(QueryManager.class);
+        when(queryManager.createQuery("explain " + STATEMENT, Query.XPATH)).thenReturn(explainQuery);
+        Workspace workspace = mock(Workspace.class);
+        when(workspace.getQueryManager()).thenReturn(queryManager);
+        Session session = mock(Session.class);
+        when(session.getWorkspace()).thenReturn(workspace);
+        resourceResolver = mock(ResourceResolver.class);
+        when(resourceResolver.adaptTo(Session.class)).thenReturn(session);
+    }
+
+    @Test
+    public void testFastQuery() throws Exception {
+        assertSame(searchResult, execute(100));
+        assertEquals(1, log.getQueryCount());
+        assertEquals(0, log.getSlowQueryCount());
+        assertEquals(0, log.getSlowQueries().size());
+    }
+
+    @Test
+    public void testSlowQuery() throws Exception {
+        assertSame(searchResult, execute(600));
+        assertEquals(1, log.getSlowQueryCount());
+        TabularData slowQueries = log.getSlowQueries();
+        assertEquals(1, slowQueries.size());
+        CompositeData slowQuery = (CompositeData) slowQueries.values().iterator().next();
+        assertEquals(COMPONENT, slowQuery.get("component"));
+        assertEquals("{fulltext=yoda, path=/content/en}", slowQuery.get("predicates"));
+        assertEquals(600L, slowQuery.get("duration"));
+        assertEquals(2L, slowQuery.get("hits"));
+        assertEquals(STATEMENT, slowQuery.get("statement"));
+        assertEquals(PLAN, slowQuery.get("plan"));
+    }
+
+    @Test
+    public void testCapacity() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            execute(1000);
+        }
+        assertEquals(3, log.getSlowQueryCount());
+        TabularData slowQueries = log.getSlowQueries();
+        assertEquals(2, slowQueries.size());
+        assertEquals(Arrays.asList(2L, 3L), Arrays.asList(slowQueries.get(new Object[]{2L}).get("id"),
+                slowQueries.get(new Object[]{3L}).get("id")));
+        log.clear();
+        assertEquals(0, log.getSlowQueries().size());
+    }
+
+    @Test
+    public void testWithoutExplain() throws Exception {
+        log.configure(config(500, 2, false));
+        execute(600);
+        CompositeData slowQuery = (CompositeData) log.getSlowQueries().values().iterator().next();
+        assertNull(slowQuery.get("plan"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFind() throws Exception {
+        RangeIterator<Resource> resources = mock(RangeIterator.class);
+        Resource resource = mock(Resource.class);
+        when(resources.hasNext()).thenReturn(true, true, true, false);
+        when(resources.next()).then(invocation -> {
+            // the tag manager executes the query lazily, while the resources are iterated
+            now += TimeUnit.MILLISECONDS.toNanos(300);
+            return resource;
+        });
+        TagManager tagManager = mock(TagManager.class);
+        String[] tags = {"test:yoda", "test:luke"};
+        when(tagManager.find("/content/en", tags, true)).thenReturn(resources);
+        List<Resource> visited = new ArrayList<>();
+        log.find(COMPONENT, tagManager, "/content/en", tags, true, visited::add);
+        assertEquals(3, visited.size());
+        CompositeData slowQuery = (CompositeData) log.getSlowQueries().values().iterator().next();
+        assertEquals("{path=/content/en, tagid=test:yoda,test:luke, tagid.or=true}", slowQuery.get("predicates"));
+        assertEquals(3L, slowQuery.get("hits"));
+        assertNull(slowQuery.get("plan"));
+        verify(resources, never()).getSize();
+    }
+
+    @Test
+    public void testFindStopsWhenVisitorIsDone() throws Exception {
+        RangeIterator<Resource> resources = mock(RangeIterator.class);
+        when(resources.hasNext()).thenReturn(true);
+        when(resources.next()).then(invocation -> {
+            now += TimeUnit.MILLISECONDS.toNanos(600);
+            return mock(Resource.class);
+        });
+        TagManager tagManager = mock(TagManager.class);
+        String[] tags = {"test:yoda"};
+        when(tagManager.find("/content/en", tags, false)).thenReturn(resources);
+        log.find(COMPONENT, tagManager, "/content/en", tags, false, resource -> false);
+        CompositeData slowQuery = (CompositeData) log.getSlowQueries().values().iterator().next();
+        assertEquals(1L, slowQuery.get("hits"));
+        verify(resources).next();
+    }
+
+    private SearchResult execute(long durationMillis) {
+        Map<String, String> predicates = new HashMap<>();
+        predicates.put("fulltext", "yoda");
+        predicates.put("path", "/content/en");
+        return log.getResult(COMPONENT, predicates, resourceResolver, () -> {
+            now += TimeUnit.MILLISECONDS.toNanos(durationMillis);
+            return searchResult;
+        });
+    }
+
+    private static QueryLogImpl.Config config(long threshold, int capacity, boolean explain) {
+        QueryLogImpl.Config config = mock(QueryLogImpl.Config.class);
+        when(config.threshold()).thenReturn(threshold);
+        when(config.capacity()).thenReturn(capacity);
+        when(config.explain()).thenReturn(explain);
+        return config;
+    }
+}
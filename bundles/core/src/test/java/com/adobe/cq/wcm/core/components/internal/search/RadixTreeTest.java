@@ -0,0 +1,70 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2017 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RadixTreeTest {
+
+    private RadixTree<String> tree;
+
+    @Before
+    public void setUp() {
+        tree = new RadixTree<>();
+        tree.put("yoda", "1");
+        tree.put("yoga", "2");
+        tree.put("yo", "3");
+        tree.put("york", "4");
+        tree.put("yodel", "5");
+        tree.put("yoda", "6");
+    }
+
+    @Test
+    public void testFind() {
+        assertEquals(Arrays.asList("3", "1", "6", "5", "2", "4"), Arrays.asList(tree.find("yo", value -> true, 10).toArray()));
+        assertEquals(Arrays.asList("1", "6", "5"), Arrays.asList(tree.find("yod", value -> true, 10).toArray()));
+        assertEquals(Collections.singletonList("5"), Arrays.asList(tree.find("yode", value -> true, 10).toArray()));
+        assertEquals(Collections.emptyList(), Arrays.asList(tree.find("yodle", value -> true, 10).toArray()));
+        assertEquals(Collections.emptyList(), Arrays.asList(tree.find("x", value -> true, 10).toArray()));
+    }
+
+    @Test
+    public void testLimitAndFilter() {
+        assertEquals(Arrays.asList("3", "1"), Arrays.asList(tree.find("y", value -> true, 2).toArray()));
+        assertEquals(Arrays.asList("6", "2", "4"), Arrays.asList(tree.find("y", value -> Integer.parseInt(value) % 2 == 0, 10).toArray()));
+    }
+
+    @Test
+    public void testRemove() {
+        tree.remove("yoga", "2");
+        tree.remove("yo", "3");
+        tree.remove("yoda", "1");
+        tree.remove("unknown", "1");
+        assertEquals(Collections.emptyList(), Arrays.asList(tree.find("yog", value -> true, 10).toArray()));
+        assertEquals(Arrays.asList("6", "5", "4"), Arrays.asList(tree.find("yo", value -> true, 10).toArray()));
+        tree.remove("yoda", "6");
+        tree.remove("york", "4");
+        assertEquals(Collections.singletonList("5"), Arrays.asList(tree.find("y", value -> true, 10).toArray()));
+        tree.put("yoda", "7");
+        assertEquals(Arrays.asList("7", "5"), Arrays.asList(tree.find("yod", value -> true, 10).toArray()));
+    }
+}
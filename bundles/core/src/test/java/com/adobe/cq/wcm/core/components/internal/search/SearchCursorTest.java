@@ -0,0 +1,94 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2017 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.junit.Test;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.wcm.api.Page;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SearchCursorTest {
+
+    private static final long CREATED = 1501786240000L;
+
+    @Test
+    public void testToken() {
+        SearchCursor cursor = SearchCursor.after(page("/content/en/page", CREATED));
+        assertNotNull(cursor);
+        SearchCursor parsed = SearchCursor.parse(cursor.toToken());
+        assertEquals(cursor.toToken(), parsed.toToken());
+        assertEquals("2017-08-03T18:50:40.000Z", parsed.getUpperBound());
+        assertSame(SearchCursor.START, SearchCursor.parse(""));
+        assertEquals("", SearchCursor.START.toToken());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidToken() {
+        SearchCursor.parse("not a cursor");
+    }
+
+    @Test
+    public void testAfter() {
+        SearchCursor cursor = SearchCursor.after(page("/content/en/b", CREATED));
+        assertNotNull(cursor);
+        assertEquals(new SearchCursor(CREATED, "/content/en/b"), cursor);
+        assertNull(SearchCursor.after(page("/content/en/a", -1)));
+    }
+
+    @Test
+    public void testOrder() {
+        SearchCursor newest = new SearchCursor(CREATED + 1, "/content/en/c");
+        SearchCursor first = new SearchCursor(CREATED, "/content/en/a");
+        SearchCursor second = new SearchCursor(CREATED, "/content/en/b");
+        List<SearchCursor> cursors = new ArrayList<>(Arrays.asList(second, first, newest));
+        Collections.sort(cursors);
+        assertEquals(Arrays.asList(newest, first, second), cursors);
+        assertTrue(SearchCursor.START.compareTo(newest) < 0);
+        assertEquals(0, first.compareTo(SearchCursor.parse(first.toToken())));
+    }
+
+    private static Page page(String path, long created) {
+        Resource resource = mock(Resource.class);
+        if (created >= 0) {
+            Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+            calendar.setTimeInMillis(created);
+            when(resource.getValueMap()).thenReturn(new ValueMapDecorator(Collections.<String, Object>singletonMap(JcrConstants.JCR_CREATED, calendar)));
+        } else {
+            when(resource.getValueMap()).thenReturn(new ValueMapDecorator(Collections.<String, Object>emptyMap()));
+        }
+        Page page = mock(Page.class);
+        when(page.getPath()).thenReturn(path);
+        when(page.adaptTo(Resource.class)).thenReturn(resource);
+        return page;
+    }
+}
@@ -0,0 +1,131 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2017 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SearchGuardImplTest {
+
+    private SearchGuardImpl guard;
+    private long now;
+
+    @Before
+    public void setUp() {
+        guard = new SearchGuardImpl();
+        guard.clock = () -> now;
+        guard.configure(config(20, 0.25, 2, "X-Forwarded-For", true));
+    }
+
+    @Test
+    public void testEstimateCost() {
+        int cost = SearchGuardImpl.estimateCost("yoda", 0, 99);
+        assertEquals(3, cost);
+        assertTrue(SearchGuardImpl.estimateCost("yo", 0, 99) > cost);
+        assertTrue(SearchGuardImpl.estimateCost("yoda*", 0, 99) > cost);
+        assertTrue(SearchGuardImpl.estimateCost("yoda", 1000, 99) > cost);
+        assertTrue(SearchGuardImpl.estimateCost("yoda", 0, 100000) > cost);
+        assertEquals(SearchGuardImpl.estimateCost("yoda", 0, 999), SearchGuardImpl.estimateCost("yoda", 0, -1));
+    }
+
+    @Test
+    public void testRateLimit() {
+        SlingHttpServletRequest request = request("10.0.0.1", null);
+        // each search costs 7
+        for (int i = 0; i < 2; i++) {
+            try (SearchGuard.Permit permit = guard.tryAcquire(request, "yo", 0, 99)) {
+                assertTrue(permit.isGranted());
+            }
+        }
+        SearchGuard.Permit rejected = guard.tryAcquire(request, "yo", 0, 99);
+        assertFalse(rejected.isGranted());
+        assertEquals(4, rejected.getRetryAfter());
+
+        // other clients have their own bucket
+        assertTrue(guard.tryAcquire(request("10.0.0.2", null), "yo", 0, 99).isGranted());
+
+        now += TimeUnit.SECONDS.toNanos(5);
+        assertTrue(guard.tryAcquire(request, "yo", 0, 99).isGranted());
+        assertEquals(3, guard.getAdmittedCount());
+        assertEquals(1, guard.getRateLimitedCount());
+        assertEquals(2, guard.getClientCount());
+    }
+
+    @Test
+    public void testClientHeader() {
+        guard.tryAcquire(request("10.0.0.1", "192.168.0.1, 10.0.0.1"), "yoda", 0, 99).close();
+        guard.tryAcquire(request("10.0.0.1", "192.168.0.2"), "yoda", 0, 99).close();
+        guard.tryAcquire(request("10.0.0.1", null), "yoda", 0, 99).close();
+        assertEquals(3, guard.getClientCount());
+    }
+
+    @Test
+    public void testUnidentifiedClients() {
+        // behind a proxy, the IP address is the proxy's and is not used by default
+        guard.configure(config(20, 0.25, 0, "X-Forwarded-For", false));
+        for (int i = 0; i < 5; i++) {
+            assertTrue(guard.tryAcquire(request("10.0.0.1", null), "yo", 0, 99).isGranted());
+        }
+        assertEquals(0, guard.getClientCount());
+        assertEquals(0, guard.getRateLimitedCount());
+
+        guard.tryAcquire(request("10.0.0.1", "192.168.0.1"), "yo", 0, 99).close();
+        assertEquals(1, guard.getClientCount());
+    }
+
+    @Test
+    public void testConcurrencyLimit() {
+        SearchGuard.Permit first = guard.tryAcquire(request("10.0.0.1", null), "yoda", 0, 99);
+        SearchGuard.Permit second = guard.tryAcquire(request("10.0.0.2", null), "yoda", 0, 99);
+        assertEquals(2, guard.getActiveCount());
+        SearchGuard.Permit third = guard.tryAcquire(request("10.0.0.3", null), "yoda", 0, 99);
+        assertFalse(third.isGranted());
+        assertEquals(1, third.getRetryAfter());
+        assertEquals(1, guard.getConcurrencyLimitedCount());
+        first.close();
+        first.close();
+        assertEquals(1, guard.getActiveCount());
+        assertTrue(guard.tryAcquire(request("10.0.0.3", null), "yoda", 0, 99).isGranted());
+        second.close();
+    }
+
+    private static SlingHttpServletRequest request(String remoteAddress, String forwardedFor) {
+        SlingHttpServletRequest request = mock(SlingHttpServletRequest.class);
+        when(request.getRemoteAddr()).thenReturn(remoteAddress);
+        when(request.getHeader("X-Forwarded-For")).thenReturn(forwardedFor);
+        return request;
+    }
+
+    private static SearchGuardImpl.Config config(int bucketCapacity, double refillRate, int maxConcurrentSearches, String clientHeader,
+                                                 boolean limitByRemoteAddress) {
+        SearchGuardImpl.Config config = mock(SearchGuardImpl.Config.class);
+        when(config.bucketCapacity()).thenReturn(bucketCapacity);
+        when(config.refillRate()).thenReturn(refillRate);
+        when(config.maxConcurrentSearches()).thenReturn(maxConcurrentSearches);
+        when(config.clientHeader()).thenReturn(clientHeader);
+        when(config.limitByRemoteAddress()).thenReturn(limitByRemoteAddress);
+        return config;
+    }
+}
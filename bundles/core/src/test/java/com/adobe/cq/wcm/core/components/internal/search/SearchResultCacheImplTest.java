@@ -0,0 +1,144 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2017 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SearchResultCacheImplTest {
+
+    private static final String SEARCH_ROOT = "/content/en/search";
+    private static final List<String> SEARCH_ROOTS = Collections.singletonList(SEARCH_ROOT);
+    private static final List<String> RESULTS = Arrays.asList(SEARCH_ROOT + "/page", SEARCH_ROOT + "/page-template");
+
+    private SearchResultCacheImpl cache;
+    private AtomicInteger searches;
+
+    @Before
+    public void setUp() {
+        cache = new SearchResultCacheImpl();
+        searches = new AtomicInteger();
+    }
+
+    @Test
+    public void testCaching() {
+        assertEquals(RESULTS, search(key("yoda")));
+        assertEquals(RESULTS, search(key("  YODA ")));
+        assertEquals(1, searches.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRatio(), 0.0001);
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void testDistinctKeys() {
+        search(key("yoda"));
+        search(new SearchResultKey(SEARCH_ROOTS, "yoda", 10, 10, null, "anonymous"));
+        search(new SearchResultKey(SEARCH_ROOTS, "yoda", 0, 10, null, "admin"));
+        search(new SearchResultKey(Collections.singletonList("/content/de"), "yoda", 0, 10, null, "anonymous"));
+        search(new SearchResultKey(SEARCH_ROOTS, "yoda", 0, 10, "", "anonymous"));
+        assertEquals(5, searches.get());
+    }
+
+    @Test
+    public void testInvalidation() {
+        search(key("yoda"));
+        cache.onChange(Collections.singletonList(change("/content/en/other/jcr:content", ResourceChange.ChangeType.CHANGED)));
+        cache.onChange(Collections.singletonList(change("/content/dam/en/search", ResourceChange.ChangeType.ADDED)));
+        search(key("yoda"));
+        assertEquals(1, searches.get());
+
+        cache.onChange(Collections.singletonList(change(SEARCH_ROOT + "/new-page", ResourceChange.ChangeType.ADDED)));
+        search(key("yoda"));
+        assertEquals(2, searches.get());
+
+        // moving or removing an ancestor of the search root invalidates the results as well
+        cache.onChange(Collections.singletonList(change("/content/en", ResourceChange.ChangeType.REMOVED)));
+        search(key("yoda"));
+        assertEquals(3, searches.get());
+    }
+
+    @Test
+    public void testFederatedInvalidation() {
+        SearchResultKey key = new SearchResultKey(Arrays.asList(SEARCH_ROOT, "/content/global/search"), "yoda", 0, 10, null, "anonymous");
+        search(key);
+        search(key("yoda"));
+        cache.onChange(Collections.singletonList(change("/content/global/search/new-page", ResourceChange.ChangeType.ADDED)));
+        search(key);
+        search(key("yoda"));
+        assertEquals(3, searches.get());
+    }
+
+    @Test
+    public void testClear() {
+        search(key("yoda"));
+        cache.clear();
+        search(key("yoda"));
+        assertEquals(2, searches.get());
+    }
+
+    @Test
+    public void testVersion() {
+        String version = cache.getVersion();
+        assertEquals(version, cache.getVersion());
+        cache.onChange(Collections.singletonList(change("/content/dam/en/search", ResourceChange.ChangeType.ADDED)));
+        assertEquals(version, cache.getVersion());
+        cache.onChange(Collections.singletonList(change(SEARCH_ROOT + "/page/jcr:content", ResourceChange.ChangeType.CHANGED)));
+        assertNotEquals(version, cache.getVersion());
+        assertNotEquals(cache.getVersion(), new SearchResultCacheImpl().getVersion());
+    }
+
+    @Test
+    public void testAclFingerprint() {
+        ResourceResolver anonymous = mock(ResourceResolver.class);
+        when(anonymous.getUserID()).thenReturn("anonymous");
+        ResourceResolver admin = mock(ResourceResolver.class);
+        when(admin.getUserID()).thenReturn("admin");
+        assertEquals(SearchResultKey.getAclFingerprint(anonymous), SearchResultKey.getAclFingerprint(anonymous));
+        assertNotEquals(SearchResultKey.getAclFingerprint(anonymous), SearchResultKey.getAclFingerprint(admin));
+    }
+
+    private List<String> search(SearchResultKey key) {
+        return cache.getResults(key, () -> {
+            searches.incrementAndGet();
+            return RESULTS;
+        });
+    }
+
+    private static SearchResultKey key(String fulltext) {
+        return new SearchResultKey(SEARCH_ROOTS, fulltext, 0, 10, null, "anonymous");
+    }
+
+    private static ResourceChange change(String path, ResourceChange.ChangeType type) {
+        ResourceChange change = mock(ResourceChange.class);
+        when(change.getPath()).thenReturn(path);
+        when(change.getType()).thenReturn(type);
+        return change;
+    }
+}
@@ -0,0 +1,123 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2017 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.search;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.adobe.cq.wcm.core.components.context.CoreComponentTestContext;
+import com.day.cq.wcm.api.NameConstants;
+import io.wcm.testing.mock.aem.junit.AemContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SuggestionIndexImplTest {
+
+    private static final String PAGE = "/content/en/search/page";
+    private static final String PAGE_TEMPLATE = "/content/en/search/page-template";
+
+    @Rule
+    public AemContext context = CoreComponentTestContext.createContext("/search", "/content");
+
+    private SuggestionIndexImpl index;
+
+    @Before
+    public void setUp() throws Exception {
+        index = context.registerInjectActivateService(new SuggestionIndexImpl());
+        awaitIndexing();
+    }
+
+    @Test
+    public void testSuggest() {
+        assertEquals(Arrays.asList(PAGE, PAGE_TEMPLATE), index.suggest("/content/en", "pa", 10));
+        assertEquals(Arrays.asList("/content/en", "/content/en/search"), index.suggest("/content/en", " SE", 10));
+        assertEquals(Collections.singletonList("/content/de/search"), index.suggest("/content/de/search", "such", 10));
+        assertEquals(Collections.singletonList(PAGE), index.suggest("/content/en", "page", 1));
+        assertEquals(Collections.emptyList(), index.suggest("/content/en", "yoda", 10));
+        assertEquals(Collections.emptyList(), index.suggest("/content/en", " ", 10));
+    }
+
+    @Test
+    public void testCountPages() throws Exception {
+        assertEquals(4, index.countPages("/content/en"));
+        assertEquals(1, index.countPages(PAGE));
+        ResourceResolver resourceResolver = context.resourceResolver();
+        resourceResolver.delete(resourceResolver.getResource(PAGE));
+        resourceResolver.commit();
+        index.onChange(Collections.singletonList(change(PAGE, ResourceChange.ChangeType.REMOVED)));
+        awaitIndexing();
+        assertEquals(3, index.countPages("/content/en"));
+    }
+
+    @Test
+    public void testPageChange() throws Exception {
+        ResourceResolver resourceResolver = context.resourceResolver();
+        Resource content = resourceResolver.getResource(PAGE + "/jcr:content");
+        assertNotNull(content);
+        content.adaptTo(ModifiableValueMap.class).put(NameConstants.PN_NAV_TITLE, "Master Yoda");
+        resourceResolver.commit();
+        index.onChange(Collections.singletonList(change(PAGE + "/jcr:content", ResourceChange.ChangeType.CHANGED)));
+        awaitIndexing();
+        assertEquals(Collections.singletonList(PAGE), index.suggest("/content/en", "yo", 10));
+        assertEquals(Collections.singletonList(PAGE), index.suggest("/content/en", "master y", 10));
+    }
+
+    @Test
+    public void testPageRemoval() throws Exception {
+        ResourceResolver resourceResolver = context.resourceResolver();
+        resourceResolver.delete(resourceResolver.getResource(PAGE));
+        resourceResolver.commit();
+        index.onChange(Collections.singletonList(change(PAGE, ResourceChange.ChangeType.REMOVED)));
+        awaitIndexing();
+        assertEquals(Collections.singletonList(PAGE_TEMPLATE), index.suggest("/content/en", "pa", 10));
+
+        index.onChange(Collections.singletonList(change("/content/en", ResourceChange.ChangeType.REMOVED)));
+        awaitIndexing();
+        assertEquals(Collections.emptyList(), index.suggest("/content/en", "se", 10));
+        assertEquals(Collections.singletonList("/content/de/search/page"), index.suggest("/content", "pa", 10));
+    }
+
+    @Test
+    public void testShutdown() throws Exception {
+        index.shutdown();
+        // changes received while the component is deactivated are ignored
+        index.onChange(Collections.singletonList(change(PAGE, ResourceChange.ChangeType.REMOVED)));
+        assertEquals(Arrays.asList(PAGE, PAGE_TEMPLATE), index.suggest("/content/en", "pa", 10));
+    }
+
+    private void awaitIndexing() throws Exception {
+        index.indexer.getIndexing().get(10, TimeUnit.SECONDS);
+    }
+
+    private static ResourceChange change(String path, ResourceChange.ChangeType type) {
+        ResourceChange change = mock(ResourceChange.class);
+        when(change.getPath()).thenReturn(path);
+        when(change.getType()).thenReturn(type);
+        return change;
+    }
+}
@@ -41,6 +41,8 @@ import org.osgi.service.cm.ConfigurationAdmin;
 import org.osgi.service.component.ComponentContext;
 import org.powermock.reflect.Whitebox;
 
+import com.adobe.cq.wcm.core.components.internal.image.AssetInfoService;
+import com.adobe.cq.wcm.core.components.internal.image.FingerprintService;
 import com.day.cq.dam.api.handler.store.AssetStore;
 
 import static org.junit.Assert.assertEquals;
@@ -60,6 +62,8 @@ public class AdaptiveImageServletMappingConfigurationConsumerTest {
     public void setUp() {
         AssetStore assetStore = mock(AssetStore.class);
         slingContext.registerService(AssetStore.class, assetStore);
+        slingContext.registerService(AssetInfoService.class, mock(AssetInfoService.class));
+        slingContext.registerService(FingerprintService.class, mock(FingerprintService.class));
     }
 
     @Test
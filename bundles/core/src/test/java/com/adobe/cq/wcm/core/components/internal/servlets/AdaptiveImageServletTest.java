@@ -23,15 +23,19 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.imageio.ImageIO;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.sling.api.resource.ModifiableValueMap;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.scripting.SlingBindings;
 import org.apache.sling.api.servlets.HttpConstants;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
 import org.apache.sling.testing.mock.sling.servlet.MockRequestPathInfo;
 import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletRequest;
 import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletResponse;
@@ -42,20 +46,27 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.adobe.cq.wcm.core.components.internal.image.FingerprintService;
+import com.adobe.cq.wcm.core.components.internal.image.FingerprintServiceImpl;
 import com.adobe.cq.wcm.core.components.internal.models.v1.AbstractImageTest;
+import com.adobe.cq.wcm.core.components.models.Image;
 import com.day.cq.dam.api.Rendition;
 import com.day.cq.dam.api.handler.AssetHandler;
 import com.day.cq.dam.api.handler.store.AssetStore;
 import com.day.cq.dam.commons.handler.StandardImageHandler;
+import com.day.cq.wcm.api.WCMMode;
 import com.day.cq.wcm.api.policies.ContentPolicy;
 import com.day.cq.wcm.api.policies.ContentPolicyMapping;
 import com.day.image.Layer;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
@@ -66,6 +77,7 @@ public class AdaptiveImageServletTest extends AbstractImageTest {
     private static String TEST_BASE = "/image";
 
     private AdaptiveImageServlet servlet;
+    private FingerprintService fingerprintService;
     private static final int ADAPTIVE_IMAGE_SERVLET_DEFAULT_RESIZE_WIDTH = 1280;
 
     @BeforeClass
@@ -83,7 +95,9 @@ public class AdaptiveImageServletTest extends AbstractImageTest {
             Rendition rendition = invocation.getArgumentAt(0, Rendition.class);
             return ImageIO.read(rendition.getStream());
         });
-        servlet = new AdaptiveImageServlet(mockedMimeTypeService, assetStore, ADAPTIVE_IMAGE_SERVLET_DEFAULT_RESIZE_WIDTH);
+        fingerprintService = new FingerprintServiceImpl();
+        servlet = new AdaptiveImageServlet(mockedMimeTypeService, assetStore, null, fingerprintService,
+                ADAPTIVE_IMAGE_SERVLET_DEFAULT_RESIZE_WIDTH);
     }
 
     @After
@@ -240,10 +254,28 @@ public class AdaptiveImageServletTest extends AbstractImageTest {
         MockSlingHttpServletRequest request = requestResponsePair.getLeft();
         MockSlingHttpServletResponse response = requestResponsePair.getRight();
         servlet.doGet(request, response);
-        ByteArrayInputStream stream = new ByteArrayInputStream(response.getOutput());
-        InputStream directStream =
-                this.getClass().getClassLoader().getResourceAsStream("image/Adobe_Systems_logo_and_wordmark.gif");
-        assertTrue(IOUtils.contentEquals(stream, directStream));
+        assertEquals("image/gif", response.getContentType());
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(response.getOutput()));
+        assertEquals("Expected GIF image rendered with the default resize configuration width.",
+                new Dimension(ADAPTIVE_IMAGE_SERVLET_DEFAULT_RESIZE_WIDTH, ADAPTIVE_IMAGE_SERVLET_DEFAULT_RESIZE_WIDTH),
+                new Dimension(image.getWidth(), image.getHeight()));
+    }
+
+    @Test
+    public void testGIFFileFlipped() throws Exception {
+        Pair<MockSlingHttpServletRequest, MockSlingHttpServletResponse> requestResponsePair =
+                prepareRequestResponsePair(IMAGE5_PATH, 1489998822138L, "img", "gif");
+        MockSlingHttpServletRequest request = requestResponsePair.getLeft();
+        MockSlingHttpServletResponse response = requestResponsePair.getRight();
+        ModifiableValueMap properties = request.getResource().adaptTo(ModifiableValueMap.class);
+        properties.put(Image.PN_FLIP_HORIZONTAL, true);
+        servlet.doGet(request, response);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(response.getOutput()));
+        BufferedImage original = ImageIO.read(this.getClass().getClassLoader().getResourceAsStream(
+                "image/Adobe_Systems_logo_and_wordmark.gif"));
+        assertEquals(ADAPTIVE_IMAGE_SERVLET_DEFAULT_RESIZE_WIDTH, image.getWidth());
+        assertEquals("Expected the top right corner of the original image in the top left corner of the flipped image.",
+                original.getRGB(original.getWidth() - 1, 0), image.getRGB(0, 0));
     }
 
     @Test
@@ -265,10 +297,11 @@ public class AdaptiveImageServletTest extends AbstractImageTest {
         MockSlingHttpServletRequest request = requestResponsePair.getLeft();
         MockSlingHttpServletResponse response = requestResponsePair.getRight();
         servlet.doGet(request, response);
-        ByteArrayInputStream stream = new ByteArrayInputStream(response.getOutput());
-        InputStream directStream =
-                this.getClass().getClassLoader().getResourceAsStream("image/Adobe_Systems_logo_and_wordmark.gif");
-        assertTrue(IOUtils.contentEquals(stream, directStream));
+        assertEquals("image/gif", response.getContentType());
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(response.getOutput()));
+        assertEquals("Expected GIF image rendered with the default resize configuration width.",
+                new Dimension(ADAPTIVE_IMAGE_SERVLET_DEFAULT_RESIZE_WIDTH, ADAPTIVE_IMAGE_SERVLET_DEFAULT_RESIZE_WIDTH),
+                new Dimension(image.getWidth(), image.getHeight()));
     }
 
     @Test
@@ -371,6 +404,24 @@ public class AdaptiveImageServletTest extends AbstractImageTest {
         testCropScaling(IMAGE14_PATH, 1440, 515, 1390);
     }
 
+    @Test
+    public void testDAMAssetAuthorPreview() throws Exception {
+        Pair<MockSlingHttpServletRequest, MockSlingHttpServletResponse> requestResponsePair =
+                prepareRequestResponsePair(IMAGE13_PATH, "img.1440", "png");
+        MockSlingHttpServletRequest request = requestResponsePair.getLeft();
+        MockSlingHttpServletResponse response = requestResponsePair.getRight();
+        ContentPolicyMapping mapping = request.getResource().adaptTo(ContentPolicyMapping.class);
+        ContentPolicy contentPolicy = mapping.getPolicy();
+        when(contentPolicyManager.getPolicy(request.getResource(), request)).thenReturn(contentPolicy);
+        WCMMode.EDIT.toRequest(request);
+        servlet.doGet(request, response);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(response.getOutput()));
+        // the cropping rectangle is applied on the 1280px web rendition, without scaling it to the original's size
+        assertEquals("Expected the preview to be rendered from the web rendition.", new Dimension(330, 890),
+                new Dimension(image.getWidth(), image.getHeight()));
+        assertEquals("private, max-age=" + AdaptiveImageServlet.PREVIEW_MAX_AGE, response.getHeader("Cache-Control"));
+    }
+
     @Test
     public void testImageWithCorrectLastModifiedSuffix() throws Exception {
         Pair<MockSlingHttpServletRequest, MockSlingHttpServletResponse> requestResponsePair = prepareRequestResponsePair(IMAGE19_PATH,
@@ -425,6 +476,82 @@ public class AdaptiveImageServletTest extends AbstractImageTest {
                 CONTEXT_PATH + "/content/test/jcr%3acontent/root/image19.coreimg.800.png/1490005239000.png", response.getHeader("Location"));
     }
 
+    @Test
+    public void testImageWithFingerprintSuffix() throws Exception {
+        String fingerprint = getFingerprint(IMAGE19_PATH);
+        Pair<MockSlingHttpServletRequest, MockSlingHttpServletResponse> requestResponsePair = prepareRequestResponsePair(IMAGE19_PATH,
+                "coreimg.800", "png");
+        MockSlingHttpServletRequest request = requestResponsePair.getLeft();
+        MockRequestPathInfo requestPathInfo = (MockRequestPathInfo) request.getRequestPathInfo();
+        requestPathInfo.setSuffix("/" + fingerprint + ".png");
+        MockSlingHttpServletResponse response = requestResponsePair.getRight();
+        ContentPolicyMapping mapping = request.getResource().adaptTo(ContentPolicyMapping.class);
+        mockFingerprintPolicy(request, mapping.getPolicy());
+        servlet.doGet(request, response);
+        assertEquals("Expected a 200 response code.", 200, response.getStatus());
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(response.getOutput()));
+        assertEquals(800, image.getWidth());
+    }
+
+    @Test
+    public void testImageWithOutdatedFingerprintSuffix() throws Exception {
+        String fingerprint = getFingerprint(IMAGE19_PATH);
+        Pair<MockSlingHttpServletRequest, MockSlingHttpServletResponse> requestResponsePair = prepareRequestResponsePair(IMAGE19_PATH,
+                "coreimg.800", "png");
+        MockSlingHttpServletRequest request = requestResponsePair.getLeft();
+        MockRequestPathInfo requestPathInfo = (MockRequestPathInfo) request.getRequestPathInfo();
+        requestPathInfo.setSuffix("/0123456789abcdef0123/adobe-logo.png");
+        MockSlingHttpServletResponse response = requestResponsePair.getRight();
+        mockFingerprintPolicy(request, null);
+        servlet.doGet(request, response);
+        assertEquals("Expected a 302 response code.", 302, response.getStatus());
+        assertEquals("Expected redirect location with correct fingerprint suffix",
+                CONTEXT_PATH + "/content/test/jcr%3acontent/root/image19.coreimg.800.png/" + fingerprint + "/adobe-logo.png",
+                response.getHeader("Location"));
+    }
+
+    @Test
+    public void testFingerprintSuffixWithoutFingerprintPolicy() throws Exception {
+        Pair<MockSlingHttpServletRequest, MockSlingHttpServletResponse> requestResponsePair = prepareRequestResponsePair(IMAGE19_PATH,
+                "coreimg.800", "png");
+        MockSlingHttpServletRequest request = requestResponsePair.getLeft();
+        MockRequestPathInfo requestPathInfo = (MockRequestPathInfo) request.getRequestPathInfo();
+        requestPathInfo.setSuffix("/0123456789abcdef0123/adobe-logo.png");
+        MockSlingHttpServletResponse response = requestResponsePair.getRight();
+        servlet.doGet(request, response);
+        // the fingerprint URLs are not enabled, the URL is versioned by the last modified date
+        assertEquals("Expected a 302 response code.", 302, response.getStatus());
+        assertEquals("Expected redirect location with correct last modified suffix",
+                CONTEXT_PATH + "/content/test/jcr%3acontent/root/image19.coreimg.800.png/1490005239000.png", response.getHeader("Location"));
+    }
+
+    @Test
+    public void testRequestFingerprint() {
+        assertEquals("0123456789abcdef0123", AdaptiveImageServlet.getRequestFingerprint("/0123456789abcdef0123.png"));
+        assertEquals("0123456789abcdef0123", AdaptiveImageServlet.getRequestFingerprint("/0123456789abcdef0123/logo.png"));
+        // image names are never taken for fingerprints
+        assertEquals("0123456789abcdef0123",
+                AdaptiveImageServlet.getRequestFingerprint("/0123456789abcdef0123/abcdefabcdefabcdefab.png"));
+        assertNull(AdaptiveImageServlet.getRequestFingerprint("/1490005239000/abcdefabcdefabcdefab.png"));
+    }
+
+    @Test
+    public void testImageFromTemplateStructureNodeOutdatedFingerprint() throws IOException {
+        String fingerprint = getFingerprint(TEMPLATE_IMAGE_PATH);
+        Pair<MockSlingHttpServletRequest, MockSlingHttpServletResponse> requestResponsePair = prepareRequestResponsePair(PAGE, "coreimg",
+                "png");
+        MockSlingHttpServletRequest request = requestResponsePair.getLeft();
+        MockSlingHttpServletResponse response = requestResponsePair.getRight();
+        MockRequestPathInfo requestPathInfo = (MockRequestPathInfo) request.getRequestPathInfo();
+        requestPathInfo.setSuffix(TEMPLATE_IMAGE_PATH.replace(TEMPLATE_PATH, "") + "/0123456789abcdef0123.png");
+        mockFingerprintPolicy(request, null);
+        servlet.doGet(request, response);
+        assertEquals("Expected a 302 response code.", 302, response.getStatus());
+        assertEquals("Expected redirect location with correct fingerprint suffix",
+                CONTEXT_PATH + "/content/test.coreimg.png/structure/jcr%3acontent/root/image_template/" + fingerprint + ".png",
+                response.getHeader("Location"));
+    }
+
     @Test
     public void testFileReferencePriority() throws Exception {
         Pair<MockSlingHttpServletRequest, MockSlingHttpServletResponse> requestResponsePair = prepareRequestResponsePair(IMAGE20_PATH,
@@ -535,6 +662,67 @@ public class AdaptiveImageServletTest extends AbstractImageTest {
 
     }
 
+    @Test
+    public void testOutputFormatNegotiationWithTransparentImage() throws IOException {
+        Pair<MockSlingHttpServletRequest, MockSlingHttpServletResponse> requestResponsePair =
+                prepareRequestResponsePair(IMAGE0_PATH, "img", "png");
+        MockSlingHttpServletRequest request = requestResponsePair.getLeft();
+        MockSlingHttpServletResponse response = requestResponsePair.getRight();
+        request.addHeader("Accept", "image/webp,image/apng,image/*,*/*;q=0.8");
+        ContentPolicy contentPolicy = mock(ContentPolicy.class);
+        when(contentPolicy.getProperties()).thenReturn(new ValueMapDecorator(new HashMap<String, Object>() {{
+            put(Image.PN_DESIGN_NEGOTIATE_OUTPUT_FORMAT, true);
+        }}));
+        when(contentPolicyManager.getPolicy(request.getResource(), request)).thenReturn(contentPolicy);
+        servlet.doGet(request, response);
+        assertEquals("Expected a 200 response.", HttpServletResponse.SC_OK, response.getStatus());
+        assertEquals("Expected the response to vary on the Accept header.", "Accept", response.getHeader("Vary"));
+        assertEquals("Expected transparent images to be rendered as PNG images.", "image/png", response.getContentType());
+    }
+
+    @Test
+    public void testOutputFormatNegotiationDisabled() throws IOException {
+        Pair<MockSlingHttpServletRequest, MockSlingHttpServletResponse> requestResponsePair =
+                prepareRequestResponsePair(IMAGE0_PATH, "img", "png");
+        MockSlingHttpServletRequest request = requestResponsePair.getLeft();
+        MockSlingHttpServletResponse response = requestResponsePair.getRight();
+        request.addHeader("Accept", "image/jpeg");
+        servlet.doGet(request, response);
+        assertNull("Did not expect the response to vary on the Accept header.", response.getHeader("Vary"));
+        assertEquals("Expected a PNG image.", "image/png", response.getContentType());
+    }
+
+    @Test
+    public void testStripMetadata() throws IOException {
+        Pair<MockSlingHttpServletRequest, MockSlingHttpServletResponse> requestResponsePair =
+                prepareRequestResponsePair(IMAGE6_PATH, "img", "gif");
+        MockSlingHttpServletRequest request = requestResponsePair.getLeft();
+        MockSlingHttpServletResponse response = requestResponsePair.getRight();
+        ContentPolicy contentPolicy = mock(ContentPolicy.class);
+        when(contentPolicy.getProperties()).thenReturn(new ValueMapDecorator(new HashMap<String, Object>() {{
+            put(Image.PN_DESIGN_STRIP_METADATA, true);
+        }}));
+        when(contentPolicyManager.getPolicy(request.getResource(), request)).thenReturn(contentPolicy);
+        // the test image is 2000px wide, so it will be rendered without being resized
+        AdaptiveImageServlet servlet = new AdaptiveImageServlet(mockedMimeTypeService, mock(AssetStore.class), 2000);
+        servlet.doGet(request, response);
+        byte[] original = IOUtils.toByteArray(this.getClass().getClassLoader().getResourceAsStream(
+                "image/Adobe_Systems_logo_and_wordmark.gif"));
+        assertEquals("Expected the XMP application extension to be removed.", original.length - 581, response.getOutput().length);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(response.getOutput()));
+        assertEquals(2000, image.getWidth());
+    }
+
+    @Test
+    public void testAcceptsMimeType() {
+        assertTrue(AdaptiveImageServlet.acceptsMimeType("image/webp,image/apng,image/*,*/*;q=0.8", "image/jpeg"));
+        assertTrue(AdaptiveImageServlet.acceptsMimeType("image/png, image/jpeg;q=0.5", "image/jpeg"));
+        assertTrue(AdaptiveImageServlet.acceptsMimeType("*/*", "image/jpeg"));
+        assertFalse(AdaptiveImageServlet.acceptsMimeType("image/png", "image/jpeg"));
+        assertFalse(AdaptiveImageServlet.acceptsMimeType("image/png, image/jpeg;q=0", "image/jpeg"));
+        assertFalse(AdaptiveImageServlet.acceptsMimeType(null, "image/jpeg"));
+    }
+
     private void testNegativeRequestedWidth(String imagePath) throws IOException {
         Pair<MockSlingHttpServletRequest, MockSlingHttpServletResponse> requestResponsePair =
                 prepareRequestResponsePair(imagePath, "img.-1", "png");
@@ -581,6 +769,23 @@ public class AdaptiveImageServletTest extends AbstractImageTest {
         assertArrayEquals(outputStream.toByteArray(), response.getOutput());
     }
 
+    private void mockFingerprintPolicy(MockSlingHttpServletRequest request, ContentPolicy contentPolicy) {
+        Map<String, Object> properties = new HashMap<>();
+        if (contentPolicy != null) {
+            properties.putAll(contentPolicy.getProperties());
+        }
+        properties.put(Image.PN_DESIGN_FINGERPRINT_URLS, true);
+        ContentPolicy fingerprintPolicy = mock(ContentPolicy.class);
+        when(fingerprintPolicy.getProperties()).thenReturn(new ValueMapDecorator(properties));
+        when(contentPolicyManager.getPolicy(any(Resource.class), eq(request))).thenReturn(fingerprintPolicy);
+    }
+
+    private String getFingerprint(String componentPath) {
+        Resource component = resourceResolver.getResource(componentPath);
+        Resource imageResource = resourceResolver.getResource(component.getValueMap().get("fileReference", String.class));
+        return fingerprintService.getFingerprint(imageResource, component.getValueMap());
+    }
+
     private Pair<MockSlingHttpServletRequest, MockSlingHttpServletResponse> prepareRequestResponsePair(String resourcePath,
                                                                                                        String selectorString,
                                                                                                        String extension) {
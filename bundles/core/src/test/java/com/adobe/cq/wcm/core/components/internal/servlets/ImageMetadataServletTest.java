@@ -0,0 +1,163 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Copyright 2018 Adobe Systems Incorporated
+ ~
+ ~ Licensed under the Apache License, Version 2.0 (the "License");
+ ~ you may not use this file except in compliance with the License.
+ ~ You may obtain a copy of the License at
+ ~
+ ~     http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing, software
+ ~ distributed under the License is distributed on an "AS IS" BASIS,
+ ~ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ~ See the License for the specific language governing permissions and
+ ~ limitations under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package com.adobe.cq.wcm.core.components.internal.servlets;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.sling.testing.mock.sling.servlet.MockRequestPathInfo;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletRequest;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletResponse;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+import com.adobe.cq.wcm.core.components.internal.image.AssetInfoServiceImpl;
+import com.adobe.cq.wcm.core.components.internal.image.FingerprintServiceImpl;
+import com.adobe.cq.wcm.core.components.internal.models.v1.AbstractImageTest;
+import com.day.cq.wcm.api.policies.ContentPolicy;
+import com.day.cq.wcm.api.policies.ContentPolicyMapping;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.when;
+
+public class ImageMetadataServletTest extends AbstractImageTest {
+
+    private static final String TEST_BASE = "/image";
+
+    private ImageMetadataServlet servlet;
+
+    @BeforeClass
+    public static void setUp() {
+        internalSetUp(CONTEXT, TEST_BASE);
+    }
+
+    @Before
+    public void init() {
+        resourceResolver = CONTEXT.resourceResolver();
+        servlet = new ImageMetadataServlet();
+        Whitebox.setInternalState(servlet, "mimeTypeService", mockedMimeTypeService);
+        Whitebox.setInternalState(servlet, "assetInfoService", new AssetInfoServiceImpl());
+        Whitebox.setInternalState(servlet, "fingerprintService", new FingerprintServiceImpl());
+    }
+
+    @Test
+    public void testAssetMetadata() throws Exception {
+        MockSlingHttpServletRequest request = prepareRequest(IMAGE0_PATH);
+        MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+        ContentPolicyMapping mapping = request.getResource().adaptTo(ContentPolicyMapping.class);
+        ContentPolicy contentPolicy = mapping.getPolicy();
+        when(contentPolicyManager.getPolicy(request.getResource(), request)).thenReturn(contentPolicy);
+        servlet.doGet(request, response);
+        assertEquals("application/json", response.getContentType());
+        Map<String, Object> metadata = getMetadata(response);
+        assertEquals(2000, metadata.get(ImageMetadataServlet.PN_WIDTH));
+        assertEquals(2000, metadata.get(ImageMetadataServlet.PN_HEIGHT));
+        assertEquals(1.0, metadata.get(ImageMetadataServlet.PN_ASPECT_RATIO));
+        assertEquals("image/png", metadata.get(ImageMetadataServlet.PN_MIME_TYPE));
+        assertEquals(Arrays.asList(600, 700, 800, 2000, 2500), metadata.get(ImageMetadataServlet.PN_ALLOWED_WIDTHS));
+        assertEquals(1490005239000L, ((Number) metadata.get(ImageMetadataServlet.PN_LAST_MODIFIED)).longValue());
+        assertEquals(Arrays.asList("png", "jpeg"), metadata.get(ImageMetadataServlet.PN_FORMATS));
+        assertEquals(CONTEXT_PATH + IMAGE0_PATH.replace("jcr:content", "_jcr_content") + ".coreimg{.width}.png/1490005239000/adobe-systems-logo-and-wordmark.png",
+                metadata.get(ImageMetadataServlet.PN_SRC_URI_TEMPLATE));
+    }
+
+    @Test
+    public void testImageFromTemplate() throws Exception {
+        MockSlingHttpServletRequest request = prepareRequest(PAGE);
+        ((MockRequestPathInfo) request.getRequestPathInfo()).setSuffix(TEMPLATE_IMAGE_PATH.replace(TEMPLATE_PATH, "") + ".json");
+        MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+        servlet.doGet(request, response);
+        Map<String, Object> metadata = getMetadata(response);
+        assertEquals(CONTEXT_PATH + "/content/test.coreimg{.width}.png/structure/jcr:content/root/image_template/1490005239000/" +
+                "adobe-systems-logo-and-wordmark.png", metadata.get(ImageMetadataServlet.PN_SRC_URI_TEMPLATE));
+    }
+
+    @Test
+    public void testPageWithoutTemplateImage() throws Exception {
+        MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+        servlet.doGet(prepareRequest(PAGE), response);
+        assertEquals(HttpServletResponse.SC_NOT_FOUND, response.getStatus());
+    }
+
+    @Test
+    public void testCroppedAndRotatedAsset() throws Exception {
+        MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+        servlet.doGet(prepareRequest(IMAGE13_PATH), response);
+        Map<String, Object> metadata = getMetadata(response);
+        // the cropping rectangle is defined on the 1280px web rendition, while the original is 2000px wide
+        assertEquals(515, metadata.get(ImageMetadataServlet.PN_WIDTH));
+        assertEquals(1390, metadata.get(ImageMetadataServlet.PN_HEIGHT));
+        assertEquals(0.3705, metadata.get(ImageMetadataServlet.PN_ASPECT_RATIO));
+    }
+
+    @Test
+    public void testCroppedAndRotatedFile() throws Exception {
+        MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+        servlet.doGet(prepareRequest(IMAGE14_PATH), response);
+        Map<String, Object> metadata = getMetadata(response);
+        assertEquals(515, metadata.get(ImageMetadataServlet.PN_WIDTH));
+        assertEquals(1390, metadata.get(ImageMetadataServlet.PN_HEIGHT));
+    }
+
+    @Test
+    public void testGifFile() throws Exception {
+        MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+        servlet.doGet(prepareRequest(IMAGE5_PATH), response);
+        Map<String, Object> metadata = getMetadata(response);
+        assertEquals("image/gif", metadata.get(ImageMetadataServlet.PN_MIME_TYPE));
+        assertEquals(Arrays.asList("gif"), metadata.get(ImageMetadataServlet.PN_FORMATS));
+        assertEquals(Collections.emptyList(), metadata.get(ImageMetadataServlet.PN_ALLOWED_WIDTHS));
+        assertEquals(CONTEXT_PATH + IMAGE5_PATH.replace("jcr:content", "_jcr_content") + ".coreimg{.width}.gif/1489998822138.gif",
+                metadata.get(ImageMetadataServlet.PN_SRC_URI_TEMPLATE));
+    }
+
+    @Test
+    public void testBrowserCached() throws Exception {
+        MockSlingHttpServletRequest request = prepareRequest(IMAGE5_PATH);
+        MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+        request.addDateHeader("If-Modified-Since", 1489998822138L);
+        servlet.doGet(request, response);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+    }
+
+    @Test
+    public void testImageWithoutFile() throws Exception {
+        MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+        servlet.doGet(prepareRequest(IMAGE2_PATH), response);
+        assertEquals(HttpServletResponse.SC_NOT_FOUND, response.getStatus());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> getMetadata(MockSlingHttpServletResponse response) throws Exception {
+        return new ObjectMapper().readValue(response.getOutputAsString(), Map.class);
+    }
+
+    private MockSlingHttpServletRequest prepareRequest(String resourcePath) {
+        MockSlingHttpServletRequest request = new MockSlingHttpServletRequest(CONTEXT.resourceResolver(), CONTEXT.bundleContext());
+        request.setResource(resourceResolver.getResource(resourcePath));
+        MockRequestPathInfo requestPathInfo = (MockRequestPathInfo) request.getRequestPathInfo();
+        requestPathInfo.setSelectorString(AdaptiveImageServlet.CORE_DEFAULT_SELECTOR);
+        requestPathInfo.setExtension("json");
+        requestPathInfo.setResourcePath(resourcePath);
+        request.setContextPath(CONTEXT_PATH);
+        return request;
+    }
+}
@@ -16,13 +16,24 @@
 package com.adobe.cq.wcm.core.components.internal.servlets;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletResponse;
 
+import org.apache.sling.api.resource.ModifiableValueMap;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
 import org.apache.sling.testing.mock.sling.servlet.MockRequestPathInfo;
 import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletRequest;
 import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletResponse;
@@ -30,27 +41,53 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.internal.util.reflection.Whitebox;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import com.adobe.cq.wcm.core.components.context.CoreComponentTestContext;
+import com.adobe.cq.wcm.core.components.internal.search.QueryLog;
+import com.adobe.cq.wcm.core.components.internal.search.SearchBackend;
+import com.adobe.cq.wcm.core.components.internal.search.SearchCursor;
+import com.adobe.cq.wcm.core.components.internal.search.SearchGuard;
+import com.adobe.cq.wcm.core.components.internal.search.SearchHit;
+import com.adobe.cq.wcm.core.components.internal.search.SearchResultCacheImpl;
+import com.adobe.cq.wcm.core.components.internal.search.SuggestionIndex;
 import com.adobe.cq.wcm.core.components.models.ListItem;
+import com.adobe.cq.wcm.core.components.models.Search;
 import com.adobe.cq.wcm.core.components.testing.MockLanguageManager;
 import com.day.cq.search.Query;
 import com.day.cq.search.QueryBuilder;
 import com.day.cq.search.result.Hit;
 import com.day.cq.search.result.SearchResult;
+import com.day.cq.wcm.api.PageManager;
+import com.day.cq.wcm.api.policies.ContentPolicy;
+import com.day.cq.wcm.api.policies.ContentPolicyManager;
 import com.day.cq.wcm.msm.api.LiveRelationshipManager;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleAbstractTypeResolver;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import io.wcm.testing.mock.aem.junit.AemContext;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -132,6 +169,418 @@ public class SearchResultServletTest {
         validateResponse(context.response(), exected);
     }
 
+    @Test
+    public void testResultsPageFull() throws Exception {
+        Resource resource = context.currentResource(TEST_ROOT_EN);
+        Hit secondHit = mock(Hit.class);
+        when(mockHit.getResource()).thenReturn(resource);
+        when(mockSearchResult.getHits()).thenReturn(Arrays.asList(mockHit, secondHit));
+        when(mockSearchResult.getHitsPerPage()).thenReturn(1L);
+        MockSlingHttpServletRequest request = context.request();
+        request.setQueryString(SearchResultServlet.PARAM_FULLTEXT + "=yod");
+        MockRequestPathInfo requestPathInfo = (MockRequestPathInfo) request.getRequestPathInfo();
+        requestPathInfo.setSuffix("jcr:content/search");
+        underTest.doGet(request, context.response());
+        List<Map<String, String>> exected = ImmutableList.of(
+                ImmutableMap.of(
+                        "url", "null/content/en/search/page.html",
+                        "title", "Page"
+                )
+        );
+
+        validateResponse(context.response(), exected);
+        verify(secondHit, never()).getResource();
+    }
+
+    @Test
+    public void testCachedSearch() throws Exception {
+        Resource resource = context.currentResource(TEST_ROOT_EN);
+        when(mockHit.getResource()).thenReturn(resource);
+        Whitebox.setInternalState(underTest, "searchResultCache", new SearchResultCacheImpl());
+        MockRequestPathInfo requestPathInfo = (MockRequestPathInfo) context.request().getRequestPathInfo();
+        requestPathInfo.setSuffix("jcr:content/search");
+        context.request().setQueryString(SearchResultServlet.PARAM_FULLTEXT + "=yod");
+        underTest.doGet(context.request(), context.response());
+        // the search term is normalised
+        context.request().setQueryString(SearchResultServlet.PARAM_FULLTEXT + "=Yod");
+        MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+        underTest.doGet(context.request(), response);
+        List<Map<String, String>> exected = ImmutableList.of(
+                ImmutableMap.of(
+                        "url", "null/content/en/search/page.html",
+                        "title", "Page"
+                )
+        );
+
+        validateResponse(response, exected);
+        verify(mockQueryBuilder, times(1)).createQuery(any(), any());
+    }
+
+    @Test
+    public void testSuggestions() throws Exception {
+        context.currentResource(TEST_ROOT_EN);
+        SuggestionIndex suggestionIndex = mock(SuggestionIndex.class);
+        when(suggestionIndex.suggest(any(), eq("pa"), eq(10))).thenReturn(Arrays.asList(TEST_ROOT_EN, TEST_TEMPLATE_EN));
+        Whitebox.setInternalState(underTest, "suggestionIndex", suggestionIndex);
+        MockSlingHttpServletRequest request = context.request();
+        request.setQueryString(SearchResultServlet.PARAM_FULLTEXT + "=pa");
+        MockRequestPathInfo requestPathInfo = (MockRequestPathInfo) request.getRequestPathInfo();
+        requestPathInfo.setSelectorString(SearchResultServlet.SUGGEST_SELECTOR);
+        requestPathInfo.setSuffix("jcr:content/search");
+        underTest.doGet(request, context.response());
+        List<Map<String, String>> exected = ImmutableList.of(
+                ImmutableMap.of(
+                        "url", "null/content/en/search/page.html",
+                        "title", "Page"
+                ),
+                ImmutableMap.of(
+                        "url", "null/content/en/search/page-template.html",
+                        "title", "Page"
+                )
+        );
+
+        validateResponse(context.response(), exected);
+        verify(mockQueryBuilder, never()).createQuery(any(), any());
+    }
+
+    @Test
+    public void testCursorPagination() throws Exception {
+        Resource resource = context.currentResource(TEST_ROOT_EN);
+        Resource searchResource = context.resourceResolver().getResource(TEST_ROOT_EN + "/jcr:content/search");
+        searchResource.adaptTo(ModifiableValueMap.class).put(Search.PN_RESULTS_SIZE, 1);
+        Hit secondHit = mock(Hit.class);
+        when(mockHit.getResource()).thenReturn(resource);
+        when(secondHit.getResource()).thenReturn(context.resourceResolver().getResource(TEST_TEMPLATE_EN));
+        when(mockSearchResult.getHits()).thenReturn(Arrays.asList(mockHit, secondHit));
+        MockRequestPathInfo requestPathInfo = (MockRequestPathInfo) context.request().getRequestPathInfo();
+        requestPathInfo.setSuffix("jcr:content/search");
+        context.request().setQueryString(SearchResultServlet.PARAM_FULLTEXT + "=yod&" + SearchResultServlet.PARAM_CURSOR + "=");
+        underTest.doGet(context.request(), context.response());
+        JsonNode firstPage = new ObjectMapper().readTree(context.response().getOutputAsString());
+        assertEquals(1, firstPage.get(SearchResultServlet.PN_RESULTS).size());
+        assertEquals("Page", firstPage.get(SearchResultServlet.PN_RESULTS).get(0).get("title").asText());
+        String cursor = firstPage.get(SearchResultServlet.PN_CURSOR).asText();
+        assertNotNull(cursor);
+
+        // the last page returned is found again by the date range predicate and skipped
+        context.request().setQueryString(SearchResultServlet.PARAM_FULLTEXT + "=yod&" + SearchResultServlet.PARAM_CURSOR + "=" + cursor);
+        MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+        underTest.doGet(context.request(), response);
+        JsonNode secondPage = new ObjectMapper().readTree(response.getOutputAsString());
+        assertEquals(1, secondPage.get(SearchResultServlet.PN_RESULTS).size());
+        assertEquals("null/content/en/search/page-template.html", secondPage.get(SearchResultServlet.PN_RESULTS).get(0).get("url").asText());
+        assertNotEquals(cursor, secondPage.get(SearchResultServlet.PN_CURSOR).asText());
+        verify(mockQuery).setHitsPerPage(2);
+        verify(mockQuery, never()).setStart(anyLong());
+    }
+
+    @Test
+    public void testLastCursorPage() throws Exception {
+        Resource resource = context.currentResource(TEST_ROOT_EN);
+        when(mockHit.getResource()).thenReturn(resource);
+        MockRequestPathInfo requestPathInfo = (MockRequestPathInfo) context.request().getRequestPathInfo();
+        requestPathInfo.setSuffix("jcr:content/search");
+        context.request().setQueryString(SearchResultServlet.PARAM_FULLTEXT + "=yod&" + SearchResultServlet.PARAM_CURSOR + "=");
+        underTest.doGet(context.request(), context.response());
+        JsonNode page = new ObjectMapper().readTree(context.response().getOutputAsString());
+        assertEquals(1, page.get(SearchResultServlet.PN_RESULTS).size());
+        assertTrue(page.get(SearchResultServlet.PN_CURSOR).isNull());
+    }
+
+    @Test
+    public void testCursorAfterTiedPages() throws Exception {
+        context.currentResource(TEST_ROOT_EN);
+        Resource searchResource = context.resourceResolver().getResource(TEST_ROOT_EN + "/jcr:content/search");
+        searchResource.adaptTo(ModifiableValueMap.class).put(Search.PN_RESULTS_SIZE, 1);
+        Calendar created = Calendar.getInstance();
+        List<Resource> resources = new ArrayList<>();
+        // the pages a, b and c are created in the same millisecond and found again by the date range predicate
+        for (String name : new String[]{"a", "b", "c", "d", "e"}) {
+            if ("d".equals(name)) {
+                created = (Calendar) created.clone();
+                created.add(Calendar.SECOND, -1);
+            }
+            resources.add(context.create().resource("/content/en/search/" + name, "jcr:primaryType", "cq:Page",
+                    "jcr:created", created));
+        }
+        long[] start = {0};
+        long[] hitsPerPage = {0};
+        doAnswer(invocation -> start[0] = invocation.getArgumentAt(0, Long.class)).when(mockQuery).setStart(anyLong());
+        doAnswer(invocation -> hitsPerPage[0] = invocation.getArgumentAt(0, Long.class)).when(mockQuery).setHitsPerPage(anyLong());
+        when(mockSearchResult.getHits()).then(invocation -> {
+            List<Hit> hits = new ArrayList<>();
+            for (Resource resource : resources.subList((int) Math.min(start[0], resources.size()),
+                    (int) Math.min(start[0] + hitsPerPage[0], resources.size()))) {
+                Hit hit = mock(Hit.class);
+                when(hit.getResource()).thenReturn(resource);
+                hits.add(hit);
+            }
+            return hits;
+        });
+        PageManager pageManager = context.pageManager();
+        String cursor = SearchCursor.after(pageManager.getContainingPage(resources.get(2))).toToken();
+        MockRequestPathInfo requestPathInfo = (MockRequestPathInfo) context.request().getRequestPathInfo();
+        requestPathInfo.setSuffix("jcr:content/search");
+        context.request().setQueryString(SearchResultServlet.PARAM_FULLTEXT + "=yod&" + SearchResultServlet.PARAM_CURSOR + "=" + cursor);
+        underTest.doGet(context.request(), context.response());
+        JsonNode page = new ObjectMapper().readTree(context.response().getOutputAsString());
+        assertEquals(1, page.get(SearchResultServlet.PN_RESULTS).size());
+        assertEquals("null/content/en/search/d.html", page.get(SearchResultServlet.PN_RESULTS).get(0).get("url").asText());
+        // the page e tells that there is a next page
+        assertEquals(SearchCursor.after(pageManager.getContainingPage(resources.get(3))).toToken(),
+                page.get(SearchResultServlet.PN_CURSOR).asText());
+        verify(mockQuery).setStart(3L);
+    }
+
+    @Test
+    public void testInvalidCursor() throws Exception {
+        context.currentResource(TEST_ROOT_EN);
+        context.request().setQueryString(SearchResultServlet.PARAM_FULLTEXT + "=yod&" + SearchResultServlet.PARAM_CURSOR + "=invalid");
+        underTest.doGet(context.request(), context.response());
+        assertEquals(HttpServletResponse.SC_BAD_REQUEST, context.response().getStatus());
+        verify(mockQueryBuilder, never()).createQuery(any(), any());
+    }
+
+    @Test
+    public void testRejectedSearch() throws Exception {
+        context.currentResource(TEST_ROOT_EN);
+        SearchGuard.Permit permit = mock(SearchGuard.Permit.class);
+        when(permit.getRetryAfter()).thenReturn(3L);
+        SearchGuard searchGuard = mock(SearchGuard.class);
+        when(searchGuard.tryAcquire(any(), eq("yod"), eq(0L), eq(-1))).thenReturn(permit);
+        Whitebox.setInternalState(underTest, "searchGuard", searchGuard);
+        MockSlingHttpServletRequest request = context.request();
+        request.setQueryString(SearchResultServlet.PARAM_FULLTEXT + "=yod");
+        MockRequestPathInfo requestPathInfo = (MockRequestPathInfo) request.getRequestPathInfo();
+        requestPathInfo.setSuffix("jcr:content/search");
+        underTest.doGet(request, context.response());
+        assertEquals(429, context.response().getStatus());
+        assertEquals("3", context.response().getHeader("Retry-After"));
+        verify(mockQueryBuilder, never()).createQuery(any(), any());
+        verify(permit).close();
+    }
+
+    @Test
+    public void testFieldProjection() throws Exception {
+        Resource resource = context.currentResource(TEST_ROOT_EN);
+        when(mockHit.getResource()).thenReturn(resource);
+        MockSlingHttpServletRequest request = context.request();
+        request.setQueryString(SearchResultServlet.PARAM_FULLTEXT + "=yod&fields=title,unknown");
+        MockRequestPathInfo requestPathInfo = (MockRequestPathInfo) request.getRequestPathInfo();
+        requestPathInfo.setSuffix("jcr:content/search");
+        underTest.doGet(request, context.response());
+        assertEquals("[{\"title\":\"Page\"}]", context.response().getOutputAsString());
+    }
+
+    @Test
+    public void testFederatedSearch() throws Exception {
+        Resource resource = context.currentResource(TEST_ROOT_EN);
+        ModifiableValueMap properties = context.resourceResolver().getResource(TEST_ROOT_EN + "/jcr:content/search")
+                .adaptTo(ModifiableValueMap.class);
+        properties.put(Search.PN_SEARCH_ROOT, TEST_ROOT_EN);
+        properties.put(Search.PN_ADDITIONAL_SEARCH_ROOTS, new String[]{TEST_TEMPLATE_EN, TEST_ROOT_EN + "/missing"});
+        Query secondQuery = mock(Query.class);
+        SearchResult secondSearchResult = mock(SearchResult.class);
+        Hit secondHit = mock(Hit.class);
+        when(mockQueryBuilder.createQuery(any(), any())).thenReturn(mockQuery, secondQuery);
+        when(secondQuery.getResult()).thenReturn(secondSearchResult);
+        when(secondSearchResult.getHits()).thenReturn(Collections.singletonList(secondHit));
+        when(mockHit.getResource()).thenReturn(resource);
+        when(mockHit.getScore()).thenReturn(0.5);
+        when(secondHit.getResource()).thenReturn(context.resourceResolver().getResource(TEST_TEMPLATE_EN));
+        when(secondHit.getScore()).thenReturn(0.9);
+        context.request().setQueryString(SearchResultServlet.PARAM_FULLTEXT + "=yod");
+        MockRequestPathInfo requestPathInfo = (MockRequestPathInfo) context.request().getRequestPathInfo();
+        requestPathInfo.setSuffix("jcr:content/search");
+        underTest.doGet(context.request(), context.response());
+        // the results of both roots are merged by descending score
+        List<Map<String, String>> expected = ImmutableList.of(
+                ImmutableMap.of(
+                        "url", "null/content/en/search/page-template.html",
+                        "title", "Page"
+                ),
+                ImmutableMap.of(
+                        "url", "null/content/en/search/page.html",
+                        "title", "Page"
+                )
+        );
+        validateResponse(context.response(), expected);
+        verify(mockQueryBuilder, times(2)).createQuery(any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testQueryLog() throws Exception {
+        QueryLog queryLog = mock(QueryLog.class);
+        when(queryLog.getResult(anyString(), any(Map.class), any(ResourceResolver.class), any(QueryLog.Search.class)))
+                .thenAnswer(invocation -> ((QueryLog.Search<?>) invocation.getArguments()[3]).execute());
+        Whitebox.setInternalState(underTest, "queryLog", queryLog);
+        Resource resource = context.currentResource(TEST_ROOT_EN);
+        when(mockHit.getResource()).thenReturn(resource);
+        context.request().setQueryString(SearchResultServlet.PARAM_FULLTEXT + "=yod");
+        MockRequestPathInfo requestPathInfo = (MockRequestPathInfo) context.request().getRequestPathInfo();
+        requestPathInfo.setSuffix("jcr:content/search");
+        underTest.doGet(context.request(), context.response());
+        validateResponse(context.response(), ImmutableList.of(
+                ImmutableMap.of(
+                        "url", "null/content/en/search/page.html",
+                        "title", "Page"
+                )
+        ));
+        ArgumentCaptor<Map> predicates = ArgumentCaptor.forClass(Map.class);
+        verify(queryLog).getResult(eq(TEST_ROOT_EN + "/jcr:content/search"), predicates.capture(), any(ResourceResolver.class),
+                any(QueryLog.Search.class));
+        assertEquals("yod", predicates.getValue().get("fulltext"));
+        assertEquals("0", predicates.getValue().get("p.offset"));
+        verify(mockQuery).getResult();
+    }
+
+    @Test
+    public void testSearchBackend() throws Exception {
+        ContentPolicy policy = mock(ContentPolicy.class);
+        when(policy.getProperties()).thenReturn(new ValueMapDecorator(Collections.singletonMap(Search.PN_SEARCH_BACKEND, "test")));
+        ContentPolicyManager policyManager = mock(ContentPolicyManager.class);
+        when(policyManager.getPolicy(any(Resource.class))).thenReturn(policy);
+        context.registerAdapter(ResourceResolver.class, ContentPolicyManager.class,
+                (Function<ResourceResolver, ContentPolicyManager>) resourceResolver -> policyManager);
+        SearchBackend searchBackend = mock(SearchBackend.class);
+        when(searchBackend.getName()).thenReturn("test");
+        when(searchBackend.search(any(ResourceResolver.class), anyString(), eq("yod"), eq(0L), anyInt()))
+                .thenReturn(Arrays.asList(new SearchHit(TEST_TEMPLATE_EN, 2), new SearchHit(TEST_ROOT_EN, 1)));
+        Whitebox.setInternalState(underTest, "searchBackends", Collections.singletonList(searchBackend));
+        context.currentResource(TEST_ROOT_EN);
+        context.request().setQueryString(SearchResultServlet.PARAM_FULLTEXT + "=yod");
+        MockRequestPathInfo requestPathInfo = (MockRequestPathInfo) context.request().getRequestPathInfo();
+        requestPathInfo.setSuffix("jcr:content/search");
+        underTest.doGet(context.request(), context.response());
+        List<Map<String, String>> expected = ImmutableList.of(
+                ImmutableMap.of(
+                        "url", "null/content/en/search/page-template.html",
+                        "title", "Page"
+                ),
+                ImmutableMap.of(
+                        "url", "null/content/en/search/page.html",
+                        "title", "Page"
+                )
+        );
+        validateResponse(context.response(), expected);
+        verify(mockQueryBuilder, never()).createQuery(any(), any());
+    }
+
+    @Test
+    public void testCacheableUrl() throws Exception {
+        Map<String, Object> policyProperties = new HashMap<>();
+        policyProperties.put(Search.PN_CACHEABLE_URLS, true);
+        policyProperties.put(Search.PN_SEARCH_BACKEND, "test");
+        registerPolicy(policyProperties);
+        SearchBackend searchBackend = mock(SearchBackend.class);
+        when(searchBackend.getName()).thenReturn("test");
+        when(searchBackend.search(any(ResourceResolver.class), anyString(), eq("yod"), eq(10L), eq(10)))
+                .thenReturn(Collections.singletonList(new SearchHit(TEST_ROOT_EN, 1)));
+        Whitebox.setInternalState(underTest, "searchBackends", Collections.singletonList(searchBackend));
+        context.currentResource(TEST_ROOT_EN);
+        MockRequestPathInfo requestPathInfo = (MockRequestPathInfo) context.request().getRequestPathInfo();
+        requestPathInfo.setExtension("json");
+        requestPathInfo.setSuffix("/jcr:content/search/" + encode("yod") + "/10.json");
+        underTest.doGet(context.request(), context.response());
+        // the offset is carried by the suffix, so the results are still ordered by relevance by the policy's backend
+        List<Map<String, String>> expected = ImmutableList.of(
+                ImmutableMap.of(
+                        "url", "null/content/en/search/page.html",
+                        "title", "Page"
+                )
+        );
+        validateResponse(context.response(), expected);
+        assertTrue(context.response().getHeader("Cache-Control").endsWith("max-age=300"));
+        verify(mockQueryBuilder, never()).createQuery(any(), any());
+    }
+
+    @Test
+    public void testCacheableUrlDisabled() throws Exception {
+        context.currentResource(TEST_ROOT_EN);
+        MockRequestPathInfo requestPathInfo = (MockRequestPathInfo) context.request().getRequestPathInfo();
+        requestPathInfo.setExtension("json");
+        requestPathInfo.setSuffix("/jcr:content/search/" + encode("yod") + "/0.json");
+        underTest.doGet(context.request(), context.response());
+        assertEquals(HttpServletResponse.SC_NOT_FOUND, context.response().getStatus());
+        verify(mockQueryBuilder, never()).createQuery(any(), any());
+    }
+
+    @Test
+    public void testNotModified() throws Exception {
+        Resource resource = context.currentResource(TEST_ROOT_EN);
+        when(mockHit.getResource()).thenReturn(resource);
+        MockRequestPathInfo requestPathInfo = (MockRequestPathInfo) context.request().getRequestPathInfo();
+        requestPathInfo.setSuffix("jcr:content/search");
+        context.request().setQueryString(SearchResultServlet.PARAM_FULLTEXT + "=yod");
+        underTest.doGet(context.request(), context.response());
+        // the entity tag is only computed from the version of the search result cache
+        assertEquals(null, context.response().getHeader("ETag"));
+
+        SearchResultCacheImpl cache = new SearchResultCacheImpl();
+        Whitebox.setInternalState(underTest, "searchResultCache", cache);
+        MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+        underTest.doGet(context.request(), response);
+        String etag = response.getHeader("ETag");
+        assertNotNull(etag);
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertEquals(null, response.getHeader("Cache-Control"));
+
+        MockSlingHttpServletRequest request = context.request();
+        request.addHeader("If-None-Match", "W/" + etag);
+        response = new MockSlingHttpServletResponse();
+        underTest.doGet(request, response);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+        assertEquals("", response.getOutputAsString());
+
+        // modifying a page found by the search changes the entity tag
+        resource.getChild("jcr:content").adaptTo(ModifiableValueMap.class).put("cq:lastModified", Calendar.getInstance());
+        ResourceChange change = mock(ResourceChange.class);
+        when(change.getPath()).thenReturn(TEST_ROOT_EN + "/jcr:content");
+        cache.onChange(Collections.singletonList(change));
+        response = new MockSlingHttpServletResponse();
+        underTest.doGet(request, response);
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertNotEquals(etag, response.getHeader("ETag"));
+    }
+
+    @Test
+    public void testCacheableSuffix() {
+        assertNotNull(SearchResultServlet.CacheableSuffix.parse("/jcr:content/search/" + encode("yoda") + "/0.json", "json"));
+        assertNotNull(SearchResultServlet.CacheableSuffix.parse("/jcr:content/search/" + encode("yoda") + "/20.json", "json"));
+        assertEquals(null, SearchResultServlet.CacheableSuffix.parse("/jcr:content/search/" + encode("yoda") + "/start.json", "json"));
+        assertEquals(null, SearchResultServlet.CacheableSuffix.parse("/jcr:content/search/" + encode("yoda") + "/-1.json", "json"));
+        assertEquals(null, SearchResultServlet.CacheableSuffix.parse("/jcr:content/search", "json"));
+        assertEquals(null, SearchResultServlet.CacheableSuffix.parse("/0.json", "json"));
+        assertEquals(null, SearchResultServlet.CacheableSuffix.parse("/jcr:content/search/not+base64/0.json", "json"));
+        assertEquals(null, SearchResultServlet.CacheableSuffix.parse(null, "json"));
+    }
+
+    @Test
+    public void testSearchTermTooShort() throws Exception {
+        context.currentResource(TEST_ROOT_EN);
+        MockSlingHttpServletRequest request = context.request();
+        request.setQueryString(SearchResultServlet.PARAM_FULLTEXT + "=y");
+        MockRequestPathInfo requestPathInfo = (MockRequestPathInfo) request.getRequestPathInfo();
+        requestPathInfo.setSuffix("jcr:content/search");
+        underTest.doGet(request, context.response());
+        assertEquals("[]", context.response().getOutputAsString());
+        verify(mockQueryBuilder, never()).createQuery(any(), any());
+    }
+
+    private void registerPolicy(Map<String, Object> properties) {
+        ContentPolicy policy = mock(ContentPolicy.class);
+        when(policy.getProperties()).thenReturn(new ValueMapDecorator(properties));
+        ContentPolicyManager policyManager = mock(ContentPolicyManager.class);
+        when(policyManager.getPolicy(any(Resource.class))).thenReturn(policy);
+        context.registerAdapter(ResourceResolver.class, ContentPolicyManager.class,
+                (Function<ResourceResolver, ContentPolicyManager>) resourceResolver -> policyManager);
+    }
+
+    private static String encode(String fulltext) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(fulltext.getBytes(StandardCharsets.UTF_8));
+    }
+
     private void validateResponse(MockSlingHttpServletResponse response, List<Map<String, String>> exected) throws IOException {
         ObjectMapper mapper = new ObjectMapper();
         SimpleAbstractTypeResolver resolver = new SimpleAbstractTypeResolver();
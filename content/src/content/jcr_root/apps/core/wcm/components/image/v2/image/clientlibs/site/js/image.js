@@ -33,7 +33,9 @@
         "style": {
             "height": 0,
             "padding-bottom": "" // will be replaced with % ratio
-        }
+        },
+        // the low quality placeholder is only a few pixels wide, its blocks are smoothed out until the image is loaded
+        "placeholderFilter": "blur(20px)"
     };
 
     var properties = {
@@ -65,6 +67,17 @@
                 return !(value === null || typeof value === "undefined");
             }
         },
+        /**
+         * The distance (in pixels) from the viewport at which lazy images start loading.
+         */
+        "lazyThreshold": {
+            "default": LAZY_THRESHOLD,
+            "transform": function(value) {
+                // number
+                var threshold = parseInt(value, 10);
+                return isNaN(threshold) ? LAZY_THRESHOLD : threshold;
+            }
+        },
         /**
          * The image source.
          *
@@ -73,11 +86,98 @@
          * e.g. '/path/image.coreimg{.width}.jpeg/1506620954214.jpeg'
          */
         "src": {
+        },
+        /**
+         * The data URI of a low quality version of the image, displayed until the image is loaded.
+         */
+        "placeholder": {
+        },
+        /**
+         * The average colour of the image, displayed until the image is loaded.
+         */
+        "placeholderColor": {
         }
     };
 
     var devicePixelRatio = window.devicePixelRatio || 1;
 
+    var supportsIntersectionObserver = "IntersectionObserver" in window && "WeakMap" in window;
+    var supportsResizeObserver = supportsIntersectionObserver && "ResizeObserver" in window;
+    // one intersection observer per threshold, shared by all the lazy images
+    var intersectionObservers = {};
+    var resizeObserver;
+    var observedImages = supportsIntersectionObserver ? new WeakMap() : null;
+    var pendingUpdates = [];
+    var updateFrame = null;
+    // images with alternative widths, updated on window resize in the browsers without ResizeObserver
+    var resizedImages = [];
+
+    /**
+     * Schedules the update of an image for the next animation frame. The updates of all the images scheduled for the same frame are
+     * batched, measuring all the images before changing any of them, so that the layout is computed only once per frame.
+     */
+    function scheduleUpdate(image) {
+        if (pendingUpdates.indexOf(image) === -1) {
+            pendingUpdates.push(image);
+        }
+        if (updateFrame === null) {
+            updateFrame = window.requestAnimationFrame(flushUpdates);
+        }
+    }
+
+    function flushUpdates() {
+        var images = pendingUpdates;
+        pendingUpdates = [];
+        updateFrame = null;
+        images.forEach(function(image) {
+            image._measure();
+        });
+        images.forEach(function(image) {
+            image._render();
+        });
+    }
+
+    function getIntersectionObserver(threshold) {
+        var rootMargin = threshold + "px 0px";
+        if (!intersectionObservers[rootMargin]) {
+            intersectionObservers[rootMargin] = new IntersectionObserver(function(entries, observer) {
+                entries.forEach(function(entry) {
+                    if (entry.isIntersecting || entry.intersectionRatio > 0) {
+                        var image = observedImages.get(entry.target);
+                        observer.unobserve(entry.target);
+                        if (image) {
+                            image._visible = true;
+                            scheduleUpdate(image);
+                        }
+                    }
+                });
+            }, { rootMargin: rootMargin });
+        }
+        return intersectionObservers[rootMargin];
+    }
+
+    function getResizeObserver() {
+        if (!resizeObserver) {
+            resizeObserver = new ResizeObserver(function(entries) {
+                entries.forEach(function(entry) {
+                    var image = observedImages.get(entry.target);
+                    if (image && image._visible) {
+                        scheduleUpdate(image);
+                    }
+                });
+            });
+        }
+        return resizeObserver;
+    }
+
+    function onWindowResize() {
+        resizedImages.forEach(function(image) {
+            if (image._visible) {
+                scheduleUpdate(image);
+            }
+        });
+    }
+
     function readData(element) {
         var data = element.dataset;
         var options = [];
@@ -125,21 +225,76 @@
                 addLazyLoader();
             }
 
-            window.addEventListener("scroll", that.update);
-            window.addEventListener("resize", that.update);
             window.addEventListener("update", that.update);
             that._elements.image.addEventListener("cmp-image-redraw", that.update);
-            that.update();
+
+            if (supportsIntersectionObserver) {
+                observe();
+            } else {
+                window.addEventListener("scroll", that.update);
+                window.addEventListener("resize", that.update);
+                that.update();
+            }
+        }
+
+        /**
+         * Lazy images are loaded once they intersect the viewport (extended by the lazy threshold); the images with alternative
+         * widths are updated whenever their width changes.
+         */
+        function observe() {
+            observedImages.set(that._elements.self, that);
+            that._visible = !that._properties.lazy;
+            if (that._properties.lazy) {
+                getIntersectionObserver(that._properties.lazyThreshold).observe(that._elements.self);
+            }
+            if (hasWidths()) {
+                if (supportsResizeObserver) {
+                    getResizeObserver().observe(that._elements.self);
+                } else {
+                    if (resizedImages.length === 0) {
+                        window.addEventListener("resize", onWindowResize);
+                    }
+                    resizedImages.push(that);
+                }
+            }
+            if (that._visible) {
+                scheduleUpdate(that);
+            }
+        }
+
+        function hasWidths() {
+            return that._properties.widths && that._properties.widths.length > 0;
         }
 
         function loadImage() {
-            var hasWidths = that._properties.widths && that._properties.widths.length > 0;
-            var replacement = hasWidths ? "." + getOptimalWidth() : "";
-            var url = that._properties.src.replace(SRC_URI_TEMPLATE_WIDTH_VAR, replacement);
+            that._measure();
+            that._render();
+        }
+
+        /**
+         * Computes the URL of the image, reading the width of its container if it has alternative widths.
+         */
+        that._measure = function() {
+            var replacement = hasWidths() ? "." + getOptimalWidth() : "";
+            that._url = that._properties.src.replace(SRC_URI_TEMPLATE_WIDTH_VAR, replacement);
+        };
+
+        /**
+         * Applies the URL computed by {@code _measure} to the image.
+         */
+        that._render = function() {
+            var url = that._url;
+
+            if (that._srcset && !that._elements.image.hasAttribute("srcset")) {
+                if (that._sizes) {
+                    that._elements.image.setAttribute("sizes", that._sizes);
+                }
+                that._elements.image.setAttribute("srcset", that._srcset);
+            }
 
             if (that._elements.image.getAttribute("src") !== url) {
                 that._elements.image.setAttribute("src", url);
-                if (!hasWidths) {
+                if (!hasWidths() && !supportsIntersectionObserver) {
                     window.removeEventListener("scroll", that.update);
                 }
             }
@@ -147,7 +302,7 @@
             if (that._lazyLoaderShowing) {
                 that._elements.image.addEventListener("load", removeLazyLoader);
             }
-        }
+        };
 
         function getOptimalWidth() {
             var containerWidth = that._elements.self.clientWidth;
@@ -178,6 +333,14 @@
                     }
                 }
             }
+            if (that._properties.placeholderColor) {
+                that._elements.image.style.backgroundColor = that._properties.placeholderColor;
+            }
+            if (that._properties.placeholder) {
+                that._elements.image.style.backgroundImage = "url(\"" + that._properties.placeholder + "\")";
+                that._elements.image.style.backgroundSize = "cover";
+                that._elements.image.style.filter = lazyLoader.placeholderFilter;
+            }
             that._elements.image.setAttribute("src", EMPTY_PIXEL);
             that._elements.image.classList.add(lazyLoader.cssClass);
             that._lazyLoaderShowing = true;
@@ -191,6 +354,11 @@
             var temporaryDocument = parser.parseFromString(markup, "text/html");
             var imageElement = temporaryDocument.querySelector(selectors.image);
             imageElement.removeAttribute("src");
+            // srcset and sizes are applied when the image is loaded, so that lazy images are not requested by the browser
+            that._srcset = imageElement.getAttribute("srcset");
+            that._sizes = imageElement.getAttribute("sizes");
+            imageElement.removeAttribute("srcset");
+            imageElement.removeAttribute("sizes");
 
             that._elements.container.insertBefore(imageElement, that._elements.noscript);
             that._elements.noscript.parentNode.removeChild(that._elements.noscript);
@@ -208,6 +376,10 @@
                     that._elements.image.style[property] = "";
                 }
             }
+            that._elements.image.style.backgroundColor = "";
+            that._elements.image.style.backgroundImage = "";
+            that._elements.image.style.backgroundSize = "";
+            that._elements.image.style.filter = "";
             that._elements.image.removeEventListener("load", removeLazyLoader);
             that._lazyLoaderShowing = false;
         }
@@ -222,7 +394,7 @@
             var et = that._elements.container.getBoundingClientRect().top + wt;
             var eb = et + that._elements.container.clientHeight;
 
-            return eb >= wt - LAZY_THRESHOLD && et <= wb + LAZY_THRESHOLD;
+            return eb >= wt - that._properties.lazyThreshold && et <= wb + that._properties.lazyThreshold;
         }
 
         function cacheElements(wrapper) {
@@ -259,7 +431,12 @@
         }
 
         that.update = function() {
-            if (that._properties.lazy) {
+            if (supportsIntersectionObserver) {
+                // lazy images which are not visible yet are loaded by the intersection observer
+                if (that._visible) {
+                    scheduleUpdate(that);
+                }
+            } else if (that._properties.lazy) {
                 if (isLazyVisible()) {
                     loadImage();
                 }
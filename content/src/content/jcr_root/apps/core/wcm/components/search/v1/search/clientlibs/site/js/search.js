@@ -22,6 +22,8 @@
     var DELAY = 300; // time before fetching new results when the user is typing a search string
     var LOADING_DISPLAY_DELAY = 300; // minimum time during which the loading indicator is displayed
     var PARAM_RESULTS_OFFSET = "resultsOffset";
+    var CACHE_SIZE = 20; // number of most recently fetched pages of results kept in memory
+    var PREFETCH_DISTANCE = 3; // number of visible heights of results left to scroll below which the next page is prefetched
 
     var keyCodes = {
         TAB: 9,
@@ -62,6 +64,16 @@
                 value = parseFloat(value);
                 return isNaN(value) ? null : value;
             }
+        },
+        /**
+         * Whether the results are fetched through cacheable URLs, carrying the search term and the offset of the results in their path.
+         */
+        cacheableUrls: {
+            "default": false,
+            transform: function(value) {
+                // boolean
+                return value === "true";
+            }
         }
     };
 
@@ -118,6 +130,49 @@
         return query.join("&");
     }
 
+    /**
+     * Normalizes the search term as the server does, so that equivalent terms share the same cacheable URL.
+     */
+    function normalizeTerm(term) {
+        return term.replace(/\s+/g, " ").trim().toLowerCase();
+    }
+
+    /**
+     * Encodes the search term as a URL path segment (base64url of its UTF-8 bytes).
+     */
+    function encodeTerm(term) {
+        return window.btoa(unescape(encodeURIComponent(term))).replace(/\+/g, "-").replace(/\//g, "_").replace(/=+$/, "");
+    }
+
+    /**
+     * Least recently used cache of the fetched pages of results, keyed by their URL.
+     */
+    function Cache(size) {
+        this._size = size;
+        this._keys = [];
+        this._values = {};
+    }
+
+    Cache.prototype.get = function(key) {
+        if (!this._values.hasOwnProperty(key)) {
+            return null;
+        }
+        // the key becomes the most recently used one
+        this._keys.splice(this._keys.indexOf(key), 1);
+        this._keys.push(key);
+        return this._values[key];
+    };
+
+    Cache.prototype.put = function(key, value) {
+        if (this._values.hasOwnProperty(key)) {
+            this._keys.splice(this._keys.indexOf(key), 1);
+        } else if (this._keys.length >= this._size) {
+            delete this._values[this._keys.shift()];
+        }
+        this._keys.push(key);
+        this._values[key] = value;
+    };
+
     function mark(node, regex) {
         if (!node || !regex) {
             return;
@@ -157,6 +212,9 @@
         this._action = this._elements.form.getAttribute("action");
         this._resultsOffset = 0;
         this._hasMoreResults = true;
+        this._request = null;
+        this._prefetch = null;
+        this._cache = new Cache(CACHE_SIZE);
 
         this._elements.input.addEventListener("input", this._onInput.bind(this));
         this._elements.input.addEventListener("focus", this._onInput.bind(this));
@@ -181,10 +239,14 @@
     };
 
     Search.prototype._onScroll = function(event) {
+        var results = this._elements.results;
+        var remainingHeight = results.scrollHeight - results.scrollTop - results.clientHeight;
         // fetch new results when the results to be scrolled down are less than the visible results
-        if (this._elements.results.scrollTop + 2 * this._elements.results.clientHeight >= this._elements.results.scrollHeight) {
+        if (remainingHeight <= results.clientHeight && !this._request) {
             this._resultsOffset += this._properties.resultsSize;
             this._displayResults();
+        } else if (remainingHeight <= PREFETCH_DISTANCE * results.clientHeight) {
+            this._prefetchResults();
         }
     };
 
@@ -338,47 +400,130 @@
 
     Search.prototype._updateResults = function() {
         var self = this;
-        if (self._hasMoreResults) {
-            var request = new XMLHttpRequest();
-            var url = self._action + "?" + serialize(self._elements.form) + "&" + PARAM_RESULTS_OFFSET + "=" + self._resultsOffset;
-
-            request.open("GET", url, true);
-            request.onload = function() {
+        if (self._hasMoreResults && !self._request) {
+            var url = self._getUrl(self._resultsOffset);
+            var cached = self._cache.get(url);
+            if (cached) {
+                self._showResults(cached);
+                return;
+            }
+            // when the results are loading: display the loading indicator and hide the search icon
+            toggleShow(self._elements.loadingIndicator, true);
+            toggleShow(self._elements.icon, false);
+            // the next page of results can only be requested once the current one is loaded
+            var request = self._fetch(url, function(data) {
+                if (request !== self._request) {
+                    // the results were cancelled in the meantime
+                    return;
+                }
+                self._request = null;
                 // when the results are loaded: hide the loading indicator and display the search icon after a minimum period
                 setTimeout(function() {
                     toggleShow(self._elements.loadingIndicator, false);
                     toggleShow(self._elements.icon, true);
                 }, LOADING_DISPLAY_DELAY);
-                if (request.status >= 200 && request.status < 400) {
-                    // success status
-                    var data = JSON.parse(request.responseText);
-                    if (data.length > 0) {
-                        self._generateItems(data, self._elements.results);
-                        self._markResults();
-                        toggleShow(self._elements.results, true);
-                    } else {
-                        self._hasMoreResults = false;
-                    }
-                    // the total number of results is not a multiple of the fetched results:
-                    // -> we reached the end of the query
-                    if (self._elements.results.querySelectorAll(selectors.item.self).length % self._properties.resultsSize > 0) {
-                        self._hasMoreResults = false;
-                    }
-                } else {
-                    // error status
+                if (data) {
+                    self._showResults(data);
                 }
-            };
-            // when the results are loading: display the loading indicator and hide the search icon
-            toggleShow(self._elements.loadingIndicator, true);
-            toggleShow(self._elements.icon, false);
-            request.send();
+            });
+            self._request = request;
+        }
+    };
+
+    /**
+     * Fetches the next page of results in the background, so that it is already cached when the user scrolls to it.
+     */
+    Search.prototype._prefetchResults = function() {
+        var self = this;
+        if (!self._hasMoreResults || self._request || self._prefetch) {
+            return;
+        }
+        var url = self._getUrl(self._resultsOffset + self._properties.resultsSize);
+        if (self._cache.get(url)) {
+            return;
+        }
+        var prefetch = { url: url, callback: null };
+        prefetch.request = self._send(url, function(data) {
+            if (self._prefetch === prefetch) {
+                self._prefetch = null;
+            }
+            if (prefetch.callback) {
+                prefetch.callback(data);
+            }
+        });
+        self._prefetch = prefetch;
+    };
+
+    Search.prototype._getUrl = function(resultsOffset) {
+        if (this._properties.cacheableUrls) {
+            return this._action + "/" + encodeTerm(normalizeTerm(this._elements.input.value)) + "/" + resultsOffset + ".json";
+        }
+        return this._action + "?" + serialize(this._elements.form) + "&" + PARAM_RESULTS_OFFSET + "=" + resultsOffset;
+    };
+
+    /**
+     * Requests the page of results at the given URL, taking over the prefetch of that page if it is in progress. The callback is
+     * called with the parsed results, or with null if they could not be fetched.
+     */
+    Search.prototype._fetch = function(url, callback) {
+        var prefetch = this._prefetch;
+        if (prefetch && prefetch.url === url) {
+            prefetch.callback = callback;
+            return prefetch.request;
+        }
+        return this._send(url, callback);
+    };
+
+    Search.prototype._send = function(url, callback) {
+        var self = this;
+        var request = new XMLHttpRequest();
+        request.open("GET", url, true);
+        request.onload = function() {
+            var data = null;
+            if (request.status >= 200 && request.status < 400) {
+                // success status
+                data = JSON.parse(request.responseText);
+                self._cache.put(url, data);
+            }
+            callback(data);
+        };
+        request.onerror = function() {
+            callback(null);
+        };
+        request.send();
+        return request;
+    };
+
+    Search.prototype._showResults = function(data) {
+        if (data.length > 0) {
+            this._generateItems(data, this._elements.results);
+            this._markResults();
+            toggleShow(this._elements.results, true);
+        } else {
+            this._hasMoreResults = false;
+        }
+        // the total number of results is not a multiple of the fetched results:
+        // -> we reached the end of the query
+        if (this._elements.results.querySelectorAll(selectors.item.self).length % this._properties.resultsSize > 0) {
+            this._hasMoreResults = false;
         }
     };
 
     Search.prototype._cancelResults = function() {
         clearTimeout(this._timeout);
+        // the superseded requests are aborted, so that their responses are neither processed nor displayed
+        if (this._request) {
+            this._request.abort();
+            toggleShow(this._elements.loadingIndicator, false);
+            toggleShow(this._elements.icon, true);
+        }
+        if (this._prefetch) {
+            this._prefetch.request.abort();
+            this._prefetch = null;
+        }
         this._elements.results.scrollTop = 0;
         this._resultsOffset = 0;
+        this._request = null;
         this._hasMoreResults = true;
         this._elements.results.innerHTML = "";
     };